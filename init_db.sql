@@ -15,6 +15,184 @@
 /*!40101 SET @OLD_SQL_MODE=@@SQL_MODE, SQL_MODE='NO_AUTO_VALUE_ON_ZERO' */;
 /*!40111 SET @OLD_SQL_NOTES=@@SQL_NOTES, SQL_NOTES=0 */;
 
+--
+-- Sequence structure for `branch_stock_seq`
+--
+
+DROP SEQUENCE IF EXISTS `branch_stock_seq`;
+CREATE SEQUENCE `branch_stock_seq` start with 1 minvalue 1 maxvalue 9223372036854775806 increment by 50 cache 1000 nocycle ENGINE=InnoDB;
+SELECT SETVAL(`branch_stock_seq`, 1, 0);
+
+--
+-- Sequence structure for `copy_seq`
+--
+
+DROP SEQUENCE IF EXISTS `copy_seq`;
+CREATE SEQUENCE `copy_seq` start with 1 minvalue 1 maxvalue 9223372036854775806 increment by 50 cache 1000 nocycle ENGINE=InnoDB;
+SELECT SETVAL(`copy_seq`, 1, 0);
+
+--
+-- Sequence structure for `hold_seq`
+--
+
+DROP SEQUENCE IF EXISTS `hold_seq`;
+CREATE SEQUENCE `hold_seq` start with 1 minvalue 1 maxvalue 9223372036854775806 increment by 50 cache 1000 nocycle ENGINE=InnoDB;
+SELECT SETVAL(`hold_seq`, 1, 0);
+
+--
+-- Sequence structure for `item_seq`
+--
+
+DROP SEQUENCE IF EXISTS `item_seq`;
+CREATE SEQUENCE `item_seq` start with 1 minvalue 1 maxvalue 9223372036854775806 increment by 50 cache 1000 nocycle ENGINE=InnoDB;
+SELECT SETVAL(`item_seq`, 1, 0);
+
+--
+-- Sequence structure for `reservation_event_seq`
+--
+
+DROP SEQUENCE IF EXISTS `reservation_event_seq`;
+CREATE SEQUENCE `reservation_event_seq` start with 1 minvalue 1 maxvalue 9223372036854775806 increment by 50 cache 1000 nocycle ENGINE=InnoDB;
+SELECT SETVAL(`reservation_event_seq`, 1, 0);
+
+--
+-- Sequence structure for `reservation_seq`
+--
+
+DROP SEQUENCE IF EXISTS `reservation_seq`;
+CREATE SEQUENCE `reservation_seq` start with 1 minvalue 1 maxvalue 9223372036854775806 increment by 50 cache 1000 nocycle ENGINE=InnoDB;
+SELECT SETVAL(`reservation_seq`, 1, 0);
+
+--
+-- Sequence structure for `transfer_seq`
+--
+
+DROP SEQUENCE IF EXISTS `transfer_seq`;
+CREATE SEQUENCE `transfer_seq` start with 1 minvalue 1 maxvalue 9223372036854775806 increment by 50 cache 1000 nocycle ENGINE=InnoDB;
+SELECT SETVAL(`transfer_seq`, 1, 0);
+
+--
+-- Table structure for table `branch`
+--
+
+DROP TABLE IF EXISTS `branch`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `branch` (
+  `code` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `name` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
+  PRIMARY KEY (`code`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `branch`
+--
+
+LOCK TABLES `branch` WRITE;
+/*!40000 ALTER TABLE `branch` DISABLE KEYS */;
+INSERT INTO `branch` VALUES ('MAIN','Main');
+/*!40000 ALTER TABLE `branch` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `branch_stock`
+--
+
+DROP TABLE IF EXISTS `branch_stock`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `branch_stock` (
+  `id` bigint(20) NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `branch_code` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `total_copies` int(11) NOT NULL,
+  `available_copies` int(11) NOT NULL,
+  `copy_availability` varbinary(8192) DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_branch_stock_item_branch` (`item_id`,`branch_code`),
+  KEY `fk_branch_stock_branch` (`branch_code`),
+  CONSTRAINT `fk_branch_stock_item` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`),
+  CONSTRAINT `fk_branch_stock_branch` FOREIGN KEY (`branch_code`) REFERENCES `branch` (`code`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `change_counter`
+--
+
+DROP TABLE IF EXISTS `change_counter`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `change_counter` (
+  `name` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `last_assigned` bigint(20) NOT NULL,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `copy`
+--
+
+DROP TABLE IF EXISTS `copy`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `copy` (
+  `id` bigint(20) NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `branch_code` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `copy_number` int(11) NOT NULL,
+  `barcode` varchar(32) COLLATE utf8mb4_unicode_ci NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_copy_barcode` (`barcode`),
+  UNIQUE KEY `uk_copy_item_number` (`item_id`,`copy_number`),
+  KEY `fk_copy_branch` (`branch_code`),
+  CONSTRAINT `fk_copy_item` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`),
+  CONSTRAINT `fk_copy_branch` FOREIGN KEY (`branch_code`) REFERENCES `branch` (`code`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `hold`
+--
+
+DROP TABLE IF EXISTS `hold`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `hold` (
+  `id` bigint(20) NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `username` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `ticket` bigint(20) NOT NULL,
+  `created_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_hold_item_ticket` (`item_id`,`ticket`),
+  UNIQUE KEY `uk_hold_item_user` (`item_id`,`username`),
+  KEY `idx_hold_username` (`username`),
+  CONSTRAINT `fk_hold_item` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`),
+  CONSTRAINT `fk_hold_user` FOREIGN KEY (`username`) REFERENCES `user` (`username`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `idempotency_key`
+--
+
+DROP TABLE IF EXISTS `idempotency_key`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `idempotency_key` (
+  `id` varchar(160) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `request_hash` varchar(64) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
+  `code` varchar(32) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
+  `content` longtext COLLATE utf8mb4_unicode_ci DEFAULT NULL,
+  `expires_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_idempotency_key_expires_at` (`expires_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `item`
 --
@@ -24,7 +202,7 @@ DROP TABLE IF EXISTS `item`;
 /*!40101 SET character_set_client = utf8 */;
 CREATE TABLE `item` (
   `item_type` varchar(31) COLLATE utf8mb4_unicode_ci NOT NULL,
-  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `id` bigint(20) NOT NULL,
   `author` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
   `available_copies` int(11) NOT NULL,
   `genre` varchar(255) COLLATE utf8mb4_unicode_ci NOT NULL,
@@ -35,7 +213,11 @@ CREATE TABLE `item` (
   `isbn` varchar(13) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
   `publisher` varchar(64) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
   `duration` varchar(16) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
-  PRIMARY KEY (`id`)
+  `change_seq` bigint(20) NOT NULL,
+  `hold_tail` bigint(20) NOT NULL DEFAULT 0,
+  `hold_count` int(11) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`id`),
+  KEY `idx_item_change_seq` (`change_seq`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -48,6 +230,40 @@ LOCK TABLES `item` WRITE;
 /*!40000 ALTER TABLE `item` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `item_tombstone`
+--
+
+DROP TABLE IF EXISTS `item_tombstone`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `item_tombstone` (
+  `item_id` bigint(20) NOT NULL,
+  `item_type` varchar(31) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `change_seq` bigint(20) NOT NULL,
+  `deleted_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`item_id`),
+  KEY `idx_item_tombstone_change_seq` (`change_seq`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `kiosk_event`
+--
+
+DROP TABLE IF EXISTS `kiosk_event`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `kiosk_event` (
+  `id` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `kiosk_id` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `code` varchar(32) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `processed_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_kiosk_event_processed_at` (`processed_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `reservation`
 --
@@ -56,14 +272,26 @@ DROP TABLE IF EXISTS `reservation`;
 /*!40101 SET @saved_cs_client     = @@character_set_client */;
 /*!40101 SET character_set_client = utf8 */;
 CREATE TABLE `reservation` (
-  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `id` bigint(20) NOT NULL,
   `item_id` bigint(20) NOT NULL,
   `username` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `copy_id` bigint(20) DEFAULT NULL,
+  `branch_code` varchar(16) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
+  `reservation_date` date DEFAULT NULL,
+  `due_date` date NOT NULL,
+  `overdue` bit(1) NOT NULL DEFAULT b'0',
+  `reminder_sent` bit(1) NOT NULL DEFAULT b'0',
+  `renewals` int(11) NOT NULL DEFAULT 0,
   PRIMARY KEY (`id`),
   KEY `FK69o05epkugkxteiplsrgqod44` (`item_id`),
+  KEY `idx_reservation_overdue_due_date` (`overdue`, `due_date`),
+  KEY `fk_reservation_copy` (`copy_id`),
+  KEY `fk_reservation_branch` (`branch_code`),
   KEY `FKhl4tqo9c60ogg9q645rdcr8hd` (`username`),
   CONSTRAINT `FK69o05epkugkxteiplsrgqod44` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`),
-  CONSTRAINT `FKhl4tqo9c60ogg9q645rdcr8hd` FOREIGN KEY (`username`) REFERENCES `user` (`username`)
+  CONSTRAINT `FKhl4tqo9c60ogg9q645rdcr8hd` FOREIGN KEY (`username`) REFERENCES `user` (`username`),
+  CONSTRAINT `fk_reservation_copy` FOREIGN KEY (`copy_id`) REFERENCES `copy` (`id`),
+  CONSTRAINT `fk_reservation_branch` FOREIGN KEY (`branch_code`) REFERENCES `branch` (`code`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -76,6 +304,77 @@ LOCK TABLES `reservation` WRITE;
 /*!40000 ALTER TABLE `reservation` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `reservation_event`
+--
+
+DROP TABLE IF EXISTS `reservation_event`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `reservation_event` (
+  `id` bigint(20) NOT NULL,
+  `seq` bigint(20) DEFAULT NULL,
+  `type` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `reservation_id` bigint(20) NOT NULL,
+  `username` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `copy_id` bigint(20) DEFAULT NULL,
+  `branch_code` varchar(16) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
+  `due_date` date DEFAULT NULL,
+  `occurred_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_reservation_event_seq` (`seq`),
+  KEY `idx_reservation_event_username` (`username`, `seq`),
+  KEY `idx_reservation_event_occurred_at` (`occurred_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `reservation_snapshot`
+--
+
+DROP TABLE IF EXISTS `reservation_snapshot`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `reservation_snapshot` (
+  `item_id` bigint(20) NOT NULL,
+  `checkouts` bigint(20) NOT NULL,
+  `returns` bigint(20) NOT NULL,
+  `renewals` bigint(20) NOT NULL,
+  `last_event_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`item_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `transfer`
+--
+
+DROP TABLE IF EXISTS `transfer`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `transfer` (
+  `id` bigint(20) NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `username` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `from_branch` varchar(16) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
+  `to_branch` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `copy_id` bigint(20) DEFAULT NULL,
+  `status` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `created_at` datetime(6) NOT NULL,
+  `shipped_at` datetime(6) DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_transfer_item_user` (`item_id`,`username`),
+  KEY `idx_transfer_status_id` (`status`,`id`),
+  KEY `idx_transfer_username` (`username`),
+  CONSTRAINT `fk_transfer_item` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`),
+  CONSTRAINT `fk_transfer_user` FOREIGN KEY (`username`) REFERENCES `user` (`username`),
+  CONSTRAINT `fk_transfer_from_branch` FOREIGN KEY (`from_branch`) REFERENCES `branch` (`code`),
+  CONSTRAINT `fk_transfer_to_branch` FOREIGN KEY (`to_branch`) REFERENCES `branch` (`code`),
+  CONSTRAINT `fk_transfer_copy` FOREIGN KEY (`copy_id`) REFERENCES `copy` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `user`
 --
@@ -0,0 +1,23 @@
+-- Moves item and reservation ids from AUTO_INCREMENT columns to sequences allocated by blocks (MariaDB 10.3+).
+-- Existing ids are kept, the sequences start after the highest one.
+-- INCREMENT BY must be libmanager.id.allocation-size (50 by default).
+-- Stop the application before running it: a running node would still insert with AUTO_INCREMENT ids.
+
+SET @OLD_FOREIGN_KEY_CHECKS = @@FOREIGN_KEY_CHECKS, FOREIGN_KEY_CHECKS = 0;
+
+SET @start = (SELECT COALESCE(MAX(`id`), 0) + 1 FROM `item`);
+SET @statement = CONCAT('CREATE SEQUENCE `item_seq` START WITH ', @start, ' MINVALUE 1 INCREMENT BY 50');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @start = (SELECT COALESCE(MAX(`id`), 0) + 1 FROM `reservation`);
+SET @statement = CONCAT('CREATE SEQUENCE `reservation_seq` START WITH ', @start, ' MINVALUE 1 INCREMENT BY 50');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+ALTER TABLE `item` MODIFY `id` bigint(20) NOT NULL;
+ALTER TABLE `reservation` MODIFY `id` bigint(20) NOT NULL;
+
+SET FOREIGN_KEY_CHECKS = @OLD_FOREIGN_KEY_CHECKS;
@@ -0,0 +1,26 @@
+-- Adds the change sequence of the items, read by /item/changes, and the tombstones of the deleted items.
+-- Existing items get their id as position (ids are unique), the counter starts after the highest one.
+-- Stop the application before running it: a running node would write items without a position.
+
+ALTER TABLE `item` ADD COLUMN `change_seq` bigint(20) NOT NULL DEFAULT 0;
+UPDATE `item` SET `change_seq` = `id`;
+ALTER TABLE `item` ALTER COLUMN `change_seq` DROP DEFAULT;
+CREATE INDEX `idx_item_change_seq` ON `item` (`change_seq`);
+
+CREATE TABLE `item_tombstone` (
+  `item_id` bigint(20) NOT NULL,
+  `item_type` varchar(31) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `change_seq` bigint(20) NOT NULL,
+  `deleted_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`item_id`),
+  KEY `idx_item_tombstone_change_seq` (`change_seq`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE `change_counter` (
+  `name` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `last_assigned` bigint(20) NOT NULL,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO `change_counter` (`name`, `last_assigned`)
+SELECT 'item_changes', COALESCE(MAX(`id`), 0) FROM `item`;
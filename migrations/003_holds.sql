@@ -0,0 +1,21 @@
+-- Adds the hold queues of the items (/reservation/hold/*).
+-- INCREMENT BY of hold_seq must be libmanager.id.allocation-size (50 by default).
+
+ALTER TABLE `item` ADD COLUMN `hold_tail` bigint(20) NOT NULL DEFAULT 0;
+ALTER TABLE `item` ADD COLUMN `hold_count` int(11) NOT NULL DEFAULT 0;
+
+CREATE SEQUENCE `hold_seq` START WITH 1 MINVALUE 1 INCREMENT BY 50;
+
+CREATE TABLE `hold` (
+  `id` bigint(20) NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `username` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `ticket` bigint(20) NOT NULL,
+  `created_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_hold_item_ticket` (`item_id`, `ticket`),
+  UNIQUE KEY `uk_hold_item_user` (`item_id`, `username`),
+  KEY `idx_hold_username` (`username`),
+  CONSTRAINT `fk_hold_item` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`),
+  CONSTRAINT `fk_hold_user` FOREIGN KEY (`username`) REFERENCES `user` (`username`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
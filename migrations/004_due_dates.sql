@@ -0,0 +1,10 @@
+-- Adds the due dates of the loans, read by the loan timer to mark them overdue and send the reminders.
+-- Existing loans get the period of their item type from their reservation date (21 days for a book, 7 for a DVD).
+
+ALTER TABLE `reservation` ADD COLUMN `due_date` date NULL;
+UPDATE `reservation` r JOIN `item` i ON i.`id` = r.`item_id`
+   SET r.`due_date` = DATE_ADD(r.`reservation_date`, INTERVAL IF(i.`item_type` = 'DVD', 7, 21) DAY);
+ALTER TABLE `reservation` MODIFY COLUMN `due_date` date NOT NULL;
+ALTER TABLE `reservation` ADD COLUMN `overdue` bit(1) NOT NULL DEFAULT b'0';
+ALTER TABLE `reservation` ADD COLUMN `reminder_sent` bit(1) NOT NULL DEFAULT b'0';
+CREATE INDEX `idx_reservation_overdue_due_date` ON `reservation` (`overdue`, `due_date`);
@@ -0,0 +1,3 @@
+-- Adds the number of renewals of the loans (/reservation/renew_batch).
+
+ALTER TABLE `reservation` ADD COLUMN `renewals` int(11) NOT NULL DEFAULT 0;
@@ -0,0 +1,40 @@
+-- Adds the copies of the items, with their barcodes (/reservation/checkout).
+-- Each item gets total_copies copies labelled "<item id>-<copy number + 1>", the open loans are given a copy of their
+-- item. The availability of the copies (item.copy_availability) is built by the application when first used.
+-- INCREMENT BY of copy_seq must be libmanager.id.allocation-size (50 by default). Requires MariaDB 10.3+.
+
+CREATE TABLE `copy` (
+  `id` bigint(20) NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `copy_number` int(11) NOT NULL,
+  `barcode` varchar(32) COLLATE utf8mb4_unicode_ci NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_copy_barcode` (`barcode`),
+  UNIQUE KEY `uk_copy_item_number` (`item_id`, `copy_number`),
+  CONSTRAINT `fk_copy_item` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO `copy` (`id`, `item_id`, `copy_number`, `barcode`)
+WITH RECURSIVE `numbers` (`n`) AS (
+    SELECT 0
+    UNION ALL
+    SELECT `n` + 1 FROM `numbers` WHERE `n` + 1 < (SELECT COALESCE(MAX(`total_copies`), 0) FROM `item`)
+)
+SELECT ROW_NUMBER() OVER (ORDER BY i.`id`, n.`n`), i.`id`, n.`n`, CONCAT(i.`id`, '-', n.`n` + 1)
+  FROM `item` i JOIN `numbers` n ON n.`n` < i.`total_copies`;
+
+SET @start = (SELECT COALESCE(MAX(`id`), 0) + 1 FROM `copy`);
+SET @statement = CONCAT('CREATE SEQUENCE `copy_seq` START WITH ', @start, ' MINVALUE 1 INCREMENT BY 50');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+ALTER TABLE `item` ADD COLUMN `copy_availability` varbinary(8192) NULL;
+ALTER TABLE `reservation` ADD COLUMN `copy_id` bigint(20) NULL;
+ALTER TABLE `reservation` ADD CONSTRAINT `fk_reservation_copy` FOREIGN KEY (`copy_id`) REFERENCES `copy` (`id`);
+
+UPDATE `reservation` r
+  JOIN (SELECT `id`, `item_id`, ROW_NUMBER() OVER (PARTITION BY `item_id` ORDER BY `id`) - 1 AS `n`
+          FROM `reservation`) o ON o.`id` = r.`id`
+  JOIN `copy` c ON c.`item_id` = o.`item_id` AND c.`copy_number` = o.`n`
+   SET r.`copy_id` = c.`id`;
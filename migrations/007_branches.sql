@@ -0,0 +1,46 @@
+-- Adds the branches sharing the catalog: the copies of each item are counted by branch (branch_stock), a loan locks
+-- the stock of its branch only.
+-- The existing copies and loans go to the default branch (libmanager.branches.default, MAIN by default), the
+-- availability of the copies moves from item to its stock.
+-- INCREMENT BY of branch_stock_seq must be libmanager.id.allocation-size (50 by default). Requires MariaDB 10.3+.
+
+CREATE TABLE `branch` (
+  `code` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `name` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
+  PRIMARY KEY (`code`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO `branch` (`code`, `name`) VALUES ('MAIN', 'Main');
+
+CREATE TABLE `branch_stock` (
+  `id` bigint(20) NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `branch_code` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `total_copies` int(11) NOT NULL,
+  `available_copies` int(11) NOT NULL,
+  `copy_availability` varbinary(8192) NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_branch_stock_item_branch` (`item_id`, `branch_code`),
+  CONSTRAINT `fk_branch_stock_item` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`),
+  CONSTRAINT `fk_branch_stock_branch` FOREIGN KEY (`branch_code`) REFERENCES `branch` (`code`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO `branch_stock` (`id`, `item_id`, `branch_code`, `total_copies`, `available_copies`, `copy_availability`)
+SELECT ROW_NUMBER() OVER (ORDER BY `id`), `id`, 'MAIN', `total_copies`, `available_copies`, `copy_availability`
+  FROM `item`;
+
+SET @start = (SELECT COALESCE(MAX(`id`), 0) + 1 FROM `branch_stock`);
+SET @statement = CONCAT('CREATE SEQUENCE `branch_stock_seq` START WITH ', @start, ' MINVALUE 1 INCREMENT BY 50');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+ALTER TABLE `copy` ADD COLUMN `branch_code` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL DEFAULT 'MAIN';
+ALTER TABLE `copy` ALTER COLUMN `branch_code` DROP DEFAULT;
+ALTER TABLE `copy` ADD CONSTRAINT `fk_copy_branch` FOREIGN KEY (`branch_code`) REFERENCES `branch` (`code`);
+
+ALTER TABLE `reservation` ADD COLUMN `branch_code` varchar(16) COLLATE utf8mb4_unicode_ci NULL;
+ALTER TABLE `reservation` ADD CONSTRAINT `fk_reservation_branch` FOREIGN KEY (`branch_code`) REFERENCES `branch` (`code`);
+UPDATE `reservation` SET `branch_code` = 'MAIN';
+
+ALTER TABLE `item` DROP COLUMN `copy_availability`;
@@ -0,0 +1,25 @@
+-- Adds the transfers of copies between branches (/reservation/transfer/*), queued and shipped by batches.
+-- INCREMENT BY of transfer_seq must be libmanager.id.allocation-size (50 by default).
+
+CREATE SEQUENCE `transfer_seq` START WITH 1 MINVALUE 1 INCREMENT BY 50;
+
+CREATE TABLE `transfer` (
+  `id` bigint(20) NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `username` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `from_branch` varchar(16) COLLATE utf8mb4_unicode_ci NULL,
+  `to_branch` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `copy_id` bigint(20) NULL,
+  `status` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `created_at` datetime(6) NOT NULL,
+  `shipped_at` datetime(6) NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_transfer_item_user` (`item_id`, `username`),
+  KEY `idx_transfer_status_id` (`status`, `id`),
+  KEY `idx_transfer_username` (`username`),
+  CONSTRAINT `fk_transfer_item` FOREIGN KEY (`item_id`) REFERENCES `item` (`id`),
+  CONSTRAINT `fk_transfer_user` FOREIGN KEY (`username`) REFERENCES `user` (`username`),
+  CONSTRAINT `fk_transfer_from_branch` FOREIGN KEY (`from_branch`) REFERENCES `branch` (`code`),
+  CONSTRAINT `fk_transfer_to_branch` FOREIGN KEY (`to_branch`) REFERENCES `branch` (`code`),
+  CONSTRAINT `fk_transfer_copy` FOREIGN KEY (`copy_id`) REFERENCES `copy` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
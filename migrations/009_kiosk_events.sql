@@ -0,0 +1,11 @@
+-- Adds the outcomes of the events replayed by the offline kiosks (/reservation/kiosk/sync), kept
+-- libmanager.kiosk.event-retention-days days so that a batch sent again is not applied twice.
+
+CREATE TABLE `kiosk_event` (
+  `id` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `kiosk_id` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `code` varchar(32) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `processed_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_kiosk_event_processed_at` (`processed_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,11 @@
+-- Adds the responses of the requests sent with an Idempotency-Key header (/reservation/add, /item/book/add), kept
+-- libmanager.idempotency.ttl milliseconds.
+
+CREATE TABLE `idempotency_key` (
+  `id` varchar(160) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `code` varchar(32) COLLATE utf8mb4_unicode_ci NULL,
+  `content` longtext COLLATE utf8mb4_unicode_ci NULL,
+  `expires_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_idempotency_key_expires_at` (`expires_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
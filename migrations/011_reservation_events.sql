@@ -0,0 +1,38 @@
+-- Adds the reservation journal: the checkouts, returns and renewals in the order they were committed
+-- (/reservation/events), and the loans of each item counted from it up to the last snapshot.
+-- The open loans get a checkout on the day they were borrowed, in the order of their ids, the counter starts after
+-- them. Requires MariaDB 10.2+.
+-- Stop the application before running it: a running node would write events without their checkout.
+
+CREATE TABLE `reservation_event` (
+  `seq` bigint(20) NOT NULL,
+  `type` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `reservation_id` bigint(20) NOT NULL,
+  `username` varchar(16) COLLATE utf8mb4_unicode_ci NOT NULL,
+  `item_id` bigint(20) NOT NULL,
+  `copy_id` bigint(20) DEFAULT NULL,
+  `branch_code` varchar(16) COLLATE utf8mb4_unicode_ci DEFAULT NULL,
+  `due_date` date DEFAULT NULL,
+  `occurred_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`seq`),
+  KEY `idx_reservation_event_username` (`username`, `seq`),
+  KEY `idx_reservation_event_occurred_at` (`occurred_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE `reservation_snapshot` (
+  `item_id` bigint(20) NOT NULL,
+  `checkouts` bigint(20) NOT NULL,
+  `returns` bigint(20) NOT NULL,
+  `renewals` bigint(20) NOT NULL,
+  `last_event_at` datetime(6) NOT NULL,
+  PRIMARY KEY (`item_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO `reservation_event` (`seq`, `type`, `reservation_id`, `username`, `item_id`, `copy_id`, `branch_code`,
+                                 `due_date`, `occurred_at`)
+SELECT ROW_NUMBER() OVER (ORDER BY `id`), 'CHECKOUT', `id`, `username`, `item_id`, `copy_id`, `branch_code`,
+       `due_date`, COALESCE(`reservation_date`, CURDATE())
+  FROM `reservation`;
+
+INSERT INTO `change_counter` (`name`, `last_assigned`)
+SELECT 'reservation_events', COUNT(*) FROM `reservation_event`;
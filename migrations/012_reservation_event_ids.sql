@@ -0,0 +1,20 @@
+-- Gives the events of the reservation journal an id from reservation_event_seq: the loans insert them without locking
+-- the counter of the journal, their position (seq) is given once they are committed by the application.
+-- The events already recorded keep their position as id. INCREMENT BY of reservation_event_seq must be
+-- libmanager.id.allocation-size (50 by default). Requires MariaDB 10.3+.
+
+ALTER TABLE `reservation_event` ADD COLUMN `id` bigint(20) NULL FIRST;
+UPDATE `reservation_event` SET `id` = `seq`;
+ALTER TABLE `reservation_event`
+  DROP PRIMARY KEY,
+  MODIFY `id` bigint(20) NOT NULL,
+  MODIFY `seq` bigint(20) DEFAULT NULL,
+  ADD PRIMARY KEY (`id`),
+  ADD UNIQUE KEY `uk_reservation_event_seq` (`seq`);
+
+SET @start = (SELECT COALESCE(MAX(`id`), 0) + 1 FROM `reservation_event`);
+SET @statement = CONCAT('CREATE SEQUENCE `reservation_event_seq` START WITH ', @start,
+                        ' MINVALUE 1 INCREMENT BY 50');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
@@ -0,0 +1,4 @@
+-- Keeps a hash of the parameters of the requests sent with an Idempotency-Key header, a key sent again with other
+-- parameters is refused. The keys already recorded have no hash and are not checked.
+
+ALTER TABLE `idempotency_key` ADD COLUMN `request_hash` varchar(64) COLLATE utf8mb4_unicode_ci NULL AFTER `id`;
@@ -0,0 +1,84 @@
+package org.libmanager.server.benchmark;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.libmanager.server.Application;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Boots the application without its web server against an embedded H2 database, for the benchmarks that go through
+ * the services and Hibernate
+ */
+final class ApplicationFixture {
+
+    private ApplicationFixture() {
+    }
+
+    /**
+     * @param name          The name of the in-memory database, one per benchmark class
+     * @param properties    Additional properties, e.g. "--libmanager.cache.enabled=false"
+     */
+    static ConfigurableApplicationContext start(String name, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:" + name + ";MODE=MariaDB;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                "--spring.mail.host=localhost",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(properties));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                // Command line arguments win over any application.properties on the classpath
+                .run(args.toArray(new String[0]));
+        // The branch of the copies of the items inserted without stock
+        context.getBean(JdbcTemplate.class).update("INSERT INTO branch (code, name) VALUES ('MAIN', 'Main')");
+        return context;
+    }
+
+    /**
+     * Insert books with a JDBC batch
+     */
+    static void insertBooks(ConfigurableApplicationContext context, int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] {
+                    "Author " + i % 500, "NOVEL", Date.valueOf(LocalDate.of(2000, 1, 1).plusDays(i % 7000)),
+                    "Title " + i, String.format("978%010d", i), "Publisher " + i % 50
+            });
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO item (id, item_type, author, available_copies, genre, release_date, status, title, " +
+                "total_copies, isbn, publisher) VALUES (NEXT VALUE FOR item_seq, 'BOOK', ?, 2, ?, ?, true, ?, 2, ?, ?)",
+                rows);
+    }
+
+    /**
+     * Insert adult users registered three years ago (the highest reservation limits), named user0, user1...
+     */
+    static void insertUsers(ConfigurableApplicationContext context, int count) {
+        Date birthday = Date.valueOf(LocalDate.of(1980, 1, 1));
+        Date registrationDate = Date.valueOf(LocalDate.now().minusYears(3));
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] {
+                    "user" + i, "Address " + i, birthday, "user" + i + "@libmanager.org", "First " + i, "Last " + i,
+                    registrationDate
+            });
+        }
+        // The password is never checked by the benchmarks
+        context.getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO user (username, address, admin, birthday, email, first_name, last_name, password, " +
+                "registration_date) VALUES (?, ?, false, ?, ?, ?, ?, 'password', ?)",
+                rows);
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.libmanager.server.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.ReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Throughput of a checkout followed by the return of the item, with and without the second-level cache, on an
+ * embedded H2 database. The user and the reservation are point loads served by the cache, the item is always read
+ * from the database with a lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CheckoutBenchmark {
+
+    private static final int BOOKS = 2000;
+    private static final int USERS = 500;
+
+    @Param({"true", "false"})
+    private boolean cache;
+
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    private long[] itemIds;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup
+    public void setUp() {
+        context = ApplicationFixture.start("checkout-" + cache, "--libmanager.cache.enabled=" + cache);
+        ApplicationFixture.insertBooks(context, BOOKS);
+        ApplicationFixture.insertUsers(context, USERS);
+        reservationService = context.getBean(ReservationService.class);
+        itemIds = context.getBean(JdbcTemplate.class).queryForList("SELECT id FROM item", Long.class)
+                         .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Response<Boolean> checkoutAndReturn() {
+        String username = "user" + random.nextInt(USERS);
+        reservationService.add(username, itemIds[random.nextInt(itemIds.length)], null);
+        Response<Boolean> result = null;
+        for (Reservation reservation : reservationService.getByUser(username).getContent())
+            result = reservationService.delete(reservation.getId());
+        return result;
+    }
+
+}
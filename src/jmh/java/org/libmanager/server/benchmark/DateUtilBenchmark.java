@@ -0,0 +1,44 @@
+package org.libmanager.server.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.libmanager.server.util.DateUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateUtilBenchmark {
+
+    private final String date = "24/12/2020";
+    private final String dbDate = "2020-12-24";
+    // The controllers pass "null" when a search parameter is omitted, which goes through the exception path
+    private final String invalidDate = "null";
+
+    @Benchmark
+    public LocalDate parse() {
+        return DateUtil.parse(date);
+    }
+
+    @Benchmark
+    public LocalDate parseInvalid() {
+        return DateUtil.parse(invalidDate);
+    }
+
+    @Benchmark
+    public LocalDate parseDB() {
+        return DateUtil.parseDB(dbDate);
+    }
+
+    @Benchmark
+    public LocalDate parseDBInvalid() {
+        return DateUtil.parseDB(invalidDate);
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.libmanager.server.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.libmanager.server.checkout.CheckoutLanes;
+import org.libmanager.server.inventory.AvailabilityEngine;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.ReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Throughput of the checkouts of a single item by many threads at the same time (e.g. a new DVD on its release day):
+ * each checkout waiting for the lock of the item (database), queued in the checkout lanes and committed with the
+ * checkouts queued with it (lanes), or decided in memory and written to the database later (engine). The item has
+ * enough copies for the whole run and the users are admins (no reservation limit), so that every checkout lends a
+ * copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+public class HotItemCheckoutBenchmark {
+
+    private static final int USERS = 500;
+    private static final int COPIES = 100_000_000;
+
+    @Param({"database", "lanes", "engine"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    private CheckoutLanes checkoutLanes;
+    private AvailabilityEngine availabilityEngine;
+    private Path journal;
+    private long itemId;
+
+    @Setup
+    public void setUp() throws IOException {
+        journal = Files.createTempFile("availability", ".journal");
+        context = ApplicationFixture.start("hot-item-" + mode,
+                                           "--libmanager.checkout.lanes.enabled=" + mode.equals("lanes"),
+                                           "--libmanager.availability.engine.enabled=" + mode.equals("engine"),
+                                           "--libmanager.availability.engine.journal=" + journal);
+        ApplicationFixture.insertBooks(context, 1);
+        ApplicationFixture.insertUsers(context, USERS);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("UPDATE item SET total_copies = ?, available_copies = ?", COPIES, COPIES);
+        jdbcTemplate.update("UPDATE user SET admin = true");
+        itemId = jdbcTemplate.queryForObject("SELECT id FROM item", Long.class);
+        reservationService = context.getBean(ReservationService.class);
+        checkoutLanes = context.getBean(CheckoutLanes.class);
+        availabilityEngine = context.getBean(AvailabilityEngine.class);
+        // Loaded from the item table after the rows above
+        availabilityEngine.stop();
+        availabilityEngine.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(journal);
+    }
+
+    @Benchmark
+    public Response<Boolean> checkout() {
+        String username = "user" + ThreadLocalRandom.current().nextInt(USERS);
+        if (availabilityEngine.isEnabled())
+            return availabilityEngine.add(username, itemId, null);
+        if (checkoutLanes.isEnabled())
+            return checkoutLanes.add(username, itemId, null);
+        return reservationService.add(username, itemId, null);
+    }
+
+}
@@ -0,0 +1,147 @@
+package org.libmanager.server.benchmark;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Bulk insert throughput of items with the statements Hibernate sends for each id strategy, on an embedded H2
+ * database: IDENTITY executes every insert on its own to read the generated id back, the pooled sequence reserves a
+ * block of ids with one call and sends the inserts by batches (hibernate.jdbc.batch_size).
+ * <p>
+ * H2 runs in the same process, the gap is wider with a network round trip per statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IdGenerationBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private static final String COLUMNS =
+            "item_type, author, available_copies, genre, release_date, status, title, total_copies, isbn, publisher, " +
+            "duration";
+
+    /** Ids reserved by a sequence call and rows sent by a batch */
+    @Param({"50"})
+    private int allocationSize;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:benchmark;MODE=MariaDB;DB_CLOSE_DELAY=-1", "sa", "");
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String table : new String[] {"item_identity", "item_pooled"}) {
+                statement.execute("CREATE TABLE " + table + " (id BIGINT " +
+                                  (table.equals("item_identity") ? "AUTO_INCREMENT " : "") + "PRIMARY KEY, " +
+                                  "item_type VARCHAR(31) NOT NULL, author VARCHAR(64) NOT NULL, " +
+                                  "available_copies INT NOT NULL, genre VARCHAR(255) NOT NULL, " +
+                                  "release_date DATE NOT NULL, status BOOLEAN NOT NULL, title VARCHAR(128) NOT NULL, " +
+                                  "total_copies INT NOT NULL, isbn VARCHAR(13), publisher VARCHAR(64), " +
+                                  "duration VARCHAR(16))");
+            }
+            statement.execute("CREATE SEQUENCE item_seq START WITH 1 INCREMENT BY " + allocationSize);
+        }
+        connection.commit();
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE item_identity");
+            statement.execute("TRUNCATE TABLE item_pooled");
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identity() throws SQLException {
+        long lastId = 0;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO item_identity (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ROWS; i++) {
+                bind(insert, 1, i);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    lastId = keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return lastId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long pooledSequence() throws SQLException {
+        long id = 0;
+        long end = 0;
+        try (PreparedStatement nextValue = connection.prepareStatement("SELECT NEXT VALUE FOR item_seq");
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO item_pooled (id, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                if (id == end) {
+                    try (ResultSet result = nextValue.executeQuery()) {
+                        result.next();
+                        id = result.getLong(1);
+                    }
+                    end = id + allocationSize;
+                }
+                insert.setLong(1, id++);
+                bind(insert, 2, i);
+                insert.addBatch();
+                if ((i + 1) % allocationSize == 0)
+                    insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        return id;
+    }
+
+    private static void bind(PreparedStatement insert, int first, int i) throws SQLException {
+        insert.setString(first, "BOOK");
+        insert.setString(first + 1, "Author " + i % 100);
+        insert.setInt(first + 2, 1);
+        insert.setString(first + 3, "NOVEL");
+        insert.setDate(first + 4, Date.valueOf(LocalDate.of(2000, 1, 1)));
+        insert.setBoolean(first + 5, true);
+        insert.setString(first + 6, "Title " + i);
+        insert.setInt(first + 7, 1);
+        insert.setString(first + 8, null);
+        insert.setString(first + 9, "Publisher");
+        insert.setString(first + 10, null);
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.libmanager.server.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.libmanager.server.repository.BookRepository;
+import org.libmanager.server.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cost of loading a large result set in a read-write transaction (the entities are snapshotted, then dirty checked
+ * when the transaction is flushed) and in a read-only one (manual flush, no snapshots).
+ * <p>
+ * Run it with the GC profiler to see the allocations per operation:
+ * {@code ./gradlew jmh -Pjmh.includes=ReadTransaction -Pjmh.profilers=gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadTransactionBenchmark {
+
+    @Param({"1000", "20000"})
+    private int books;
+
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+    private BookService bookService;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @Setup
+    public void setUp() {
+        context = ApplicationFixture.start("read-transaction");
+        ApplicationFixture.insertBooks(context, books);
+        bookRepository = context.getBean(BookRepository.class);
+        bookService = context.getBean(BookService.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void readWriteTransaction(Blackhole blackhole) {
+        readWrite.executeWithoutResult(status -> bookRepository.findAll().forEach(blackhole::consume));
+    }
+
+    @Benchmark
+    public void readOnlyTransaction(Blackhole blackhole) {
+        readOnly.executeWithoutResult(status -> bookRepository.findAll().forEach(blackhole::consume));
+    }
+
+    /**
+     * The service method, with its own transaction boundary
+     */
+    @Benchmark
+    public void serviceGetAll(Blackhole blackhole) {
+        bookService.getAll().forEach(blackhole::consume);
+    }
+
+}
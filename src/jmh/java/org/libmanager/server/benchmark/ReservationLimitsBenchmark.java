@@ -0,0 +1,74 @@
+package org.libmanager.server.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.DVD;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.service.impl.ReservationServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReservationLimitsBenchmark {
+
+    /** Number of reservations held by the user, half books and half DVDs */
+    @Param({"0", "1", "10", "50"})
+    private int reservations;
+
+    private final ReservationServiceImpl reservationService = new ReservationServiceImpl();
+
+    private User user;
+    private Book book;
+    private DVD dvd;
+
+    @Setup
+    public void setUp() {
+        book = new Book();
+        book.setTitle("Book");
+        book.setItemType();
+        dvd = new DVD();
+        dvd.setTitle("DVD");
+        dvd.setItemType();
+
+        user = new User();
+        user.setUsername("benchmark");
+        user.setBirthday(LocalDate.now().minusYears(30));
+        user.setRegistrationDate(LocalDate.now().minusYears(3));
+        user.setAdmin(false);
+
+        for (int i = 0; i < reservations; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setId(i);
+            reservation.setUser(user);
+            reservation.setItem(i % 2 == 0 ? book : dvd);
+            user.getReservations().add(reservation);
+        }
+    }
+
+    @Benchmark
+    public boolean checkBook() {
+        return check(book);
+    }
+
+    @Benchmark
+    public boolean checkDVD() {
+        return check(dvd);
+    }
+
+    private boolean check(Item item) {
+        return reservationService.checkReservationLimits(user, item);
+    }
+
+}
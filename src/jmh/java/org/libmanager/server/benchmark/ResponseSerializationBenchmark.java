@@ -0,0 +1,70 @@
+package org.libmanager.server.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.response.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Serializes the body of /item/book/all and /item/book/search
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int books;
+
+    /** Same as spring.jackson.serialization.indent_output in application.properties.example */
+    @Param({"false", "true"})
+    private boolean indent;
+
+    private ObjectMapper mapper;
+    private Response<Iterable<Book>> response;
+
+    @Setup
+    public void setUp() {
+        // Configured like the mapper created by Spring Boot
+        mapper = Jackson2ObjectMapperBuilder.json()
+                                            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                                            .indentOutput(indent)
+                                            .build();
+
+        List<Book> bookList = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            Book book = new Book();
+            book.setTitle("Title " + i);
+            book.setAuthor("Author " + i);
+            book.setPublisher("Publisher " + i);
+            book.setGenre("NOVEL");
+            book.setIsbn(String.format("978%010d", i));
+            book.setReleaseDate(LocalDate.of(2000, 1, 1).plusDays(i));
+            book.setTotalCopies(5);
+            book.setAvailableCopies(i % 6);
+            bookList.add(book);
+        }
+        response = new Response<>(Response.Code.OK, bookList);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(response);
+    }
+
+}
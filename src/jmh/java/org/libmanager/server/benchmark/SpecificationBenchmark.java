@@ -0,0 +1,74 @@
+package org.libmanager.server.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.DVD;
+import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.specification.BookSpecification;
+import org.libmanager.server.specification.DVDSpecification;
+import org.libmanager.server.specification.ReservationSpecification;
+import org.libmanager.server.specification.UserSpecification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Builds the same specifications as the search methods of the services, without running them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpecificationBenchmark {
+
+    private final String title = "Foundation";
+    private final String empty = "null";
+    private final LocalDate date = LocalDate.of(1951, 5, 1);
+
+    @Benchmark
+    public Specification<Book> book() {
+        return Specification.where(BookSpecification.titleLike(title))
+                            .and(BookSpecification.authorLike(empty))
+                            .and(BookSpecification.publisherLike(empty))
+                            .and(BookSpecification.isbnLike(empty))
+                            .and(BookSpecification.releaseDateEquals(date))
+                            .and(BookSpecification.genreEquals("SCIENCE-FICTION"))
+                            .and(BookSpecification.statusEquals("1"));
+    }
+
+    @Benchmark
+    public Specification<DVD> dvd() {
+        return Specification.where(DVDSpecification.titleLike(title))
+                            .and(DVDSpecification.directorLike(empty))
+                            .and(DVDSpecification.genreEquals(empty))
+                            .and(DVDSpecification.releaseDateEquals(null))
+                            .and(DVDSpecification.statusEquals(empty));
+    }
+
+    @Benchmark
+    public Specification<User> user() {
+        return Specification.where(UserSpecification.usernameLike("foo"))
+                            .and(UserSpecification.firstNameLike(empty))
+                            .and(UserSpecification.lastNameLike(empty))
+                            .and(UserSpecification.emailLike(empty))
+                            .and(UserSpecification.addressLike(empty))
+                            .and(UserSpecification.birthdayEquals(null))
+                            .and(UserSpecification.registrationDateEquals(date));
+    }
+
+    @Benchmark
+    public Specification<Reservation> reservation() {
+        return Specification.where(ReservationSpecification.idEquals(0))
+                            .and(ReservationSpecification.usernameLike("foo"))
+                            .and(ReservationSpecification.titleLike(title))
+                            .and(ReservationSpecification.dateEquals(null))
+                            .and(ReservationSpecification.typeEquals("BOOK"));
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.libmanager.server.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.libmanager.server.util.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenUtilBenchmark {
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        token = TokenUtil.generateToken("benchmark", false);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return TokenUtil.generateToken("benchmark", false);
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return TokenUtil.isValid(token);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return TokenUtil.extractUsername(token);
+    }
+
+}
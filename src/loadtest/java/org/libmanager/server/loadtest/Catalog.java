@@ -0,0 +1,38 @@
+package org.libmanager.server.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the load test knows about the seeded data set
+ */
+public class Catalog {
+
+    /** Words used to build the titles, searching one of them matches a share of the catalog */
+    static final String[] WORDS = {
+            "night", "river", "house", "winter", "garden", "secret", "empire", "shadow", "ocean", "stone",
+            "city", "fire", "silent", "queen", "journey", "glass", "storm", "letter", "forest", "island"
+    };
+
+    static final String[] GENRES = {
+            "NOVEL", "CRIME", "FANTASY", "SCIENCE-FICTION", "HISTORY", "BIOGRAPHY", "POETRY", "COMICS"
+    };
+
+    /** A seeded book, kept to send complete edit requests */
+    static class BookRow {
+        long id;
+        String title;
+        String author;
+        String publisher;
+        String genre;
+        String isbn;
+        String releaseDate;
+        int totalCopies;
+    }
+
+    final List<BookRow> books = new ArrayList<>();
+    final List<Long> dvdIds = new ArrayList<>();
+    final List<String> userTokens = new ArrayList<>();
+    String adminToken;
+
+}
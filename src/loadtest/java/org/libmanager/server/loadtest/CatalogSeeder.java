@@ -0,0 +1,125 @@
+package org.libmanager.server.loadtest;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.util.TokenUtil;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * Fills the embedded database with a synthetic catalog and synthetic users
+ */
+public class CatalogSeeder {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Each row takes the first id of a whole block of the sequence, the application never allocates it again
+    private static final String INSERT_ITEM =
+            "INSERT INTO item (id, item_type, author, available_copies, genre, release_date, status, title, " +
+            "total_copies, isbn, publisher, duration, change_seq) " +
+            "VALUES (NEXT VALUE FOR item_seq, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_USER =
+            "INSERT INTO user (username, address, admin, birthday, email, first_name, last_name, password, " +
+            "registration_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChangeCounterRepository changeCounterRepository;
+    private final Random random;
+
+    public CatalogSeeder(JdbcTemplate jdbcTemplate, ChangeCounterRepository changeCounterRepository, long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeCounterRepository = changeCounterRepository;
+        this.random = new Random(seed);
+    }
+
+    public Catalog seed(int books, int dvds, int users) {
+        Catalog catalog = new Catalog();
+        insertItems("BOOK", books);
+        insertItems("DVD", dvds);
+        insertUsers(users);
+
+        jdbcTemplate.query("SELECT id, title, author, publisher, genre, isbn, release_date, total_copies FROM item " +
+                           "WHERE item_type = 'BOOK' ORDER BY id", (RowCallbackHandler) rs -> {
+            Catalog.BookRow book = new Catalog.BookRow();
+            book.id = rs.getLong("id");
+            book.title = rs.getString("title");
+            book.author = rs.getString("author");
+            book.publisher = rs.getString("publisher");
+            book.genre = rs.getString("genre");
+            book.isbn = rs.getString("isbn");
+            book.releaseDate = rs.getDate("release_date").toLocalDate().toString();
+            book.totalCopies = rs.getInt("total_copies");
+            catalog.books.add(book);
+        });
+        catalog.dvdIds.addAll(jdbcTemplate.queryForList("SELECT id FROM item WHERE item_type = 'DVD' ORDER BY id", Long.class));
+
+        for (int i = 0; i < users; i++)
+            catalog.userTokens.add(TokenUtil.generateToken(username(i), false));
+        catalog.adminToken = TokenUtil.generateToken("admin", true);
+        return catalog;
+    }
+
+    private void insertItems(String type, int count) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        // Each item its own position in the change sequence, as an import
+        long position = changeCounterRepository.allocate(ChangeCounterRepository.ITEM_CHANGES, count) - count;
+        for (int i = 0; i < count; i++) {
+            int copies = 1 + random.nextInt(5);
+            String title = word() + " " + word() + " " + i;
+            boolean book = type.equals("BOOK");
+            batch.add(new Object[] {
+                    type,
+                    "Author " + random.nextInt(count / 4 + 1),
+                    copies,
+                    Catalog.GENRES[random.nextInt(Catalog.GENRES.length)],
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(70 * 365))),
+                    true,
+                    title,
+                    copies,
+                    book ? String.format("978%010d", i) : null,
+                    book ? "Publisher " + random.nextInt(50) : null,
+                    book ? null : (80 + random.nextInt(100)) + " min",
+                    ++position
+            });
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_ITEM, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            jdbcTemplate.batchUpdate(INSERT_ITEM, batch);
+    }
+
+    private void insertUsers(int count) {
+        // Hashing is deliberately slow, all synthetic users share the same password
+        String password = BCrypt.hashpw("password", BCrypt.gensalt());
+        Date birthday = Date.valueOf(LocalDate.of(1980, 1, 1));
+        // Members for more than two years have the highest reservation limits
+        Date registrationDate = Date.valueOf(LocalDate.now().minusYears(3));
+
+        List<Object[]> batch = new ArrayList<>();
+        batch.add(new Object[] {"admin", "admin", true, birthday, "admin@libmanager.org", "admin", "admin", password, registrationDate});
+        for (int i = 0; i < count; i++) {
+            String username = username(i);
+            batch.add(new Object[] {username, "Address " + i, false, birthday, username + "@libmanager.org", "First " + i,
+                                    "Last " + i, password, registrationDate});
+        }
+        jdbcTemplate.batchUpdate(INSERT_USER, batch);
+    }
+
+    private String word() {
+        return Catalog.WORDS[random.nextInt(Catalog.WORDS.length)];
+    }
+
+    static String username(int i) {
+        return "user" + i;
+    }
+
+}
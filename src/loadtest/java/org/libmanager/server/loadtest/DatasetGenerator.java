@@ -0,0 +1,331 @@
+package org.libmanager.server.loadtest;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.DVD;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.service.impl.ReservationServiceImpl;
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * Generates a large synthetic data set directly with JDBC batch inserts, to test query plans and caches at scale.
+ * <p>
+ * Item popularity follows a Zipf distribution: the reservations concentrate on a few titles, which also get more
+ * copies. Genres and item types follow a fixed distribution. The reservation limits are not enforced, only the
+ * number of copies of each item is.
+ * <p>
+ * Run it with {@code ./gradlew generateDataset -Pargs='--url=jdbc:mariadb://localhost/libmanager?rewriteBatchedStatements=true
+ * --username=... --password=... --items=2000000 --users=300000 --reservations=20000000'}.
+ * The caps of the application must be raised accordingly (libmanager.limits.*). Ids are taken from item_seq and
+ * reservation_seq by blocks of {@code --allocation-size} (libmanager.id.allocation-size), like the application does.
+ * The items take their positions in the change sequence (item.change_seq) from change_counter, like an import. The
+ * loans are due as computed by the application, the oldest ones are overdue.
+ */
+public class DatasetGenerator {
+
+    private static final String[] GENRES = {
+            "NOVEL", "CRIME", "FANTASY", "SCIENCE-FICTION", "HISTORY", "BIOGRAPHY", "POETRY", "COMICS", "CHILDREN"
+    };
+
+    /** Share of each genre, in the same order as {@link #GENRES} */
+    private static final double[] GENRE_WEIGHTS = {0.28, 0.15, 0.11, 0.09, 0.09, 0.07, 0.04, 0.09, 0.08};
+
+    /** Share of books among the items, the rest are DVDs */
+    private static final double BOOK_SHARE = 0.75;
+
+    /** Share of users younger than 12 */
+    private static final double CHILDREN_SHARE = 0.15;
+
+    private String url;
+    private String username;
+    private String password;
+    private int items = 1_000_000;
+    private int users = 100_000;
+    private long reservations = 10_000_000;
+    private double exponent = 1.0;
+    private int batchSize = 5000;
+    private int allocationSize = 50;
+    private long seed = 42;
+    private String prefix = "gen";
+
+    public static void main(String[] args) throws SQLException {
+        DatasetGenerator generator = new DatasetGenerator();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Invalid argument: " + arg + " (expected --name=value)");
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "url": generator.url = value; break;
+                case "username": generator.username = value; break;
+                case "password": generator.password = value; break;
+                case "items": generator.items = Integer.parseInt(value); break;
+                case "users": generator.users = Integer.parseInt(value); break;
+                case "reservations": generator.reservations = Long.parseLong(value); break;
+                case "zipf": generator.exponent = Double.parseDouble(value); break;
+                case "batch": generator.batchSize = Integer.parseInt(value); break;
+                case "allocation-size": generator.allocationSize = Integer.parseInt(value); break;
+                case "seed": generator.seed = Long.parseLong(value); break;
+                case "prefix": generator.prefix = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        if (generator.url == null)
+            throw new IllegalArgumentException("--url is required");
+        generator.generate();
+    }
+
+    public void generate() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, username, password)) {
+            connection.setAutoCommit(false);
+
+            ZipfSampler popularity = new ZipfSampler(items, exponent);
+            // Pass 1: draw the reservations to know how many copies of each item are borrowed. The second pass draws
+            // the same sequence again instead of keeping tens of millions of reservations in memory.
+            int[] borrowed = new int[items];
+            SplittableRandom draws = new SplittableRandom(seed);
+            for (long i = 0; i < reservations; i++)
+                borrowed[popularity.sample(draws)]++;
+
+            LocalDate[] registrationDates = insertUsers(connection);
+            boolean[] dvds = new boolean[items];
+            long[] itemIds = insertItems(connection, popularity, borrowed, dvds);
+            insertReservations(connection, itemIds, dvds, registrationDates, popularity);
+        }
+    }
+
+    /**
+     * @return  The registration date of each user
+     */
+    private LocalDate[] insertUsers(Connection connection) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        LocalDate[] registrationDates = new LocalDate[users];
+        // Hashing is deliberately slow, all generated users share the same password
+        String hash = BCrypt.hashpw("password", BCrypt.gensalt());
+        LocalDate today = LocalDate.now();
+        Progress progress = new Progress("users", users);
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO user (username, address, admin, birthday, email, first_name, last_name, password, " +
+                "registration_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < users; i++) {
+                String name = prefix + i;
+                int age = random.nextDouble() < CHILDREN_SHARE ? 6 + random.nextInt(6) : 12 + random.nextInt(70);
+                statement.setString(1, name);
+                statement.setString(2, i + " generated street");
+                statement.setBoolean(3, false);
+                statement.setDate(4, Date.valueOf(today.minusYears(age).minusDays(random.nextInt(365))));
+                statement.setString(5, name + "@libmanager.org");
+                statement.setString(6, "First" + i);
+                statement.setString(7, "Last" + i);
+                statement.setString(8, hash);
+                registrationDates[i] = today.minusDays(random.nextInt(5 * 365));
+                statement.setDate(9, Date.valueOf(registrationDates[i]));
+                statement.addBatch();
+                if ((i + 1) % batchSize == 0)
+                    flush(connection, statement, progress, i + 1);
+            }
+            flush(connection, statement, progress, users);
+        }
+        return registrationDates;
+    }
+
+    /**
+     * @param dvds  Set to true for the DVDs, by popularity rank
+     * @return      The id of the item of each popularity rank
+     */
+    private long[] insertItems(Connection connection, ZipfSampler popularity, int[] borrowed, boolean[] dvds)
+            throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed + 2);
+        Progress progress = new Progress("items", items);
+        IdBlocks ids = new IdBlocks(connection, "item_seq", allocationSize);
+        long[] itemIds = new long[items];
+        long position = allocatePositions(connection, items) - items;
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO item (id, item_type, author, available_copies, genre, release_date, status, title, " +
+                "total_copies, isbn, publisher, duration, change_seq) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int rank = 0; rank < items; rank++) {
+                boolean book = random.nextDouble() < BOOK_SHARE;
+                dvds[rank] = !book;
+                // Popular items get more copies, a few of them stay unavailable
+                int copies = (int) Math.ceil(reservations * popularity.probability(rank) * 1.1) + random.nextInt(2);
+                copies = Math.max(copies, borrowed[rank]);
+                copies = Math.max(copies, 1);
+                int available = copies - borrowed[rank];
+                itemIds[rank] = ids.next();
+                statement.setLong(1, itemIds[rank]);
+                statement.setString(2, book ? "BOOK" : "DVD");
+                statement.setString(3, "Author " + random.nextInt(Math.max(1, items / 5)));
+                statement.setInt(4, available);
+                statement.setString(5, genre(random));
+                statement.setDate(6, Date.valueOf(LocalDate.of(1900, 1, 1).plusDays(random.nextInt(120 * 365))));
+                statement.setBoolean(7, available > 0);
+                statement.setString(8, "Generated title " + rank);
+                statement.setInt(9, copies);
+                statement.setString(10, book ? String.format("979%010d", rank) : null);
+                statement.setString(11, book ? "Publisher " + random.nextInt(2000) : null);
+                statement.setString(12, book ? null : (70 + random.nextInt(120)) + " min");
+                statement.setLong(13, ++position);
+                statement.addBatch();
+                if ((rank + 1) % batchSize == 0)
+                    flush(connection, statement, progress, rank + 1);
+            }
+            flush(connection, statement, progress, items);
+        }
+        return itemIds;
+    }
+
+    private void insertReservations(Connection connection, long[] itemIds, boolean[] dvds,
+                                    LocalDate[] registrationDates, ZipfSampler popularity) throws SQLException {
+        // Same seed as the first pass: the same items are drawn in the same order
+        SplittableRandom draws = new SplittableRandom(seed);
+        SplittableRandom random = new SplittableRandom(seed + 3);
+        LocalDate today = LocalDate.now();
+        Progress progress = new Progress("reservations", reservations);
+        IdBlocks ids = new IdBlocks(connection, "reservation_seq", allocationSize);
+        // The due dates of the application, from the type of the item and the membership of the user
+        ReservationServiceImpl dueDates = new ReservationServiceImpl();
+        Item book = new Book();
+        book.setItemType();
+        Item dvd = new DVD();
+        dvd.setItemType();
+        User member = new User();
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO reservation (id, item_id, username, reservation_date, due_date) VALUES (?, ?, ?, ?, ?)")) {
+            for (long i = 0; i < reservations; i++) {
+                int rank = popularity.sample(draws);
+                int user = random.nextInt(users);
+                LocalDate reservationDate = today.minusDays(random.nextInt(60));
+                member.setRegistrationDate(registrationDates[user]);
+                statement.setLong(1, ids.next());
+                statement.setLong(2, itemIds[rank]);
+                statement.setString(3, prefix + user);
+                statement.setDate(4, Date.valueOf(reservationDate));
+                statement.setDate(5, Date.valueOf(dueDates.computeDueDate(member, dvds[rank] ? dvd : book,
+                                                                          reservationDate)));
+                statement.addBatch();
+                if ((i + 1) % batchSize == 0)
+                    flush(connection, statement, progress, i + 1);
+            }
+            flush(connection, statement, progress, reservations);
+        }
+    }
+
+    /**
+     * Assign the next positions of the change sequence of the items, as {@link ChangeCounterRepository#allocate}
+     * does, and commit them before the items are inserted
+     * @return  The last position, the items take the count positions up to it
+     */
+    private static long allocatePositions(Connection connection, int count) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE change_counter SET last_assigned = last_assigned + ? WHERE name = ?")) {
+            update.setInt(1, count);
+            update.setString(2, ChangeCounterRepository.ITEM_CHANGES);
+            if (update.executeUpdate() == 0) {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO change_counter (name, last_assigned) VALUES (?, ?)")) {
+                    insert.setString(1, ChangeCounterRepository.ITEM_CHANGES);
+                    insert.setInt(2, count);
+                    insert.executeUpdate();
+                }
+            }
+        }
+        long last;
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT last_assigned FROM change_counter WHERE name = ?")) {
+            select.setString(1, ChangeCounterRepository.ITEM_CHANGES);
+            try (ResultSet result = select.executeQuery()) {
+                result.next();
+                last = result.getLong(1);
+            }
+        }
+        connection.commit();
+        return last;
+    }
+
+    private String genre(SplittableRandom random) {
+        double dice = random.nextDouble();
+        for (int i = 0; i < GENRES.length; i++) {
+            dice -= GENRE_WEIGHTS[i];
+            if (dice < 0)
+                return GENRES[i];
+        }
+        return GENRES[GENRES.length - 1];
+    }
+
+    /**
+     * Reserves ids by blocks from a sequence, like the pooled-lo generator of the application: each value of the
+     * sequence is the first id of a block of allocation size ids
+     */
+    private static class IdBlocks {
+
+        private final PreparedStatement nextValue;
+        private final int allocationSize;
+        private long next;
+        private long end;
+
+        IdBlocks(Connection connection, String sequence, int allocationSize) throws SQLException {
+            this.nextValue = connection.prepareStatement("SELECT NEXT VALUE FOR " + sequence);
+            this.allocationSize = allocationSize;
+        }
+
+        long next() throws SQLException {
+            if (next == end) {
+                try (ResultSet result = nextValue.executeQuery()) {
+                    result.next();
+                    next = result.getLong(1);
+                }
+                end = next + allocationSize;
+            }
+            return next++;
+        }
+
+    }
+
+    private static void flush(Connection connection, PreparedStatement statement, Progress progress, long done)
+            throws SQLException {
+        statement.executeBatch();
+        connection.commit();
+        progress.report(done);
+    }
+
+    /**
+     * Prints the progress of an insertion at most every second
+     */
+    private static class Progress {
+
+        private final String name;
+        private final long total;
+        private final long start = System.nanoTime();
+        private long lastReport = 0;
+
+        Progress(String name, long total) {
+            this.name = name;
+            this.total = total;
+        }
+
+        void report(long done) {
+            long now = System.nanoTime();
+            if (now - lastReport < 1_000_000_000L && done < total)
+                return;
+            lastReport = now;
+            double seconds = (now - start) / 1e9;
+            System.out.printf("%-12s %,12d / %,d (%.0f rows/s)%n", name, done, total, done / Math.max(seconds, 1e-3));
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.libmanager.server.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and result codes of one endpoint
+ */
+public class EndpointStats {
+
+    private final String endpoint;
+    private final Map<String, LongAdder> codes = new ConcurrentHashMap<>();
+    private long[] latencies = new long[1024];
+    private int count;
+
+    public EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Record a completed request
+     * @param latencyNanos  Time between the scheduled start of the request and its completion
+     * @param code          The Response code, or the HTTP status / error when there is no Response
+     */
+    public void record(long latencyNanos, String code) {
+        codes.computeIfAbsent(code, c -> new LongAdder()).increment();
+        synchronized (this) {
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latencyNanos;
+        }
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public Map<String, Long> getCodes() {
+        Map<String, Long> result = new TreeMap<>();
+        codes.forEach((code, adder) -> result.put(code, adder.sum()));
+        return result;
+    }
+
+    /**
+     * @return  The latencies in milliseconds at the given percentiles (0 to 100)
+     */
+    public synchronized double[] percentiles(double... percentiles) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double[] result = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (sorted.length == 0)
+                continue;
+            int index = (int) Math.ceil(percentiles[i] / 100 * sorted.length) - 1;
+            result[i] = sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+        }
+        return result;
+    }
+
+}
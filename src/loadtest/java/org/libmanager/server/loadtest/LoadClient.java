@@ -0,0 +1,101 @@
+package org.libmanager.server.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Sends requests to the application and records their latency and result code per endpoint
+ */
+public class LoadClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUri;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private volatile boolean recording = false;
+
+    public LoadClient(String baseUri, Executor executor) {
+        this.baseUri = baseUri;
+        this.httpClient = HttpClient.newBuilder()
+                                    .executor(executor)
+                                    .connectTimeout(Duration.ofSeconds(5))
+                                    .build();
+    }
+
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    public Collection<EndpointStats> getStats() {
+        return stats.values();
+    }
+
+    public CompletableFuture<JsonNode> get(String endpoint, String path, long scheduledNanos) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + path))
+                                         .timeout(Duration.ofSeconds(30))
+                                         .GET()
+                                         .build();
+        return send(endpoint, request, scheduledNanos);
+    }
+
+    public CompletableFuture<JsonNode> post(String endpoint, String path, Map<String, String> form, long scheduledNanos) {
+        String body = form.entrySet().stream()
+                          .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "=" +
+                                    URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+                          .collect(Collectors.joining("&"));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + path))
+                                         .timeout(Duration.ofSeconds(30))
+                                         .header("Content-Type", "application/x-www-form-urlencoded")
+                                         .POST(HttpRequest.BodyPublishers.ofString(body))
+                                         .build();
+        return send(endpoint, request, scheduledNanos);
+    }
+
+    /**
+     * Send a request and record it
+     * @param endpoint          The name of the endpoint in the report (path template)
+     * @param request           The request
+     * @param scheduledNanos    When the request should have been sent, the latency is measured from there so that
+     *                          a slow server can't hide its queueing time (coordinated omission)
+     * @return                  The JSON body of the response, or null if the request failed
+     */
+    private CompletableFuture<JsonNode> send(String endpoint, HttpRequest request, long scheduledNanos) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                         .handle((response, error) -> {
+                             JsonNode body = null;
+                             String code;
+                             if (error != null)
+                                 code = "IO_ERROR";
+                             else if (response.statusCode() != 200)
+                                 code = "HTTP_" + response.statusCode();
+                             else {
+                                 try {
+                                     body = mapper.readTree(response.body());
+                                     JsonNode responseCode = body.get("code");
+                                     code = responseCode == null ? "NO_CODE" : responseCode.asText();
+                                 } catch (Exception e) {
+                                     code = "INVALID_JSON";
+                                 }
+                             }
+                             if (recording)
+                                 stats.computeIfAbsent(endpoint, EndpointStats::new)
+                                      .record(System.nanoTime() - scheduledNanos, code);
+                             return body;
+                         });
+    }
+
+}
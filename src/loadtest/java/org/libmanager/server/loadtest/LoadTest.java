@@ -0,0 +1,139 @@
+package org.libmanager.server.loadtest;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.libmanager.server.Application;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Boots the application against an embedded database, seeds it and drives the request mix of {@link Workload} with
+ * an open-model arrival rate (Poisson arrivals, requests are sent whether or not the previous ones completed).
+ * <p>
+ * Run it with {@code ./gradlew loadTest -Pargs='--rate=200 --duration=60'}, see {@link Options} for all the options.
+ */
+public class LoadTest {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .run("--server.port=0");
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            System.out.printf("Seeding %d books, %d DVDs and %d users...%n", options.books, options.dvds, options.users);
+            Catalog catalog = new CatalogSeeder(context.getBean(JdbcTemplate.class),
+                                                context.getBean(ChangeCounterRepository.class), options.seed)
+                    .seed(options.books, options.dvds, options.users);
+
+            LoadClient client = new LoadClient("http://localhost:" + port, executor);
+            Workload workload = new Workload(catalog, client, options.seed);
+
+            System.out.printf("Warming up for %d s...%n", options.warmup);
+            drive(workload, options, options.warmup);
+            client.setRecording(true);
+            System.out.printf("Running at %.0f requests/s for %d s...%n", options.rate, options.duration);
+            long dropped = drive(workload, options, options.duration);
+            client.setRecording(false);
+
+            report(client, options, dropped);
+        } finally {
+            executor.shutdownNow();
+            context.close();
+        }
+    }
+
+    /**
+     * Start operations at exponentially distributed intervals for the given duration, then wait for the ones in flight
+     * @return  The number of operations that could not be started because too many were in flight
+     */
+    private static long drive(Workload workload, Options options, int seconds) throws InterruptedException {
+        Random arrivals = new Random(options.seed);
+        Semaphore inFlight = new Semaphore(options.maxInFlight);
+        AtomicLong dropped = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long next = start;
+
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            if (inFlight.tryAcquire())
+                workload.next(next).whenComplete((result, error) -> inFlight.release());
+            else
+                dropped.incrementAndGet();
+            // Exponential inter-arrival time for a Poisson process of the given rate
+            next += (long) (-Math.log(1 - arrivals.nextDouble()) / options.rate * 1_000_000_000L);
+        }
+
+        // Let the requests in flight complete so that they are counted
+        if (!inFlight.tryAcquire(options.maxInFlight, 30, TimeUnit.SECONDS))
+            System.out.println("Some requests were still in flight after 30 s");
+        else
+            inFlight.release(options.maxInFlight);
+        return dropped.get();
+    }
+
+    private static void report(LoadClient client, Options options, long dropped) throws Exception {
+        List<EndpointStats> stats = new ArrayList<>(client.getStats());
+        stats.sort(Comparator.comparing(EndpointStats::getEndpoint));
+        PrintStream out = System.out;
+        List<Map<String, Object>> json = new ArrayList<>();
+        long total = 0;
+
+        out.printf("%n%-42s %8s %9s %9s %9s %9s %9s %9s  %s%n",
+                   "Endpoint", "Count", "Req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "Codes");
+        for (EndpointStats endpoint : stats) {
+            int count = endpoint.getCount();
+            double[] latencies = endpoint.percentiles(PERCENTILES);
+            double throughput = (double) count / options.duration;
+            total += count;
+            out.printf("%-42s %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n", endpoint.getEndpoint(), count,
+                       throughput, latencies[0], latencies[1], latencies[2], latencies[3], latencies[4],
+                       endpoint.getCodes());
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("endpoint", endpoint.getEndpoint());
+            entry.put("count", count);
+            entry.put("throughput", throughput);
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            for (int i = 0; i < PERCENTILES.length; i++)
+                percentiles.put("p" + PERCENTILES[i], latencies[i]);
+            entry.put("latencyMillis", percentiles);
+            entry.put("codes", endpoint.getCodes());
+            json.add(entry);
+        }
+        out.printf("%nTotal: %d requests, %.1f requests/s, %d dropped%n", total, (double) total / options.duration, dropped);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("rate", options.rate);
+        report.put("durationSeconds", options.duration);
+        report.put("seed", options.seed);
+        report.put("dropped", dropped);
+        report.put("endpoints", json);
+        Files.createDirectories(options.report.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(options.report.toFile(), report);
+        out.println("Report written to " + options.report);
+    }
+
+}
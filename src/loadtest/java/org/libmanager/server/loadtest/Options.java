@@ -0,0 +1,56 @@
+package org.libmanager.server.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line options of the load test, given as --name=value
+ */
+public class Options {
+
+    /** Mean number of requests started per second (open model: independent of the response times) */
+    double rate = 200;
+
+    /** Duration of the measured run in seconds */
+    int duration = 60;
+
+    /** Duration of the warm-up in seconds, not included in the report */
+    int warmup = 10;
+
+    /** Maximum number of requests in flight, requests above are counted as dropped */
+    int maxInFlight = 2000;
+
+    int books = 5000;
+    int dvds = 2000;
+    int users = 500;
+
+    /** Seed of the random generators, the same seed gives the same data set and request sequence */
+    long seed = 42;
+
+    /** Where the JSON report is written */
+    Path report = Paths.get("build", "reports", "loadtest", "report.json");
+
+    static Options parse(String[] args) {
+        Options options = new Options();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Invalid argument: " + arg + " (expected --name=value)");
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "rate": options.rate = Double.parseDouble(value); break;
+                case "duration": options.duration = Integer.parseInt(value); break;
+                case "warmup": options.warmup = Integer.parseInt(value); break;
+                case "max-in-flight": options.maxInFlight = Integer.parseInt(value); break;
+                case "books": options.books = Integer.parseInt(value); break;
+                case "dvds": options.dvds = Integer.parseInt(value); break;
+                case "users": options.users = Integer.parseInt(value); break;
+                case "seed": options.seed = Long.parseLong(value); break;
+                case "report": options.report = Paths.get(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        return options;
+    }
+
+}
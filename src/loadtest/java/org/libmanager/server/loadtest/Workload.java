@@ -0,0 +1,117 @@
+package org.libmanager.server.loadtest;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The request mix: 80% catalog search/get, 15% checkout/return and 5% admin edits
+ */
+public class Workload {
+
+    private final Catalog catalog;
+    private final LoadClient client;
+    private final SplittableRandom random;
+
+    /** Popularity of the items: a few titles receive most of the gets and checkouts */
+    private final ZipfSampler bookPopularity;
+    private final ZipfSampler dvdPopularity;
+
+    public Workload(Catalog catalog, LoadClient client, long seed) {
+        this.catalog = catalog;
+        this.client = client;
+        this.random = new SplittableRandom(seed);
+        this.bookPopularity = new ZipfSampler(catalog.books.size(), 1.0);
+        this.dvdPopularity = new ZipfSampler(catalog.dvdIds.size(), 1.0);
+    }
+
+    /**
+     * Start the next operation of the mix, called from a single thread
+     * @param scheduledNanos    When the operation should start
+     * @return                  The completion of the operation
+     */
+    public CompletableFuture<?> next(long scheduledNanos) {
+        int dice = random.nextInt(100);
+        // Catalog reads (80%)
+        if (dice < 25)
+            return client.get("GET /item/book/search?title", "/item/book/search?title=" + word(), scheduledNanos);
+        if (dice < 35)
+            return client.get("GET /item/book/search?genre", "/item/book/search?genre=" + genre(), scheduledNanos);
+        if (dice < 55)
+            return client.get("GET /item/book/get/{id}", "/item/book/get/" + book().id, scheduledNanos);
+        if (dice < 65)
+            return client.get("GET /item/dvd/search?title", "/item/dvd/search?title=" + word(), scheduledNanos);
+        if (dice < 75)
+            return client.get("GET /item/dvd/get/{id}", "/item/dvd/get/" + dvdId(), scheduledNanos);
+        if (dice < 78)
+            return client.get("GET /item/book/all", "/item/book/all", scheduledNanos);
+        if (dice < 80)
+            return client.get("GET /item/dvd/all", "/item/dvd/all", scheduledNanos);
+        // Checkout and return (15%)
+        if (dice < 89)
+            return checkout(scheduledNanos);
+        if (dice < 95)
+            return giveBack(scheduledNanos);
+        // Admin edits (5%)
+        return edit(scheduledNanos);
+    }
+
+    private CompletableFuture<?> checkout(long scheduledNanos) {
+        long itemId = random.nextBoolean() ? book().id : dvdId();
+        return client.post("POST /reservation/add", "/reservation/add",
+                           Map.of("token", userToken(), "itemId", Long.toString(itemId)), scheduledNanos);
+    }
+
+    /**
+     * Return the first reservation of a random user: list its reservations then delete one as admin
+     */
+    private CompletableFuture<?> giveBack(long scheduledNanos) {
+        return client.post("POST /reservation/get_user_reservations", "/reservation/get_user_reservations",
+                           Map.of("token", userToken()), scheduledNanos)
+                     .thenCompose(body -> {
+                         JsonNode content = body == null ? null : body.get("content");
+                         if (content == null || !content.isArray() || content.size() == 0)
+                             return CompletableFuture.completedFuture(null);
+                         long id = content.get(0).get("id").asLong();
+                         return client.post("POST /reservation/delete/{id}", "/reservation/delete/" + id,
+                                            Map.of("token", catalog.adminToken), System.nanoTime());
+                     });
+    }
+
+    private CompletableFuture<?> edit(long scheduledNanos) {
+        Catalog.BookRow book = book();
+        return client.post("POST /item/book/edit/{id}", "/item/book/edit/" + book.id, Map.of(
+                "token", catalog.adminToken,
+                "title", book.title,
+                "author", book.author,
+                "publisher", book.publisher,
+                "genre", book.genre,
+                "isbn", book.isbn,
+                "releaseDate", book.releaseDate,
+                "totalCopies", Integer.toString(book.totalCopies)
+        ), scheduledNanos);
+    }
+
+    private Catalog.BookRow book() {
+        return catalog.books.get(bookPopularity.sample(random));
+    }
+
+    private long dvdId() {
+        return catalog.dvdIds.get(dvdPopularity.sample(random));
+    }
+
+    private String userToken() {
+        return catalog.userTokens.get(random.nextInt(catalog.userTokens.size()));
+    }
+
+    private String word() {
+        return Catalog.WORDS[random.nextInt(Catalog.WORDS.length)];
+    }
+
+    private String genre() {
+        return Catalog.GENRES[random.nextInt(Catalog.GENRES.length)];
+    }
+
+}
@@ -0,0 +1,38 @@
+package org.libmanager.server.loadtest;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Samples ranks in [0, n) following a Zipf distribution: rank k is drawn with a probability proportional to
+ * 1 / (k + 1)^exponent, so a few ranks get most of the draws
+ */
+public class ZipfSampler {
+
+    private final double[] cumulative;
+
+    public ZipfSampler(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++)
+            cumulative[k] /= sum;
+    }
+
+    /**
+     * @return  The probability of drawing the given rank
+     */
+    public double probability(int rank) {
+        return rank == 0 ? cumulative[0] : cumulative[rank] - cumulative[rank - 1];
+    }
+
+    public int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        // binarySearch returns (-insertion point - 1) when the value is not found
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+}
@@ -0,0 +1,277 @@
+package org.libmanager.server.checkout;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.libmanager.server.idempotency.IdempotencyStore;
+import org.libmanager.server.request.CheckoutRequest;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.ReservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Serializes the checkouts of each item in a lane, for the items borrowed by many users at the same time (e.g. a new
+ * DVD on its release day), instead of letting each request wait for the lock of the item.
+ * <p>
+ * The items are spread over a fixed number of lanes by id, each lane has a single thread. The requests queued while
+ * a lane commits are committed together by the next transaction of the lane, one per item: the stocks and the item are
+ * locked once and the copies are given in memory, in the order of arrival, until none is left on the shelf.
+ * <p>
+ * A checkout queued in a lane is committed by the transaction of the lane, not by the transaction of the request: its
+ * Idempotency-Key is read and recorded by the transaction of the lane too, the loan is kept if and only if its key is.
+ * The request holds no transaction while it waits for its lane. A group rolled back is committed again checkout by
+ * checkout, a failing checkout (e.g. its key recorded by another instance meanwhile) does not fail the others.
+ */
+@Component
+public class CheckoutLanes {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutLanes.class);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** Route /reservation/add to the lanes, the checkouts lock the item themselves otherwise */
+    @Value("${libmanager.checkout.lanes.enabled:false}")
+    private boolean enabled = false;
+
+    /** Number of lanes, i.e. of items whose checkouts are committed at the same time */
+    @Value("${libmanager.checkout.lanes.count:16}")
+    private int laneCount = 16;
+
+    /** Maximum number of checkouts taken from the queue of a lane by a transaction */
+    @Value("${libmanager.checkout.lanes.max-group-size:100}")
+    private int maxGroupSize = 100;
+
+    private Lane[] lanes;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled)
+            return;
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++)
+            lanes[i] = new Lane("checkout-lane-" + i);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (lanes == null)
+            return;
+        for (Lane lane : lanes)
+            lane.stop();
+    }
+
+    /**
+     * @return  True if the checkouts are committed by the lanes
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return  The number of checkouts waiting for the transaction of their lane
+     */
+    public int getQueueLength() {
+        int length = 0;
+        if (lanes != null) {
+            for (Lane lane : lanes)
+                length += lane.queue.size();
+        }
+        return length;
+    }
+
+    /**
+     * Add a reservation in the lane of the item, and wait for the commit of the lane
+     * @param username  The user who wants to borrow an item
+     * @param itemId    The id of the item the user wants to borrow
+     * @param branch    The code of the branch lending the item, null for any branch with a copy on the shelf
+     * @return          The response of {@link ReservationService#add(String, long, String)}
+     */
+    public Response<Boolean> add(String username, long itemId, String branch) {
+        return add(username, itemId, branch, null);
+    }
+
+    /**
+     * Add a reservation in the lane of the item, and wait for the commit of the lane
+     * @param key       The Idempotency-Key of the request, recorded with the loan by the transaction of the lane, null
+     *                  if none was sent
+     * @return          The response recorded for the key if it was already recorded, the response of
+     *                  {@link ReservationService#add(String, long, String)} otherwise
+     * @see #add(String, long, String)
+     */
+    public Response<Boolean> add(String username, long itemId, String branch, IdempotencyStore.Key key) {
+        Checkout checkout = new Checkout(itemId, new CheckoutRequest(username, branch), key);
+        lanes[Math.floorMod(Long.hashCode(itemId), lanes.length)].submit(checkout);
+        try {
+            return checkout.response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Commit the checkouts of an item taken from the queue of a lane
+     */
+    private void commit(long itemId, List<Checkout> checkouts) {
+        try {
+            List<Response<Boolean>> responses = new TransactionTemplate(transactionManager).execute(
+                    status -> apply(itemId, checkouts));
+            for (int i = 0; i < checkouts.size(); i++)
+                checkouts.get(i).response.complete(responses.get(i));
+        } catch (RuntimeException | Error e) {
+            // Rolled back, nothing was lent
+            if (checkouts.size() > 1 && e instanceof RuntimeException) {
+                logger.warn("Could not commit {} checkouts of item {}, committing them one by one",
+                            checkouts.size(), itemId, e);
+                for (Checkout checkout : checkouts)
+                    commit(itemId, List.of(checkout));
+                return;
+            }
+            logger.warn("Could not commit {} checkouts of item {}", checkouts.size(), itemId, e);
+            for (Checkout checkout : checkouts)
+                checkout.response.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Lend the copies to the checkouts whose key is not recorded yet, and record their keys, in the transaction of the
+     * lane
+     */
+    private List<Response<Boolean>> apply(long itemId, List<Checkout> checkouts) {
+        List<Response<Boolean>> responses = new ArrayList<>(checkouts.size());
+        List<Checkout> pending = new ArrayList<>(checkouts.size());
+        List<CheckoutRequest> requests = new ArrayList<>(checkouts.size());
+        for (Checkout checkout : checkouts) {
+            // Sent again to this instance once the first was committed by another one
+            Response<Boolean> recorded = checkout.key == null ?
+                    null :
+                    idempotencyStore.find(checkout.key, Boolean.class);
+            responses.add(recorded);
+            if (recorded == null) {
+                pending.add(checkout);
+                requests.add(checkout.request);
+            }
+        }
+        if (requests.isEmpty())
+            return responses;
+
+        List<Response<Boolean>> lent = reservationService.addAll(itemId, requests);
+        for (int i = 0, j = 0; i < checkouts.size(); i++) {
+            if (responses.get(i) != null)
+                continue;
+            Checkout checkout = pending.get(j);
+            Response<Boolean> response = lent.get(j++);
+            if (checkout.key != null)
+                idempotencyStore.record(checkout.key, response);
+            responses.set(i, response);
+        }
+        return responses;
+    }
+
+    private static final class Checkout {
+
+        final long itemId;
+        final CheckoutRequest request;
+        final IdempotencyStore.Key key;
+        final CompletableFuture<Response<Boolean>> response = new CompletableFuture<>();
+
+        Checkout(long itemId, CheckoutRequest request, IdempotencyStore.Key key) {
+            this.itemId = itemId;
+            this.request = request;
+            this.key = key;
+        }
+
+    }
+
+    private final class Lane implements Runnable {
+
+        private final Queue<Checkout> queue = new ConcurrentLinkedQueue<>();
+        /** True while the thread of the lane drains the queue */
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final ExecutorService executor;
+
+        Lane(String name) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        void submit(Checkout checkout) {
+            queue.add(checkout);
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                    fail(new IllegalStateException("The checkout lanes are stopped", e));
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            // A request queued after the last poll, but before the flag is cleared, is drained by this thread
+            do {
+                drain();
+                draining.set(false);
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private void drain() {
+            Checkout first;
+            while ((first = queue.poll()) != null) {
+                // By item, in the order of arrival
+                Map<Long, List<Checkout>> groups = new LinkedHashMap<>();
+                groups.computeIfAbsent(first.itemId, itemId -> new ArrayList<>()).add(first);
+                Checkout next;
+                for (int size = 1; size < maxGroupSize && (next = queue.poll()) != null; size++)
+                    groups.computeIfAbsent(next.itemId, itemId -> new ArrayList<>()).add(next);
+                groups.forEach(CheckoutLanes.this::commit);
+            }
+        }
+
+        void stop() {
+            executor.shutdownNow();
+            fail(new IllegalStateException("The checkout lanes are stopped"));
+        }
+
+        private void fail(RuntimeException e) {
+            Checkout checkout;
+            while ((checkout = queue.poll()) != null)
+                checkout.response.completeExceptionally(e);
+        }
+
+    }
+
+}
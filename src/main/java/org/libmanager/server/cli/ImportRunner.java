@@ -0,0 +1,75 @@
+package org.libmanager.server.cli;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.libmanager.server.response.ImportReport;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.ImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Imports a file from the command line then stops the application, e.g.
+ * {@code ./gradlew bootRun --args='--spring.main.web-application-type=none --libmanager.import.file=books.csv
+ * --libmanager.import.type=book'}
+ */
+@Component
+@ConditionalOnProperty(name = "libmanager.import.file")
+public class ImportRunner implements ApplicationRunner {
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private ApplicationContext context;
+
+    /** The file to import */
+    @Value("${libmanager.import.file}")
+    private String file;
+
+    /** What the file contains: "book", "dvd" or "user" */
+    @Value("${libmanager.import.type:book}")
+    private String type;
+
+    /** The format of the file: "csv" or "ndjson" (users are always imported from CSV), guessed from the extension of the file if empty */
+    @Value("${libmanager.import.format:}")
+    private String format;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String fileFormat = format;
+        if (fileFormat.isEmpty())
+            fileFormat = file.endsWith(".ndjson") || file.endsWith(".jsonl") ? "ndjson" : "csv";
+
+        Response<ImportReport> response;
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(Paths.get(file)))) {
+            if (type.equalsIgnoreCase("user"))
+                response = importService.importUsers(input);
+            else if (type.equalsIgnoreCase("dvd"))
+                response = importService.importDVDs(input, fileFormat);
+            else
+                response = importService.importBooks(input, fileFormat);
+        }
+
+        ImportReport report = response.getContent();
+        System.out.println("Import " + response.getCode());
+        if (report != null) {
+            System.out.printf("%d rows read, %d imported, %d rejected%n", report.getRead(), report.getImported(),
+                              report.getRejected());
+            for (ImportReport.Row row : report.getRows())
+                System.out.printf("Line %d: %s%n", row.getLine(), row.getCode());
+        }
+        int exitCode = response.getCode() == Response.Code.OK ? 0 : 1;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+
+}
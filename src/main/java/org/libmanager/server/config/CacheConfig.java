@@ -0,0 +1,62 @@
+package org.libmanager.server.config;
+
+import java.net.URI;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Second-level cache of Hibernate, backed by Ehcache through JCache (libmanager.cache.*)
+ */
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    /**
+     * The cache manager holding one region per entity, each application context gets its own
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(CacheProperties properties) {
+        EhcacheCachingProvider provider =
+                (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        org.ehcache.config.Configuration configuration = ConfigurationBuilder.newConfigurationBuilder()
+                .withCache("item", region(properties.getItem()))
+                .withCache("user", region(properties.getUser()))
+                .withCache("reservation", region(properties.getReservation()))
+                .build();
+        return provider.getCacheManager(URI.create("urn:libmanager:" + UUID.randomUUID()), configuration);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheProperties properties, CacheManager entityCacheManager) {
+        return hibernateProperties -> {
+            // hibernate-jcache is on the classpath: without this flag Hibernate would enable it with default regions
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, properties.isEnabled());
+            if (properties.isEnabled()) {
+                hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+                hibernateProperties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+                hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, properties.isStatistics());
+            }
+        };
+    }
+
+    private static CacheConfigurationBuilder<Object, Object> region(CacheProperties.Region region) {
+        return CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                                                                      ResourcePoolsBuilder.heap(region.getMaxEntries()))
+                                        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(region.getTimeToLive()));
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.libmanager.server.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Second-level cache of the entities, one region per entity
+ */
+@ConfigurationProperties(prefix = "libmanager.cache")
+public class CacheProperties {
+
+    /**
+     * Size and expiration of a cache region
+     */
+    public static class Region {
+
+        /** Maximum number of entities kept in the region */
+        private long maxEntries;
+
+        /** Time after which a cached entity is loaded again from the database */
+        private Duration timeToLive = Duration.ofMinutes(10);
+
+        public Region(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+    }
+
+    /** Cache the items, users and reservations between transactions */
+    private boolean enabled = true;
+
+    /** Collect the hit, miss and put counts of each region (see /statistics) */
+    private boolean statistics = true;
+
+    private final Region item = new Region(20_000);
+
+    private final Region user = new Region(5_000);
+
+    private final Region reservation = new Region(20_000);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(boolean statistics) {
+        this.statistics = statistics;
+    }
+
+    public Region getItem() {
+        return item;
+    }
+
+    public Region getUser() {
+        return user;
+    }
+
+    public Region getReservation() {
+        return reservation;
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.libmanager.server.config;
+
+import org.libmanager.server.entity.PooledSequenceGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PersistenceConfig {
+
+    /** Number of ids reserved by each call to item_seq and reservation_seq, must be their INCREMENT BY */
+    @Value("${libmanager.id.allocation-size:50}")
+    private int allocationSize = PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE;
+
+    /**
+     * Pass the allocation size of the ids to {@link PooledSequenceGenerator}
+     */
+    @Bean
+    public HibernatePropertiesCustomizer allocationSizeCustomizer() {
+        return properties -> properties.put(PooledSequenceGenerator.ALLOCATION_SIZE, allocationSize);
+    }
+
+}
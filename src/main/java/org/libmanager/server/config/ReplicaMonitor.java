@@ -0,0 +1,174 @@
+package org.libmanager.server.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the health and the replication lag of the replicas.
+ * <p>
+ * The lag is measured with a heartbeat: the time of each check is written to the replication_heartbeat table of the
+ * primary, the lag of a replica is the age of the heartbeat it has replicated. A replica is used only if it answered
+ * the last check and its lag is at most the maximum lag.
+ */
+public class ReplicaMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaMonitor.class);
+
+    private static final int QUERY_TIMEOUT_SECONDS = 2;
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long maxLagMillis;
+    private final long checkIntervalMillis;
+
+    /** Lag of each replica in milliseconds at the last check, -1 if it could not be checked */
+    private final long[] lags;
+    private final boolean[] healthy;
+    private int turn;
+
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaMonitor(DataSource primary, List<DataSource> replicas, Duration maxLag, Duration checkInterval) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLagMillis = maxLag.toMillis();
+        this.checkIntervalMillis = checkInterval.toMillis();
+        this.lags = new long[replicas.size()];
+        this.healthy = new boolean[replicas.size()];
+    }
+
+    /**
+     * Create the heartbeat table if needed, check the replicas now, then at every check interval
+     */
+    public void start() {
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS replication_heartbeat " +
+                              "(id INT NOT NULL PRIMARY KEY, beat BIGINT NOT NULL)");
+        } catch (SQLException e) {
+            logger.warn("Could not create the replication heartbeat table", e);
+        }
+        check();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the checks and close the replicas
+     */
+    public void stop() {
+        if (scheduler != null)
+            scheduler.shutdownNow();
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable) {
+                try {
+                    ((Closeable) replica).close();
+                } catch (IOException e) {
+                    logger.warn("Could not close a replica", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a heartbeat on the primary then measure the lag of every replica
+     */
+    public void check() {
+        long now = System.currentTimeMillis();
+        try {
+            beat(now);
+        } catch (SQLException e) {
+            // The replicas are still checked against the last heartbeat that was written
+            logger.warn("Could not write the replication heartbeat", e);
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            long lag;
+            try {
+                lag = lag(replicas.get(i), now);
+            } catch (SQLException e) {
+                logger.debug("Replica {} check failed", i, e);
+                lag = -1;
+            }
+            boolean isHealthy = lag >= 0 && lag <= maxLagMillis;
+            synchronized (this) {
+                if (isHealthy != healthy[i])
+                    logger.warn("Replica {} is now {} (lag: {} ms)", i, isHealthy ? "used" : "skipped", lag);
+                lags[i] = lag;
+                healthy[i] = isHealthy;
+            }
+        }
+    }
+
+    /**
+     * @return  The index of the next healthy replica (in turn), null if none is healthy
+     */
+    public synchronized Integer nextReplica() {
+        int count = replicas.size();
+        int start = Math.floorMod(turn++, Math.max(count, 1));
+        for (int i = 0; i < count; i++) {
+            int candidate = (start + i) % count;
+            if (healthy[candidate])
+                return candidate;
+        }
+        return null;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public synchronized boolean isHealthy(int replica) {
+        return healthy[replica];
+    }
+
+    /**
+     * @return  The lag of the replica in milliseconds at the last check, -1 if it could not be checked
+     */
+    public synchronized long getLag(int replica) {
+        return lags[replica];
+    }
+
+    private void beat(long now) throws SQLException {
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            if (statement.executeUpdate("UPDATE replication_heartbeat SET beat = " + now + " WHERE id = 1") == 0)
+                statement.executeUpdate("INSERT INTO replication_heartbeat (id, beat) VALUES (1, " + now + ")");
+            if (!connection.getAutoCommit())
+                connection.commit();
+        }
+    }
+
+    private static long lag(DataSource replica, long now) throws SQLException {
+        try (Connection connection = replica.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT beat FROM replication_heartbeat WHERE id = 1")) {
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            try (ResultSet result = statement.executeQuery()) {
+                if (!result.next())
+                    throw new SQLException("No heartbeat replicated yet");
+                return Math.max(0, now - result.getLong(1));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.libmanager.server.config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends the connections of read-only transactions to a healthy replica, every other connection to the primary.
+ * <p>
+ * The transaction must be known when the connection is obtained: wrap it in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which obtains the connection on the
+ * first statement.
+ * <p>
+ * The reads which must see the last changes committed (e.g. a response sent with the version of the catalog read on the
+ * primary) are sent to the primary too, see {@link #readOnPrimary(Supplier)}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    /** Set while the read-only transactions of the thread go to the primary */
+    private static final ThreadLocal<Boolean> primaryReads = new ThreadLocal<>();
+
+    private final ReplicaMonitor monitor;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, ReplicaMonitor monitor) {
+        this.monitor = monitor;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++)
+            targets.put(i, replicas.get(i));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Send the read-only transactions of the current thread to the primary, until {@link #clearPrimaryReads()}
+     */
+    public static void setPrimaryReads() {
+        primaryReads.set(Boolean.TRUE);
+    }
+
+    public static void clearPrimaryReads() {
+        primaryReads.remove();
+    }
+
+    /**
+     * @return  True if the read-only transactions of the current thread go to the primary
+     */
+    public static boolean isPrimaryRead() {
+        return primaryReads.get() != null;
+    }
+
+    /**
+     * Run reads on the primary, read-only transactions included
+     * @param read  The reads, their transactions must start inside
+     * @return      The result of the reads
+     */
+    public static <T> T readOnPrimary(Supplier<T> read) {
+        if (isPrimaryRead())
+            return read.get();
+        setPrimaryReads();
+        try {
+            return read.get();
+        } finally {
+            clearPrimaryReads();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive() ||
+            !TransactionSynchronizationManager.isCurrentTransactionReadOnly() || isPrimaryRead())
+            return PRIMARY;
+        Integer replica = monitor.nextReplica();
+        // No replica is healthy or up to date: fall back to the primary
+        return replica != null ? replica : PRIMARY;
+    }
+
+}
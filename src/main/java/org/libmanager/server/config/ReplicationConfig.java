@@ -0,0 +1,80 @@
+package org.libmanager.server.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Routes the read-only transactions to the read replicas (libmanager.replication.*). Writes, and reads made in a
+ * write transaction such as the checkout, stay on the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "libmanager.replication.enabled", havingValue = "true")
+@EnableConfigurationProperties({DataSourceProperties.class, ReplicationProperties.class})
+public class ReplicationConfig {
+
+    /**
+     * The primary database, configured by spring.datasource.*
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public ReplicaMonitor replicaMonitor(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                                         ReplicationProperties replication) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReplicationProperties.Replica replica : replication.getReplicas())
+            replicas.add(replicaDataSource(replica, properties, replicas.size()));
+        return new ReplicaMonitor(primaryDataSource, replicas, replication.getMaxLag(), replication.getCheckInterval());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaMonitor replicaMonitor) {
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryDataSource, replicaMonitor.getReplicas(), replicaMonitor));
+    }
+
+    /**
+     * Give the connection back at the end of each transaction, otherwise a session opened for a whole request would
+     * keep the connection of its first transaction (and a write could follow a read on a replica)
+     */
+    @Bean
+    public HibernatePropertiesCustomizer connectionReleaseCustomizer() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                                            PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    private static DataSource replicaDataSource(ReplicationProperties.Replica replica, DataSourceProperties properties,
+                                                int index) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica-" + index);
+        dataSource.setJdbcUrl(replica.getUrl());
+        dataSource.setUsername(replica.getUsername() != null ? replica.getUsername() : properties.determineUsername());
+        dataSource.setPassword(replica.getPassword() != null ? replica.getPassword() : properties.determinePassword());
+        dataSource.setReadOnly(true);
+        // A replica which is down must not prevent the application from starting
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+
+}
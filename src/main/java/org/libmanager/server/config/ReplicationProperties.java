@@ -0,0 +1,99 @@
+package org.libmanager.server.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Read replicas receiving the read-only transactions
+ */
+@ConfigurationProperties(prefix = "libmanager.replication")
+public class ReplicationProperties {
+
+    /**
+     * A read replica of the primary database
+     */
+    public static class Replica {
+
+        /** JDBC URL of the replica */
+        private String url;
+
+        /** Login username of the replica, the one of the primary if empty */
+        private String username;
+
+        /** Login password of the replica, the one of the primary if empty */
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+    }
+
+    /** Send the read-only transactions to the replicas */
+    private boolean enabled = false;
+
+    /** Replication lag above which a replica stops receiving reads */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /** Interval between two health and lag checks of the replicas */
+    private Duration checkInterval = Duration.ofSeconds(1);
+
+    /** The replicas, used in turn */
+    private List<Replica> replicas = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getMaxLag() {
+        return maxLag;
+    }
+
+    public void setMaxLag(Duration maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public Duration getCheckInterval() {
+        return checkInterval;
+    }
+
+    public void setCheckInterval(Duration checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+}
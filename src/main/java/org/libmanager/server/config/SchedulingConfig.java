@@ -0,0 +1,15 @@
+package org.libmanager.server.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the periodic maintenance tasks, like the purge of the item tombstones, and the background tasks, like the
+ * notifications of the holds
+ */
+@Configuration
+@EnableScheduling
+@EnableAsync
+public class SchedulingConfig {
+}
@@ -0,0 +1,27 @@
+package org.libmanager.server.config;
+
+import org.libmanager.server.controller.CatalogETagInterceptor;
+import org.libmanager.server.event.CatalogVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Conditional GET of the catalog
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new CatalogETagInterceptor(catalogVersion))
+                .addPathPatterns("/item/book/all", "/item/book/get/*", "/item/book/search",
+                                 "/item/dvd/all", "/item/dvd/get/*", "/item/dvd/search", "/item/changes",
+                                 "/item/availability/*");
+    }
+
+}
@@ -1,6 +1,9 @@
 package org.libmanager.server.controller;
 
+import java.util.Arrays;
+
 import org.libmanager.server.entity.Book;
+import org.libmanager.server.idempotency.IdempotencyStore;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.service.BookService;
 import org.libmanager.server.util.TokenUtil;
@@ -9,6 +12,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -20,6 +24,9 @@ public class BookController {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     /**
      * Add a book
      * @param token         The token of the user (must be admin)
@@ -30,6 +37,8 @@ public class BookController {
      * @param isbn          The isbn of the book
      * @param releaseDate   The release date of the book
      * @param totalCopies   The number of total copies of the book
+     * @param key           A key unique to this book (optional), the book is added once if the request is sent again
+     *                      with the same key
      * @return              A response with OK code and true if the add was successful, the error and false otherwise
      */
     @PostMapping(path = "/add")
@@ -42,11 +51,17 @@ public class BookController {
             @RequestParam String genre,
             @RequestParam String isbn,
             @RequestParam String releaseDate,
-            @RequestParam int totalCopies
+            @RequestParam int totalCopies,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String key
     ) {
         if (TokenUtil.isValid(token)) {
-            if (TokenUtil.isAdmin(token))
-                return bookService.add(title, author, publisher, genre, isbn, releaseDate, totalCopies);
+            if (TokenUtil.isAdmin(token)) {
+                if (key == null)
+                    return bookService.add(title, author, publisher, genre, isbn, releaseDate, totalCopies);
+                return idempotencyStore.execute("book.add:" + TokenUtil.extractUsername(token), key,
+                        Arrays.asList(title, author, publisher, genre, isbn, releaseDate, totalCopies), Boolean.class,
+                        () -> bookService.add(title, author, publisher, genre, isbn, releaseDate, totalCopies));
+            }
             return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, false);
         }
         return new Response<>(Response.Code.INVALID_TOKEN, false);
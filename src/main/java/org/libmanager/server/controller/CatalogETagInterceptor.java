@@ -0,0 +1,48 @@
+package org.libmanager.server.controller;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.libmanager.server.config.ReplicaRoutingDataSource;
+import org.libmanager.server.event.CatalogVersion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Answers the catalog GET requests with the ETag of the catalog version, and with 304 Not Modified when the client
+ * already has it (If-None-Match): the controller is not called, nothing is read nor serialized.
+ * <p>
+ * The version is read on the primary before the controller, a change committed while the response is built only
+ * makes the next request of the client download it again. The response itself is read on the primary: read from a
+ * replica behind the version, an older catalog would be kept by the client under the ETag of a newer one.
+ */
+public class CatalogETagInterceptor implements HandlerInterceptor {
+
+    private final CatalogVersion catalogVersion;
+
+    public CatalogETagInterceptor(CatalogVersion catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!request.getMethod().equals("GET") && !request.getMethod().equals("HEAD"))
+            return true;
+        // The clients must check the version before using their copy
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        // Sets the ETag header, and the 304 status if it matches If-None-Match
+        if (new ServletWebRequest(request, response).checkNotModified(catalogVersion.getETag()))
+            return false;
+        ReplicaRoutingDataSource.setPrimaryReads();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        ReplicaRoutingDataSource.clearPrimaryReads();
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.libmanager.server.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.libmanager.server.response.ImportReport;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.ImportService;
+import org.libmanager.server.util.TokenUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+
+@Controller
+@RequestMapping(path = "/import")
+public class ImportController {
+
+    @Autowired
+    private ImportService importService;
+
+    /**
+     * Import books from a CSV or NDJSON file
+     * @param token     The token of the user (must be admin)
+     * @param format    The format of the file: "csv" (default) or "ndjson"
+     * @param file      The file to import (see {@link ImportService#importBooks})
+     * @return          A JSON response with OK code and the report of the import, the error and null otherwise
+     */
+    @PostMapping(path = "/book")
+    public @ResponseBody
+    Response<ImportReport> importBooks(
+            @RequestParam String token,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam MultipartFile file
+    ) throws IOException {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token)) {
+                try (InputStream input = file.getInputStream()) {
+                    return importService.importBooks(input, format);
+                }
+            }
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, null);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Import DVDs from a CSV or NDJSON file
+     * @param token     The token of the user (must be admin)
+     * @param format    The format of the file: "csv" (default) or "ndjson"
+     * @param file      The file to import (see {@link ImportService#importDVDs})
+     * @return          A JSON response with OK code and the report of the import, the error and null otherwise
+     */
+    @PostMapping(path = "/dvd")
+    public @ResponseBody
+    Response<ImportReport> importDVDs(
+            @RequestParam String token,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam MultipartFile file
+    ) throws IOException {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token)) {
+                try (InputStream input = file.getInputStream()) {
+                    return importService.importDVDs(input, format);
+                }
+            }
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, null);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Import users from a CSV file
+     * @param token The token of the user (must be admin)
+     * @param file  The file to import (see {@link ImportService#importUsers})
+     * @return      A JSON response with OK code and the report of the import, the error and null otherwise
+     */
+    @PostMapping(path = "/user")
+    public @ResponseBody
+    Response<ImportReport> importUsers(
+            @RequestParam String token,
+            @RequestParam MultipartFile file
+    ) throws IOException {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token)) {
+                try (InputStream input = file.getInputStream()) {
+                    return importService.importUsers(input);
+                }
+            }
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, null);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+}
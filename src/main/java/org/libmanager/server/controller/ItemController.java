@@ -1,15 +1,24 @@
 package org.libmanager.server.controller;
 
+import java.util.List;
+
+import org.libmanager.server.event.AvailabilityBroker;
+import org.libmanager.server.response.BranchAvailability;
+import org.libmanager.server.response.ItemChanges;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.service.ItemService;
+import org.libmanager.server.service.SyncService;
 import org.libmanager.server.util.TokenUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Controller
 @RequestMapping("/item")
@@ -18,6 +27,12 @@ public class ItemController {
     @Autowired
     private ItemService itemService;
 
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private AvailabilityBroker availabilityBroker;
+
     /**
      * Delete the given book
      * @param token The token of the user (must be admin=
@@ -44,4 +59,48 @@ public class ItemController {
         return new Response<>(Response.Code.INVALID_TOKEN, false);
     }
 
+    /**
+     * Get the copies of a book or a DVD in each branch, the item itself gives the copies of all the branches
+     * @param id    The id of the item
+     * @return      A JSON response with OK code and the total and available copies of each branch, NOT_FOUND if the
+     *              item does not exist
+     */
+    @GetMapping(path = "/availability/{id}")
+    public @ResponseBody
+    Response<List<BranchAvailability>> getAvailability(@PathVariable long id) {
+        return itemService.getAvailability(id);
+    }
+
+    /**
+     * Get the books and DVDs added, edited or deleted since the last synchronization, by pages
+     * @param since The next value of the previous page, 0 to get the whole catalog
+     * @param limit The maximum number of changes of the page
+     * @return      A JSON response with OK code and the changes, SYNC_EXPIRED if the client must synchronize again
+     *              from 0, INVALID_DATA if since is negative
+     */
+    @GetMapping(path = "/changes")
+    public @ResponseBody
+    Response<ItemChanges> getChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "0") int limit
+    ) {
+        return syncService.getChanges(since, limit);
+    }
+
+    /**
+     * Subscribe to the availability changes of books and DVDs, as server-sent events: an "availability" event with the
+     * item id, type, genre, status, available copies and deleted flag for each change, a "reset" event if changes were
+     * dropped because the client is too slow
+     * @param items     The ids of the items to follow (optional)
+     * @param genres    The genres of the items to follow (optional), any item is followed if neither is given
+     * @return          The event stream
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(
+            @RequestParam(required = false) List<Long> items,
+            @RequestParam(required = false) List<String> genres
+    ) {
+        return availabilityBroker.subscribe(items, genres);
+    }
+
 }
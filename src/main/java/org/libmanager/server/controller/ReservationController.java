@@ -1,14 +1,32 @@
 package org.libmanager.server.controller;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.libmanager.server.checkout.CheckoutLanes;
 import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.idempotency.IdempotencyStore;
+import org.libmanager.server.inventory.AvailabilityEngine;
+import org.libmanager.server.response.HoldStatus;
+import org.libmanager.server.response.KioskEventResult;
+import org.libmanager.server.response.ReservationEvents;
+import org.libmanager.server.response.ReservationResult;
 import org.libmanager.server.response.Response;
+import org.libmanager.server.response.Shipment;
+import org.libmanager.server.response.TransferStatus;
+import org.libmanager.server.service.KioskService;
 import org.libmanager.server.service.ReservationService;
+import org.libmanager.server.service.SyncService;
+import org.libmanager.server.service.TransferService;
 import org.libmanager.server.util.DateUtil;
 import org.libmanager.server.util.TokenUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -20,10 +38,32 @@ public class ReservationController {
     @Autowired
     private ReservationService reservationService;
 
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private KioskService kioskService;
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private CheckoutLanes checkoutLanes;
+
+    @Autowired
+    private AvailabilityEngine availabilityEngine;
+
     /**
      * Add a reservation
      * @param token     The token of the user who wants to borrow a book
      * @param itemId    The id of the item the user wants to borrow
+     * @param branch    The code of the branch lending the item (optional), any branch with a copy on the shelf if not
+     *                  given
+     * @param key       A key unique to this reservation (optional), the item is borrowed once if the request is sent
+     *                  again with the same key
      * @return          A JSON response with OK code and true if the reservation was successfully created, the error and
      *                  false otherwise
      */
@@ -31,11 +71,54 @@ public class ReservationController {
     public @ResponseBody
     Response<Boolean> addReservation(
             @RequestParam String token,
-            @RequestParam long itemId
+            @RequestParam long itemId,
+            @RequestParam(required = false) String branch,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String key
+    ) {
+        if (TokenUtil.isValid(token)) {
+            String username = TokenUtil.extractUsername(token);
+            String scope = "reservation.add:" + username;
+            List<Object> parameters = Arrays.asList(itemId, branch);
+            // Queued behind the other checkouts of the item, the key is recorded by the transaction of the lane
+            if (!availabilityEngine.isEnabled() && checkoutLanes.isEnabled()) {
+                if (key == null)
+                    return checkoutLanes.add(username, itemId, branch);
+                return idempotencyStore.executeRecorded(scope, key, parameters, Boolean.class,
+                                                        recorded -> checkoutLanes.add(username, itemId, branch,
+                                                                                      recorded));
+            }
+            // Decided in memory, or waiting for the lock of the item
+            Supplier<Response<Boolean>> add;
+            if (availabilityEngine.isEnabled())
+                add = () -> availabilityEngine.add(username, itemId, branch);
+            else
+                add = () -> reservationService.add(username, itemId, branch);
+            if (key == null)
+                return add.get();
+            return idempotencyStore.execute(scope, key, parameters, Boolean.class, add);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, false);
+    }
+
+    /**
+     * Borrow the copy scanned at a kiosk
+     * @param token     The token of the user who wants to borrow the copy
+     * @param barcode   The barcode of the copy
+     * @return          A JSON response with OK code and true if the reservation was successfully created, the error and
+     *                  false otherwise
+     */
+    @PostMapping(path = "/checkout")
+    public @ResponseBody
+    Response<Boolean> checkout(
+            @RequestParam String token,
+            @RequestParam String barcode
     ) {
         if (TokenUtil.isValid(token)) {
             String username = TokenUtil.extractUsername(token);
-            return reservationService.add(username, itemId);
+            // Taken in memory too, the copy is not given to a checkout of /reservation/add not yet written
+            if (availabilityEngine.isEnabled())
+                return availabilityEngine.checkout(username, barcode);
+            return reservationService.checkout(username, barcode);
         }
         return new Response<>(Response.Code.INVALID_TOKEN, false);
     }
@@ -62,6 +145,219 @@ public class ReservationController {
         return new Response<>(Response.Code.INVALID_TOKEN, false);
     }
 
+    /**
+     * Return several items at once (kiosk, staff desk)
+     * @param token The token of the user (must be admin)
+     * @param ids   The ids of the reservations to delete, at most 100
+     * @return      A JSON response with OK code and the result of each reservation, the error and null otherwise
+     */
+    @PostMapping(path = "/return_batch")
+    public @ResponseBody
+    Response<List<ReservationResult>> returnBatch(
+            @RequestParam String token,
+            @RequestParam List<Long> ids
+    ) {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token))
+                return reservationService.returnBatch(ids);
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, null);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Renew several loans at once, an admin can renew the loans of any user
+     * @param token The token of the user
+     * @param ids   The ids of the reservations to renew, at most 100
+     * @return      A JSON response with OK code and the result of each reservation, the error and null otherwise
+     */
+    @PostMapping(path = "/renew_batch")
+    public @ResponseBody
+    Response<List<ReservationResult>> renewBatch(
+            @RequestParam String token,
+            @RequestParam List<Long> ids
+    ) {
+        if (TokenUtil.isValid(token)) {
+            String username = TokenUtil.isAdmin(token) ? null : TokenUtil.extractUsername(token);
+            return reservationService.renewBatch(username, ids);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Replay the checkouts and returns recorded by a kiosk while offline
+     * @param signature The HMAC-SHA256 of the body with the kiosk secret, in hexadecimal
+     * @param payload   The batch: {"kioskId": ..., "events": [{"id", "type" (CHECKOUT or RETURN), "username",
+     *                  "barcode", "timestamp" (milliseconds since the epoch)}, ...]}
+     * @return          A JSON response with OK code and the outcome of each event, the error and null otherwise
+     */
+    @PostMapping(path = "/kiosk/sync")
+    public @ResponseBody
+    Response<List<KioskEventResult>> syncKiosk(
+            @RequestHeader("X-Kiosk-Signature") String signature,
+            @RequestBody String payload
+    ) {
+        return kioskService.sync(payload, signature);
+    }
+
+    /**
+     * Wait for a copy of an unavailable item, it is reserved for the user when returned
+     * @param token     The token of the user
+     * @param itemId    The id of the item the user wants to borrow
+     * @return          A JSON response with OK code and the place of the hold in the queue, the error and null otherwise
+     */
+    @PostMapping(path = "/hold/add")
+    public @ResponseBody
+    Response<HoldStatus> addHold(
+            @RequestParam String token,
+            @RequestParam long itemId
+    ) {
+        if (TokenUtil.isValid(token))
+            return reservationService.addHold(TokenUtil.extractUsername(token), itemId);
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Leave the hold queue of an item
+     * @param token     The token of the user
+     * @param itemId    The id of the item
+     * @return          A JSON response with OK code and true if the hold was deleted, the error and false otherwise
+     */
+    @PostMapping(path = "/hold/delete")
+    public @ResponseBody
+    Response<Boolean> deleteHold(
+            @RequestParam String token,
+            @RequestParam long itemId
+    ) {
+        if (TokenUtil.isValid(token))
+            return reservationService.deleteHold(TokenUtil.extractUsername(token), itemId);
+        return new Response<>(Response.Code.INVALID_TOKEN, false);
+    }
+
+    /**
+     * Get the holds of the user
+     * @param token The token of the user
+     * @return      A JSON response with OK code and the place of each hold in its queue
+     */
+    @PostMapping(path = "/hold/get_user_holds")
+    public @ResponseBody
+    Response<List<HoldStatus>> getHolds(@RequestParam String token) {
+        if (TokenUtil.isValid(token))
+            return reservationService.getHolds(TokenUtil.extractUsername(token));
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Ask for a copy held by other branches, to borrow it at a branch
+     * @param token     The token of the user
+     * @param itemId    The id of the item the user wants to borrow
+     * @param branch    The code of the branch the user borrows the item at
+     * @return          A JSON response with OK code and the transfer, the error and null otherwise
+     */
+    @PostMapping(path = "/transfer/request")
+    public @ResponseBody
+    Response<TransferStatus> requestTransfer(
+            @RequestParam String token,
+            @RequestParam long itemId,
+            @RequestParam String branch
+    ) {
+        if (TokenUtil.isValid(token))
+            return transferService.request(TokenUtil.extractUsername(token), itemId, branch);
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Cancel a transfer not shipped yet, an admin can cancel the transfers of any user
+     * @param token The token of the user
+     * @param id    The id of the transfer
+     * @return      A JSON response with OK code and true if the transfer was deleted, the error and false otherwise
+     */
+    @PostMapping(path = "/transfer/cancel/{id}")
+    public @ResponseBody
+    Response<Boolean> cancelTransfer(
+            @RequestParam String token,
+            @PathVariable long id
+    ) {
+        if (TokenUtil.isValid(token)) {
+            String username = TokenUtil.isAdmin(token) ? null : TokenUtil.extractUsername(token);
+            return transferService.cancel(username, id);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, false);
+    }
+
+    /**
+     * Receive a shipped copy, it is lent to the user who asked for it
+     * @param token The token of the user (must be admin)
+     * @param id    The id of the transfer
+     * @return      A JSON response with OK code and true if the copy was lent, the error and false otherwise
+     */
+    @PostMapping(path = "/transfer/receive/{id}")
+    public @ResponseBody
+    Response<Boolean> receiveTransfer(
+            @RequestParam String token,
+            @PathVariable long id
+    ) {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token))
+                return transferService.receive(id);
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, false);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, false);
+    }
+
+    /**
+     * Get the transfers of the user
+     * @param token The token of the user
+     * @return      A JSON response with OK code and the transfers
+     */
+    @PostMapping(path = "/transfer/get_user_transfers")
+    public @ResponseBody
+    Response<List<TransferStatus>> getTransfers(@RequestParam String token) {
+        if (TokenUtil.isValid(token))
+            return transferService.getByUser(TokenUtil.extractUsername(token));
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Get the copies on their way, by source and destination branch
+     * @param token The token of the user (must be admin)
+     * @return      A JSON response with OK code and the shipments
+     */
+    @PostMapping(path = "/transfer/shipments")
+    public @ResponseBody
+    Response<List<Shipment>> getShipments(@RequestParam String token) {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token))
+                return new Response<>(Response.Code.OK, transferService.getShipments());
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, null);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Get the checkouts, returns and renewals recorded after a position of the reservation journal, e.g. to keep the
+     * history of the loans elsewhere
+     * @param token The token of the user (must be admin)
+     * @param since The position of the last event the client has, 0 to get the whole journal
+     * @param limit The maximum number of events of the page
+     * @return      A JSON response with OK code and the events, SYNC_EXPIRED if the client must start again from 0,
+     *              the error and null otherwise
+     */
+    @PostMapping(path = "/events")
+    public @ResponseBody
+    Response<ReservationEvents> getEvents(
+            @RequestParam String token,
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "0") int limit
+    ) {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token))
+                return syncService.getReservationEvents(since, limit);
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, null);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
     /**
      * Get all reservations
      * @param token The token of the user (must be admin)
@@ -0,0 +1,57 @@
+package org.libmanager.server.controller;
+
+import java.util.List;
+
+import org.libmanager.server.response.CoalescingStatistics;
+import org.libmanager.server.response.RegionStatistics;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.StatisticsService;
+import org.libmanager.server.util.TokenUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+@Controller
+@RequestMapping(path = "/statistics")
+public class StatisticsController {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    /**
+     * Get the statistics of the second-level cache
+     * @param token The token of the user (must be admin)
+     * @return      A JSON response with OK code and the statistics of each cache region, the error and null otherwise
+     */
+    @GetMapping(path = "/cache")
+    public @ResponseBody
+    Response<List<RegionStatistics>> getCacheStatistics(@RequestParam String token) {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token))
+                return new Response<>(Response.Code.OK, statisticsService.getCacheStatistics());
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, null);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+    /**
+     * Get the statistics of the coalesced catalog queries
+     * @param token The token of the user (must be admin)
+     * @return      A JSON response with OK code and the executed and coalesced requests of each query, the error and
+     *              null otherwise
+     */
+    @GetMapping(path = "/coalescing")
+    public @ResponseBody
+    Response<List<CoalescingStatistics>> getCoalescingStatistics(@RequestParam String token) {
+        if (TokenUtil.isValid(token)) {
+            if (TokenUtil.isAdmin(token))
+                return new Response<>(Response.Code.OK, statisticsService.getCoalescingStatistics());
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, null);
+        }
+        return new Response<>(Response.Code.INVALID_TOKEN, null);
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A branch of the library, sharing the catalog with the other branches. Its copies of each item are counted by a
+ * {@link BranchStock}.
+ */
+@Entity
+@Table(name = "branch")
+public class Branch implements Serializable {
+
+    @Id
+    @Column(length = 16)
+    private String code;
+
+    @Column(nullable = false, length = 64)
+    private String name;
+
+    public Branch(String code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    public Branch() { }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+}
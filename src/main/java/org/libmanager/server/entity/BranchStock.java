@@ -0,0 +1,102 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * The copies of an item held by a branch. A loan locks the row of its branch only, the counters of the item
+ * ({@link Item#getAvailableCopies()}) are the sums of its rows, refreshed once the loans are committed.
+ */
+@Entity
+@Table(name = "branch_stock",
+       uniqueConstraints = @UniqueConstraint(name = "uk_branch_stock_item_branch",
+                                             columnNames = {"item_id", "branch_code"}))
+public class BranchStock implements Serializable {
+
+    @Id
+    @GeneratedValue(generator = "branch_stock_id")
+    @GenericGenerator(name = "branch_stock_id", strategy = "org.libmanager.server.entity.PooledSequenceGenerator",
+                      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM,
+                                              value = "branch_stock_seq"))
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id", nullable = false)
+    private Item item;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "branch_code", nullable = false)
+    private Branch branch;
+
+    @Column(nullable = false)
+    private int totalCopies;
+
+    @Column(nullable = false)
+    private int availableCopies;
+
+    /**
+     * The copies of the branch on its shelf, a bit per copy number (see {@link java.util.BitSet#toByteArray()}). Null
+     * until the copies are first used, it is then built from the copies and the loans.
+     */
+    @Column(name = "copy_availability", length = 8192)
+    private byte[] copyAvailability;
+
+    public BranchStock(Item item, Branch branch, int totalCopies, int availableCopies) {
+        this.item = item;
+        this.branch = branch;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+    }
+
+    public BranchStock() { }
+
+    public long getId() {
+        return id;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public Branch getBranch() {
+        return branch;
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    public void setTotalCopies(int totalCopies) {
+        this.totalCopies = totalCopies;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    public void setAvailableCopies(int availableCopies) {
+        this.availableCopies = availableCopies;
+    }
+
+    public byte[] getCopyAvailability() {
+        return copyAvailability;
+    }
+
+    public void setCopyAvailability(byte[] copyAvailability) {
+        this.copyAvailability = copyAvailability;
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A counter updated in the transactions, unlike a sequence: the row stays locked until the transaction ends.
+ * Only read and written by {@link org.libmanager.server.repository.ChangeCounterRepository}.
+ */
+@Entity
+@Table(name = "change_counter")
+public class ChangeCounter implements Serializable {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private long lastAssigned;
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLastAssigned() {
+        return lastAssigned;
+    }
+
+}
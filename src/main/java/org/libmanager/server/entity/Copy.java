@@ -0,0 +1,84 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * A physical copy of an item held by a branch, labelled with a barcode. The number of the copy is unique for the item,
+ * it is the bit of the copy in the availability of its branch ({@link BranchStock#getCopyAvailability()}).
+ */
+@Entity
+@Table(name = "copy",
+       uniqueConstraints = {
+               @UniqueConstraint(name = "uk_copy_barcode", columnNames = "barcode"),
+               @UniqueConstraint(name = "uk_copy_item_number", columnNames = {"item_id", "copy_number"})
+       })
+public class Copy implements Serializable {
+
+    @Id
+    @GeneratedValue(generator = "copy_id")
+    @GenericGenerator(name = "copy_id", strategy = "org.libmanager.server.entity.PooledSequenceGenerator",
+                      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "copy_seq"))
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id", nullable = false)
+    private Item item;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "branch_code", nullable = false)
+    private Branch branch;
+
+    @Column(name = "copy_number", nullable = false)
+    private int copyNumber;
+
+    @Column(nullable = false, length = 32)
+    private String barcode;
+
+    public Copy(Item item, Branch branch, int copyNumber, String barcode) {
+        this.item = item;
+        this.branch = branch;
+        this.copyNumber = copyNumber;
+        this.barcode = barcode;
+    }
+
+    public Copy() { }
+
+    public long getId() {
+        return id;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public Branch getBranch() {
+        return branch;
+    }
+
+    public void setBranch(Branch branch) {
+        this.branch = branch;
+    }
+
+    public int getCopyNumber() {
+        return copyNumber;
+    }
+
+    public String getBarcode() {
+        return barcode;
+    }
+
+}
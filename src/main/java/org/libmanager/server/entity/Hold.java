@@ -0,0 +1,82 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * A user waiting for a copy of an item. The holds of an item are served in the order of their tickets, the index on
+ * (item_id, ticket) gives the head of the queue and the position of a hold.
+ */
+@Entity
+@Table(name = "hold",
+       uniqueConstraints = {
+               @UniqueConstraint(name = "uk_hold_item_ticket", columnNames = {"item_id", "ticket"}),
+               @UniqueConstraint(name = "uk_hold_item_user", columnNames = {"item_id", "username"})
+       },
+       indexes = @Index(name = "idx_hold_username", columnList = "username"))
+public class Hold implements Serializable {
+
+    @Id
+    @GeneratedValue(generator = "hold_id")
+    @GenericGenerator(name = "hold_id", strategy = "org.libmanager.server.entity.PooledSequenceGenerator",
+                      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "hold_seq"))
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id", nullable = false)
+    private Item item;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "username", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private long ticket;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public Hold(Item item, User user, long ticket) {
+        this.item = item;
+        this.user = user;
+        this.ticket = ticket;
+    }
+
+    public Hold() { }
+
+    public long getId() {
+        return id;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public long getTicket() {
+        return ticket;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.libmanager.server.response.Response;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * The response of a request sent with an Idempotency-Key header, given back when the request is sent again. The row
+ * is inserted in the transaction of the request, before it runs.
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_key_expires_at", columnList = "expires_at"))
+public class IdempotencyRecord implements Persistable<String>, Serializable {
+
+    /** The scope of the key (endpoint and user) and the key */
+    @Id
+    @Column(length = 160)
+    private String id;
+
+    /** The SHA-256 of the parameters of the request, null for the keys recorded before the hashes */
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    /** Null until the request is done */
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32)
+    private Response.Code code;
+
+    /** The content of the response in JSON */
+    @Lob
+    private String content;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    /** Inserted without reading the row first, a key already used fails on insert */
+    @Transient
+    private boolean newRecord = true;
+
+    public IdempotencyRecord(String id, String requestHash, LocalDateTime expiresAt) {
+        this.id = id;
+        this.requestHash = requestHash;
+        this.expiresAt = expiresAt;
+    }
+
+    public IdempotencyRecord() { }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        newRecord = false;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public Response.Code getCode() {
+        return code;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setResult(Response.Code code, String content) {
+        this.code = code;
+        this.content = content;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+}
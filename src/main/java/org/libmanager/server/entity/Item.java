@@ -1,6 +1,11 @@
 package org.libmanager.server.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -9,12 +14,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "item_type")
+@Table(indexes = @Index(name = "idx_item_change_seq", columnList = "change_seq"))
 public abstract class Item implements Serializable {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @GeneratedValue(generator = "item_id")
+    @GenericGenerator(name = "item_id", strategy = "org.libmanager.server.entity.PooledSequenceGenerator",
+                      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "item_seq"))
     private long id;
 
     @Column(nullable = false)
@@ -35,6 +45,7 @@ public abstract class Item implements Serializable {
     @Column(nullable = false)
     private int totalCopies;
 
+    /** The sum of the available copies of the branches ({@link BranchStock}), updated with them */
     @Column(nullable = false)
     private int availableCopies = totalCopies;
 
@@ -45,6 +56,20 @@ public abstract class Item implements Serializable {
     @OneToMany(mappedBy = "item")
     private List<Reservation> reservations = new ArrayList<>();
 
+    /** The position of the last change of the item in the change sequence, set when the change is committed */
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
+    /** The ticket of the last hold placed on the item, tickets give the order of the hold queue */
+    @Column(nullable = false)
+    @JsonIgnore
+    private long holdTail;
+
+    /** The number of holds waiting for the item */
+    @Column(nullable = false)
+    @JsonIgnore
+    private int holdCount;
+
     public Item(
             int id, boolean status, int availableCopies, int totalCopies,
             String author, String title, LocalDate releaseDate, String genre
@@ -128,4 +153,28 @@ public abstract class Item implements Serializable {
     public String getItemType() {
         return itemType;
     }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public long getHoldTail() {
+        return holdTail;
+    }
+
+    public void setHoldTail(long holdTail) {
+        this.holdTail = holdTail;
+    }
+
+    public int getHoldCount() {
+        return holdCount;
+    }
+
+    public void setHoldCount(int holdCount) {
+        this.holdCount = holdCount;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Records the deletion of an item, for the clients synchronizing their copy of the catalog
+ */
+@Entity
+@Table(name = "item_tombstone", indexes = @Index(name = "idx_item_tombstone_change_seq", columnList = "change_seq"))
+public class ItemTombstone implements Serializable {
+
+    @Id
+    @Column(name = "item_id")
+    private long itemId;
+
+    @Column(name = "item_type", nullable = false, length = 31)
+    private String itemType;
+
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
+    @Column(nullable = false)
+    private LocalDateTime deletedAt;
+
+    public ItemTombstone(long itemId, String itemType, long changeSeq, LocalDateTime deletedAt) {
+        this.itemId = itemId;
+        this.itemType = itemType;
+        this.changeSeq = changeSeq;
+        this.deletedAt = deletedAt;
+    }
+
+    public ItemTombstone() { }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public String getItemType() {
+        return itemType;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+}
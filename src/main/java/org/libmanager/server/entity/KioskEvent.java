@@ -0,0 +1,84 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.libmanager.server.response.Response;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Records the outcome of an event replayed by a kiosk, a batch sent again gets the same outcome without applying the
+ * event twice
+ */
+@Entity
+@Table(name = "kiosk_event", indexes = @Index(name = "idx_kiosk_event_processed_at", columnList = "processed_at"))
+public class KioskEvent implements Persistable<String>, Serializable {
+
+    /** The id given by the kiosk */
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(name = "kiosk_id", nullable = false, length = 64)
+    private String kioskId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Response.Code code;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+
+    /** The id is given by the kiosk: saved without reading the row first, a duplicate fails on insert */
+    @Transient
+    private boolean newEvent = true;
+
+    public KioskEvent(String id, String kioskId, Response.Code code, LocalDateTime processedAt) {
+        this.id = id;
+        this.kioskId = kioskId;
+        this.code = code;
+        this.processedAt = processedAt;
+    }
+
+    public KioskEvent() { }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        newEvent = false;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEvent;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    public String getKioskId() {
+        return kioskId;
+    }
+
+    public Response.Code getCode() {
+        return code;
+    }
+
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+
+}
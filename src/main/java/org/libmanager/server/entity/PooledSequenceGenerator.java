@@ -0,0 +1,37 @@
+package org.libmanager.server.entity;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Generates ids by blocks: a single sequence call reserves {@code allocation size} ids (pooled-lo), so inserts are no
+ * longer executed one by one to read the id back and Hibernate can batch them.
+ * <p>
+ * The sequence (a table on databases without sequences) is given by the {@code sequence_name} parameter, the
+ * allocation size by the {@link #ALLOCATION_SIZE} setting. The allocation size must be the INCREMENT BY of the
+ * sequence, otherwise different nodes can be given overlapping blocks.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    /** Hibernate setting holding the number of ids reserved by each sequence call */
+    public static final String ALLOCATION_SIZE = "libmanager.id.allocation_size";
+
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        ConfigurationService configuration = serviceRegistry.getService(ConfigurationService.class);
+        int allocationSize = ConfigurationHelper.getInt(ALLOCATION_SIZE, configuration.getSettings(), DEFAULT_ALLOCATION_SIZE);
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+
+}
@@ -3,26 +3,40 @@ package org.libmanager.server.entity;
 import java.io.Serializable;
 import java.time.LocalDate;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import javax.persistence.Transient;
 
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIdentityReference;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.springframework.data.annotation.CreatedDate;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "reservation")
+@Table(indexes = @Index(name = "idx_reservation_overdue_due_date", columnList = "overdue, due_date"))
 public class Reservation implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "reservation_id")
+    @GenericGenerator(name = "reservation_id", strategy = "org.libmanager.server.entity.PooledSequenceGenerator",
+                      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "reservation_seq"))
     private long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -39,9 +53,40 @@ public class Reservation implements Serializable {
     @JsonIdentityReference(alwaysAsId = true)
     private Item item;
 
+    /** The lent copy, null for the loans older than the copies */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "copy_id")
+    @JsonProperty("barcode")
+    @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "barcode")
+    @JsonIdentityReference(alwaysAsId = true)
+    private Copy copy;
+
+    /** The branch lending the copy, null for the loans older than the branches */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "branch_code")
+    @JsonProperty("branch")
+    @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "code")
+    @JsonIdentityReference(alwaysAsId = true)
+    private Branch branch;
+
     @CreatedDate
     private LocalDate reservationDate = LocalDate.now();
 
+    /** The last day of the loan, the reservation becomes overdue the day after */
+    @Column(name = "due_date", nullable = false)
+    private LocalDate dueDate;
+
+    @Column(nullable = false)
+    private boolean overdue;
+
+    @Column(nullable = false)
+    @JsonIgnore
+    private boolean reminderSent;
+
+    /** Number of times the due date was pushed back */
+    @Column(nullable = false)
+    private int renewals;
+
     @Transient
     private String itemType;
 
@@ -69,6 +114,22 @@ public class Reservation implements Serializable {
         this.item = item;
     }
 
+    public Copy getCopy() {
+        return copy;
+    }
+
+    public void setCopy(Copy copy) {
+        this.copy = copy;
+    }
+
+    public Branch getBranch() {
+        return branch;
+    }
+
+    public void setBranch(Branch branch) {
+        this.branch = branch;
+    }
+
     public String getItemType() {
         return item.getItemType();
     }
@@ -80,4 +141,36 @@ public class Reservation implements Serializable {
     public void setReservationDate(LocalDate reservationDate) {
         this.reservationDate = reservationDate;
     }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public void setDueDate(LocalDate dueDate) {
+        this.dueDate = dueDate;
+    }
+
+    public boolean isOverdue() {
+        return overdue;
+    }
+
+    public void setOverdue(boolean overdue) {
+        this.overdue = overdue;
+    }
+
+    public boolean isReminderSent() {
+        return reminderSent;
+    }
+
+    public void setReminderSent(boolean reminderSent) {
+        this.reminderSent = reminderSent;
+    }
+
+    public int getRenewals() {
+        return renewals;
+    }
+
+    public void setRenewals(int renewals) {
+        this.renewals = renewals;
+    }
 }
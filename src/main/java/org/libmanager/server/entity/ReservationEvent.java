@@ -0,0 +1,141 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Records a checkout, a return or a renewal of a loan, in the order of the reservation journal. The events are never
+ * changed but for their position: the user, the item and the copy are kept as ids, the history of a loan outlives its
+ * reservation.
+ */
+@Entity
+@Table(name = "reservation_event", indexes = {
+        @Index(name = "uk_reservation_event_seq", columnList = "seq", unique = true),
+        @Index(name = "idx_reservation_event_username", columnList = "username, seq"),
+        @Index(name = "idx_reservation_event_occurred_at", columnList = "occurred_at")
+})
+public class ReservationEvent implements Serializable {
+
+    public enum Type {
+        CHECKOUT,
+        RETURN,
+        RENEWAL
+    }
+
+    @Id
+    @GeneratedValue(generator = "reservation_event_id")
+    @GenericGenerator(name = "reservation_event_id", strategy = "org.libmanager.server.entity.PooledSequenceGenerator",
+                      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM,
+                                              value = "reservation_event_seq"))
+    @JsonIgnore
+    private long id;
+
+    /** The position in the journal, assigned once the transaction is committed, null until then */
+    private Long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Column(name = "reservation_id", nullable = false)
+    private long reservationId;
+
+    @Column(nullable = false, length = 16)
+    private String username;
+
+    @Column(name = "item_id", nullable = false)
+    private long itemId;
+
+    /** Null for the loans older than the copies */
+    @Column(name = "copy_id")
+    private Long copyId;
+
+    /** Null for the loans older than the branches */
+    @Column(name = "branch_code", length = 16)
+    private String branchCode;
+
+    /** The due date after a checkout or a renewal, null for a return */
+    @Column(name = "due_date")
+    private LocalDate dueDate;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    /**
+     * @param type          The kind of event
+     * @param reservation   The loan, as it is after a checkout or a renewal, or before a return
+     * @param occurredAt    The time of the change
+     */
+    public ReservationEvent(Type type, Reservation reservation, LocalDateTime occurredAt) {
+        this.type = type;
+        this.reservationId = reservation.getId();
+        this.username = reservation.getUser().getUsername();
+        this.itemId = reservation.getItem().getId();
+        this.copyId = reservation.getCopy() == null ? null : reservation.getCopy().getId();
+        this.branchCode = reservation.getBranch() == null ? null : reservation.getBranch().getCode();
+        this.dueDate = type == Type.RETURN ? null : reservation.getDueDate();
+        this.occurredAt = occurredAt;
+    }
+
+    public ReservationEvent() { }
+
+    public long getId() {
+        return id;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getReservationId() {
+        return reservationId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public Long getCopyId() {
+        return copyId;
+    }
+
+    public String getBranchCode() {
+        return branchCode;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The loans of an item counted from the reservation journal, up to the position of the last snapshot: the counts up to
+ * now are these ones plus the events after it
+ */
+@Entity
+@Table(name = "reservation_snapshot")
+public class ReservationSnapshot implements Serializable {
+
+    @Id
+    @Column(name = "item_id")
+    private long itemId;
+
+    @Column(nullable = false)
+    private long checkouts;
+
+    @Column(nullable = false)
+    private long returns;
+
+    @Column(nullable = false)
+    private long renewals;
+
+    @Column(name = "last_event_at", nullable = false)
+    private LocalDateTime lastEventAt;
+
+    public ReservationSnapshot(long itemId) {
+        this.itemId = itemId;
+    }
+
+    public ReservationSnapshot() { }
+
+    /**
+     * Count an event of the item
+     */
+    public void add(ReservationEvent event) {
+        switch (event.getType()) {
+            case CHECKOUT:
+                checkouts++;
+                break;
+            case RETURN:
+                returns++;
+                break;
+            case RENEWAL:
+                renewals++;
+                break;
+        }
+        if (lastEventAt == null || event.getOccurredAt().isAfter(lastEventAt))
+            lastEventAt = event.getOccurredAt();
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public long getCheckouts() {
+        return checkouts;
+    }
+
+    public long getReturns() {
+        return returns;
+    }
+
+    public long getRenewals() {
+        return renewals;
+    }
+
+    public LocalDateTime getLastEventAt() {
+        return lastEventAt;
+    }
+
+}
@@ -0,0 +1,135 @@
+package org.libmanager.server.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * A user asking for a copy of an item held by another branch. The requests wait in a queue (index on (status, id))
+ * drained by batches: a copy is taken from the shelf of a source branch and shipped, it is lent to the user when it
+ * arrives, and the transfer is deleted.
+ */
+@Entity
+@Table(name = "transfer",
+       uniqueConstraints = @UniqueConstraint(name = "uk_transfer_item_user", columnNames = {"item_id", "username"}),
+       indexes = {
+               @Index(name = "idx_transfer_status_id", columnList = "status, id"),
+               @Index(name = "idx_transfer_username", columnList = "username")
+       })
+public class Transfer implements Serializable {
+
+    public enum Status {
+        /** Waiting for a copy in the queue */
+        REQUESTED,
+        /** A copy was taken from the shelf of the source branch */
+        IN_TRANSIT
+    }
+
+    @Id
+    @GeneratedValue(generator = "transfer_id")
+    @GenericGenerator(name = "transfer_id", strategy = "org.libmanager.server.entity.PooledSequenceGenerator",
+                      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "transfer_seq"))
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id", nullable = false)
+    private Item item;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "username", nullable = false)
+    private User user;
+
+    /** The branch shipping the copy, null until shipped */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "from_branch")
+    private Branch fromBranch;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "to_branch", nullable = false)
+    private Branch toBranch;
+
+    /** The shipped copy, null until shipped or if the copies of the source branch are not known */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "copy_id")
+    private Copy copy;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.REQUESTED;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    private LocalDateTime shippedAt;
+
+    public Transfer(Item item, User user, Branch toBranch) {
+        this.item = item;
+        this.user = user;
+        this.toBranch = toBranch;
+    }
+
+    public Transfer() { }
+
+    /**
+     * Record the copy taken from the shelf of the source branch
+     */
+    public void ship(Branch fromBranch, Copy copy) {
+        this.fromBranch = fromBranch;
+        this.copy = copy;
+        this.status = Status.IN_TRANSIT;
+        this.shippedAt = LocalDateTime.now();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public Branch getFromBranch() {
+        return fromBranch;
+    }
+
+    public Branch getToBranch() {
+        return toBranch;
+    }
+
+    public Copy getCopy() {
+        return copy;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getShippedAt() {
+        return shippedAt;
+    }
+
+}
@@ -0,0 +1,335 @@
+package org.libmanager.server.event;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.libmanager.server.response.AvailabilityUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the committed changes of the items (available copies, status, deletion) to the subscribers of /item/events,
+ * as server-sent events.
+ * <p>
+ * The connections are asynchronous requests: an idle subscriber holds no thread, only its emitter. The events are
+ * written by a few dispatcher threads. Each subscriber has a bounded buffer of pending updates, by item: a newer update
+ * of an item replaces the pending one, so a slow subscriber only gets the last state of each item. When the buffer is
+ * full, it is dropped and the subscriber gets a "reset" event, telling it to read the catalog again.
+ * <p>
+ * The listeners of the transactions committed at the same time may run in any order: the updates carry the version of
+ * their item (change_seq), an update older than the last one queued for its item is dropped.
+ */
+@Component
+public class AvailabilityBroker {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityBroker.class);
+
+    /** Maximum number of items with a pending update, per subscriber */
+    @Value("${libmanager.events.buffer-size:256}")
+    private int bufferSize = 256;
+
+    /** Milliseconds after which a subscription ends, the client reconnects */
+    @Value("${libmanager.events.timeout:1800000}")
+    private long timeout = 1_800_000;
+
+    /** Number of threads writing the events */
+    @Value("${libmanager.events.dispatcher-threads:4}")
+    private int dispatcherThreads = 4;
+
+    /** Number of items whose last version queued is kept, the oldest are forgotten */
+    @Value("${libmanager.events.versions-size:100000}")
+    private int versionsSize = 100_000;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /** The subscribers without filter */
+    private final Set<Subscriber> unfiltered = ConcurrentHashMap.newKeySet();
+
+    private final Map<Long, Set<Subscriber>> byItem = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<Subscriber>> byGenre = new ConcurrentHashMap<>();
+
+    /** The version of the last update queued of the items, guards the queuing of the updates */
+    private final Map<Long, Long> versions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > versionsSize;
+        }
+    };
+
+    private Executor dispatcher;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threads = new AtomicInteger();
+        dispatcher = Executors.newFixedThreadPool(dispatcherThreads, runnable -> {
+            Thread thread = new Thread(runnable, "availability-dispatcher-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher instanceof ExecutorService)
+            ((ExecutorService) dispatcher).shutdownNow();
+        for (Subscriber subscriber : subscribers)
+            subscriber.emitter.complete();
+    }
+
+    /**
+     * Subscribe to the changes of some items
+     * @param itemIds   The ids of the items, null or empty for any item
+     * @param genres    The genres of the items, null or empty for any genre
+     * @return          The emitter of the events, an item matches if its id or its genre is in the filters
+     */
+    public SseEmitter subscribe(Collection<Long> itemIds, Collection<String> genres) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        register(emitter, itemIds, genres);
+        return emitter;
+    }
+
+    void register(SseEmitter emitter, Collection<Long> itemIds, Collection<String> genres) {
+        Subscriber subscriber = new Subscriber(
+                emitter,
+                itemIds == null ? Set.of() : Set.copyOf(itemIds),
+                genres == null ? Set.of() : genres.stream().map(genre -> genre.toUpperCase(Locale.ROOT))
+                                                  .collect(Collectors.toUnmodifiableSet())
+        );
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(e -> unregister(subscriber));
+
+        subscribers.add(subscriber);
+        if (subscriber.itemIds.isEmpty() && subscriber.genres.isEmpty())
+            unfiltered.add(subscriber);
+        for (Long itemId : subscriber.itemIds)
+            index(byItem, itemId, subscriber);
+        for (String genre : subscriber.genres)
+            index(byGenre, genre, subscriber);
+    }
+
+    private void unregister(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber))
+            return;
+        subscriber.close();
+        unfiltered.remove(subscriber);
+        for (Long itemId : subscriber.itemIds)
+            unindex(byItem, itemId, subscriber);
+        for (String genre : subscriber.genres)
+            unindex(byGenre, genre, subscriber);
+    }
+
+    private static <K> void index(Map<K, Set<Subscriber>> index, K key, Subscriber subscriber) {
+        index.compute(key, (k, set) -> {
+            if (set == null)
+                set = ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+    }
+
+    private static <K> void unindex(Map<K, Set<Subscriber>> index, K key, Subscriber subscriber) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * @return  The number of open subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Queue the change for the matching subscribers, once committed, unless a newer change of the item was queued.
+     * Bulk changes (imports) are not pushed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChange(ItemChangeEvent event) {
+        if (event.getItemId() == null)
+            return;
+        AvailabilityUpdate update = new AvailabilityUpdate(event.getItemId(), event.getItemType(), event.getGenre(),
+                                                           event.getStatus(), event.getAvailableCopies(),
+                                                           event.isDeleted(), event.getChangeSeq());
+        // Checked and queued at once: the subscribers get the versions of an item in order
+        synchronized (versions) {
+            Long queued = versions.get(update.getItemId());
+            if (queued != null && queued > update.getChangeSeq()) {
+                logger.debug("Dropped the update of item {} at {}, {} was queued", update.getItemId(),
+                             update.getChangeSeq(), queued);
+                return;
+            }
+            versions.put(update.getItemId(), update.getChangeSeq());
+            offer(unfiltered, update);
+            offer(byItem.get(event.getItemId()), update);
+            if (event.getGenre() != null)
+                offer(byGenre.get(event.getGenre().toUpperCase(Locale.ROOT)), update);
+        }
+    }
+
+    /**
+     * Send a comment to every subscriber: keeps the idle connections open through proxies, and detects the closed ones
+     */
+    @Scheduled(fixedDelayString = "${libmanager.events.heartbeat-interval:30000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.heartbeat())
+                dispatch(subscriber);
+        }
+    }
+
+    private void offer(Set<Subscriber> matching, AvailabilityUpdate update) {
+        if (matching == null)
+            return;
+        for (Subscriber subscriber : matching) {
+            if (subscriber.offer(update, bufferSize))
+                dispatch(subscriber);
+        }
+    }
+
+    private void dispatch(Subscriber subscriber) {
+        try {
+            dispatcher.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            unregister(subscriber);
+        }
+    }
+
+    /**
+     * Write the pending events of a subscriber, until there are none
+     */
+    private void drain(Subscriber subscriber) {
+        Batch batch;
+        while ((batch = subscriber.take()) != null) {
+            try {
+                if (batch.reset)
+                    subscriber.emitter.send(SseEmitter.event().name("reset").data("overflow"));
+                for (AvailabilityUpdate update : batch.updates)
+                    subscriber.emitter.send(SseEmitter.event().name("availability")
+                                                      .data(update, MediaType.APPLICATION_JSON));
+                if (batch.heartbeat && !batch.reset && batch.updates.isEmpty())
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                // Closed by the client, the container completes the emitter
+                logger.debug("Could not send an event to a subscriber", e);
+                unregister(subscriber);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The events taken from a subscriber by a dispatcher thread
+     */
+    private static final class Batch {
+
+        final boolean reset;
+        final boolean heartbeat;
+        final List<AvailabilityUpdate> updates;
+
+        Batch(boolean reset, boolean heartbeat, List<AvailabilityUpdate> updates) {
+            this.reset = reset;
+            this.heartbeat = heartbeat;
+            this.updates = updates;
+        }
+
+    }
+
+    private static final class Subscriber {
+
+        final SseEmitter emitter;
+        final Set<Long> itemIds;
+        final Set<String> genres;
+
+        /** The last update of each item not sent yet, in the order of their first update */
+        private final Map<Long, AvailabilityUpdate> pending = new LinkedHashMap<>();
+        private boolean overflowed;
+        private boolean heartbeat;
+        /** True while a dispatcher thread is or will be draining the subscriber */
+        private boolean scheduled;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter, Set<Long> itemIds, Set<String> genres) {
+            this.emitter = emitter;
+            this.itemIds = itemIds;
+            this.genres = genres;
+        }
+
+        /**
+         * @return  True if the subscriber must be drained
+         */
+        synchronized boolean offer(AvailabilityUpdate update, int bufferSize) {
+            if (closed)
+                return false;
+            if (!pending.containsKey(update.getItemId()) && pending.size() >= bufferSize) {
+                pending.clear();
+                overflowed = true;
+            } else {
+                pending.put(update.getItemId(), update);
+            }
+            return schedule();
+        }
+
+        synchronized boolean heartbeat() {
+            if (closed)
+                return false;
+            heartbeat = true;
+            return schedule();
+        }
+
+        private boolean schedule() {
+            if (scheduled)
+                return false;
+            scheduled = true;
+            return true;
+        }
+
+        /**
+         * @return  The pending events, null if there are none: the subscriber is no longer scheduled
+         */
+        synchronized Batch take() {
+            if (closed || (!overflowed && !heartbeat && pending.isEmpty())) {
+                scheduled = false;
+                return null;
+            }
+            Batch batch = new Batch(overflowed, heartbeat, new ArrayList<>(pending.values()));
+            pending.clear();
+            overflowed = false;
+            heartbeat = false;
+            return batch;
+        }
+
+        synchronized void close() {
+            closed = true;
+            pending.clear();
+        }
+
+    }
+
+}
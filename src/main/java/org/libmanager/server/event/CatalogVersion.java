@@ -0,0 +1,40 @@
+package org.libmanager.server.event;
+
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A version of the catalog: the last position of the change sequence of the items (change_counter), raised by any
+ * write of an item once committed (the refreshes of the available copies included).
+ * <p>
+ * The version is read on the primary, it is the same on all the nodes and across restarts. A replica may be behind
+ * it: the responses sent with the version must be read on the primary too, see
+ * {@link org.libmanager.server.controller.CatalogETagInterceptor}.
+ */
+@Component
+public class CatalogVersion {
+
+    @Autowired
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public long get() {
+        // Read-write: on the primary
+        Long version = new TransactionTemplate(transactionManager).execute(
+                status -> changeCounterRepository.get(ChangeCounterRepository.ITEM_CHANGES));
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * @return  A strong ETag of the current version
+     */
+    public String getETag() {
+        return "\"" + get() + "\"";
+    }
+
+}
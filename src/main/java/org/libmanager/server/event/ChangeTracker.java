@@ -0,0 +1,109 @@
+package org.libmanager.server.event;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.ItemTombstone;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Gives each item written by a transaction a position in the change sequence (item.change_seq), and records the
+ * deleted items in item_tombstone, for the clients synchronizing their copy of the catalog.
+ * <p>
+ * The positions are assigned right before the commit, from a counter row that stays locked until the commit: the
+ * transactions commit in the order of their positions, so a client that has read a position never misses a lower one
+ * committed later. The writers lock the rows of their items before, the counter is the last lock they take.
+ * <p>
+ * The availability changes are not tracked here: the loans do not write their items, the available copies are
+ * refreshed from the stocks by batches, which give their items a position themselves
+ * ({@link org.libmanager.server.inventory.AvailabilityRefresher}). The counter is locked once per batch, not by
+ * every loan.
+ */
+@Component
+public class ChangeTracker {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ChangeCounterRepository changeCounterRepository;
+
+    /**
+     * Remember the changed item until the commit, the bulk changes (imports) and the availability refreshes assign
+     * their positions themselves
+     */
+    @EventListener
+    public void onItemChange(ItemChangeEvent event) {
+        if (event.getItemId() == null || event.getKind() == ItemChangeEvent.Kind.AVAILABILITY ||
+            !TransactionSynchronizationManager.isSynchronizationActive())
+            return;
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new Changes();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        changes.add(event);
+    }
+
+    /**
+     * The items changed by a transaction, the last change of each one
+     */
+    private class Changes implements TransactionSynchronization {
+
+        private final Map<Long, ItemChangeEvent> events = new LinkedHashMap<>();
+
+        /** All the changes, given the position of their item */
+        private final List<ItemChangeEvent> published = new ArrayList<>();
+
+        void add(ItemChangeEvent event) {
+            published.add(event);
+            ItemChangeEvent previous = events.get(event.getItemId());
+            if (previous == null || !previous.isDeleted())
+                events.put(event.getItemId(), event);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            long position = changeCounterRepository.allocate(ChangeCounterRepository.ITEM_CHANGES, events.size())
+                            - events.size();
+            LocalDateTime now = LocalDateTime.now();
+            Map<Long, Long> positions = new HashMap<>();
+            for (ItemChangeEvent event : events.values()) {
+                position++;
+                positions.put(event.getItemId(), position);
+                if (event.isDeleted()) {
+                    entityManager.persist(new ItemTombstone(event.getItemId(), event.getItemType(), position, now));
+                } else {
+                    // Still managed by the transaction, the position is written with the rest of the item
+                    Item item = entityManager.find(Item.class, event.getItemId());
+                    if (item != null)
+                        item.setChangeSeq(position);
+                }
+            }
+            // The version of the item sent to the subscribers once committed
+            for (ItemChangeEvent event : published)
+                event.setChangeSeq(positions.get(event.getItemId()));
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeTracker.this);
+        }
+
+    }
+
+}
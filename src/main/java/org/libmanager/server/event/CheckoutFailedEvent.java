@@ -0,0 +1,57 @@
+package org.libmanager.server.event;
+
+import org.libmanager.server.response.Response;
+
+/**
+ * Published when a checkout given to a user in memory could not be written to the database
+ */
+public class CheckoutFailedEvent {
+
+    private final String username;
+    private final String email;
+    private final long itemId;
+    private final String title;
+    private final Response.Code code;
+    private final boolean holdPlaced;
+
+    public CheckoutFailedEvent(String username, String email, long itemId, String title, Response.Code code,
+                               boolean holdPlaced) {
+        this.username = username;
+        this.email = email;
+        this.itemId = itemId;
+        this.title = title;
+        this.code = code;
+        this.holdPlaced = holdPlaced;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return  The reason of the failure
+     */
+    public Response.Code getCode() {
+        return code;
+    }
+
+    /**
+     * @return  True if the user was put in the hold queue of the item instead
+     */
+    public boolean isHoldPlaced() {
+        return holdPlaced;
+    }
+
+}
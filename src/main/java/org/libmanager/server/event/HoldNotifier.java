@@ -0,0 +1,63 @@
+package org.libmanager.server.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Tells the users that the item they were waiting for was reserved for them, or that a checkout given to them could
+ * not be written, once the change is committed and outside of the request
+ */
+@Component
+public class HoldNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(HoldNotifier.class);
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoldPromoted(HoldPromotedEvent event) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("no-reply@libmanager.org");
+        message.setTo(event.getEmail());
+        message.setSubject("Your hold is ready");
+        message.setText("A copy of \"" + event.getTitle() + "\" was returned and is now reserved for you.");
+        try {
+            mailSender.send(message);
+        } catch (MailException e) {
+            // The reservation is made anyway, it is listed with the other reservations of the user
+            logger.warn("Could not notify {} of the reservation of item {}", event.getUsername(), event.getItemId(), e);
+        }
+    }
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCheckoutFailed(CheckoutFailedEvent event) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("no-reply@libmanager.org");
+        message.setTo(event.getEmail());
+        message.setSubject("Your reservation could not be made");
+        if (event.isHoldPlaced())
+            message.setText("The last copy of \"" + event.getTitle() + "\" was taken before your reservation was "
+                            + "made. You were put in the hold queue of the item instead.");
+        else
+            message.setText("Your reservation of \"" + event.getTitle() + "\" could not be made ("
+                            + event.getCode() + "), please try again.");
+        try {
+            mailSender.send(message);
+        } catch (MailException e) {
+            // The failure is logged by the availability engine
+            logger.warn("Could not notify {} of the failed checkout of item {}", event.getUsername(),
+                        event.getItemId(), e);
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package org.libmanager.server.event;
+
+/**
+ * Published when a returned copy is given to the first eligible user of the hold queue of an item
+ */
+public class HoldPromotedEvent {
+
+    private final String username;
+    private final String email;
+    private final long itemId;
+    private final String title;
+
+    public HoldPromotedEvent(String username, String email, long itemId, String title) {
+        this.username = username;
+        this.email = email;
+        this.itemId = itemId;
+        this.title = title;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+}
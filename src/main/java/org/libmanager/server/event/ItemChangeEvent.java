@@ -0,0 +1,138 @@
+package org.libmanager.server.event;
+
+import org.libmanager.server.entity.Item;
+
+/**
+ * Published by the services when items are written, listeners usually handle it once the transaction is committed
+ */
+public class ItemChangeEvent {
+
+    public enum Kind {
+        /** Items were added, edited or deleted: any cached search result may be wrong */
+        CATALOG,
+        /** Only the available copies of an item (and so maybe its status) changed */
+        AVAILABILITY
+    }
+
+    private final Kind kind;
+
+    /** The id of the changed item, null for a bulk change */
+    private final Long itemId;
+
+    private final String itemType;
+
+    private final String genre;
+
+    private final boolean status;
+
+    private final int availableCopies;
+
+    /** True if the item became available or unavailable */
+    private final boolean statusChanged;
+
+    private final boolean deleted;
+
+    /**
+     * The position of the change in the change sequence (item.change_seq), the version of the item. Given before the
+     * commit by the {@link ChangeTracker} to the catalog changes; the listeners run after the commit see it.
+     */
+    private long changeSeq;
+
+    private ItemChangeEvent(Kind kind, Long itemId, String itemType, String genre, boolean status,
+                            int availableCopies, boolean statusChanged, boolean deleted, long changeSeq) {
+        this.kind = kind;
+        this.itemId = itemId;
+        this.itemType = itemType;
+        this.genre = genre;
+        this.status = status;
+        this.availableCopies = availableCopies;
+        this.statusChanged = statusChanged;
+        this.deleted = deleted;
+        this.changeSeq = changeSeq;
+    }
+
+    /**
+     * @param item  The added or edited item
+     */
+    public static ItemChangeEvent catalog(Item item) {
+        return new ItemChangeEvent(Kind.CATALOG, item.getId(), item.getItemType(), item.getGenre(),
+                                   item.getStatus(), item.getAvailableCopies(), true, false, item.getChangeSeq());
+    }
+
+    /**
+     * @param item  The deleted item
+     */
+    public static ItemChangeEvent deleted(Item item) {
+        return new ItemChangeEvent(Kind.CATALOG, item.getId(), item.getItemType(), item.getGenre(),
+                                   item.getStatus(), item.getAvailableCopies(), true, true, item.getChangeSeq());
+    }
+
+    /**
+     * A change of many items at once, e.g. an import
+     */
+    public static ItemChangeEvent catalog() {
+        return new ItemChangeEvent(Kind.CATALOG, null, null, null, false, 0, true, false, 0);
+    }
+
+    /**
+     * @param item              The item after its available copies were refreshed, with its position in the change
+     *                          sequence
+     * @param previousStatus    The status of the item before
+     */
+    public static ItemChangeEvent availability(Item item, boolean previousStatus) {
+        return new ItemChangeEvent(Kind.AVAILABILITY, item.getId(), item.getItemType(), item.getGenre(),
+                                   item.getStatus(), item.getAvailableCopies(), item.getStatus() != previousStatus,
+                                   false, item.getChangeSeq());
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public String getItemType() {
+        return itemType;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public boolean getStatus() {
+        return status;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    public boolean isStatusChanged() {
+        return statusChanged;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return  The version of the item after the change: of two changes of an item, the higher one is the newer
+     */
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemChangeEvent{" + kind + ", item=" + itemId + ", type=" + itemType + ", status=" + status +
+               ", availableCopies=" + availableCopies + ", changeSeq=" + changeSeq + (deleted ? ", deleted" : "") +
+               '}';
+    }
+
+}
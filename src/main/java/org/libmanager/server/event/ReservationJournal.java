@@ -0,0 +1,172 @@
+package org.libmanager.server.event;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.entity.ReservationEvent;
+import org.libmanager.server.entity.ReservationSnapshot;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ReservationEventRepository;
+import org.libmanager.server.repository.ReservationSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Appends the checkouts, returns and renewals to the reservation journal (reservation_event), in the transaction
+ * changing the loans: an event is kept if and only if its change is committed.
+ * <p>
+ * The events are inserted with an id from a pooled sequence, the transactions of the loans take no lock for them. They
+ * are given their position in the journal afterwards by {@link #sequence()}, in the order of their ids, only once
+ * committed: the sequencers lock the counter of the journal until they commit, the positions are committed in order
+ * and a reader never misses an event before the last position it read. The events without position yet are not read.
+ * <p>
+ * The events are counted by item into reservation_snapshot from time to time, the events counted and older than the
+ * retention are then purged.
+ */
+@Component
+public class ReservationJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationJournal.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Autowired
+    private ReservationEventRepository reservationEventRepository;
+
+    @Autowired
+    private ReservationSnapshotRepository reservationSnapshotRepository;
+
+    /** Maximum number of events given a position by a transaction */
+    @Value("${libmanager.reservation-events.sequence-batch-size:1000}")
+    private int sequenceBatchSize = 1000;
+
+    /** Maximum number of events counted by a snapshot */
+    @Value("${libmanager.reservation-events.snapshot-batch-size:10000}")
+    private int snapshotBatchSize = 10_000;
+
+    /** Number of days the events are kept once counted, 0 to keep them */
+    @Value("${libmanager.reservation-events.retention-days:0}")
+    private int retentionDays = 0;
+
+    /**
+     * @param reservation   The loan created
+     */
+    public void checkout(Reservation reservation) {
+        record(ReservationEvent.Type.CHECKOUT, reservation);
+    }
+
+    /**
+     * @param reservation   The loan deleted, before its deletion
+     */
+    public void returned(Reservation reservation) {
+        record(ReservationEvent.Type.RETURN, reservation);
+    }
+
+    /**
+     * @param reservation   The loan with its new due date
+     */
+    public void renewed(Reservation reservation) {
+        record(ReservationEvent.Type.RENEWAL, reservation);
+    }
+
+    private void record(ReservationEvent.Type type, Reservation reservation) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive())
+            throw new IllegalStateException("The reservation events are recorded by the transaction of their change");
+        entityManager.persist(new ReservationEvent(type, reservation, LocalDateTime.now()));
+    }
+
+    /**
+     * Give the next positions of the journal to the committed events without position
+     * @return  The number of events given a position
+     */
+    @Scheduled(fixedDelayString = "${libmanager.reservation-events.sequence-interval:200}",
+               initialDelayString = "${libmanager.reservation-events.sequence-interval:200}")
+    @Transactional
+    public int sequence() {
+        // Locks the counter until the commit, the events are read once it is locked: the instances give a position to
+        // an event once and commit their positions in order
+        long last = changeCounterRepository.allocate(ChangeCounterRepository.RESERVATION_EVENTS, 0);
+        List<ReservationEvent> events = reservationEventRepository.findBySeqIsNullOrderById(
+                PageRequest.of(0, sequenceBatchSize));
+        if (events.isEmpty())
+            return 0;
+        for (ReservationEvent event : events)
+            event.setSeq(++last);
+        changeCounterRepository.raise(ChangeCounterRepository.RESERVATION_EVENTS, last);
+        return events.size();
+    }
+
+    /**
+     * Count the events after the last snapshot into reservation_snapshot, then purge the events older than the
+     * retention
+     */
+    @Scheduled(fixedDelayString = "${libmanager.reservation-events.snapshot-interval:60000}",
+               initialDelayString = "${libmanager.reservation-events.snapshot-interval:60000}")
+    @Transactional
+    public void snapshot() {
+        // Locks the counter until the commit: an event is counted once when several instances take a snapshot
+        long counted = changeCounterRepository.allocate(ChangeCounterRepository.SNAPSHOT_RESERVATION_EVENTS, 0);
+        List<ReservationEvent> events = reservationEventRepository.findBySeqGreaterThanOrderBySeq(
+                counted, PageRequest.of(0, snapshotBatchSize));
+        if (!events.isEmpty()) {
+            Map<Long, ReservationSnapshot> snapshots = new HashMap<>();
+            for (ReservationEvent event : events)
+                snapshots.put(event.getItemId(), null);
+            for (ReservationSnapshot snapshot : reservationSnapshotRepository.findAllById(snapshots.keySet()))
+                snapshots.put(snapshot.getItemId(), snapshot);
+            List<ReservationSnapshot> created = new ArrayList<>();
+            for (ReservationEvent event : events) {
+                ReservationSnapshot snapshot = snapshots.get(event.getItemId());
+                if (snapshot == null) {
+                    snapshot = new ReservationSnapshot(event.getItemId());
+                    snapshots.put(event.getItemId(), snapshot);
+                    created.add(snapshot);
+                }
+                snapshot.add(event);
+            }
+            // The snapshots read are written at commit
+            for (ReservationSnapshot snapshot : created)
+                entityManager.persist(snapshot);
+            counted = events.get(events.size() - 1).getSeq();
+            changeCounterRepository.raise(ChangeCounterRepository.SNAPSHOT_RESERVATION_EVENTS, counted);
+            logger.debug("Counted {} reservation events up to {}", events.size(), counted);
+        }
+        if (retentionDays > 0)
+            purge(counted);
+    }
+
+    /**
+     * @param counted   The last position counted by the snapshot, the events after it are kept
+     */
+    private void purge(long counted) {
+        Long purgeable = reservationEventRepository.findMaxSeqOccurredBefore(
+                LocalDateTime.now().minusDays(retentionDays));
+        if (purgeable == null)
+            return;
+        long upTo = Math.min(purgeable, counted);
+        if (upTo <= changeCounterRepository.get(ChangeCounterRepository.PURGED_RESERVATION_EVENTS))
+            return;
+        changeCounterRepository.raise(ChangeCounterRepository.PURGED_RESERVATION_EVENTS, upTo);
+        int purged = reservationEventRepository.deleteUpTo(upTo);
+        logger.info("Purged {} reservation events up to {}", purged, upTo);
+    }
+
+}
@@ -0,0 +1,313 @@
+package org.libmanager.server.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.libmanager.server.entity.IdempotencyRecord;
+import org.libmanager.server.repository.IdempotencyRecordRepository;
+import org.libmanager.server.response.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs a request sent with an Idempotency-Key header once: the response is kept for a while and given back when the
+ * client sends the request again (e.g. after a timeout), without running it again.
+ * <p>
+ * The responses of this instance are kept in memory, up to a number of keys, and in the database. The key is
+ * inserted in the transaction of the request, before it runs, and the response is written in the same transaction:
+ * the response is kept if and only if the changes of the request are committed. A duplicate arriving while the
+ * request runs waits for it, on the execution in memory or on the lock of the row inserted by another instance, then
+ * gets its response; it gets TRY_AGAIN if the request is still running after the wait timeout.
+ * <p>
+ * The keys are read in read-write transactions, on the primary: a replica may not have the row of a request just
+ * committed. A hash of the parameters of the request is kept with its key, a key sent again with other parameters is
+ * refused.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** Time in milliseconds a response is given back */
+    @Value("${libmanager.idempotency.ttl:86400000}")
+    private long ttl = 86_400_000;
+
+    /** Maximum number of responses kept in memory, the others are read from the database */
+    @Value("${libmanager.idempotency.max-entries:10000}")
+    private int maxEntries = 10_000;
+
+    /** Time in milliseconds a duplicate waits for the request running in this instance */
+    @Value("${libmanager.idempotency.wait-timeout:30000}")
+    private long waitTimeout = 30_000;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /** The executions of this instance, running or done, by scoped key */
+    private final ConcurrentMap<String, Execution> executions = new ConcurrentHashMap<>();
+
+    /**
+     * A key sent with a request: its scope and the hash of the parameters of the request
+     */
+    public static final class Key {
+
+        private final String id;
+        private final String requestHash;
+
+        /**
+         * @param id            The scope and the key
+         * @param requestHash   The hash of the parameters of the request
+         */
+        public Key(String id, String requestHash) {
+            this.id = id;
+            this.requestHash = requestHash;
+        }
+
+    }
+
+    private static final class Execution {
+
+        final String requestHash;
+        final CompletableFuture<Response<?>> response = new CompletableFuture<>();
+        /** Running until the response is known */
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        Execution(String requestHash) {
+            this.requestHash = requestHash;
+        }
+
+    }
+
+    /**
+     * Run a request once for a key
+     * @param scope         The endpoint and the user sending the key, the same key sent by another user or to another
+     *                      endpoint is another request
+     * @param key           The Idempotency-Key header
+     * @param parameters    The parameters of the request, written in JSON and hashed
+     * @param contentType   The type of the content of the response, to read it back from the database
+     * @param request       The request, in its transaction
+     * @return              The response of the first execution, INVALID_DATA if the key is blank or too long or was
+     *                      sent with other parameters, TRY_AGAIN if the first execution is still running
+     */
+    public <T> Response<T> execute(String scope, String key, List<?> parameters, Class<T> contentType,
+                                   Supplier<Response<T>> request) {
+        return run(scope, key, parameters, recorded -> executeOnce(recorded, contentType, request));
+    }
+
+    /**
+     * Run a request once for a key, the request reads and records the key in its own transaction ({@link #find},
+     * {@link #record}), e.g. a request committed by another thread. No transaction is held while it runs.
+     * @param request       The request, given the key to record
+     * @see #execute(String, String, List, Class, Supplier)
+     */
+    public <T> Response<T> executeRecorded(String scope, String key, List<?> parameters, Class<T> contentType,
+                                           Function<Key, Response<T>> request) {
+        return run(scope, key, parameters, recorded -> {
+            try {
+                return request.apply(recorded);
+            } catch (DataIntegrityViolationException e) {
+                return readCommitted(recorded, contentType, e);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Response<T> run(String scope, String key, List<?> parameters, Function<Key, Response<T>> request) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH)
+            return new Response<>(Response.Code.INVALID_DATA, null);
+        Key recorded = new Key(scope + ':' + key, hash(parameters));
+        String id = recorded.id;
+        Execution execution = new Execution(recorded.requestHash);
+        Execution current;
+        while ((current = executions.putIfAbsent(id, execution)) != null) {
+            if (current.expiresAt > System.currentTimeMillis()) {
+                if (!current.requestHash.equals(execution.requestHash))
+                    return new Response<>(Response.Code.INVALID_DATA, null);
+                return (Response<T>) join(current);
+            }
+            executions.remove(id, current);
+        }
+
+        try {
+            Response<T> response = request.apply(recorded);
+            execution.response.complete(response);
+            execution.expiresAt = System.currentTimeMillis() + ttl;
+            // Read from the database when sent again
+            if (executions.size() > maxEntries)
+                executions.remove(id, execution);
+            return response;
+        } catch (RuntimeException | Error e) {
+            // Nothing was committed, the request can be sent again
+            execution.response.completeExceptionally(e);
+            executions.remove(id, execution);
+            throw e;
+        }
+    }
+
+    /**
+     * Read the response of a key, in the transaction of its request
+     * @return  The response recorded, INVALID_DATA if the key was sent with other parameters, null if the key is not
+     *          recorded or expired
+     */
+    public <T> Response<T> find(Key key, Class<T> contentType) {
+        Optional<IdempotencyRecord> stored = idempotencyRecordRepository.findById(key.id);
+        if (stored.isEmpty())
+            return null;
+        if (stored.get().getExpiresAt().isAfter(LocalDateTime.now(zone)))
+            return read(stored.get(), key.requestHash, contentType);
+        idempotencyRecordRepository.delete(stored.get());
+        idempotencyRecordRepository.flush();
+        return null;
+    }
+
+    /**
+     * Record the response of a key, in the transaction of its request: the response is kept if and only if the changes
+     * of the request are committed. Fails if the key is recorded by another transaction meanwhile.
+     */
+    public void record(Key key, Response<?> response) {
+        IdempotencyRecord record = new IdempotencyRecord(key.id, key.requestHash, expiresAt());
+        record.setResult(response.getCode(), write(response.getContent()));
+        idempotencyRecordRepository.saveAndFlush(record);
+    }
+
+    private <T> Response<T> executeOnce(Key key, Class<T> contentType, Supplier<Response<T>> request) {
+        // Read-write: on the primary
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            return transaction.execute(status -> {
+                Response<T> stored = find(key, contentType);
+                if (stored != null)
+                    return stored;
+                IdempotencyRecord record = idempotencyRecordRepository.saveAndFlush(
+                        new IdempotencyRecord(key.id, key.requestHash, expiresAt()));
+                Response<T> response = request.get();
+                record.setResult(response.getCode(), write(response.getContent()));
+                return response;
+            });
+        } catch (DataIntegrityViolationException e) {
+            return readCommitted(key, contentType, e);
+        } catch (PessimisticLockingFailureException e) {
+            // Still running in another instance after the lock wait timeout
+            return new Response<>(Response.Code.TRY_AGAIN, null);
+        }
+    }
+
+    /**
+     * Read the response committed by another instance while this one waited on the row of the key
+     */
+    private <T> Response<T> readCommitted(Key key, Class<T> contentType, DataIntegrityViolationException e) {
+        Optional<IdempotencyRecord> committed = new TransactionTemplate(transactionManager).execute(
+                status -> idempotencyRecordRepository.findById(key.id));
+        if (committed == null || committed.isEmpty())
+            throw e;
+        return read(committed.get(), key.requestHash, contentType);
+    }
+
+    private LocalDateTime expiresAt() {
+        return LocalDateTime.ofInstant(Instant.now().plusMillis(ttl), zone);
+    }
+
+    private Response<?> join(Execution execution) {
+        try {
+            return execution.response.get(waitTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return new Response<>(Response.Code.TRY_AGAIN, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response<>(Response.Code.TRY_AGAIN, null);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return  The SHA-256 of the parameters in JSON, in hexadecimal
+     */
+    private String hash(List<?> parameters) {
+        try {
+            byte[] json = write(parameters).getBytes(StandardCharsets.UTF_8);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private String write(Object content) {
+        try {
+            return content == null ? null : mapper.writeValueAsString(content);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write the response", e);
+        }
+    }
+
+    private <T> Response<T> read(IdempotencyRecord record, String requestHash, Class<T> contentType) {
+        // Kept without hash before the hashes were recorded
+        if (record.getRequestHash() != null && !record.getRequestHash().equals(requestHash))
+            return new Response<>(Response.Code.INVALID_DATA, null);
+        try {
+            T content = record.getContent() == null ? null : mapper.readValue(record.getContent(), contentType);
+            return new Response<>(record.getCode(), content);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the response of " + record.getId(), e);
+        }
+    }
+
+    /**
+     * Forget the expired responses
+     */
+    @Scheduled(fixedDelayString = "${libmanager.idempotency.purge-interval:3600000}",
+               initialDelayString = "${libmanager.idempotency.purge-interval:3600000}")
+    @Transactional
+    public void purge() {
+        long now = System.currentTimeMillis();
+        executions.values().removeIf(execution -> execution.expiresAt <= now);
+        int purged = idempotencyRecordRepository.deleteExpiredBefore(LocalDateTime.now(zone));
+        if (purged > 0)
+            logger.info("Purged {} idempotency keys", purged);
+    }
+
+}
@@ -0,0 +1,561 @@
+package org.libmanager.server.inventory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.hibernate.Hibernate;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.event.CheckoutFailedEvent;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.UserRepository;
+import org.libmanager.server.request.CheckoutRequest;
+import org.libmanager.server.response.HoldStatus;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.CopyService;
+import org.libmanager.server.service.ReservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Decides the checkouts of /reservation/add in memory, from the available copies of all the items kept in an
+ * {@link AvailabilityTable}, and writes them to the database later by batches (write-behind).
+ * <p>
+ * A checkout is given once its record is forced to the {@link AvailabilityJournal}. The records are written to the
+ * database in the order of the journal, one transaction per batch, with the number of the last record of the batch
+ * (change_counter). At startup, the table is loaded from the item table and the records of the journal after this
+ * number are taken again, then written by the next batches.
+ * <p>
+ * The table holds the available copies committed to the database, updated by the item changes published by the
+ * {@link AvailabilityRefresher}, and the copies given in memory not yet written. The changes are applied in the order
+ * of their positions in the change sequence (item.change_seq), a change older than the one known is ignored. The items
+ * of a batch are refreshed once it is committed, before their copies given are released. The other writers taking
+ * copies (checkouts from a given branch or of a copy scanned at a kiosk, transfers) write to the database at once, but
+ * take their copies in memory first ({@link #reserve(long)}): their items are refreshed once they are committed, and
+ * the copies released once the changes are put in the table. The writers putting copies back (returns, transfers
+ * received) only go through the database, their copies are given once their items are refreshed. A checkout which
+ * cannot be written is told to its user ({@link CheckoutFailedEvent}).
+ * <p>
+ * A batch which cannot be written is written again record by record: a record which still fails alone while the
+ * database is reachable is set aside with the dead letters, and its copy released. The engine is meant for a single
+ * instance of the application.
+ */
+@Component
+public class AvailabilityEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityEngine.class);
+
+    private static final int STRIPES = 64;
+
+    /** Number of items expected at startup, the table grows beyond it */
+    private static final int EXPECTED_ITEMS = 65_536;
+
+    /** Number of items read by a query when the table is loaded */
+    private static final int LOAD_PAGE_SIZE = 10_000;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private CopyService copyService;
+
+    @Autowired
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AvailabilityRefresher availabilityRefresher;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /** Decide the checkouts of /reservation/add in memory, they lock the item in the database otherwise */
+    @Value("${libmanager.availability.engine.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${libmanager.availability.engine.journal:availability.journal}")
+    private String journalPath = "availability.journal";
+
+    /** Number of checkouts written to the database by a transaction */
+    @Value("${libmanager.availability.engine.batch-size:500}")
+    private int batchSize = 500;
+
+    private final AvailabilityTable table = new AvailabilityTable(STRIPES, EXPECTED_ITEMS);
+
+    private AvailabilityJournal journal;
+
+    /** The checkouts forced to the journal and not yet written to the database, in the order of the journal */
+    private final Queue<AvailabilityJournal.Record> unflushed = new ConcurrentLinkedQueue<>();
+
+    /** The checkouts which could not be written to the database, even alone */
+    private final Queue<AvailabilityJournal.Record> deadLetters = new ConcurrentLinkedQueue<>();
+
+    /** The items lent to each user and not yet written to the database, counted by the reservation limits */
+    private final Map<String, List<Item>> pendingLoans = new ConcurrentHashMap<>();
+
+    /** The reservation limits of a user are checked and its loan is taken under the lock of its stripe */
+    private final Object[] userLocks = new Object[STRIPES];
+
+    /** True once the table is loaded and the journal read back */
+    private volatile boolean ready;
+
+    public AvailabilityEngine() {
+        for (int i = 0; i < userLocks.length; i++)
+            userLocks[i] = new Object();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+        try {
+            long applied = changeCounterRepository.get(ChangeCounterRepository.APPLIED_CHECKOUTS);
+            journal = new AvailabilityJournal(Path.of(journalPath), applied + 1, unflushed::add);
+            load();
+            int recovered = recover(applied);
+            if (unflushed.isEmpty())
+                journal.truncate(applied);
+            ready = true;
+            logger.info("Availability engine started with {} items, {} checkouts of the journal to write", table.size(),
+                        recovered);
+        } catch (IOException e) {
+            logger.error("Could not open the availability journal {}, the checkouts go through the database",
+                         journalPath, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        ready = false;
+        if (journal != null)
+            journal.close();
+    }
+
+    /**
+     * @return  True if the checkouts are decided in memory
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return  The number of checkouts given and not yet written to the database
+     */
+    public int getPendingCount() {
+        return unflushed.size();
+    }
+
+    /**
+     * @return  The checkouts which could not be written to the database, even alone
+     */
+    List<AvailabilityJournal.Record> getDeadLetters() {
+        return List.copyOf(deadLetters);
+    }
+
+    /**
+     * Add a reservation, decided in memory and written to the database later
+     * @param username  The user who wants to borrow an item
+     * @param itemId    The id of the item the user wants to borrow
+     * @param branch    The code of the branch lending the item, null for any branch with a copy on the shelf
+     * @return          The response of {@link ReservationService#add(String, long, String)}, the reservation is only
+     *                  read back once written. A checkout given which cannot be written is told to the user later.
+     */
+    public Response<Boolean> add(String username, long itemId, String branch) {
+        // The copies of each branch are only counted by the database
+        if (!ready || branch != null || !table.contains(itemId))
+            return writeThrough(itemId, () -> reservationService.add(username, itemId, branch));
+
+        // Read-write: on the primary, a replica may not have the loans of the last batches yet
+        Response.Code code = new TransactionTemplate(transactionManager).execute(status -> take(username, itemId));
+        if (code != Response.Code.OK)
+            return new Response<>(code, false);
+        try {
+            journal.append(itemId, username).join();
+        } catch (CompletionException e) {
+            // Not given, nothing was written
+            logger.error("Could not write a checkout to the availability journal", e.getCause());
+            forget(username, itemId);
+            table.release(itemId, 1);
+            return writeThrough(itemId, () -> reservationService.add(username, itemId, null));
+        }
+        return new Response<>(Response.Code.OK, true);
+    }
+
+    /**
+     * Borrow the copy scanned at a kiosk, written to the database at once
+     * @param username  The user who wants to borrow the copy
+     * @param barcode   The barcode of the copy
+     * @return          The response of {@link ReservationService#checkout(String, String)}, NOT_AVAILABLE if the
+     *                  copies left are given to checkouts not yet written
+     */
+    public Response<Boolean> checkout(String username, String barcode) {
+        BarcodeIndex.CopyRef ref = ready ? copyService.resolve(barcode) : null;
+        if (ref == null)
+            return reservationService.checkout(username, barcode);
+        return writeThrough(ref.getItemId(), () -> reservationService.checkout(username, barcode));
+    }
+
+    /**
+     * Take in memory a copy of an item taken from the database by the current transaction, so that it is not given to
+     * a checkout not yet written too. The copy is released once the transaction is committed and the change of the
+     * item put in the table, or once rolled back.
+     * @param itemId    The id of the item
+     * @return          False if the copies left are given to checkouts not yet written, the transaction must not take
+     *                  a copy of the item. True if the checkouts are not decided in memory.
+     */
+    public boolean reserve(long itemId) {
+        if (!ready || !table.contains(itemId))
+            return true;
+        if (!table.tryTake(itemId))
+            return false;
+        writes().add(itemId);
+        return true;
+    }
+
+    /**
+     * Run a writer taking a copy of an item in the database, in the transaction of the caller if any (e.g. the replay
+     * of a kiosk), once the copy is taken in memory
+     */
+    private Response<Boolean> writeThrough(long itemId, Supplier<Response<Boolean>> writer) {
+        if (!ready || !table.contains(itemId))
+            return writer.get();
+        return new TransactionTemplate(transactionManager).execute(
+                status -> reserve(itemId) ? writer.get() : new Response<>(Response.Code.NOT_AVAILABLE, false));
+    }
+
+    /**
+     * @return  The ids of the items whose copies are taken in memory by the writers of the current transaction, one id
+     *          per copy
+     */
+    private List<Long> writes() {
+        Writes writes = (Writes) TransactionSynchronizationManager.getResource(this);
+        if (writes == null) {
+            writes = new Writes();
+            TransactionSynchronizationManager.bindResource(this, writes);
+            TransactionSynchronizationManager.registerSynchronization(writes);
+        }
+        return writes.itemIds;
+    }
+
+    /**
+     * Check the limits of the user and take a copy in memory
+     */
+    private Response.Code take(String username, long itemId) {
+        // Read without lock, the limits are checked against the loans pending in memory
+        Optional<User> foundUser = userRepository.findById(username);
+        Optional<Item> foundItem = itemRepository.findById(itemId);
+        if (foundUser.isEmpty() || foundItem.isEmpty())
+            return Response.Code.NOT_FOUND;
+        User user = foundUser.get();
+        Item item = foundItem.get();
+        // Loaded before the lock
+        if (!user.isAdmin())
+            Hibernate.initialize(user.getReservations());
+
+        synchronized (userLock(username)) {
+            if (!reservationService.checkReservationLimits(user, item, pendingLoans.getOrDefault(username, List.of())))
+                return Response.Code.MAX_RESERVATIONS_REACHED;
+            if (!table.tryTake(itemId))
+                return Response.Code.NOT_AVAILABLE;
+            pendingLoans.computeIfAbsent(username, name -> new ArrayList<>()).add(item);
+        }
+        return Response.Code.OK;
+    }
+
+    /**
+     * Write the checkouts given to the database, by batches in the order of the journal
+     * @return  The number of checkouts written
+     */
+    @Scheduled(fixedDelayString = "${libmanager.availability.engine.flush-interval:100}",
+               initialDelayString = "${libmanager.availability.engine.flush-interval:100}")
+    public int flush() {
+        if (!ready)
+            return 0;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int flushed = 0;
+        List<AvailabilityJournal.Record> batch;
+        while (!(batch = nextBatch()).isEmpty()) {
+            RuntimeException failure = write(transaction, batch);
+            if (failure == null) {
+                complete(transaction, batch);
+                flushed += batch.size();
+                continue;
+            }
+            // Rolled back: the records are written alone, a record which fails is not retried forever with its batch
+            logger.warn("Could not write {} checkouts to the database, writing them one by one", batch.size(),
+                        failure);
+            for (AvailabilityJournal.Record record : batch) {
+                if (write(transaction, List.of(record)) != null) {
+                    if (!isDatabaseReachable(transaction))
+                        return flushed;
+                    // Once more alone, set aside if it still fails
+                    failure = write(transaction, List.of(record));
+                    if (failure != null) {
+                        deadLetter(transaction, record, failure);
+                        continue;
+                    }
+                }
+                complete(transaction, List.of(record));
+                flushed++;
+            }
+        }
+        return flushed;
+    }
+
+    /**
+     * Write checkouts to the database in a transaction
+     * @return  The exception which rolled the transaction back, null if committed
+     */
+    private RuntimeException write(TransactionTemplate transaction, List<AvailabilityJournal.Record> records) {
+        try {
+            transaction.executeWithoutResult(status -> apply(records));
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * @return  False if the database cannot be read, the checkouts are written again by the next flush
+     */
+    private boolean isDatabaseReachable(TransactionTemplate transaction) {
+        try {
+            transaction.execute(status -> changeCounterRepository.get(ChangeCounterRepository.APPLIED_CHECKOUTS));
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Could not reach the database, the checkouts are written by the next flush", e);
+            return false;
+        }
+    }
+
+    /**
+     * Release the copies of checkouts written to the database, once their items are refreshed
+     */
+    private void complete(TransactionTemplate transaction, List<AvailabilityJournal.Record> records) {
+        // The available copies committed are known from the item changes of the refresh
+        Set<Long> itemIds = new TreeSet<>();
+        for (AvailabilityJournal.Record record : records)
+            itemIds.add(record.getItemId());
+        try {
+            transaction.executeWithoutResult(status -> availabilityRefresher.refresh(itemIds));
+        } catch (RuntimeException e) {
+            logger.warn("Could not refresh the available copies of {} items", itemIds.size(), e);
+            itemIds.forEach(availabilityRefresher::changed);
+        }
+        for (AvailabilityJournal.Record record : records) {
+            unflushed.poll();
+            forget(record.getUsername(), record.getItemId());
+            table.release(record.getItemId(), 1);
+        }
+        journal.truncate(records.get(records.size() - 1).getSeq());
+    }
+
+    /**
+     * Set aside a checkout which cannot be written, its copy is given back and its user told
+     */
+    private void deadLetter(TransactionTemplate transaction, AvailabilityJournal.Record record, RuntimeException e) {
+        logger.error("Could not write checkout {} of item {} by {} to the database, moved to the dead letters",
+                     record.getSeq(), record.getItemId(), record.getUsername(), e);
+        deadLetters.add(record);
+        unflushed.poll();
+        forget(record.getUsername(), record.getItemId());
+        table.release(record.getItemId(), 1);
+        journal.truncate(record.getSeq());
+        try {
+            transaction.executeWithoutResult(
+                    status -> failed(record.getUsername(), record.getItemId(), Response.Code.TRY_AGAIN, false));
+        } catch (RuntimeException notified) {
+            logger.warn("Could not tell {} that the checkout of item {} failed", record.getUsername(),
+                        record.getItemId(), notified);
+        }
+    }
+
+    /**
+     * @return  The first checkouts not yet written, only removed from the queue by the flush
+     */
+    private List<AvailabilityJournal.Record> nextBatch() {
+        List<AvailabilityJournal.Record> batch = new ArrayList<>();
+        Iterator<AvailabilityJournal.Record> records = unflushed.iterator();
+        while (batch.size() < batchSize && records.hasNext())
+            batch.add(records.next());
+        return batch;
+    }
+
+    private void apply(List<AvailabilityJournal.Record> records) {
+        // By item in the order of the ids, as the other batches; the checkouts of an item in the order of the journal
+        Map<Long, List<CheckoutRequest>> checkouts = new TreeMap<>();
+        for (AvailabilityJournal.Record record : records) {
+            checkouts.computeIfAbsent(record.getItemId(), itemId -> new ArrayList<>())
+                     .add(new CheckoutRequest(record.getUsername(), null));
+        }
+        checkouts.forEach((itemId, requests) -> {
+            List<Response<Boolean>> responses = reservationService.addAll(itemId, requests);
+            for (int i = 0; i < requests.size(); i++) {
+                String username = requests.get(i).getUsername();
+                Response.Code code = responses.get(i).getCode();
+                if (code == Response.Code.NOT_AVAILABLE) {
+                    // The copy given in memory was taken by another writer
+                    Response<HoldStatus> hold = reservationService.addHold(username, itemId);
+                    logger.warn("No copy of item {} left for the checkout of {}, hold placed: {}", itemId, username,
+                                hold.getCode());
+                    failed(username, itemId, code, hold.getCode() == Response.Code.OK);
+                } else if (code != Response.Code.OK) {
+                    logger.warn("Could not write the checkout of item {} by {}: {}", itemId, username, code);
+                    failed(username, itemId, code, false);
+                }
+            }
+        });
+        changeCounterRepository.raise(ChangeCounterRepository.APPLIED_CHECKOUTS,
+                                      records.get(records.size() - 1).getSeq());
+    }
+
+    /**
+     * Tell a user that the checkout given to them was not written, once the transaction is committed
+     */
+    private void failed(String username, long itemId, Response.Code code, boolean holdPlaced) {
+        Optional<User> user = userRepository.findById(username);
+        Optional<Item> item = itemRepository.findById(itemId);
+        if (user.isEmpty() || item.isEmpty())
+            return;
+        eventPublisher.publishEvent(new CheckoutFailedEvent(username, user.get().getEmail(), itemId,
+                                                            item.get().getTitle(), code, holdPlaced));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChange(ItemChangeEvent event) {
+        // An import adds its items in bulk, they go through the database until their first change
+        if (!enabled || event.getItemId() == null)
+            return;
+        // The changes of concurrent transactions may be published out of order
+        if (!table.put(event.getItemId(), event.isDeleted() ? 0 : event.getAvailableCopies(), event.getChangeSeq()))
+            logger.debug("Ignored change {} of item {}, older than the one known", event.getChangeSeq(),
+                         event.getItemId());
+    }
+
+    /**
+     * Load the available copies of the items, the items changed in the meantime are already known
+     */
+    private void load() {
+        long after = 0;
+        List<Object[]> rows;
+        while (!(rows = itemRepository.findAvailableCopiesAfter(after, PageRequest.of(0, LOAD_PAGE_SIZE))).isEmpty()) {
+            for (Object[] row : rows)
+                table.putIfAbsent((Long) row[0], (Integer) row[1], (Long) row[2]);
+            after = (Long) rows.get(rows.size() - 1)[0];
+        }
+    }
+
+    /**
+     * Take again the copies given before a stop and not yet written
+     * @param applied   The number of the last checkout of the journal written to the database
+     * @return          The number of checkouts to write
+     */
+    private int recover(long applied) {
+        int recovered = 0;
+        for (AvailabilityJournal.Record record : journal.getRecovered()) {
+            if (record.getSeq() <= applied)
+                continue;
+            table.take(record.getItemId());
+            itemRepository.findById(record.getItemId()).ifPresent(
+                    item -> pendingLoans.computeIfAbsent(record.getUsername(), name -> new ArrayList<>()).add(item));
+            unflushed.add(record);
+            recovered++;
+        }
+        return recovered;
+    }
+
+    /**
+     * Stop counting a loan in the limits of its user
+     */
+    private void forget(String username, long itemId) {
+        synchronized (userLock(username)) {
+            List<Item> loans = pendingLoans.get(username);
+            if (loans == null)
+                return;
+            for (Iterator<Item> iterator = loans.iterator(); iterator.hasNext(); ) {
+                if (iterator.next().getId() == itemId) {
+                    iterator.remove();
+                    break;
+                }
+            }
+            if (loans.isEmpty())
+                pendingLoans.remove(username);
+        }
+    }
+
+    private Object userLock(String username) {
+        return userLocks[Math.floorMod(username.hashCode(), userLocks.length)];
+    }
+
+    /**
+     * The copies taken in memory by the writers of a transaction, released once the changes of their items are put in
+     * the table
+     */
+    private class Writes implements TransactionSynchronization {
+
+        private final List<Long> itemIds = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            // In a transaction of its own once the stocks are unlocked, as the batches: the changes of the items are
+            // put in the table by its commit
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            Set<Long> changed = new TreeSet<>(itemIds);
+            try {
+                transaction.executeWithoutResult(status -> availabilityRefresher.refresh(changed));
+            } catch (RuntimeException e) {
+                logger.warn("Could not refresh the available copies of {} items", changed.size(), e);
+                changed.forEach(availabilityRefresher::changed);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(AvailabilityEngine.this);
+            for (long itemId : itemIds)
+                table.release(itemId, 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,276 @@
+package org.libmanager.server.inventory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only file of the checkouts decided in memory, written before they are given: a checkout is durable once
+ * its record is forced to the disk, a crash then loses nothing not yet written to the database.
+ * <p>
+ * The records are written by a single thread: the records appended while the disk is forced are written and forced
+ * together (group commit). A record is its length, its content (number, item id and username) and a CRC32, so that a
+ * record torn by a crash is found when the file is read back; the file is cut after the last whole record.
+ */
+class AvailabilityJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityJournal.class);
+
+    static final class Record {
+
+        private final long seq;
+        private final long itemId;
+        private final String username;
+
+        Record(long seq, long itemId, String username) {
+            this.seq = seq;
+            this.itemId = itemId;
+            this.username = username;
+        }
+
+        long getSeq() {
+            return seq;
+        }
+
+        long getItemId() {
+            return itemId;
+        }
+
+        String getUsername() {
+            return username;
+        }
+
+    }
+
+    private static final class Append {
+
+        final long itemId;
+        final String username;
+        final CompletableFuture<Record> durable = new CompletableFuture<>();
+
+        Append(long itemId, String username) {
+            this.itemId = itemId;
+            this.username = username;
+        }
+
+    }
+
+    private final FileChannel channel;
+    /** The whole records found when the file was opened */
+    private final List<Record> recovered;
+    /** Receives the records once forced, in the order of the file, before their appender */
+    private final Consumer<Record> sink;
+
+    private final Queue<Append> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final ExecutorService writer;
+
+    /** Only used by the writer thread once opened */
+    private long lastSeq;
+    /** True if the file may end with a part of a record, nothing more is appended */
+    private boolean broken;
+
+    /**
+     * Open the journal, and read the records it holds
+     * @param path      The file, created if it does not exist
+     * @param firstSeq  The number of the next record if the file is empty
+     * @param sink      Receives the records once forced
+     */
+    AvailabilityJournal(Path path, long firstSeq, Consumer<Record> sink) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+        this.sink = sink;
+        this.recovered = read();
+        this.lastSeq = recovered.isEmpty() ? firstSeq - 1 : Math.max(firstSeq - 1,
+                                                                     recovered.get(recovered.size() - 1).getSeq());
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "availability-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return  The records found when the file was opened
+     */
+    List<Record> getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Append a record
+     * @return  Completed with the record once forced to the disk
+     */
+    CompletableFuture<Record> append(long itemId, String username) {
+        Append append = new Append(itemId, username);
+        queue.add(append);
+        if (draining.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                fail(new IllegalStateException("The availability journal is closed", e));
+            }
+        }
+        return append.durable;
+    }
+
+    /**
+     * Empty the file if all its records were applied, the numbers go on
+     * @param appliedSeq    The number of the last record written to the database
+     */
+    void truncate(long appliedSeq) {
+        try {
+            writer.execute(() -> {
+                if (appliedSeq < lastSeq || !queue.isEmpty())
+                    return;
+                try {
+                    channel.truncate(0);
+                    channel.force(true);
+                } catch (IOException e) {
+                    logger.warn("Could not empty the availability journal", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed, emptied at the next start
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.shutdownNow();
+        fail(new IllegalStateException("The availability journal is closed"));
+        channel.close();
+    }
+
+    private void drain() {
+        // An append queued after the last poll, but before the flag is cleared, is written by this thread
+        do {
+            List<Append> group = new ArrayList<>();
+            Append append;
+            while ((append = queue.poll()) != null)
+                group.add(append);
+            if (!group.isEmpty())
+                write(group);
+            draining.set(false);
+        } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    private void write(List<Append> group) {
+        List<Record> records = new ArrayList<>(group.size());
+        long start = -1;
+        try {
+            if (broken)
+                throw new IOException("The availability journal could not be repaired after a failed write");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (Append append : group) {
+                Record record = new Record(lastSeq + records.size() + 1, append.itemId, append.username);
+                writeRecord(new DataOutputStream(bytes), record);
+                records.add(record);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            start = channel.size();
+            long position = start;
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            // The part of the group written is cut, the next groups must follow the last whole record
+            if (start >= 0) {
+                try {
+                    channel.truncate(start);
+                } catch (IOException truncateException) {
+                    logger.error("Could not cut the availability journal after a failed write", truncateException);
+                    broken = true;
+                }
+            }
+            for (Append append : group)
+                append.durable.completeExceptionally(e);
+            return;
+        }
+        lastSeq += records.size();
+        for (Record record : records)
+            sink.accept(record);
+        for (int i = 0; i < group.size(); i++)
+            group.get(i).durable.complete(records.get(i));
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        byte[] username = record.getUsername().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer content = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES + username.length);
+        content.putLong(record.getSeq()).putLong(record.getItemId()).putInt(username.length).put(username);
+        CRC32 crc = new CRC32();
+        crc.update(content.array());
+        out.writeInt(content.capacity());
+        out.write(content.array());
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Read the whole records, and cut the file after the last one
+     */
+    private List<Record> read() throws IOException {
+        List<Record> records = new ArrayList<>();
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        while (position + Integer.BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            int length = header.flip().getInt();
+            if (length < Long.BYTES * 2 + Integer.BYTES || position + Integer.BYTES * 2 + length > size)
+                break;
+            ByteBuffer content = ByteBuffer.allocate(length + Integer.BYTES);
+            while (content.hasRemaining()) {
+                if (channel.read(content, position + Integer.BYTES + content.position()) < 0)
+                    break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(content.array(), 0, length);
+            content.flip();
+            long seq = content.getLong();
+            long itemId = content.getLong();
+            int usernameLength = content.getInt();
+            if (usernameLength < 0 || usernameLength != length - Long.BYTES * 2 - Integer.BYTES)
+                break;
+            byte[] username = new byte[usernameLength];
+            content.get(username);
+            if (content.getInt() != (int) crc.getValue())
+                break;
+            records.add(new Record(seq, itemId, new String(username, StandardCharsets.UTF_8)));
+            position += Integer.BYTES * 2 + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        return records;
+    }
+
+    private void fail(RuntimeException e) {
+        Append append;
+        while ((append = queue.poll()) != null)
+            append.durable.completeExceptionally(e);
+    }
+
+}
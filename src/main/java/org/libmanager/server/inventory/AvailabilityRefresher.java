@@ -0,0 +1,205 @@
+package org.libmanager.server.inventory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.libmanager.server.repository.BranchStockRepository;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the available copies of the items (item.available_copies) equal to the sums of their stocks
+ * ({@link BranchStock}). The loans, returns and transfers only lock and write the stocks of their branches: the row of
+ * an item is not a lock shared by the checkouts of all its branches. The items whose stocks changed are refreshed in
+ * the background, by batches, once their transactions are committed; the {@link ItemChangeEvent#availability} of an
+ * item is published by the refresh. A batch gives its items their positions in the change sequence (item.change_seq)
+ * at once, the counter of the sequence is locked once per batch.
+ * <p>
+ * The available copies read from an item may be behind its stocks for up to the refresh interval, the checkouts and
+ * the holds are decided on the locked stocks. The items changed by an instance stopped before their refresh are found
+ * by a reconciliation, from time to time.
+ */
+@Component
+public class AvailabilityRefresher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityRefresher.class);
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BranchStockRepository stockRepository;
+
+    @Autowired
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** Maximum number of items refreshed by a transaction */
+    @Value("${libmanager.availability.refresh-batch-size:500}")
+    private int batchSize = 500;
+
+    /** Maximum number of items out of sync found by a reconciliation */
+    @Value("${libmanager.availability.reconcile-batch-size:10000}")
+    private int reconcileBatchSize = 10_000;
+
+    /** The items whose stocks changed in committed transactions, not yet refreshed */
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Refresh an item once the current transaction is committed
+     * @param itemId    The id of the item whose stock changed
+     */
+    public void changed(long itemId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changed.add(itemId);
+            return;
+        }
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new Changes();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        changes.itemIds.add(itemId);
+    }
+
+    /**
+     * @return  The number of items waiting for their refresh
+     */
+    public int getPendingCount() {
+        return changed.size();
+    }
+
+    /**
+     * Refresh the items changed, by batches
+     * @return  The number of items whose available copies changed
+     */
+    @Scheduled(fixedDelayString = "${libmanager.availability.refresh-interval:500}",
+               initialDelayString = "${libmanager.availability.refresh-interval:500}")
+    public int refresh() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int refreshed = 0;
+        while (!changed.isEmpty()) {
+            List<Long> batch = new ArrayList<>();
+            for (Iterator<Long> itemIds = changed.iterator(); batch.size() < batchSize && itemIds.hasNext(); ) {
+                batch.add(itemIds.next());
+                itemIds.remove();
+            }
+            try {
+                Integer count = transaction.execute(status -> refresh(batch));
+                refreshed += count == null ? 0 : count;
+            } catch (RuntimeException e) {
+                // Rolled back, refreshed by the next run
+                logger.warn("Could not refresh the available copies of {} items", batch.size(), e);
+                changed.addAll(batch);
+                break;
+            }
+        }
+        return refreshed;
+    }
+
+    /**
+     * Set the available copies of items to the sums of their stocks, in the transaction of the caller. The items
+     * without stock keep their available copies.
+     * @param itemIds   The ids of the items
+     * @return          The number of items whose available copies changed
+     */
+    @Transactional
+    public int refresh(Collection<Long> itemIds) {
+        if (itemIds.isEmpty())
+            return 0;
+        // The stocks then the items, as their writers: the sums read are the last committed, and written in the order
+        // of the locks of the items
+        Map<Long, Integer> sums = new HashMap<>();
+        for (BranchStock stock : stockRepository.findAllByItemIdForShare(itemIds))
+            sums.merge(stock.getItem().getId(), stock.getAvailableCopies(), Integer::sum);
+        if (sums.isEmpty())
+            return 0;
+        Map<Item, Boolean> refreshed = new LinkedHashMap<>();
+        for (Item item : itemRepository.findAllByIdForUpdate(sums.keySet())) {
+            int availableCopies = sums.get(item.getId());
+            if (availableCopies == item.getAvailableCopies())
+                continue;
+            refreshed.put(item, item.getStatus());
+            item.setAvailableCopies(availableCopies);
+        }
+        if (refreshed.isEmpty())
+            return 0;
+        // The last lock of the batch, held until the commit: the positions are committed in order (see ChangeTracker)
+        long position = changeCounterRepository.allocate(ChangeCounterRepository.ITEM_CHANGES, refreshed.size())
+                        - refreshed.size();
+        // The events carry the position of their item, its version for the listeners
+        for (Map.Entry<Item, Boolean> entry : refreshed.entrySet()) {
+            entry.getKey().setChangeSeq(++position);
+            eventPublisher.publishEvent(ItemChangeEvent.availability(entry.getKey(), entry.getValue()));
+        }
+        return refreshed.size();
+    }
+
+    /**
+     * Refresh the items whose available copies are not the sums of their stocks, e.g. changed by an instance stopped
+     * before their refresh
+     * @return  The number of items out of sync found
+     */
+    @Scheduled(fixedDelayString = "${libmanager.availability.reconcile-interval:600000}",
+               initialDelayString = "${libmanager.availability.reconcile-interval:600000}")
+    public int reconcile() {
+        // Read-write: on the primary, a replica may be behind the stocks
+        List<Long> itemIds = new TransactionTemplate(transactionManager).execute(
+                status -> stockRepository.findItemIdsOutOfSync(PageRequest.of(0, reconcileBatchSize)));
+        if (itemIds == null || itemIds.isEmpty())
+            return 0;
+        logger.info("Refreshing the available copies of {} items out of sync", itemIds.size());
+        changed.addAll(itemIds);
+        return itemIds.size();
+    }
+
+    /**
+     * The items whose stocks are changed by a transaction
+     */
+    private class Changes implements TransactionSynchronization {
+
+        private final Set<Long> itemIds = new LinkedHashSet<>();
+
+        @Override
+        public void afterCommit() {
+            changed.addAll(itemIds);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(AvailabilityRefresher.this);
+        }
+
+    }
+
+}
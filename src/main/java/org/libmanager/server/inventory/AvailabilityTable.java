@@ -0,0 +1,208 @@
+package org.libmanager.server.inventory;
+
+/**
+ * The available copies of the items by id, in primitive arrays: the ids are spread over stripes, each stripe is an
+ * open addressing table guarded by its own lock, so that the checkouts of different items rarely wait for each other.
+ * <p>
+ * Each item has two counts: the available copies last committed to the database, and the copies taken in memory whose
+ * loan is not yet written (pending). A copy can be taken while the difference is positive. The ids must be positive.
+ * <p>
+ * The committed counts come with the version of their item (change_seq): the changes of concurrent transactions may be
+ * known out of order, a count older than the one known is ignored.
+ */
+class AvailabilityTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Stripe {
+
+        /** 0 for a free slot */
+        long[] ids;
+        int[] available;
+        int[] pending;
+        long[] versions;
+        int size;
+
+        Stripe(int capacity) {
+            ids = new long[capacity];
+            available = new int[capacity];
+            pending = new int[capacity];
+            versions = new long[capacity];
+        }
+
+    }
+
+    private final Stripe[] stripes;
+
+    /**
+     * @param stripeCount   The number of stripes, rounded up to a power of 2
+     * @param expectedSize  The expected number of items, the stripes grow beyond it
+     */
+    AvailabilityTable(int stripeCount, int expectedSize) {
+        stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1];
+        // Half full at the expected size
+        int perStripe = Math.max(1, 2 * expectedSize / stripes.length);
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(perStripe) << 1);
+        for (int i = 0; i < stripes.length; i++)
+            stripes[i] = new Stripe(capacity);
+    }
+
+    /**
+     * Set the available copies committed to the database, the copies pending are kept
+     * @param version   The version of the item, the count is ignored if an older one than the count known
+     * @return          False if the count was ignored
+     */
+    boolean put(long id, int available, long version) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            int slot = insert(stripe, id);
+            if (version < stripe.versions[slot])
+                return false;
+            stripe.available[slot] = available;
+            stripe.versions[slot] = version;
+            return true;
+        }
+    }
+
+    /**
+     * Set the available copies committed to the database, unless the item is already known
+     */
+    void putIfAbsent(long id, int available, long version) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            if (find(stripe, id) < 0) {
+                int slot = insert(stripe, id);
+                stripe.available[slot] = available;
+                stripe.versions[slot] = version;
+            }
+        }
+    }
+
+    boolean contains(long id) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            return find(stripe, id) >= 0;
+        }
+    }
+
+    /**
+     * Take a copy if one is left
+     * @return  False if the item has no copy left or is not known
+     */
+    boolean tryTake(long id) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            int slot = find(stripe, id);
+            if (slot < 0 || stripe.available[slot] - stripe.pending[slot] <= 0)
+                return false;
+            stripe.pending[slot]++;
+            return true;
+        }
+    }
+
+    /**
+     * Take a copy already given, e.g. by a loan read back from the journal, even if none is left
+     */
+    void take(long id) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            stripe.pending[insert(stripe, id)]++;
+        }
+    }
+
+    /**
+     * Forget copies taken: their loan was written to the database, or not given
+     */
+    void release(long id, int count) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            int slot = find(stripe, id);
+            if (slot >= 0)
+                stripe.pending[slot] -= count;
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripe(long id) {
+        return stripes[(int) mix(id) & (stripes.length - 1)];
+    }
+
+    /**
+     * @return  The slot of the id, -1 if it is not in the stripe
+     */
+    private static int find(Stripe stripe, long id) {
+        int mask = stripe.ids.length - 1;
+        // The low bits choose the stripe
+        for (int slot = (int) (mix(id) >>> 32) & mask; stripe.ids[slot] != 0; slot = (slot + 1) & mask) {
+            if (stripe.ids[slot] == id)
+                return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * @return  The slot of the id, added with no copy if it is not in the stripe
+     */
+    private static int insert(Stripe stripe, long id) {
+        if (id <= 0)
+            throw new IllegalArgumentException("Invalid item id " + id);
+        int found = find(stripe, id);
+        if (found >= 0)
+            return found;
+        if (2 * (stripe.size + 1) > stripe.ids.length)
+            grow(stripe);
+        int mask = stripe.ids.length - 1;
+        int slot = (int) (mix(id) >>> 32) & mask;
+        while (stripe.ids[slot] != 0)
+            slot = (slot + 1) & mask;
+        stripe.ids[slot] = id;
+        stripe.size++;
+        return slot;
+    }
+
+    private static void grow(Stripe stripe) {
+        long[] ids = stripe.ids;
+        int[] available = stripe.available;
+        int[] pending = stripe.pending;
+        long[] versions = stripe.versions;
+        stripe.ids = new long[ids.length * 2];
+        stripe.available = new int[ids.length * 2];
+        stripe.pending = new int[ids.length * 2];
+        stripe.versions = new long[ids.length * 2];
+        int mask = stripe.ids.length - 1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == 0)
+                continue;
+            int slot = (int) (mix(ids[i]) >>> 32) & mask;
+            while (stripe.ids[slot] != 0)
+                slot = (slot + 1) & mask;
+            stripe.ids[slot] = ids[i];
+            stripe.available[slot] = available[i];
+            stripe.pending[slot] = pending[i];
+            stripe.versions[slot] = versions[i];
+        }
+    }
+
+    /**
+     * The finalizer of MurmurHash3, the ids are consecutive
+     */
+    private static long mix(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.libmanager.server.inventory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves the barcodes scanned by the kiosks to their item and copy in memory, without reading the copy nor the item.
+ * <p>
+ * Filled with the barcodes read from the database, so it only holds committed copies. The barcode of a copy never
+ * changes, a deleted copy is removed from the index of this node: the other nodes may still resolve it, the copy is
+ * checked again when lent.
+ */
+@Component
+public class BarcodeIndex {
+
+    /** Maximum number of barcodes kept, the others are read from the database each time */
+    @Value("${libmanager.copies.barcode-index-size:1000000}")
+    private int maxEntries = 1_000_000;
+
+    private final Map<String, CopyRef> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The ids of a copy, of its item and of its branch
+     */
+    public static final class CopyRef {
+
+        private final long copyId;
+        private final long itemId;
+        private final String branchCode;
+        private final int copyNumber;
+
+        public CopyRef(long copyId, long itemId, String branchCode, int copyNumber) {
+            this.copyId = copyId;
+            this.itemId = itemId;
+            this.branchCode = branchCode;
+            this.copyNumber = copyNumber;
+        }
+
+        public long getCopyId() {
+            return copyId;
+        }
+
+        public long getItemId() {
+            return itemId;
+        }
+
+        public String getBranchCode() {
+            return branchCode;
+        }
+
+        public int getCopyNumber() {
+            return copyNumber;
+        }
+
+    }
+
+    /**
+     * @return  The copy labelled with this barcode, null if it is not in the index
+     */
+    public CopyRef get(String barcode) {
+        return entries.get(barcode);
+    }
+
+    public void put(String barcode, CopyRef ref) {
+        if (entries.size() < maxEntries)
+            entries.put(barcode, ref);
+    }
+
+    public void remove(String barcode) {
+        entries.remove(barcode);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+}
@@ -0,0 +1,7 @@
+package org.libmanager.server.repository;
+
+import org.libmanager.server.entity.Branch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface BranchRepository extends JpaRepository<Branch, String> {
+}
@@ -0,0 +1,80 @@
+package org.libmanager.server.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Item;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface BranchStockRepository extends JpaRepository<BranchStock, Long> {
+
+    /**
+     * Get the stocks of an item with their branch, to read its availability by branch
+     */
+    @Query("SELECT s FROM BranchStock s JOIN FETCH s.branch WHERE s.item = :item ORDER BY s.branch.code")
+    List<BranchStock> findByItemWithBranch(@Param("item") Item item);
+
+    /**
+     * Get the ids of the stocks of an item with copies on the shelf, without locking them (index
+     * uk_branch_stock_item_branch). In the order of the ids, the order they are locked in.
+     */
+    @Query("SELECT s.id FROM BranchStock s WHERE s.item = :item AND s.availableCopies > 0 ORDER BY s.id")
+    List<Long> findIdsWithStock(@Param("item") Item item);
+
+    boolean existsByItem(Item item);
+
+    /**
+     * Get the ids of the items of a list with stocks, without locking them
+     */
+    @Query("SELECT DISTINCT s.item.id FROM BranchStock s WHERE s.item.id IN :itemIds")
+    List<Long> findItemIdsWithStock(@Param("itemIds") Collection<Long> itemIds);
+
+    /**
+     * Get the ids of the items whose available copies are not the sums of the available copies of their stocks
+     */
+    @Query("SELECT i.id FROM BranchStock s JOIN s.item i GROUP BY i.id, i.availableCopies " +
+           "HAVING SUM(s.availableCopies) <> i.availableCopies ORDER BY i.id")
+    List<Long> findItemIdsOutOfSync(Pageable pageable);
+
+    /**
+     * Load a stock from the database and lock it until the end of the transaction, to change its available copies
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BranchStock s WHERE s.id = :id")
+    Optional<BranchStock> findByIdForUpdate(@Param("id") long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BranchStock s WHERE s.item = :item AND s.branch.code = :branchCode")
+    Optional<BranchStock> findByItemAndBranchForUpdate(@Param("item") Item item,
+                                                       @Param("branchCode") String branchCode);
+
+    /**
+     * Load and lock the stocks of several items, in the order of the items then of the ids so that two transactions
+     * never wait for each other
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BranchStock s WHERE s.item.id IN :itemIds ORDER BY s.item.id, s.id")
+    List<BranchStock> findAllByItemIdForUpdate(@Param("itemIds") Collection<Long> itemIds);
+
+    /**
+     * Load the stocks of several items under a shared lock, to read their last committed available copies
+     * @see #findAllByItemIdForUpdate
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT s FROM BranchStock s WHERE s.item.id IN :itemIds ORDER BY s.item.id, s.id")
+    List<BranchStock> findAllByItemIdForShare(@Param("itemIds") Collection<Long> itemIds);
+
+    @Modifying
+    @Query("DELETE FROM BranchStock s WHERE s.item = :item")
+    void deleteByItem(@Param("item") Item item);
+
+}
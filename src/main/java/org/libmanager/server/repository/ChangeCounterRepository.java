@@ -0,0 +1,82 @@
+package org.libmanager.server.repository;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads and updates the rows of change_counter, in the transaction of the caller
+ */
+@Repository
+public class ChangeCounterRepository {
+
+    /** The change sequence of the items */
+    public static final String ITEM_CHANGES = "item_changes";
+
+    /** The last position of the change sequence whose tombstones were purged */
+    public static final String PURGED_TOMBSTONES = "purged_item_tombstones";
+
+    /** The number of the last checkout of the availability journal written to the database */
+    public static final String APPLIED_CHECKOUTS = "applied_journal_checkouts";
+
+    /** The positions of the reservation journal */
+    public static final String RESERVATION_EVENTS = "reservation_events";
+
+    /** The last position of the reservation journal counted by reservation_snapshot */
+    public static final String SNAPSHOT_RESERVATION_EVENTS = "snapshot_reservation_events";
+
+    /** The last position of the reservation journal whose events were purged */
+    public static final String PURGED_RESERVATION_EVENTS = "purged_reservation_events";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Assign the next values of a counter. The row stays locked until the end of the transaction: the transactions
+     * assigning values commit in the order of their values.
+     * @param name  The name of the counter
+     * @param count The number of values
+     * @return      The last value, the values are the count values up to it
+     */
+    public long allocate(String name, int count) {
+        if (jdbcTemplate.update("UPDATE change_counter SET last_assigned = last_assigned + ? WHERE name = ?",
+                                count, name) == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO change_counter (name, last_assigned) VALUES (?, ?)", name, count);
+                return count;
+            } catch (DuplicateKeyException e) {
+                // Created by another transaction in the meantime
+                jdbcTemplate.update("UPDATE change_counter SET last_assigned = last_assigned + ? WHERE name = ?",
+                                    count, name);
+            }
+        }
+        return get(name);
+    }
+
+    /**
+     * @return  The last value of a counter, 0 if none was assigned
+     */
+    public long get(String name) {
+        List<Long> values = jdbcTemplate.queryForList("SELECT last_assigned FROM change_counter WHERE name = ?",
+                                                      Long.class, name);
+        return values.isEmpty() ? 0 : values.get(0);
+    }
+
+    /**
+     * Set a counter to a value, unless it is already higher
+     */
+    public void raise(String name, long value) {
+        if (jdbcTemplate.update("UPDATE change_counter SET last_assigned = GREATEST(last_assigned, ?) WHERE name = ?",
+                                value, name) == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO change_counter (name, last_assigned) VALUES (?, ?)", name, value);
+            } catch (DuplicateKeyException e) {
+                raise(name, value);
+            }
+        }
+    }
+
+}
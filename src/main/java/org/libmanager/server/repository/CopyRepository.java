@@ -0,0 +1,46 @@
+package org.libmanager.server.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.Copy;
+import org.libmanager.server.entity.Item;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CopyRepository extends JpaRepository<Copy, Long> {
+
+    /**
+     * Get the copies of an item (index uk_copy_item_number)
+     */
+    List<Copy> findByItemOrderByCopyNumber(Item item);
+
+    /**
+     * Get the copies of an item held by a branch (index uk_copy_item_number)
+     */
+    List<Copy> findByItemAndBranchOrderByCopyNumber(Item item, Branch branch);
+
+    /**
+     * Get the numbers of all the copies of an item, to number a new copy
+     */
+    @Query("SELECT c.copyNumber FROM Copy c WHERE c.item = :item")
+    List<Integer> findNumbers(@Param("item") Item item);
+
+    Optional<Copy> findByItemAndCopyNumber(Item item, int copyNumber);
+
+    Optional<Copy> findByBarcode(String barcode);
+
+    /**
+     * Get the numbers of the copies of an item held by a branch currently lent
+     */
+    @Query("SELECT c.copyNumber FROM Reservation r JOIN r.copy c WHERE r.item = :item AND c.branch = :branch")
+    List<Integer> findNumbersOnLoan(@Param("item") Item item, @Param("branch") Branch branch);
+
+    @Modifying
+    @Query("DELETE FROM Copy c WHERE c.item = :item")
+    void deleteByItem(@Param("item") Item item);
+
+}
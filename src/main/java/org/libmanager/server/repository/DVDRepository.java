@@ -1,9 +1,23 @@
 package org.libmanager.server.repository;
 
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
 import org.libmanager.server.entity.DVD;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface DVDRepository extends JpaRepository<DVD, Long>, JpaSpecificationExecutor<DVD> {
 
+    /**
+     * @see ItemRepository#findByIdForUpdate
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM DVD d WHERE d.id = :id")
+    Optional<DVD> findByIdForUpdate(@Param("id") long id);
+
 }
@@ -0,0 +1,28 @@
+package org.libmanager.server.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.libmanager.server.entity.Hold;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+
+    /**
+     * Get the first holds of the queue of an item (index uk_hold_item_ticket)
+     */
+    List<Hold> findByItemOrderByTicket(Item item, Pageable pageable);
+
+    Optional<Hold> findByItemAndUser(Item item, User user);
+
+    List<Hold> findByUserOrderByCreatedAt(User user);
+
+    /**
+     * Count the holds ahead of a ticket, on the range of the index uk_hold_item_ticket before it
+     */
+    long countByItemAndTicketLessThan(Item item, long ticket);
+
+}
@@ -1,12 +1,48 @@
 package org.libmanager.server.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
 import org.libmanager.server.entity.Item;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
 
     @Query("SELECT SUM(e.totalCopies) FROM Item e")
     Long sumTotalCopies();
 
+    /**
+     * Load an item from the database (never from the second-level cache) and lock it until the end of the transaction,
+     * to change its available copies
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Item i WHERE i.id = :id")
+    Optional<Item> findByIdForUpdate(@Param("id") long id);
+
+    /**
+     * Load and lock several items, in the order of their ids so that two transactions never wait for each other
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Item i WHERE i.id IN :ids ORDER BY i.id")
+    List<Item> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Get the items changed after a position of the change sequence (index idx_item_change_seq)
+     */
+    List<Item> findByChangeSeqGreaterThanOrderByChangeSeq(long changeSeq, Pageable pageable);
+
+    /**
+     * Get the ids, the available copies and the positions in the change sequence of the items after an id, without
+     * loading the items
+     */
+    @Query("SELECT i.id, i.availableCopies, i.changeSeq FROM Item i WHERE i.id > :after ORDER BY i.id")
+    List<Object[]> findAvailableCopiesAfter(@Param("after") long after, Pageable pageable);
+
 }
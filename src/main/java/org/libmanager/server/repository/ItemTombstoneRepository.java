@@ -0,0 +1,27 @@
+package org.libmanager.server.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.libmanager.server.entity.ItemTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ItemTombstoneRepository extends JpaRepository<ItemTombstone, Long> {
+
+    /**
+     * Get the deletions after a position of the change sequence (index idx_item_tombstone_change_seq)
+     */
+    List<ItemTombstone> findByChangeSeqGreaterThanOrderByChangeSeq(long changeSeq, Pageable pageable);
+
+    @Query("SELECT MAX(t.changeSeq) FROM ItemTombstone t WHERE t.deletedAt < :before")
+    Long findMaxChangeSeqDeletedBefore(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM ItemTombstone t WHERE t.changeSeq <= :changeSeq")
+    int deleteUpTo(@Param("changeSeq") long changeSeq);
+
+}
@@ -0,0 +1,20 @@
+package org.libmanager.server.repository;
+
+import java.time.LocalDateTime;
+
+import org.libmanager.server.entity.KioskEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface KioskEventRepository extends JpaRepository<KioskEvent, String> {
+
+    /**
+     * Forget the events processed before a date (index idx_kiosk_event_processed_at)
+     */
+    @Modifying
+    @Query("DELETE FROM KioskEvent e WHERE e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+
+}
@@ -0,0 +1,41 @@
+package org.libmanager.server.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Session;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Loads entities from a list of ids, e.g. the result of a cached search
+ */
+@Repository
+public class MultiLoadRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Load entities by id, through the second-level cache: only the missing ones are selected, in batches
+     * @param entityClass   The class of the entities
+     * @param ids           The ids
+     * @return              The entities found, in the order of the ids
+     */
+    public <T> List<T> findAllById(Class<T> entityClass, long[] ids) {
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids)
+            idList.add(id);
+        List<T> entities = entityManager.unwrap(Session.class)
+                                        .byMultipleIds(entityClass)
+                                        .enableOrderedReturn(true)
+                                        .multiLoad(idList);
+        // Deleted in the meantime
+        return entities.stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+}
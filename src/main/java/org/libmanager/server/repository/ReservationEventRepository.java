@@ -0,0 +1,32 @@
+package org.libmanager.server.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.libmanager.server.entity.ReservationEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ReservationEventRepository extends JpaRepository<ReservationEvent, Long> {
+
+    /**
+     * Get the events after a position of the journal (uk_reservation_event_seq)
+     */
+    List<ReservationEvent> findBySeqGreaterThanOrderBySeq(long seq, Pageable pageable);
+
+    /**
+     * Get the committed events not yet given a position, in the order of their ids
+     */
+    List<ReservationEvent> findBySeqIsNullOrderById(Pageable pageable);
+
+    @Query("SELECT MAX(e.seq) FROM ReservationEvent e WHERE e.occurredAt < :before")
+    Long findMaxSeqOccurredBefore(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM ReservationEvent e WHERE e.seq <= :seq")
+    int deleteUpTo(@Param("seq") long seq);
+
+}
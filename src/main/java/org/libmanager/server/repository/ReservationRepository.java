@@ -1,12 +1,51 @@
 package org.libmanager.server.repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 import org.libmanager.server.entity.Reservation;
 import org.libmanager.server.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ReservationRepository extends JpaRepository<Reservation, Long>, JpaSpecificationExecutor<Reservation> {
 
     Iterable<Reservation> findReservationsByUser(User user);
 
+    /**
+     * Get reservations with their item and their user, in one query
+     */
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.item JOIN FETCH r.user WHERE r.id IN :ids")
+    List<Reservation> findAllWithItemById(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Get reservations with their item, their user, their copy and their branch, in one query
+     */
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.item JOIN FETCH r.user LEFT JOIN FETCH r.copy "
+           + "LEFT JOIN FETCH r.branch WHERE r.id IN :ids")
+    List<Reservation> findAllWithItemAndCopyById(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Get the loan of a copy (index fk_reservation_copy)
+     */
+    @Query("SELECT r FROM Reservation r WHERE r.copy.id = :copyId")
+    Optional<Reservation> findByCopyId(@Param("copyId") long copyId);
+
+    /**
+     * Get the loans not overdue yet due between two days (index idx_reservation_overdue_due_date)
+     */
+    @Query("SELECT r.id FROM Reservation r WHERE r.overdue = false AND r.dueDate BETWEEN :from AND :to")
+    List<Long> findOpenIdsDueBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Get the loans not overdue yet due before a day (index idx_reservation_overdue_due_date)
+     */
+    @Query("SELECT r.id FROM Reservation r WHERE r.overdue = false AND r.dueDate < :before ORDER BY r.dueDate")
+    List<Long> findOpenIdsDueBefore(@Param("before") LocalDate before, Pageable pageable);
+
 }
@@ -0,0 +1,7 @@
+package org.libmanager.server.repository;
+
+import org.libmanager.server.entity.ReservationSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ReservationSnapshotRepository extends JpaRepository<ReservationSnapshot, Long> {
+}
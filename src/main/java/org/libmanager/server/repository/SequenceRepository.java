@@ -0,0 +1,41 @@
+package org.libmanager.server.repository;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Gives ids to the rows inserted with JDBC, from the same generators (and blocks) as the entities saved by Hibernate
+ */
+@Repository
+public class SequenceRepository {
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Allocate ids for an entity
+     * @param entityClass   The entity (the root of its hierarchy, e.g. Item)
+     * @param count         The number of ids
+     * @return              The ids, a sequence call is made only when the current block is exhausted
+     */
+    public long[] nextIds(Class<?> entityClass, int count) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        IdentifierGenerator generator = sessionFactory.getMetamodel().entityPersister(entityClass).getIdentifierGenerator();
+        long[] ids = new long[count];
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            for (int i = 0; i < count; i++)
+                ids[i] = ((Number) generator.generate((SharedSessionContractImplementor) session, null)).longValue();
+        } finally {
+            session.close();
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.libmanager.server.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.Transfer;
+import org.libmanager.server.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface TransferRepository extends JpaRepository<Transfer, Long> {
+
+    /**
+     * Get the next page of the queue, after the last transfer read (index idx_transfer_status_id)
+     */
+    @Query("SELECT t.id FROM Transfer t WHERE t.status = 'REQUESTED' AND t.id > :after ORDER BY t.id")
+    List<Long> findRequestedIdsAfter(@Param("after") long after, Pageable pageable);
+
+    /**
+     * Get the items of some transfers without loading the transfers, to lock the items before them
+     */
+    @Query("SELECT DISTINCT t.item.id FROM Transfer t WHERE t.id IN :ids")
+    List<Long> findItemIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Load and lock transfers after their items, in the order of the queue
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transfer t WHERE t.id IN :ids ORDER BY t.id")
+    List<Transfer> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transfer t WHERE t.id = :id")
+    Optional<Transfer> findByIdForUpdate(@Param("id") long id);
+
+    boolean existsByItemAndUser(Item item, User user);
+
+    List<Transfer> findByUserOrderByCreatedAt(User user);
+
+    /**
+     * Get the copies on their way, by source and destination branch
+     */
+    @Query("SELECT t FROM Transfer t JOIN FETCH t.item LEFT JOIN FETCH t.copy WHERE t.status = 'IN_TRANSIT' " +
+           "ORDER BY t.fromBranch.code, t.toBranch.code, t.id")
+    List<Transfer> findInTransit();
+
+}
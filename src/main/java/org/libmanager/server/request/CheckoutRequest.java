@@ -0,0 +1,25 @@
+package org.libmanager.server.request;
+
+/**
+ * A checkout of an item queued in a lane, committed with the other checkouts of the item queued at the same time
+ */
+public class CheckoutRequest {
+
+    private final String username;
+    /** The code of the branch lending the item, null for any branch with a copy on the shelf */
+    private final String branch;
+
+    public CheckoutRequest(String username, String branch) {
+        this.username = username;
+        this.branch = branch;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.libmanager.server.request;
+
+import java.util.List;
+
+/**
+ * The events recorded by a kiosk while offline, replayed by /reservation/kiosk/sync
+ */
+public class KioskBatch {
+
+    public enum Type {
+        CHECKOUT,
+        RETURN
+    }
+
+    public static class Event {
+
+        /** Unique id given by the kiosk, an event sent again is not applied twice */
+        private String id;
+        private Type type;
+        /** The user borrowing the copy, not used by the returns */
+        private String username;
+        private String barcode;
+        /** When the copy was scanned, in milliseconds since the epoch (kiosk clock) */
+        private long timestamp;
+
+        public Event(String id, Type type, String username, String barcode, long timestamp) {
+            this.id = id;
+            this.type = type;
+            this.username = username;
+            this.barcode = barcode;
+            this.timestamp = timestamp;
+        }
+
+        public Event() { }
+
+        public String getId() {
+            return id;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getBarcode() {
+            return barcode;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+    }
+
+    private String kioskId;
+    private List<Event> events;
+
+    public KioskBatch(String kioskId, List<Event> events) {
+        this.kioskId = kioskId;
+        this.events = events;
+    }
+
+    public KioskBatch() { }
+
+    public String getKioskId() {
+        return kioskId;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.libmanager.server.response;
+
+/**
+ * Used for the availability events pushed to the subscribers of /item/events
+ */
+public class AvailabilityUpdate {
+
+    private final long itemId;
+    private final String itemType;
+    private final String genre;
+    private final boolean status;
+    private final int availableCopies;
+    private final boolean deleted;
+    private final long changeSeq;
+
+    public AvailabilityUpdate(long itemId, String itemType, String genre, boolean status, int availableCopies,
+                              boolean deleted, long changeSeq) {
+        this.itemId = itemId;
+        this.itemType = itemType;
+        this.genre = genre;
+        this.status = status;
+        this.availableCopies = availableCopies;
+        this.deleted = deleted;
+        this.changeSeq = changeSeq;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public String getItemType() {
+        return itemType;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public boolean getStatus() {
+        return status;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    /**
+     * @return  True if the item was deleted, the client should forget it
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return  The version of the item, the position of the change in the change sequence of /item/changes
+     */
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.libmanager.server.response;
+
+/**
+ * Used for the copies of an item in a branch
+ */
+public class BranchAvailability {
+
+    private final String branch;
+    private final String name;
+    private final int totalCopies;
+    private final int availableCopies;
+
+    public BranchAvailability(String branch, String name, int totalCopies, int availableCopies) {
+        this.branch = branch;
+        this.name = name;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+    }
+
+    /**
+     * @return  The code of the branch
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.libmanager.server.response;
+
+/**
+ * Used for the statistics of a coalesced query
+ */
+public class CoalescingStatistics {
+
+    private final String query;
+    private final long executions;
+    private final long coalesced;
+
+    public CoalescingStatistics(String query, long executions, long coalesced) {
+        this.query = query;
+        this.executions = executions;
+        this.coalesced = coalesced;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return  The number of requests that ran the query
+     */
+    public long getExecutions() {
+        return executions;
+    }
+
+    /**
+     * @return  The number of requests that got the result of an identical request in flight
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return  The share of the requests that did not run the query, 0 if there was no request
+     */
+    public double getCoalescedRatio() {
+        return executions + coalesced == 0 ? 0 : (double) coalesced / (executions + coalesced);
+    }
+
+}
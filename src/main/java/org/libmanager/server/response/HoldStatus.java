@@ -0,0 +1,42 @@
+package org.libmanager.server.response;
+
+/**
+ * Used for the place of a user in the hold queue of an item
+ */
+public class HoldStatus {
+
+    private final long itemId;
+    private final String title;
+    private final long position;
+    private final int length;
+
+    public HoldStatus(long itemId, String title, long position, int length) {
+        this.itemId = itemId;
+        this.title = title;
+        this.position = position;
+        this.length = length;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return  The position of the hold in the queue, 1 for the next user to get a copy
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return  The number of holds in the queue
+     */
+    public int getLength() {
+        return length;
+    }
+
+}
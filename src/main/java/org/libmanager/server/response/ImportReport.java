@@ -0,0 +1,81 @@
+package org.libmanager.server.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Used for bulk import responses
+ */
+public class ImportReport {
+
+    /**
+     * The result of one row of the imported file
+     */
+    public static class Row {
+
+        private final long line;
+        private final Response.Code code;
+
+        public Row(long line, Response.Code code) {
+            this.line = line;
+            this.code = code;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public Response.Code getCode() {
+            return code;
+        }
+
+    }
+
+    /** Maximum number of rows detailed in the report */
+    private final int maxRows;
+
+    /** True if the imported rows are detailed too, false if only the rejected rows are */
+    private final boolean allRows;
+
+    private long read;
+    private long imported;
+    private long rejected;
+    private final List<Row> rows = new ArrayList<>();
+
+    public ImportReport(int maxRows, boolean allRows) {
+        this.maxRows = maxRows;
+        this.allRows = allRows;
+    }
+
+    /**
+     * Record the result of a row
+     * @param line  The line number of the row in the imported file
+     * @param code  OK if the row was imported, the reason of the rejection otherwise
+     */
+    public synchronized void add(long line, Response.Code code) {
+        read++;
+        if (code == Response.Code.OK)
+            imported++;
+        else
+            rejected++;
+        if ((allRows || code != Response.Code.OK) && rows.size() < maxRows)
+            rows.add(new Row(line, code));
+    }
+
+    public synchronized long getRead() {
+        return read;
+    }
+
+    public synchronized long getImported() {
+        return imported;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    public synchronized List<Row> getRows() {
+        return new ArrayList<>(rows);
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.libmanager.server.response;
+
+import org.libmanager.server.entity.Item;
+
+/**
+ * Used for a change of the delta synchronization: the item as it is now, or its deletion
+ */
+public class ItemChange {
+
+    private final long seq;
+    private final long itemId;
+    private final String itemType;
+    private final boolean deleted;
+    private final Item item;
+
+    public ItemChange(long seq, long itemId, String itemType, boolean deleted, Item item) {
+        this.seq = seq;
+        this.itemId = itemId;
+        this.itemType = itemType;
+        this.deleted = deleted;
+        this.item = item;
+    }
+
+    /**
+     * @return  The position of the change in the change sequence
+     */
+    public long getSeq() {
+        return seq;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public String getItemType() {
+        return itemType;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return  The item, null if it was deleted
+     */
+    public Item getItem() {
+        return item;
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.libmanager.server.response;
+
+import java.util.List;
+
+/**
+ * Used for a page of the delta synchronization
+ */
+public class ItemChanges {
+
+    private final List<ItemChange> changes;
+    private final long next;
+    private final boolean more;
+
+    public ItemChanges(List<ItemChange> changes, long next, boolean more) {
+        this.changes = changes;
+        this.next = next;
+        this.more = more;
+    }
+
+    /**
+     * @return  The changes of the page, in the order of the change sequence
+     */
+    public List<ItemChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return  The position to ask the next changes from
+     */
+    public long getNext() {
+        return next;
+    }
+
+    /**
+     * @return  True if there are more changes after this page
+     */
+    public boolean isMore() {
+        return more;
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.libmanager.server.response;
+
+/**
+ * Used for the outcome of each event of a kiosk batch (/reservation/kiosk/sync)
+ */
+public class KioskEventResult {
+
+    private final String eventId;
+    private final Response.Code code;
+    private final boolean replayed;
+
+    public KioskEventResult(String eventId, Response.Code code, boolean replayed) {
+        this.eventId = eventId;
+        this.code = code;
+        this.replayed = replayed;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public Response.Code getCode() {
+        return code;
+    }
+
+    /**
+     * @return  True if the event was already applied, the code is its first outcome
+     */
+    public boolean isReplayed() {
+        return replayed;
+    }
+
+}
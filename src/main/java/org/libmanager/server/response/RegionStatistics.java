@@ -0,0 +1,52 @@
+package org.libmanager.server.response;
+
+/**
+ * Used for the statistics of a cache region
+ */
+public class RegionStatistics {
+
+    private final String region;
+    private final long hits;
+    private final long misses;
+    private final long puts;
+    private final long entries;
+
+    public RegionStatistics(String region, long hits, long misses, long puts, long entries) {
+        this.region = region;
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.entries = entries;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getPuts() {
+        return puts;
+    }
+
+    /**
+     * @return  The number of entities in the region, -1 if unknown
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return  The share of the lookups found in the region, 0 if there was no lookup
+     */
+    public double getHitRatio() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.libmanager.server.response;
+
+import java.util.List;
+
+import org.libmanager.server.entity.ReservationEvent;
+
+/**
+ * Used for a page of the reservation journal
+ */
+public class ReservationEvents {
+
+    private final List<ReservationEvent> events;
+    private final long next;
+    private final boolean more;
+
+    public ReservationEvents(List<ReservationEvent> events, long next, boolean more) {
+        this.events = events;
+        this.next = next;
+        this.more = more;
+    }
+
+    /**
+     * @return  The events of the page, in the order of the journal
+     */
+    public List<ReservationEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return  The position to ask the next events from
+     */
+    public long getNext() {
+        return next;
+    }
+
+    /**
+     * @return  True if there are more events after this page
+     */
+    public boolean isMore() {
+        return more;
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.libmanager.server.response;
+
+import java.time.LocalDate;
+
+/**
+ * Used for the result of each reservation of a batch (/reservation/return_batch, /reservation/renew_batch)
+ */
+public class ReservationResult {
+
+    private final long reservationId;
+    private final Response.Code code;
+    private final LocalDate dueDate;
+
+    public ReservationResult(long reservationId, Response.Code code, LocalDate dueDate) {
+        this.reservationId = reservationId;
+        this.code = code;
+        this.dueDate = dueDate;
+    }
+
+    public long getReservationId() {
+        return reservationId;
+    }
+
+    public Response.Code getCode() {
+        return code;
+    }
+
+    /**
+     * @return  The due date of a renewed loan, null otherwise
+     */
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+}
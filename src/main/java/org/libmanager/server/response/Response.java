@@ -15,7 +15,13 @@ public class Response<T> {
         MAX_USERS_REACHED,
         MAX_RESERVATIONS_REACHED,
         INTEGRITY_VIOLATION,
-        FORBIDDEN
+        FORBIDDEN,
+        INVALID_DATA,
+        ALREADY_EXISTS,
+        SYNC_EXPIRED,
+        AVAILABLE,
+        MAX_RENEWALS_REACHED,
+        TRY_AGAIN
     }
 
     private Code code;
@@ -0,0 +1,32 @@
+package org.libmanager.server.response;
+
+import java.util.List;
+
+/**
+ * Used for the copies on their way from a branch to another, to be packed and unpacked together
+ */
+public class Shipment {
+
+    private final String fromBranch;
+    private final String toBranch;
+    private final List<TransferStatus> transfers;
+
+    public Shipment(String fromBranch, String toBranch, List<TransferStatus> transfers) {
+        this.fromBranch = fromBranch;
+        this.toBranch = toBranch;
+        this.transfers = transfers;
+    }
+
+    public String getFromBranch() {
+        return fromBranch;
+    }
+
+    public String getToBranch() {
+        return toBranch;
+    }
+
+    public List<TransferStatus> getTransfers() {
+        return transfers;
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.libmanager.server.response;
+
+import org.libmanager.server.entity.Transfer;
+
+/**
+ * Used for a transfer of a copy between two branches
+ */
+public class TransferStatus {
+
+    private final long id;
+    private final long itemId;
+    private final String title;
+    private final String username;
+    private final String fromBranch;
+    private final String toBranch;
+    private final String barcode;
+    private final Transfer.Status status;
+
+    public TransferStatus(long id, long itemId, String title, String username, String fromBranch, String toBranch,
+                          String barcode, Transfer.Status status) {
+        this.id = id;
+        this.itemId = itemId;
+        this.title = title;
+        this.username = username;
+        this.fromBranch = fromBranch;
+        this.toBranch = toBranch;
+        this.barcode = barcode;
+        this.status = status;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return  The code of the branch shipping the copy, null until shipped
+     */
+    public String getFromBranch() {
+        return fromBranch;
+    }
+
+    public String getToBranch() {
+        return toBranch;
+    }
+
+    /**
+     * @return  The barcode of the shipped copy, null until shipped
+     */
+    public String getBarcode() {
+        return barcode;
+    }
+
+    public Transfer.Status getStatus() {
+        return status;
+    }
+
+}
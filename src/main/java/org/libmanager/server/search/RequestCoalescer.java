@@ -0,0 +1,137 @@
+package org.libmanager.server.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.libmanager.server.config.ReplicaRoutingDataSource;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.libmanager.server.response.CoalescingStatistics;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Shares one execution between the identical requests running at the same time (single flight).
+ * <p>
+ * The first request of a key runs the query, the requests arriving with the same key while it runs wait for it and
+ * get the same result (or exception). Nothing is kept once the query is done, the next request runs it again. The
+ * shared results must therefore only be read.
+ * <p>
+ * A request never joins a query started before the last committed change of an item, so that it sees the changes
+ * committed before it arrived (e.g. its own). A request reading on the primary never joins a query reading on a
+ * replica.
+ */
+@Component
+public class RequestCoalescer {
+
+    private final ConcurrentMap<FlightKey, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /** Bumped by each committed change of an item, part of the key of the flights */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Run a query, or wait for the identical query in flight
+     * @param name      The name of the query, e.g. book.search
+     * @param key       The parameters of the query, must implement equals and hashCode
+     * @param query     The query
+     * @return          The result of the query
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Object key, Supplier<T> query) {
+        Counters queryCounters = counters.computeIfAbsent(name, n -> new Counters());
+        FlightKey flightKey = new FlightKey(name, key, generation.get(), ReplicaRoutingDataSource.isPrimaryRead());
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = flights.putIfAbsent(flightKey, flight);
+        if (inFlight != null) {
+            queryCounters.coalesced.increment();
+            try {
+                return (T) inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw e;
+            }
+        }
+
+        queryCounters.executions.increment();
+        try {
+            T result = query.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(flightKey, flight);
+        }
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChange(ItemChangeEvent event) {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return  The number of executed and coalesced requests of each query since the start, by name
+     */
+    public List<CoalescingStatistics> getStatistics() {
+        List<CoalescingStatistics> statistics = new ArrayList<>();
+        new TreeMap<>(counters).forEach((name, queryCounters) -> statistics.add(
+                new CoalescingStatistics(name, queryCounters.executions.sum(), queryCounters.coalesced.sum())));
+        return statistics;
+    }
+
+    private static final class Counters {
+
+        final LongAdder executions = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+
+    }
+
+    private static final class FlightKey {
+
+        private final String name;
+        private final Object key;
+        private final long generation;
+        private final boolean primary;
+
+        FlightKey(String name, Object key, long generation, boolean primary) {
+            this.name = name;
+            this.key = key;
+            this.generation = generation;
+            this.primary = primary;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof FlightKey))
+                return false;
+            FlightKey other = (FlightKey) o;
+            return name.equals(other.name) && Objects.equals(key, other.key) && generation == other.generation &&
+                   primary == other.primary;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, key, generation, primary);
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+package org.libmanager.server.search;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.libmanager.server.event.ItemChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Keeps the ids of the items found by the recent searches, by normalized query.
+ * <p>
+ * Any added, edited or deleted item bumps the catalog generation, which drops every entry. A checkout or a return
+ * only changes the status of one item: the entries filtering on the status are patched instead. The item is removed
+ * from the entries it no longer matches, and the entries it may now match are dropped, as the other criteria can only
+ * be checked by the database.
+ * <p>
+ * A search reads the generation before querying the database and its result is only stored if nothing changed in
+ * between, so a result read before a commit is never cached after it. A replica may not have a change yet: the searches
+ * run right after a change, within the maximum lag of the replicas, read the primary.
+ * <p>
+ * The changes committed by the other nodes are not seen: an entry is only kept for a short time (TTL), which bounds how
+ * long they are missed.
+ */
+@Component
+public class SearchCache {
+
+    /** Maximum number of cached searches, 0 disables the cache */
+    @Value("${libmanager.search-cache.max-entries:10000}")
+    private int maxEntries = 10_000;
+
+    /** Time in milliseconds a search is cached, the changes of the other nodes are missed for up to this time */
+    @Value("${libmanager.search-cache.ttl:5000}")
+    private long ttl = 5_000;
+
+    /** A replica may be behind the primary for up to this time, the searches after a change read the primary */
+    @Value("${libmanager.replication.max-lag:5s}")
+    private Duration maxReplicaLag = Duration.ofSeconds(5);
+
+    private final Map<SearchQuery, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SearchQuery, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /** Bumped when items are added, edited or deleted */
+    private long generation;
+
+    /** Bumped when the status of an item changes, only matters to the searches filtering on the status */
+    private long availabilityVersion;
+
+    /** Time of the last change committed by this node */
+    private long lastChange = Long.MIN_VALUE;
+
+    private static final class Entry {
+
+        private final long[] ids;
+        private final long cachedAt;
+
+        Entry(long[] ids, long cachedAt) {
+            this.ids = ids;
+            this.cachedAt = cachedAt;
+        }
+
+    }
+
+    /**
+     * The state of the cache before a search, to pass to {@link #put}
+     */
+    public static final class Snapshot {
+
+        private final long generation;
+        private final long availabilityVersion;
+        private final boolean readOnPrimary;
+
+        private Snapshot(long generation, long availabilityVersion, boolean readOnPrimary) {
+            this.generation = generation;
+            this.availabilityVersion = availabilityVersion;
+            this.readOnPrimary = readOnPrimary;
+        }
+
+        /**
+         * @return  True if the catalog changed too recently for the replicas, the search must read the primary
+         */
+        public boolean isReadOnPrimary() {
+            return readOnPrimary;
+        }
+
+    }
+
+    /**
+     * @return  The ids found by this search, in the order of the database, or null if they are not cached
+     */
+    public synchronized long[] get(SearchQuery query) {
+        Entry entry = entries.get(query);
+        if (entry == null)
+            return null;
+        if (System.currentTimeMillis() - entry.cachedAt > ttl) {
+            entries.remove(query);
+            return null;
+        }
+        return entry.ids;
+    }
+
+    /**
+     * Take a snapshot before querying the database
+     */
+    public synchronized Snapshot snapshot() {
+        boolean recentChange = lastChange != Long.MIN_VALUE &&
+                               System.currentTimeMillis() - lastChange <= maxReplicaLag.toMillis();
+        return new Snapshot(generation, availabilityVersion, recentChange);
+    }
+
+    /**
+     * Cache the result of a search
+     * @param query     The normalized query
+     * @param snapshot  The snapshot taken before querying the database
+     * @param ids       The ids of the items found
+     */
+    public synchronized void put(SearchQuery query, Snapshot snapshot, long[] ids) {
+        if (maxEntries <= 0 || snapshot.generation != generation)
+            return;
+        if (query.getStatus() != null && snapshot.availabilityVersion != availabilityVersion)
+            return;
+        entries.put(query, new Entry(ids, System.currentTimeMillis()));
+    }
+
+    /**
+     * Invalidate or patch the entries once the change is committed (or right away if there is no transaction)
+     */
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onItemChange(ItemChangeEvent event) {
+        if (event.getKind() == ItemChangeEvent.Kind.CATALOG) {
+            generation++;
+            lastChange = System.currentTimeMillis();
+            entries.clear();
+            return;
+        }
+        // The entries only hold ids, the copies of the items are read when the result is returned
+        if (!event.isStatusChanged())
+            return;
+
+        availabilityVersion++;
+        lastChange = System.currentTimeMillis();
+        long itemId = event.getItemId();
+        Iterator<Map.Entry<SearchQuery, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<SearchQuery, Entry> entry = iterator.next();
+            SearchQuery query = entry.getKey();
+            if (query.getStatus() == null || !query.getItemType().equals(event.getItemType()))
+                continue;
+            long[] ids = entry.getValue().ids;
+            int index = indexOf(ids, itemId);
+            if (query.getStatus() != event.getStatus()) {
+                // The entries are shared with the searches in progress, the patched ids are a copy
+                if (index >= 0)
+                    entry.setValue(new Entry(remove(ids, index), entry.getValue().cachedAt));
+            } else if (index < 0)
+                iterator.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static int indexOf(long[] ids, long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id)
+                return i;
+        }
+        return -1;
+    }
+
+    private static long[] remove(long[] ids, int index) {
+        long[] patched = Arrays.copyOf(ids, ids.length - 1);
+        System.arraycopy(ids, index + 1, patched, index, ids.length - index - 1);
+        return patched;
+    }
+
+}
@@ -0,0 +1,142 @@
+package org.libmanager.server.search;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.libmanager.server.util.DateUtil;
+
+/**
+ * The normalized criteria of an item search, used as the key of the {@link SearchCache}.
+ * <p>
+ * The values are trimmed and case-folded, and the absent criteria ("null" or blank) are left out, so that the
+ * searches returning the same items share the same key.
+ */
+public final class SearchQuery {
+
+    /** The value the specifications take for an absent criterion */
+    public static final String ABSENT = "null";
+
+    private final String itemType;
+    private final Map<String, String> criteria;
+
+    private SearchQuery(String itemType, Map<String, String> criteria) {
+        this.itemType = itemType;
+        this.criteria = Collections.unmodifiableMap(criteria);
+    }
+
+    /**
+     * @param itemType  BOOK or DVD
+     */
+    public static Builder of(String itemType) {
+        return new Builder(itemType);
+    }
+
+    public String getItemType() {
+        return itemType;
+    }
+
+    /**
+     * @param name  The name of the criterion
+     * @return      The normalized value, or {@link #ABSENT} if the criterion is absent
+     */
+    public String get(String name) {
+        return criteria.getOrDefault(name, ABSENT);
+    }
+
+    /**
+     * @return  The status the items must have, null if the query does not filter on it
+     */
+    public Boolean getStatus() {
+        String status = criteria.get("status");
+        return status == null ? null : status.equals("1");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof SearchQuery))
+            return false;
+        SearchQuery other = (SearchQuery) o;
+        return itemType.equals(other.itemType) && criteria.equals(other.criteria);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(itemType, criteria);
+    }
+
+    @Override
+    public String toString() {
+        return itemType + criteria;
+    }
+
+    public static class Builder {
+
+        private final String itemType;
+        // Sorted so that the key does not depend on the order of the criteria
+        private final Map<String, String> criteria = new TreeMap<>();
+
+        private Builder(String itemType) {
+            this.itemType = itemType;
+        }
+
+        /**
+         * A criterion matched as a substring, without case
+         */
+        public Builder text(String name, String value) {
+            value = normalize(value);
+            if (value != null)
+                criteria.put(name, value.toLowerCase(Locale.ROOT));
+            return this;
+        }
+
+        /**
+         * A criterion matched exactly, the catalog stores these values in upper case (e.g. the genre)
+         */
+        public Builder keyword(String name, String value) {
+            value = normalize(value);
+            if (value != null)
+                criteria.put(name, value.toUpperCase(Locale.ROOT));
+            return this;
+        }
+
+        /**
+         * A date in the database format, an invalid date is ignored like the specifications do
+         */
+        public Builder date(String name, String value) {
+            value = normalize(value);
+            LocalDate date = value == null ? null : DateUtil.parseDB(value);
+            if (date != null)
+                criteria.put(name, DateUtil.formatDB(date));
+            return this;
+        }
+
+        /**
+         * The status, "0" for the unavailable items and any other value for the available ones
+         */
+        public Builder status(String value) {
+            value = normalize(value);
+            if (value != null)
+                criteria.put("status", value.equals("0") ? "0" : "1");
+            return this;
+        }
+
+        public SearchQuery build() {
+            return new SearchQuery(itemType, criteria);
+        }
+
+        private static String normalize(String value) {
+            if (value == null)
+                return null;
+            value = value.trim();
+            return value.isEmpty() || value.equals(ABSENT) ? null : value;
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.libmanager.server.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Copy;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.inventory.BarcodeIndex;
+
+/**
+ * The physical copies of the items and their stock in each branch. The stocks are locked before their item: the stocks
+ * passed to these methods must be locked by the transaction, as the items passed to {@link #syncCopies(Item)} and
+ * {@link #deleteCopies(Item)}.
+ */
+public interface CopyService {
+
+    /**
+     * Lock the stocks of several items, before locking the items
+     * @param itemIds   The ids of the items
+     * @return          The stocks of the items, the items without stock yet have none
+     */
+    List<BranchStock> lockStocks(Collection<Long> itemIds);
+
+    /**
+     * Create the stock of the default branch of the items without stock, from the counters of the items, before their
+     * stocks are locked by the transaction. The stocks are created by their own transactions, the items are not locked.
+     * @param items The items, loaded without lock
+     */
+    void initStocks(Collection<? extends Item> items);
+
+    /**
+     * Lock a stock of an item with copies on the shelf, without locking the stocks of the other branches
+     * @param item          The item to lend, not locked
+     * @param branchCode    The code of the branch lending the item, null for any branch
+     * @return              The stock, null if the branch has no copy on the shelf
+     */
+    BranchStock lockAvailableStock(Item item, String branchCode);
+
+    /**
+     * Lock the stock of an item in a branch, to return a copy
+     * @param item      The item returned
+     * @param branch    The branch which lent the item, null for the default branch
+     * @return          The stock
+     */
+    BranchStock lockStock(Item item, Branch branch);
+
+    /**
+     * Lock an item after its stocks and read it again, to change its holds
+     * @param item  The item, loaded without lock
+     */
+    void lockItem(Item item);
+
+    /**
+     * Lock an item after its stocks if it has holds, to promote them. Unless the item loaded already has holds, they
+     * are counted again under a shared lock: a hold queued before the stocks were locked is seen.
+     * @param item  The item, loaded without lock
+     * @return      True if the item has holds, it is then locked and read again
+     */
+    boolean lockHeldItem(Item item);
+
+    /**
+     * Get the stocks of an item, for its availability by branch
+     * @param item  The item
+     * @return      The stocks with their branch, by branch code
+     */
+    List<BranchStock> getStocks(Item item);
+
+    /**
+     * Create or delete copies to match the total copies of an item, the new copies go to the default branch and the
+     * deleted copies are taken from the shelves, the default branch first
+     * @param item  The item, added or edited
+     */
+    void syncCopies(Item item);
+
+    /**
+     * Take a copy from the shelf of a branch, the available copies of the stock are decremented
+     * @param stock The stock of the branch lending the item, with available copies
+     * @return      The copy with the lowest number on the shelf, null if the copies are not known
+     */
+    Copy checkOut(BranchStock stock);
+
+    /**
+     * Take a given copy from the shelf of a branch, the available copies of the stock are decremented
+     * @param stock The stock of the branch of the copy
+     * @param ref   The copy, from {@link #resolve(String)}
+     * @return      The copy, null if it is not on the shelf or no longer exists
+     */
+    Copy checkOut(BranchStock stock, BarcodeIndex.CopyRef ref);
+
+    /**
+     * Put a returned copy back on the shelf of a branch, the available copies of the stock are incremented
+     * @param stock The stock of the branch which lent the copy
+     * @param copy  The copy returned, null for a loan older than the copies
+     */
+    void checkIn(BranchStock stock, Copy copy);
+
+    /**
+     * Move a copy off the shelves to another branch, brought by a transfer
+     * @param from  The stock of the branch shipping the copy
+     * @param copy  The copy, null if the copies of the branch were not known when shipped
+     * @param to    The branch receiving the copy
+     * @return      The stock of the item in the receiving branch, locked and created if needed
+     */
+    BranchStock moveCopy(BranchStock from, Copy copy, Branch to);
+
+    /**
+     * Find the copy labelled with a barcode, in memory when possible
+     * @param barcode   The scanned barcode
+     * @return          The copy, its item and its branch, null if no copy has this barcode
+     */
+    BarcodeIndex.CopyRef resolve(String barcode);
+
+    /**
+     * Delete the copies and the stocks of an item, before the item
+     */
+    void deleteCopies(Item item);
+
+}
@@ -0,0 +1,42 @@
+package org.libmanager.server.service;
+
+import java.io.InputStream;
+
+import org.libmanager.server.response.ImportReport;
+import org.libmanager.server.response.Response;
+
+public interface ImportService {
+
+    /**
+     * Import books.
+     * A CSV file starts with a header naming the columns: title, author, publisher, genre, isbn, releaseDate and
+     * totalCopies. A NDJSON file has one JSON object with these fields per line.
+     * @param input     The file to import
+     * @param format    The format of the file: "csv" or "ndjson"
+     * @return          A response with OK code and the report of the import, INVALID_DATA and the partial report if the
+     *                  file can't be read
+     */
+    Response<ImportReport> importBooks(InputStream input, String format);
+
+    /**
+     * Import DVDs.
+     * A CSV file starts with a header naming the columns: title, director, duration, genre, releaseDate and
+     * totalCopies. A NDJSON file has one JSON object with these fields per line.
+     * @param input     The file to import
+     * @param format    The format of the file: "csv" or "ndjson"
+     * @return          A response with OK code and the report of the import, INVALID_DATA and the partial report if the
+     *                  file can't be read
+     */
+    Response<ImportReport> importDVDs(InputStream input, String format);
+
+    /**
+     * Import users.
+     * The CSV file starts with a header naming the columns: username, firstName, lastName, address, email, birthday
+     * and password. Each row is reported, with OK if the user was added or the reason of the rejection.
+     * @param input The file to import
+     * @return      A response with OK code and the report of the import, INVALID_DATA and the partial report if the
+     *              file can't be read
+     */
+    Response<ImportReport> importUsers(InputStream input);
+
+}
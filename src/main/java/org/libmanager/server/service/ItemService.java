@@ -1,5 +1,10 @@
 package org.libmanager.server.service;
 
+import java.util.List;
+
+import org.libmanager.server.response.BranchAvailability;
+import org.libmanager.server.response.Response;
+
 public interface ItemService {
 
     /**
@@ -9,4 +14,11 @@ public interface ItemService {
      */
     boolean delete(long id);
 
+    /**
+     * Get the copies of an item in each branch, the totals of the branches are the copies of the item
+     * @param id    The id of the item
+     * @return      A JSON response with OK code and the copies by branch, NOT_FOUND if the item does not exist
+     */
+    Response<List<BranchAvailability>> getAvailability(long id);
+
 }
@@ -0,0 +1,21 @@
+package org.libmanager.server.service;
+
+import java.util.List;
+
+import org.libmanager.server.response.KioskEventResult;
+import org.libmanager.server.response.Response;
+
+public interface KioskService {
+
+    /**
+     * Replay the checkouts and returns recorded by a kiosk while offline, in the order of the kiosk clock. Each event
+     * is applied as a scan at a connected kiosk, its outcome is kept so that a batch sent again is not applied twice.
+     * @param payload   The batch, a JSON {@link org.libmanager.server.request.KioskBatch}
+     * @param signature The HMAC-SHA256 of the payload with the kiosk secret, in hexadecimal
+     * @return          A JSON response with OK code and the outcome of each event in the order of the batch
+     *                  (SYNC_EXPIRED for an event scanned before the retention of the outcomes), INVALID_TOKEN if the
+     *                  signature does not match, INVALID_DATA if the batch cannot be read or is too large
+     */
+    Response<List<KioskEventResult>> sync(String payload, String signature);
+
+}
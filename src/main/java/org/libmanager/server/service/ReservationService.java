@@ -1,6 +1,15 @@
 package org.libmanager.server.service;
 
+import java.util.List;
+
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Copy;
+import org.libmanager.server.entity.Item;
 import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.request.CheckoutRequest;
+import org.libmanager.server.response.HoldStatus;
+import org.libmanager.server.response.ReservationResult;
 import org.libmanager.server.response.Response;
 
 public interface ReservationService {
@@ -9,9 +18,50 @@ public interface ReservationService {
      * Add a reservation
      * @param username  The user who wants to borrow an item
      * @param itemId    The id of the item the user wants to borrow
+     * @param branch    The code of the branch lending the item, null for any branch with a copy on the shelf
      * @return          A JSON response with true if the reservation was successfully created, the error and false otherwise
      */
-    Response<Boolean> add(String username, long itemId);
+    Response<Boolean> add(String username, long itemId, String branch);
+
+    /**
+     * Add the reservations of an item requested at the same time, in one transaction: the stocks and the item are
+     * locked once and the copies are given in the order of the requests, while some are left on the shelf
+     * @param itemId    The id of the item
+     * @param requests  The users who want to borrow the item and the branches lending it
+     * @return          The response of each request, in the same order, as returned by {@link #add(String, long,
+     *                  String)}
+     */
+    List<Response<Boolean>> addAll(long itemId, List<CheckoutRequest> requests);
+
+    /**
+     * Lend the copy labelled with a barcode, scanned at a kiosk
+     * @param username  The user who wants to borrow the copy
+     * @param barcode   The barcode of the copy
+     * @return          A JSON response with true if the reservation was successfully created, NOT_AVAILABLE if the
+     *                  copy is not on the shelf, MAX_RESERVATIONS_REACHED, NOT_FOUND and false otherwise
+     */
+    Response<Boolean> checkout(String username, String barcode);
+
+    /**
+     * Lend a copy set aside for a user, brought by a transfer. The available copies were already decremented, the
+     * stock and the item must be locked by the transaction.
+     * @param user  The user who asked for the copy
+     * @param item  The item
+     * @param stock The stock of the branch lending the copy
+     * @param copy  The copy, null if not known
+     * @return      A JSON response with true if the reservation was created, MAX_RESERVATIONS_REACHED and false if the
+     *              user can no longer borrow the item
+     */
+    Response<Boolean> lendReserved(User user, Item item, BranchStock stock, Copy copy);
+
+    /**
+     * Check if a user can borrow an item, counting loans not yet in the database
+     * @param user          The user who wants to borrow an item
+     * @param item          The item the user wants to borrow
+     * @param pendingLoans  The items already lent to the user whose reservation is not yet created
+     * @return              True if the user can borrow the item, false otherwise
+     */
+    boolean checkReservationLimits(User user, Item item, List<Item> pendingLoans);
 
     /**
      * Delete a reservation
@@ -20,6 +70,60 @@ public interface ReservationService {
      */
     Response<Boolean> delete(long id);
 
+    /**
+     * Return the copy scanned at a kiosk
+     * @param barcode   The barcode of the copy
+     * @return          A JSON response with true if the loan of the copy was deleted, NOT_FOUND and false if the copy
+     *                  is not lent
+     */
+    Response<Boolean> returnCopy(String barcode);
+
+    /**
+     * Delete several reservations at once (items returned), in one transaction
+     * @param ids   The ids of the reservations, at most 100
+     * @return      A JSON response with OK code and the result of each reservation (OK or NOT_FOUND), INVALID_DATA if
+     *              there are no ids or too many
+     */
+    Response<List<ReservationResult>> returnBatch(List<Long> ids);
+
+    /**
+     * Push back the due date of several loans at once, in one transaction
+     * @param username  The user who borrowed the items, null to renew the loans of any user
+     * @param ids       The ids of the reservations, at most 100
+     * @return          A JSON response with OK code and the result of each reservation: OK and its new due date,
+     *                  NOT_FOUND, INSUFFICIENT_PERMISSIONS if borrowed by another user, FORBIDDEN if overdue,
+     *                  NOT_AVAILABLE if other users wait for the item, MAX_RENEWALS_REACHED. INVALID_DATA if there are
+     *                  no ids or too many
+     */
+    Response<List<ReservationResult>> renewBatch(String username, List<Long> ids);
+
+    /**
+     * Wait for a copy of an unavailable item: the copies returned are reserved for the holds of the item in the order
+     * they were placed, skipping the users who cannot borrow the item at that time
+     * @param username  The user who wants to borrow the item
+     * @param itemId    The id of the item
+     * @return          A JSON response with OK code and the place of the hold in the queue, AVAILABLE if a copy can be
+     *                  reserved now, ALREADY_EXISTS if the user already has the item or a hold on it, NOT_FOUND if the
+     *                  user or the item does not exist
+     */
+    Response<HoldStatus> addHold(String username, long itemId);
+
+    /**
+     * Leave the hold queue of an item
+     * @param username  The user who placed the hold
+     * @param itemId    The id of the item
+     * @return          A JSON response with true if the hold was deleted, NOT_FOUND and false otherwise
+     */
+    Response<Boolean> deleteHold(String username, long itemId);
+
+    /**
+     * Get the holds of a user
+     * @param username  The username of the user
+     * @return          A JSON response with OK code and the place of each hold in its queue, NOT_FOUND if the user
+     *                  does not exist
+     */
+    Response<List<HoldStatus>> getHolds(String username);
+
     /**
      * Get all reservations
      * @return  All reservations in the database
@@ -0,0 +1,22 @@
+package org.libmanager.server.service;
+
+import java.util.List;
+
+import org.libmanager.server.response.CoalescingStatistics;
+import org.libmanager.server.response.RegionStatistics;
+
+public interface StatisticsService {
+
+    /**
+     * Get the statistics of the second-level cache regions
+     * @return  The hit, miss and put counts of each region since the start, empty if the cache is disabled
+     */
+    List<RegionStatistics> getCacheStatistics();
+
+    /**
+     * Get the statistics of the coalesced catalog queries
+     * @return  The number of executed and coalesced requests of each query since the start
+     */
+    List<CoalescingStatistics> getCoalescingStatistics();
+
+}
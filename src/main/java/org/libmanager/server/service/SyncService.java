@@ -0,0 +1,27 @@
+package org.libmanager.server.service;
+
+import org.libmanager.server.response.ItemChanges;
+import org.libmanager.server.response.ReservationEvents;
+import org.libmanager.server.response.Response;
+
+public interface SyncService {
+
+    /**
+     * Get the items added, edited or deleted after a position of the change sequence
+     * @param since The position of the last change the client has, 0 to get the whole catalog
+     * @param limit The maximum number of changes, capped by libmanager.sync.page-size
+     * @return      A response with OK code and the changes,
+     *              SYNC_EXPIRED if deletions after since were purged: the client must synchronize again from 0
+     */
+    Response<ItemChanges> getChanges(long since, int limit);
+
+    /**
+     * Get the checkouts, returns and renewals after a position of the reservation journal
+     * @param since The position of the last event the client has, 0 to get the whole journal
+     * @param limit The maximum number of events, capped by libmanager.sync.page-size
+     * @return      A response with OK code and the events,
+     *              SYNC_EXPIRED if events after since were purged: the client must start again from 0
+     */
+    Response<ReservationEvents> getReservationEvents(long since, int limit);
+
+}
@@ -0,0 +1,60 @@
+package org.libmanager.server.service;
+
+import java.util.List;
+
+import org.libmanager.server.response.Response;
+import org.libmanager.server.response.Shipment;
+import org.libmanager.server.response.TransferStatus;
+
+public interface TransferService {
+
+    /**
+     * Ask for a copy of an item held by other branches, to borrow it at a branch. The request is queued: no copy nor
+     * counter is locked, the copy is taken from the shelf of a source branch by the next batch.
+     * @param username  The user who wants to borrow the item
+     * @param itemId    The id of the item
+     * @param branch    The code of the branch the copy goes to
+     * @return          A JSON response with OK code and the transfer, AVAILABLE if the branch has a copy on its shelf,
+     *                  NOT_AVAILABLE if no other branch holds the item, ALREADY_EXISTS if the user already asked for
+     *                  it, NOT_FOUND if the user, the item or the branch does not exist
+     */
+    Response<TransferStatus> request(String username, long itemId, String branch);
+
+    /**
+     * Leave the queue
+     * @param username  The user who asked for the transfer, null to cancel the transfer of any user
+     * @param id        The id of the transfer
+     * @return          A JSON response with true if the transfer was deleted, FORBIDDEN if the copy was already
+     *                  shipped, INSUFFICIENT_PERMISSIONS if asked by another user, NOT_FOUND and false otherwise
+     */
+    Response<Boolean> cancel(String username, long id);
+
+    /**
+     * Receive a shipped copy at its branch, the copy is lent to the user who asked for it
+     * @param id    The id of the transfer
+     * @return      A JSON response with true if the copy was lent, MAX_RESERVATIONS_REACHED if the user can no longer
+     *              borrow it (the copy is put on the shelf of the branch), FORBIDDEN if the copy was not shipped yet,
+     *              NOT_FOUND and false otherwise
+     */
+    Response<Boolean> receive(long id);
+
+    /**
+     * Get the transfers of a user
+     * @param username  The username of the user
+     * @return          A JSON response with OK code and the transfers, NOT_FOUND if the user does not exist
+     */
+    Response<List<TransferStatus>> getByUser(String username);
+
+    /**
+     * Get the copies on their way, grouped by source and destination branch
+     * @return  The shipments
+     */
+    List<Shipment> getShipments();
+
+    /**
+     * Drain the queue: take a copy from the shelf of a source branch for each transfer, by batches
+     * @return  The number of transfers shipped
+     */
+    int processQueue();
+
+}
@@ -14,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class AccountServiceImpl implements AccountService {
@@ -27,6 +28,7 @@ public class AccountServiceImpl implements AccountService {
     /**
      * {@inheritDoc}
      */
+    @Transactional(readOnly = true)
     public Response<AuthenticatedUser> login(String username, String password) {
         AuthenticatedUser authenticatedUser = new AuthenticatedUser();
         Optional<User> foundUser = userRepository.findById(username);
@@ -50,6 +52,7 @@ public class AccountServiceImpl implements AccountService {
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public boolean resetPassword(String token, String password) {
         if (TokenUtil.isMailToken(token)) {
             if (TokenUtil.isValid(token)) {
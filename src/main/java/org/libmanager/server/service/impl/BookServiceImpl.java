@@ -1,17 +1,33 @@
 package org.libmanager.server.service.impl;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+import org.libmanager.server.config.ReplicaRoutingDataSource;
 import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.event.ItemChangeEvent;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.repository.BookRepository;
 import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.MultiLoadRepository;
+import org.libmanager.server.search.RequestCoalescer;
+import org.libmanager.server.search.SearchCache;
+import org.libmanager.server.search.SearchQuery;
 import org.libmanager.server.service.BookService;
+import org.libmanager.server.service.CopyService;
 import org.libmanager.server.specification.BookSpecification;
 import org.libmanager.server.util.DateUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class BookServiceImpl implements BookService {
@@ -22,9 +38,32 @@ public class BookServiceImpl implements BookService {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private MultiLoadRepository multiLoadRepository;
+
+    @Autowired
+    private SearchCache searchCache;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CopyService copyService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /** Maximum sum of the total copies of all items */
+    @Value("${libmanager.limits.max-copies:100000}")
+    private long maxCopies = 100_000;
+
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public Response<Boolean> add(
             String title,
             String author,
@@ -38,17 +77,19 @@ public class BookServiceImpl implements BookService {
         // If the item table is empty, sumTotalCopies will be null
         if (sumTotalCopies == null)
             sumTotalCopies = 0L;
-        if ((sumTotalCopies + totalCopies <= 100_000)) {
+        if ((sumTotalCopies + totalCopies <= maxCopies)) {
             Book book = new Book();
             book.setTitle(title);
             book.setAuthor(author);
             book.setPublisher(publisher);
-            book.setGenre(genre.toUpperCase());
+            book.setGenre(genre.toUpperCase(Locale.ROOT));
             book.setIsbn(isbn);
             book.setReleaseDate(DateUtil.parseDB(releaseDate));
             book.setTotalCopies(totalCopies);
             book.setAvailableCopies(totalCopies);
             bookRepository.save(book);
+            copyService.syncCopies(book);
+            eventPublisher.publishEvent(ItemChangeEvent.catalog(book));
             return new Response<>(Response.Code.OK, true);
         }
         return new Response<>(Response.Code.MAX_ITEMS_REACHED, false);
@@ -57,6 +98,7 @@ public class BookServiceImpl implements BookService {
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public Response<Boolean> edit(
             long id,
             String title,
@@ -67,23 +109,30 @@ public class BookServiceImpl implements BookService {
             String releaseDate,
             int totalCopies
     ) {
-        Optional<Book> foundBook = bookRepository.findById(id);
+        // The available copies are the sum of the locked stocks, the item may not be refreshed yet; locked after them
+        List<BranchStock> stocks = copyService.lockStocks(List.of(id));
+        Optional<Book> foundBook = bookRepository.findByIdForUpdate(id);
         if (foundBook.isPresent()) {
             Book book = foundBook.get();
-            // New sum of all total_copies rows value should not be higher than 100,000
-            if (itemRepository.sumTotalCopies() - book.getTotalCopies() + totalCopies <= 100_000) {
+            // New sum of all total_copies rows value should not be higher than the limit
+            if (itemRepository.sumTotalCopies() - book.getTotalCopies() + totalCopies <= maxCopies) {
                 // New total_copies value should not be lower than the number of available copies
-                if (book.getTotalCopies() - book.getAvailableCopies() <= totalCopies) {
+                int availableCopies = stocks.isEmpty() ?
+                        book.getAvailableCopies() :
+                        stocks.stream().mapToInt(BranchStock::getAvailableCopies).sum();
+                if (book.getTotalCopies() - availableCopies <= totalCopies) {
                     int oldTotalCopies = book.getTotalCopies();
                     book.setTitle(title);
                     book.setAuthor(author);
                     book.setPublisher(publisher);
-                    book.setGenre(genre.toUpperCase());
+                    book.setGenre(genre.toUpperCase(Locale.ROOT));
                     book.setIsbn(isbn);
                     book.setReleaseDate(DateUtil.parseDB(releaseDate));
                     book.setTotalCopies(totalCopies);
-                    book.setAvailableCopies(book.getAvailableCopies() + (totalCopies - oldTotalCopies));
+                    book.setAvailableCopies(availableCopies + (totalCopies - oldTotalCopies));
                     bookRepository.save(book);
+                    copyService.syncCopies(book);
+                    eventPublisher.publishEvent(ItemChangeEvent.catalog(book));
                     return new Response<>(Response.Code.OK, true);
                 } else
                     return new Response<>(Response.Code.INVALID_TOTAL_COPIES, false);
@@ -97,15 +146,14 @@ public class BookServiceImpl implements BookService {
      * {@inheritDoc}
      */
     public Iterable<Book> getAll() {
-        return bookRepository.findAll();
+        return requestCoalescer.execute("book.all", null, () -> readOnly(() -> bookRepository.findAll()));
     }
 
     /**
      * {@inheritDoc}
      */
     public Book get(long id) {
-        Optional<Book> foundBook = bookRepository.findById(id);
-        return foundBook.orElse(null);
+        return requestCoalescer.execute("book.get", id, () -> readOnly(() -> bookRepository.findById(id).orElse(null)));
     }
 
     /**
@@ -120,18 +168,53 @@ public class BookServiceImpl implements BookService {
             String releaseDate,
             String status
     ) {
-        Specification<Book> titleLike = BookSpecification.titleLike(title);
-        Specification<Book> authorLike = BookSpecification.authorLike(author);
-        Specification<Book> publisherLike = BookSpecification.publisherLike(publisher);
-        Specification<Book> isbnLike = BookSpecification.isbnLike(isbn);
-        Specification<Book> releaseDateEquals = BookSpecification.releaseDateEquals(DateUtil.parseDB(releaseDate));
-        Specification<Book> genreEquals = BookSpecification.genreEquals(genre);
-        Specification<Book> statusEquals = BookSpecification.statusEquals(status);
+        SearchQuery query = SearchQuery.of("BOOK")
+                                       .text("title", title)
+                                       .text("author", author)
+                                       .text("publisher", publisher)
+                                       .keyword("genre", genre)
+                                       .text("isbn", isbn)
+                                       .date("releaseDate", releaseDate)
+                                       .status(status)
+                                       .build();
+        return requestCoalescer.execute("book.search", query, () -> readOnly(() -> find(query)));
+    }
+
+    private List<Book> find(SearchQuery query) {
+        long[] ids = searchCache.get(query);
+        if (ids != null)
+            return multiLoadRepository.findAllById(Book.class, ids);
+
+        // Searched with the normalized values, so that all the searches sharing a key find the same books
+        Specification<Book> titleLike = BookSpecification.titleLike(query.get("title"));
+        Specification<Book> authorLike = BookSpecification.authorLike(query.get("author"));
+        Specification<Book> publisherLike = BookSpecification.publisherLike(query.get("publisher"));
+        Specification<Book> isbnLike = BookSpecification.isbnLike(query.get("isbn"));
+        Specification<Book> releaseDateEquals =
+                BookSpecification.releaseDateEquals(DateUtil.parseDB(query.get("releaseDate")));
+        Specification<Book> genreEquals = BookSpecification.genreEquals(query.get("genre"));
+        Specification<Book> statusEquals = BookSpecification.statusEquals(query.get("status"));
 
         Specification<Book> spec = Specification.where(titleLike).and(authorLike).and(publisherLike).and(isbnLike)
                                                 .and(releaseDateEquals).and(genreEquals).and(statusEquals);
 
-        return bookRepository.findAll(spec);
+        SearchCache.Snapshot snapshot = searchCache.snapshot();
+        // Right after a change, a replica would give a result older than the snapshot
+        List<Book> books = snapshot.isReadOnPrimary() ?
+                ReplicaRoutingDataSource.readOnPrimary(() -> bookRepository.findAll(spec)) :
+                bookRepository.findAll(spec);
+        searchCache.put(query, snapshot, books.stream().mapToLong(Book::getId).toArray());
+        return books;
+    }
+
+    /**
+     * Run a read in its own read-only transaction. The reads shared by the {@link RequestCoalescer} are not
+     * transactional methods: a request waiting for the result of another one must not hold a connection.
+     */
+    private <T> T readOnly(Supplier<T> read) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> read.get());
     }
 
 }
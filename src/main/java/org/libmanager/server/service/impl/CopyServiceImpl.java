@@ -0,0 +1,407 @@
+package org.libmanager.server.service.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Copy;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.inventory.AvailabilityRefresher;
+import org.libmanager.server.inventory.BarcodeIndex;
+import org.libmanager.server.repository.BranchRepository;
+import org.libmanager.server.repository.BranchStockRepository;
+import org.libmanager.server.repository.CopyRepository;
+import org.libmanager.server.service.CopyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The available copies of an item are counted by branch ({@link BranchStock}): a loan locks the stock of a single
+ * branch, the loans of the other branches do not wait for it. The copies on the shelf of a branch are a bitset stored
+ * in its stock, read and written with its available copies, so lending a copy reads no copy row. The bitset is built
+ * from the copies and the loans the first time the copies of a branch are used, the missing copies are created then.
+ * <p>
+ * The available copies of the item are the sums of its stocks, refreshed in the background
+ * ({@link AvailabilityRefresher}): the loans do not lock the item.
+ * <p>
+ * The items imported after the branches have no stock: the stock of the default branch is created from the counters
+ * of the item the first time it is lent. It is created by its own transaction, before any stock of the item is locked:
+ * the stocks are locked before their item, the item cannot serialize the creation.
+ */
+@Service
+public class CopyServiceImpl implements CopyService {
+
+    @Autowired
+    private CopyRepository copyRepository;
+
+    @Autowired
+    private BranchRepository branchRepository;
+
+    @Autowired
+    private BranchStockRepository stockRepository;
+
+    @Autowired
+    private BarcodeIndex barcodeIndex;
+
+    @Autowired
+    private AvailabilityRefresher availabilityRefresher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** The branch receiving the new copies */
+    @Value("${libmanager.branches.default:MAIN}")
+    private String defaultBranch = "MAIN";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public List<BranchStock> lockStocks(Collection<Long> itemIds) {
+        return stockRepository.findAllByItemIdForUpdate(itemIds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public void initStocks(Collection<? extends Item> items) {
+        if (items.isEmpty())
+            return;
+        Set<Long> stocked = new HashSet<>(stockRepository.findItemIdsWithStock(
+                items.stream().map(Item::getId).collect(Collectors.toList())));
+        for (Item item : items) {
+            if (!stocked.contains(item.getId()))
+                initStock(item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public BranchStock lockAvailableStock(Item item, String branchCode) {
+        BranchStock stock;
+        if (branchCode != null) {
+            if (branchCode.equals(defaultBranch) && !stockRepository.existsByItem(item))
+                initStock(item);
+            stock = stockRepository.findByItemAndBranchForUpdate(item, branchCode).orElse(null);
+        } else {
+            // Read without lock, then locked one by one until a stock still has copies
+            for (long id : stockRepository.findIdsWithStock(item)) {
+                Optional<BranchStock> found = stockRepository.findByIdForUpdate(id);
+                if (found.isPresent() && found.get().getAvailableCopies() > 0)
+                    return found.get();
+            }
+            if (stockRepository.existsByItem(item))
+                return null;
+            initStock(item);
+            stock = stockRepository.findByItemAndBranchForUpdate(item, defaultBranch).orElse(null);
+        }
+        return stock != null && stock.getAvailableCopies() > 0 ? stock : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public BranchStock lockStock(Item item, Branch branch) {
+        // Only the loans older than the branches have no branch, their item may have no stock
+        if (branch == null && !stockRepository.existsByItem(item))
+            initStock(item);
+        String branchCode = branch == null ? defaultBranch : branch.getCode();
+        return stockRepository.findByItemAndBranchForUpdate(item, branchCode).orElseThrow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public void lockItem(Item item) {
+        // A lock query would not read again an item already loaded
+        entityManager.refresh(item, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public boolean lockHeldItem(Item item) {
+        // The item may have been read before a hold was committed, the shared locks do not wait for each other
+        if (item.getHoldCount() == 0) {
+            entityManager.refresh(item, LockModeType.PESSIMISTIC_READ);
+            if (item.getHoldCount() == 0)
+                return false;
+        }
+        lockItem(item);
+        return item.getHoldCount() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    public List<BranchStock> getStocks(Item item) {
+        List<BranchStock> stocks = stockRepository.findByItemWithBranch(item);
+        if (!stocks.isEmpty())
+            return stocks;
+        // Not created yet: all the copies are in the default branch
+        Branch branch = branchRepository.findById(defaultBranch)
+                                        .orElseGet(() -> new Branch(defaultBranch, defaultBranch));
+        return List.of(new BranchStock(item, branch, item.getTotalCopies(), item.getAvailableCopies()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public void syncCopies(Item item) {
+        List<BranchStock> stocks = new ArrayList<>(stockRepository.findAllByItemIdForUpdate(List.of(item.getId())));
+        if (stocks.isEmpty())
+            stocks.add(stockRepository.save(new BranchStock(item, branchRepository.getOne(defaultBranch),
+                                                            item.getTotalCopies(), item.getAvailableCopies())));
+        int added = item.getTotalCopies();
+        for (BranchStock stock : stocks)
+            added -= stock.getTotalCopies();
+        // The default branch gets the new copies and gives its copies first
+        stocks.sort(Comparator.comparing(stock -> !isDefault(stock)));
+        if (added > 0) {
+            BranchStock home = isDefault(stocks.get(0)) ? stocks.get(0) : null;
+            if (home == null) {
+                home = stockRepository.save(new BranchStock(item, branchRepository.getOne(defaultBranch), 0, 0));
+                stocks.add(0, home);
+            }
+            home.setTotalCopies(home.getTotalCopies() + added);
+            home.setAvailableCopies(home.getAvailableCopies() + added);
+        }
+
+        int extra = -added;
+        for (BranchStock stock : stocks) {
+            List<Copy> copies = copies(stock);
+            BitSet shelf = shelf(stock, copies);
+            // The edit checked that enough copies are on the shelves, the highest numbers go first
+            int deleted = 0;
+            for (int i = copies.size() - 1; i >= 0 && deleted < extra; i--) {
+                Copy copy = copies.get(i);
+                if (shelf.get(copy.getCopyNumber())) {
+                    shelf.clear(copy.getCopyNumber());
+                    copyRepository.delete(copy);
+                    barcodeIndex.remove(copy.getBarcode());
+                    deleted++;
+                }
+            }
+            extra -= deleted;
+            stock.setTotalCopies(stock.getTotalCopies() - deleted);
+            stock.setAvailableCopies(stock.getAvailableCopies() - deleted);
+            stock.setCopyAvailability(shelf.toByteArray());
+        }
+        availabilityRefresher.changed(item.getId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Copy checkOut(BranchStock stock) {
+        BitSet shelf = shelf(stock);
+        stock.setAvailableCopies(stock.getAvailableCopies() - 1);
+        availabilityRefresher.changed(stock.getItem().getId());
+        int number = shelf.nextSetBit(0);
+        if (number < 0)
+            return null;
+        shelf.clear(number);
+        stock.setCopyAvailability(shelf.toByteArray());
+        return copyRepository.findByItemAndCopyNumber(stock.getItem(), number).orElse(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Copy checkOut(BranchStock stock, BarcodeIndex.CopyRef ref) {
+        BitSet shelf = shelf(stock);
+        if (!shelf.get(ref.getCopyNumber()))
+            return null;
+        // The number of a deleted copy may have been given to a new one
+        Optional<Copy> found = copyRepository.findById(ref.getCopyId());
+        if (found.isEmpty() || found.get().getCopyNumber() != ref.getCopyNumber() ||
+            !found.get().getBranch().getCode().equals(stock.getBranch().getCode()))
+            return null;
+        shelf.clear(ref.getCopyNumber());
+        stock.setCopyAvailability(shelf.toByteArray());
+        stock.setAvailableCopies(stock.getAvailableCopies() - 1);
+        availabilityRefresher.changed(stock.getItem().getId());
+        return found.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public void checkIn(BranchStock stock, Copy copy) {
+        stock.setAvailableCopies(stock.getAvailableCopies() + 1);
+        availabilityRefresher.changed(stock.getItem().getId());
+        if (copy == null) {
+            // Built again from the loans left when next used
+            stock.setCopyAvailability(null);
+            return;
+        }
+        BitSet shelf = shelf(stock);
+        shelf.set(copy.getCopyNumber());
+        stock.setCopyAvailability(shelf.toByteArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public BranchStock moveCopy(BranchStock from, Copy copy, Branch to) {
+        Item item = from.getItem();
+        BranchStock target = stockRepository.findByItemAndBranchForUpdate(item, to.getCode())
+                                            .orElseGet(() -> stockRepository.save(new BranchStock(item, to, 0, 0)));
+        // The copy is on none of the shelves
+        from.setTotalCopies(from.getTotalCopies() - 1);
+        target.setTotalCopies(target.getTotalCopies() + 1);
+        if (copy != null) {
+            copy.setBranch(to);
+            // Resolved again with its new branch
+            barcodeIndex.remove(copy.getBarcode());
+        }
+        return target;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    public BarcodeIndex.CopyRef resolve(String barcode) {
+        BarcodeIndex.CopyRef ref = barcodeIndex.get(barcode);
+        if (ref != null)
+            return ref;
+        Optional<Copy> found = copyRepository.findByBarcode(barcode);
+        if (found.isEmpty())
+            return null;
+        Copy copy = found.get();
+        // The ids of the item and of the branch are read from the proxies, they are not loaded
+        ref = new BarcodeIndex.CopyRef(copy.getId(), copy.getItem().getId(), copy.getBranch().getCode(),
+                                       copy.getCopyNumber());
+        barcodeIndex.put(barcode, ref);
+        return ref;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public void deleteCopies(Item item) {
+        for (Copy copy : copyRepository.findByItemOrderByCopyNumber(item))
+            barcodeIndex.remove(copy.getBarcode());
+        copyRepository.deleteByItem(item);
+        stockRepository.deleteByItem(item);
+    }
+
+    /**
+     * Create the stock of the default branch of an item without stock, in its own transaction. Called before the stocks
+     * of the item are locked: the lock of a missing stock would block the insertion. A stock created meanwhile by
+     * another transaction is kept.
+     */
+    private void initStock(Item item) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status -> stockRepository.saveAndFlush(
+                    new BranchStock(entityManager.getReference(Item.class, item.getId()),
+                                    branchRepository.getOne(defaultBranch), item.getTotalCopies(),
+                                    item.getAvailableCopies())));
+        } catch (DataIntegrityViolationException e) {
+            // Created by another transaction (uk_branch_stock_item_branch)
+        }
+    }
+
+    private boolean isDefault(BranchStock stock) {
+        return stock.getBranch().getCode().equals(defaultBranch);
+    }
+
+    private BitSet shelf(BranchStock stock) {
+        if (stock.getCopyAvailability() != null)
+            return BitSet.valueOf(stock.getCopyAvailability());
+        return shelf(stock, copies(stock));
+    }
+
+    /**
+     * @param copies    All the copies of the branch
+     */
+    private BitSet shelf(BranchStock stock, List<Copy> copies) {
+        if (stock.getCopyAvailability() != null)
+            return BitSet.valueOf(stock.getCopyAvailability());
+        BitSet shelf = new BitSet();
+        for (Copy copy : copies)
+            shelf.set(copy.getCopyNumber());
+        for (int number : copyRepository.findNumbersOnLoan(stock.getItem(), stock.getBranch()))
+            shelf.clear(number);
+        // Loans older than the copies: as many copies as these loans are off the shelf
+        while (shelf.cardinality() > stock.getAvailableCopies())
+            shelf.clear(shelf.length() - 1);
+        return shelf;
+    }
+
+    /**
+     * Get the copies of a branch, the copies missing to reach its total copies are created on its shelf
+     */
+    private List<Copy> copies(BranchStock stock) {
+        Item item = stock.getItem();
+        List<Copy> copies = new ArrayList<>(copyRepository.findByItemAndBranchOrderByCopyNumber(item,
+                                                                                              stock.getBranch()));
+        if (copies.size() >= stock.getTotalCopies())
+            return copies;
+        // The numbers are unique for the item, whatever the branch
+        BitSet used = new BitSet();
+        for (int number : copyRepository.findNumbers(item))
+            used.set(number);
+        BitSet shelf = stock.getCopyAvailability() == null ? null : BitSet.valueOf(stock.getCopyAvailability());
+        List<Copy> created = new ArrayList<>();
+        int number = 0;
+        while (copies.size() + created.size() < stock.getTotalCopies()) {
+            number = used.nextClearBit(number);
+            created.add(new Copy(item, stock.getBranch(), number, barcode(item, number)));
+            if (shelf != null)
+                shelf.set(number);
+            number++;
+        }
+        copyRepository.saveAll(created);
+        if (shelf != null)
+            stock.setCopyAvailability(shelf.toByteArray());
+        copies.addAll(created);
+        copies.sort(Comparator.comparingInt(Copy::getCopyNumber));
+        return copies;
+    }
+
+    /**
+     * The barcode printed on a new copy
+     */
+    static String barcode(Item item, int number) {
+        return item.getId() + "-" + (number + 1);
+    }
+
+}
@@ -1,17 +1,33 @@
 package org.libmanager.server.service.impl;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+import org.libmanager.server.config.ReplicaRoutingDataSource;
+import org.libmanager.server.entity.BranchStock;
 import org.libmanager.server.entity.DVD;
+import org.libmanager.server.event.ItemChangeEvent;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.repository.DVDRepository;
 import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.MultiLoadRepository;
+import org.libmanager.server.search.RequestCoalescer;
+import org.libmanager.server.search.SearchCache;
+import org.libmanager.server.search.SearchQuery;
+import org.libmanager.server.service.CopyService;
 import org.libmanager.server.service.DVDService;
 import org.libmanager.server.specification.DVDSpecification;
 import org.libmanager.server.util.DateUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class DVDServiceImpl implements DVDService {
@@ -22,9 +38,32 @@ public class DVDServiceImpl implements DVDService {
     @Autowired
     private DVDRepository dvdRepository;
 
+    @Autowired
+    private MultiLoadRepository multiLoadRepository;
+
+    @Autowired
+    private SearchCache searchCache;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CopyService copyService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /** Maximum sum of the total copies of all items */
+    @Value("${libmanager.limits.max-copies:100000}")
+    private long maxCopies = 100_000;
+
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public Response<Boolean> add(
             String title,
             String director,
@@ -37,16 +76,18 @@ public class DVDServiceImpl implements DVDService {
         // If the item table is empty, sumTotalCopies will be null
         if (sumTotalCopies == null)
             sumTotalCopies = 0L;
-        if (sumTotalCopies + totalCopies <= 100_000) {
+        if (sumTotalCopies + totalCopies <= maxCopies) {
             DVD dvd = new DVD();
             dvd.setTitle(title);
             dvd.setAuthor(director);
             dvd.setReleaseDate(DateUtil.parseDB(releaseDate));
             dvd.setDuration(duration);
-            dvd.setGenre(genre.toUpperCase());
+            dvd.setGenre(genre.toUpperCase(Locale.ROOT));
             dvd.setTotalCopies(totalCopies);
             dvd.setAvailableCopies(totalCopies);
             dvdRepository.save(dvd);
+            copyService.syncCopies(dvd);
+            eventPublisher.publishEvent(ItemChangeEvent.catalog(dvd));
             return new Response<>(Response.Code.OK, true);
         }
         return new Response<>(Response.Code.MAX_ITEMS_REACHED, false);
@@ -55,6 +96,7 @@ public class DVDServiceImpl implements DVDService {
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public Response<Boolean> edit(
             long id,
             String title,
@@ -64,22 +106,29 @@ public class DVDServiceImpl implements DVDService {
             String releaseDate,
             int totalCopies
     ) {
-        Optional<DVD> foundDVD = dvdRepository.findById(id);
+        // The available copies are the sum of the locked stocks, the item may not be refreshed yet; locked after them
+        List<BranchStock> stocks = copyService.lockStocks(List.of(id));
+        Optional<DVD> foundDVD = dvdRepository.findByIdForUpdate(id);
         if (foundDVD.isPresent()) {
             DVD dvd = foundDVD.get();
-            // New sum of all total_copies rows value should not be higher than 100,000
-            if (itemRepository.sumTotalCopies() - dvd.getTotalCopies() + totalCopies <= 100_000) {
+            // New sum of all total_copies rows value should not be higher than the limit
+            if (itemRepository.sumTotalCopies() - dvd.getTotalCopies() + totalCopies <= maxCopies) {
                 // New total_copies value should not be lower than the number of available copies
-                if (dvd.getTotalCopies() - dvd.getAvailableCopies() <= totalCopies) {
+                int availableCopies = stocks.isEmpty() ?
+                        dvd.getAvailableCopies() :
+                        stocks.stream().mapToInt(BranchStock::getAvailableCopies).sum();
+                if (dvd.getTotalCopies() - availableCopies <= totalCopies) {
                     int oldTotalCopies = dvd.getTotalCopies();
                     dvd.setTitle(title);
                     dvd.setAuthor(director);
                     dvd.setDuration(duration);
-                    dvd.setGenre(genre.toUpperCase());
+                    dvd.setGenre(genre.toUpperCase(Locale.ROOT));
                     dvd.setReleaseDate(DateUtil.parseDB(releaseDate));
                     dvd.setTotalCopies(totalCopies);
-                    dvd.setAvailableCopies(dvd.getAvailableCopies() + (totalCopies - oldTotalCopies));
+                    dvd.setAvailableCopies(availableCopies + (totalCopies - oldTotalCopies));
                     dvdRepository.save(dvd);
+                    copyService.syncCopies(dvd);
+                    eventPublisher.publishEvent(ItemChangeEvent.catalog(dvd));
                     return new Response<>(Response.Code.OK, true);
                 }
                 return new Response<>(Response.Code.INVALID_TOTAL_COPIES, false);
@@ -93,15 +142,14 @@ public class DVDServiceImpl implements DVDService {
      * {@inheritDoc}
      */
     public Iterable<DVD> getAll() {
-        return dvdRepository.findAll();
+        return requestCoalescer.execute("dvd.all", null, () -> readOnly(() -> dvdRepository.findAll()));
     }
 
     /**
      * {@inheritDoc}
      */
     public DVD get(long id) {
-        Optional<DVD> foundDVD = dvdRepository.findById(id);
-        return foundDVD.orElse(null);
+        return requestCoalescer.execute("dvd.get", id, () -> readOnly(() -> dvdRepository.findById(id).orElse(null)));
     }
 
     /**
@@ -114,16 +162,48 @@ public class DVDServiceImpl implements DVDService {
             String releaseDate,
             String status
     ) {
-        Specification<DVD> titleLike = DVDSpecification.titleLike(title);
-        Specification<DVD> directorLike = DVDSpecification.directorLike(author);
-        Specification<DVD> genreEquals = DVDSpecification.genreEquals(genre);
-        Specification<DVD> releaseDateEquals = DVDSpecification.releaseDateEquals(DateUtil.parseDB(releaseDate));
-        Specification<DVD> statusEquals = DVDSpecification.statusEquals(status);
+        SearchQuery query = SearchQuery.of("DVD")
+                                       .text("title", title)
+                                       .text("director", author)
+                                       .keyword("genre", genre)
+                                       .date("releaseDate", releaseDate)
+                                       .status(status)
+                                       .build();
+        return requestCoalescer.execute("dvd.search", query, () -> readOnly(() -> find(query)));
+    }
+
+    private List<DVD> find(SearchQuery query) {
+        long[] ids = searchCache.get(query);
+        if (ids != null)
+            return multiLoadRepository.findAllById(DVD.class, ids);
+
+        // Searched with the normalized values, so that all the searches sharing a key find the same DVDs
+        Specification<DVD> titleLike = DVDSpecification.titleLike(query.get("title"));
+        Specification<DVD> directorLike = DVDSpecification.directorLike(query.get("director"));
+        Specification<DVD> genreEquals = DVDSpecification.genreEquals(query.get("genre"));
+        Specification<DVD> releaseDateEquals =
+                DVDSpecification.releaseDateEquals(DateUtil.parseDB(query.get("releaseDate")));
+        Specification<DVD> statusEquals = DVDSpecification.statusEquals(query.get("status"));
 
         Specification<DVD> spec = Specification.where(titleLike).and(directorLike).and(genreEquals)
                                                .and(releaseDateEquals).and(statusEquals);
 
-        return dvdRepository.findAll(spec);
+        SearchCache.Snapshot snapshot = searchCache.snapshot();
+        // Right after a change, a replica would give a result older than the snapshot
+        List<DVD> dvds = snapshot.isReadOnPrimary() ?
+                ReplicaRoutingDataSource.readOnPrimary(() -> dvdRepository.findAll(spec)) :
+                dvdRepository.findAll(spec);
+        searchCache.put(query, snapshot, dvds.stream().mapToLong(DVD::getId).toArray());
+        return dvds;
+    }
+
+    /**
+     * Run a read in its own read-only transaction, only by the request executing it (see BookServiceImpl)
+     */
+    private <T> T readOnly(Supplier<T> read) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> read.get());
     }
 
 }
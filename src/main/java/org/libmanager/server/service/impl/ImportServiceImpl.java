@@ -0,0 +1,520 @@
+package org.libmanager.server.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.libmanager.server.repository.BookRepository;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.SequenceRepository;
+import org.libmanager.server.repository.UserRepository;
+import org.libmanager.server.response.ImportReport;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.ImportService;
+import org.libmanager.server.util.CsvUtil;
+import org.libmanager.server.util.DateUtil;
+import org.libmanager.server.util.IsbnUtil;
+import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+public class ImportServiceImpl implements ImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportServiceImpl.class);
+
+    /** Maximum number of rejected rows detailed in the report */
+    private static final int MAX_REPORTED_ROWS = 1000;
+
+    /** Maximum number of rows inserted by a single INSERT statement */
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    private static final String INSERT_ITEMS =
+            "INSERT INTO item (id, item_type, author, available_copies, genre, release_date, status, title, total_copies, " +
+            "isbn, publisher, duration, change_seq) VALUES ";
+
+    private static final String ITEM_VALUES = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int ITEM_COLUMNS = 13;
+
+    /** Maximum number of rows detailed in the report of a user import, imported rows included */
+    private static final int MAX_REPORTED_USERS = 100_000;
+
+    private static final String INSERT_USER =
+            "INSERT INTO user (username, address, admin, birthday, email, first_name, last_name, password, " +
+            "registration_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final List<String> BOOK_FIELDS =
+            List.of("title", "author", "publisher", "genre", "isbn", "releaseDate", "totalCopies");
+
+    private static final List<String> DVD_FIELDS =
+            List.of("title", "director", "duration", "genre", "releaseDate", "totalCopies");
+
+    private static final List<String> USER_FIELDS =
+            List.of("username", "firstName", "lastName", "address", "email", "birthday", "password");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SequenceRepository sequenceRepository;
+
+    @Autowired
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /** Maximum sum of the total copies of all items */
+    @Value("${libmanager.limits.max-copies:100000}")
+    private long maxCopies = 100_000;
+
+    /** Maximum number of users */
+    @Value("${libmanager.limits.max-users:2000}")
+    private long maxUsers = 2000;
+
+    /** Number of rows validated and inserted together, each chunk is inserted in its own transaction */
+    @Value("${libmanager.import.chunk-size:2000}")
+    private int chunkSize = 2000;
+
+    /**
+     * {@inheritDoc}
+     */
+    public Response<ImportReport> importBooks(InputStream input, String format) {
+        return importItems(input, format, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Response<ImportReport> importDVDs(InputStream input, String format) {
+        return importItems(input, format, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Response<ImportReport> importUsers(InputStream input) {
+        ImportReport report = new ImportReport(MAX_REPORTED_USERS, true);
+        Set<String> usernames = new HashSet<>();
+        long start = System.nanoTime();
+        long users = userRepository.count();
+
+        // BCrypt is CPU bound: the passwords are hashed on a pool with one thread per core, not on the common pool
+        ForkJoinPool hashingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String headerLine = reader.readLine();
+            if (headerLine == null)
+                return new Response<>(Response.Code.INVALID_DATA, report);
+            List<String> header = CsvUtil.parseLine(headerLine.trim()).stream().map(String::trim).collect(Collectors.toList());
+            if (!header.containsAll(USER_FIELDS))
+                return new Response<>(Response.Code.INVALID_DATA, report);
+
+            List<UserRow> rows = new ArrayList<>(chunkSize);
+            long lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank())
+                    continue;
+                rows.add(validateUser(lineNumber, line, header));
+                if (rows.size() == chunkSize) {
+                    users = writeUsers(rows, users, usernames, hashingPool, report);
+                    logProgress(report, start);
+                    rows = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!rows.isEmpty()) {
+                writeUsers(rows, users, usernames, hashingPool, report);
+                logProgress(report, start);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Import interrupted after {} rows", report.getRead(), e);
+            return new Response<>(Response.Code.INVALID_DATA, report);
+        } finally {
+            hashingPool.shutdown();
+        }
+        return new Response<>(Response.Code.OK, report);
+    }
+
+    /**
+     * A line of an imported user file and the result of its validation
+     */
+    private static class UserRow {
+        final long line;
+        Response.Code code = Response.Code.OK;
+        String username;
+        String password;
+        // Values of the INSERT statement, in the order of INSERT_USER, the password is set once hashed
+        Object[] values;
+
+        UserRow(long line) {
+            this.line = line;
+        }
+    }
+
+    private UserRow validateUser(long line, String csvLine, List<String> header) {
+        UserRow row = new UserRow(line);
+        Map<String, String> fields;
+        try {
+            fields = parseCsv(csvLine, header);
+        } catch (IllegalArgumentException e) {
+            row.code = Response.Code.INVALID_DATA;
+            return row;
+        }
+
+        String username = field(fields, "username", 16);
+        String firstName = field(fields, "firstName", 64);
+        String lastName = field(fields, "lastName", 64);
+        String address = field(fields, "address", 128);
+        String email = field(fields, "email", 64);
+        LocalDate birthday = parseDate(fields.get("birthday"));
+        String password = fields.get("password");
+
+        if (username == null || firstName == null || lastName == null || address == null || email == null ||
+            birthday == null || password == null || password.isEmpty()) {
+            row.code = Response.Code.INVALID_DATA;
+            return row;
+        }
+        row.username = username;
+        row.password = password;
+        row.values = new Object[] {
+                username, address, false, Date.valueOf(birthday), email, firstName, lastName, null,
+                Date.valueOf(LocalDate.now())
+        };
+        return row;
+    }
+
+    /**
+     * Check the uniqueness of the usernames and the users limit, hash the passwords and insert a chunk of users in a
+     * single transaction
+     * @return  The number of users after the chunk is inserted
+     */
+    private long writeUsers(List<UserRow> rows, long users, Set<String> usernames, ForkJoinPool hashingPool,
+                            ImportReport report) {
+        Set<String> candidates = rows.stream()
+                                     .filter(row -> row.code == Response.Code.OK)
+                                     .map(row -> row.username)
+                                     .collect(Collectors.toSet());
+        Set<String> existing = candidates.isEmpty() ?
+                Collections.emptySet() :
+                new HashSet<>(userRepository.findExistingUsernames(candidates));
+
+        List<UserRow> accepted = new ArrayList<>(rows.size());
+        for (UserRow row : rows) {
+            if (row.code != Response.Code.OK)
+                continue;
+            // Already registered or earlier in the file
+            if (existing.contains(row.username) || !usernames.add(row.username))
+                row.code = Response.Code.ALREADY_EXISTS;
+            else if (users + 1 > maxUsers)
+                row.code = Response.Code.MAX_USERS_REACHED;
+            else {
+                users++;
+                accepted.add(row);
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            // A parallel stream started from a task of the pool runs on the pool
+            hashingPool.submit(() -> accepted.parallelStream().forEach(row -> {
+                row.values[7] = BCrypt.hashpw(row.password, BCrypt.gensalt());
+                row.password = null;
+            })).join();
+            List<Object[]> values = accepted.stream().map(row -> row.values).collect(Collectors.toList());
+            new TransactionTemplate(transactionManager).executeWithoutResult(
+                    status -> jdbcTemplate.batchUpdate(INSERT_USER, values));
+        }
+
+        for (UserRow row : rows)
+            report.add(row.line, row.code);
+        return users;
+    }
+
+    /**
+     * A line of the imported file and the result of its validation
+     */
+    private static class ItemRow {
+        final long line;
+        Response.Code code = Response.Code.OK;
+        String isbn;
+        int totalCopies;
+        // Values of the INSERT statement, in the order of INSERT_ITEMS, the id and the position in the change sequence
+        // are set once the row is accepted
+        Object[] values;
+
+        ItemRow(long line) {
+            this.line = line;
+        }
+    }
+
+    /**
+     * State shared by the chunks of an import
+     */
+    private static class ImportState {
+        final ImportReport report = new ImportReport(MAX_REPORTED_ROWS, false);
+        final Set<String> isbns = new HashSet<>();
+        final long start = System.nanoTime();
+        long totalCopies;
+    }
+
+    private Response<ImportReport> importItems(InputStream input, String format, boolean book) {
+        boolean json = format.equalsIgnoreCase("ndjson");
+        if (!json && !format.equalsIgnoreCase("csv"))
+            return new Response<>(Response.Code.INVALID_DATA, null);
+
+        ImportState state = new ImportState();
+        Long sumTotalCopies = itemRepository.sumTotalCopies();
+        // If the item table is empty, sumTotalCopies will be null
+        state.totalCopies = sumTotalCopies == null ? 0 : sumTotalCopies;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<String> header = null;
+            long lineNumber = 0;
+            if (!json) {
+                String headerLine = reader.readLine();
+                lineNumber++;
+                if (headerLine == null)
+                    return new Response<>(Response.Code.INVALID_DATA, state.report);
+                header = CsvUtil.parseLine(headerLine.trim()).stream().map(String::trim).collect(Collectors.toList());
+                if (!header.containsAll(book ? BOOK_FIELDS : DVD_FIELDS))
+                    return new Response<>(Response.Code.INVALID_DATA, state.report);
+            }
+
+            // The next chunk is validated while the previous one is written
+            CompletableFuture<List<ItemRow>> pending = null;
+            List<String> lines = new ArrayList<>(chunkSize);
+            long firstLine = lineNumber + 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    CompletableFuture<List<ItemRow>> validated = validateAsync(lines, firstLine, header, book);
+                    if (pending != null)
+                        write(pending.join(), book, state);
+                    pending = validated;
+                    lines = new ArrayList<>(chunkSize);
+                    firstLine = lineNumber + 1;
+                }
+            }
+            CompletableFuture<List<ItemRow>> validated = validateAsync(lines, firstLine, header, book);
+            if (pending != null)
+                write(pending.join(), book, state);
+            write(validated.join(), book, state);
+        } catch (IOException e) {
+            logger.warn("Import interrupted after {} rows", state.report.getRead(), e);
+            return new Response<>(Response.Code.INVALID_DATA, state.report);
+        }
+        return new Response<>(Response.Code.OK, state.report);
+    }
+
+    private CompletableFuture<List<ItemRow>> validateAsync(List<String> lines, long firstLine, List<String> header, boolean book) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<ItemRow> rows = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++)
+                rows.add(new ItemRow(firstLine + i));
+            // Rows are independent, they are validated in parallel
+            rows.parallelStream().forEach(row -> validate(row, lines.get((int) (row.line - firstLine)), header, book));
+            // Blank lines are ignored
+            return rows.stream().filter(row -> row.code != null).collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Parse, validate and normalize a row, the result is stored in the row
+     */
+    private void validate(ItemRow row, String line, List<String> header, boolean book) {
+        if (line.isBlank()) {
+            row.code = null;
+            return;
+        }
+        Map<String, String> fields;
+        try {
+            fields = header == null ? parseJson(line) : parseCsv(line, header);
+        } catch (IllegalArgumentException | IOException e) {
+            row.code = Response.Code.INVALID_DATA;
+            return;
+        }
+
+        String title = field(fields, "title", 128);
+        String author = field(fields, book ? "author" : "director", 64);
+        String genre = field(fields, "genre", 64);
+        String publisher = book ? field(fields, "publisher", 64) : null;
+        String duration = book ? null : field(fields, "duration", 16);
+        String isbn = book ? IsbnUtil.normalize(fields.get("isbn")) : null;
+        LocalDate releaseDate = parseDate(fields.get("releaseDate"));
+        int totalCopies;
+        try {
+            totalCopies = Integer.parseInt(fields.getOrDefault("totalCopies", "").trim());
+        } catch (NumberFormatException e) {
+            totalCopies = -1;
+        }
+
+        if (title == null || author == null || genre == null || releaseDate == null || totalCopies <= 0 ||
+            (book && (publisher == null || isbn == null)) || (!book && duration == null)) {
+            row.code = Response.Code.INVALID_DATA;
+            return;
+        }
+        row.isbn = isbn;
+        row.totalCopies = totalCopies;
+        row.values = new Object[] {
+                null, book ? "BOOK" : "DVD", author, totalCopies, genre.toUpperCase(Locale.ROOT),
+                Date.valueOf(releaseDate), true, title, totalCopies, isbn, publisher, duration, null
+        };
+    }
+
+    /**
+     * Deduplicate, apply the copies limit and insert a validated chunk in a single transaction
+     */
+    private void write(List<ItemRow> rows, boolean book, ImportState state) {
+        if (book) {
+            Set<String> isbns = rows.stream()
+                                    .filter(row -> row.code == Response.Code.OK)
+                                    .map(row -> row.isbn)
+                                    .collect(Collectors.toSet());
+            Set<String> existing = isbns.isEmpty() ?
+                    Collections.emptySet() :
+                    new HashSet<>(bookRepository.findExistingIsbns(isbns));
+            for (ItemRow row : rows) {
+                // Already in the catalog or earlier in the file
+                if (row.code == Response.Code.OK && (existing.contains(row.isbn) || !state.isbns.add(row.isbn)))
+                    row.code = Response.Code.ALREADY_EXISTS;
+            }
+        }
+
+        List<Object[]> values = new ArrayList<>(rows.size());
+        for (ItemRow row : rows) {
+            if (row.code != Response.Code.OK)
+                continue;
+            if (state.totalCopies + row.totalCopies > maxCopies)
+                row.code = Response.Code.MAX_ITEMS_REACHED;
+            else {
+                state.totalCopies += row.totalCopies;
+                values.add(row.values);
+            }
+        }
+
+        if (!values.isEmpty()) {
+            long[] ids = sequenceRepository.nextIds(Item.class, values.size());
+            for (int i = 0; i < ids.length; i++)
+                values.get(i)[0] = ids[i];
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                // Like ChangeTracker, in the transaction: the chunk commits in the order of its positions
+                long position = changeCounterRepository.allocate(ChangeCounterRepository.ITEM_CHANGES, values.size())
+                                - values.size();
+                for (Object[] row : values)
+                    row[ITEM_COLUMNS - 1] = ++position;
+                insert(values);
+            });
+            // Committed, the searches see the new items
+            eventPublisher.publishEvent(ItemChangeEvent.catalog());
+        }
+
+        for (ItemRow row : rows)
+            state.report.add(row.line, row.code);
+        logProgress(state.report, state.start);
+    }
+
+    private static void logProgress(ImportReport report, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        logger.info("Import: {} rows read, {} imported, {} rejected ({} rows/s)", report.getRead(),
+                    report.getImported(), report.getRejected(), Math.round(report.getRead() / Math.max(seconds, 1e-3)));
+    }
+
+    /**
+     * Insert items with multi-row INSERT statements
+     */
+    private void insert(List<Object[]> values) {
+        for (int from = 0; from < values.size(); from += ROWS_PER_STATEMENT) {
+            List<Object[]> statementRows = values.subList(from, Math.min(from + ROWS_PER_STATEMENT, values.size()));
+            String sql = INSERT_ITEMS + String.join(", ", Collections.nCopies(statementRows.size(), ITEM_VALUES));
+            Object[] args = new Object[statementRows.size() * ITEM_COLUMNS];
+            for (int i = 0; i < statementRows.size(); i++)
+                System.arraycopy(statementRows.get(i), 0, args, i * ITEM_COLUMNS, ITEM_COLUMNS);
+            jdbcTemplate.update(sql, args);
+        }
+    }
+
+    private Map<String, String> parseCsv(String line, List<String> header) {
+        List<String> values = CsvUtil.parseLine(line);
+        if (values.size() != header.size())
+            throw new IllegalArgumentException("Expected " + header.size() + " fields, found " + values.size());
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.size(); i++)
+            fields.put(header.get(i), values.get(i));
+        return fields;
+    }
+
+    private Map<String, String> parseJson(String line) throws IOException {
+        JsonNode node = mapper.readTree(line);
+        if (node == null || !node.isObject())
+            throw new IllegalArgumentException("Expected a JSON object");
+        Map<String, String> fields = new HashMap<>();
+        node.fields().forEachRemaining(field -> fields.put(field.getKey(), field.getValue().asText()));
+        return fields;
+    }
+
+    /**
+     * @return  The trimmed value of the field, null if it is missing, empty or longer than maxLength
+     */
+    private static String field(Map<String, String> fields, String name, int maxLength) {
+        String value = fields.get(name);
+        if (value == null)
+            return null;
+        value = value.trim();
+        return value.isEmpty() || value.length() > maxLength ? null : value;
+    }
+
+    /**
+     * Dates are accepted in the format of the database (yyyy-MM-dd) or of the client (dd/MM/yyyy)
+     */
+    private static LocalDate parseDate(String date) {
+        if (date == null)
+            return null;
+        LocalDate parsed = DateUtil.parseDB(date.trim());
+        return parsed != null ? parsed : DateUtil.parse(date.trim());
+    }
+
+}
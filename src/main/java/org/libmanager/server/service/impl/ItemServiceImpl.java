@@ -1,12 +1,21 @@
 package org.libmanager.server.service.impl;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
+import org.libmanager.server.entity.BranchStock;
 import org.libmanager.server.entity.Item;
+import org.libmanager.server.event.ItemChangeEvent;
 import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.response.BranchAvailability;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.CopyService;
 import org.libmanager.server.service.ItemService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class ItemServiceImpl implements ItemService {
@@ -14,16 +23,42 @@ public class ItemServiceImpl implements ItemService {
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private CopyService copyService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public boolean delete(long id) {
-        Optional<Item> foundItem = itemRepository.findById(id);
+        copyService.lockStocks(List.of(id));
+        Optional<Item> foundItem = itemRepository.findByIdForUpdate(id);
         if (foundItem.isEmpty())
             return false;
         Item itemToDelete = foundItem.get();
+        copyService.deleteCopies(itemToDelete);
         itemRepository.delete(itemToDelete);
+        eventPublisher.publishEvent(ItemChangeEvent.deleted(itemToDelete));
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    public Response<List<BranchAvailability>> getAvailability(long id) {
+        Optional<Item> foundItem = itemRepository.findById(id);
+        if (foundItem.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, null);
+        // The stocks are counters kept by the loans, nothing is counted here
+        List<BranchAvailability> availability = new ArrayList<>();
+        for (BranchStock stock : copyService.getStocks(foundItem.get()))
+            availability.add(new BranchAvailability(stock.getBranch().getCode(), stock.getBranch().getName(),
+                                                    stock.getTotalCopies(), stock.getAvailableCopies()));
+        return new Response<>(Response.Code.OK, availability);
+    }
+
 }
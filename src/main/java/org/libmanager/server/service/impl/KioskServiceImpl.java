@@ -0,0 +1,236 @@
+package org.libmanager.server.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.libmanager.server.entity.KioskEvent;
+import org.libmanager.server.inventory.AvailabilityEngine;
+import org.libmanager.server.repository.KioskEventRepository;
+import org.libmanager.server.request.KioskBatch;
+import org.libmanager.server.response.KioskEventResult;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.KioskService;
+import org.libmanager.server.service.ReservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The events of a batch are applied by {@link ReservationService} as scans at a connected kiosk, so the conflicts
+ * resolve as they would online: a copy lent meanwhile is NOT_AVAILABLE, a user over the limits gets
+ * MAX_RESERVATIONS_REACHED, a copy returned twice is NOT_FOUND. The events are applied in the order of the kiosk
+ * clock, the events scanned at the same time in the order of the batch, so a batch sent again resolves the same way.
+ * <p>
+ * An event is applied once: its outcome is kept for the retention, and an event scanned before it, whose outcome may be
+ * purged, is refused with SYNC_EXPIRED (as well as an event too far in the future, which would outlive its outcome).
+ * The kiosks must send their events within the retention, less the clock skew allowed.
+ * <p>
+ * The events share a transaction by chunks: the outcomes of a chunk are recorded with its changes, or not at all.
+ */
+@Service
+public class KioskServiceImpl implements KioskService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KioskServiceImpl.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /** Length of the ids of the kiosks and of the events */
+    private static final int MAX_ID_LENGTH = 64;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private KioskEventRepository kioskEventRepository;
+
+    @Autowired
+    private AvailabilityEngine availabilityEngine;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** The key signing the batches, shared by the kiosks; the batches are refused if not set */
+    @Value("${libmanager.kiosk.secret:}")
+    private String secret = "";
+
+    @Value("${libmanager.kiosk.max-batch-size:1000}")
+    private int maxBatchSize = 1000;
+
+    /** Number of events applied by a transaction */
+    @Value("${libmanager.kiosk.events-per-transaction:100}")
+    private int eventsPerTransaction = 100;
+
+    /** Number of days the outcomes are kept, a batch sent again later is applied again */
+    @Value("${libmanager.kiosk.event-retention-days:30}")
+    private int eventRetentionDays = 30;
+
+    /** Milliseconds the clock of a kiosk may be ahead of the server */
+    @Value("${libmanager.kiosk.max-clock-skew:300000}")
+    private long maxClockSkew = 300_000;
+
+    /**
+     * {@inheritDoc}
+     */
+    public Response<List<KioskEventResult>> sync(String payload, String signature) {
+        if (!verify(payload, signature))
+            return new Response<>(Response.Code.INVALID_TOKEN, null);
+        KioskBatch batch;
+        try {
+            batch = mapper.readValue(payload, KioskBatch.class);
+        } catch (JsonProcessingException e) {
+            return new Response<>(Response.Code.INVALID_DATA, null);
+        }
+        if (!isValidId(batch.getKioskId()) || batch.getEvents() == null || batch.getEvents().isEmpty() ||
+            batch.getEvents().size() > maxBatchSize)
+            return new Response<>(Response.Code.INVALID_DATA, null);
+
+        // The valid events, an event sent twice in the batch is applied once
+        Map<String, KioskBatch.Event> events = new HashMap<>();
+        for (KioskBatch.Event event : batch.getEvents()) {
+            if (isValid(event))
+                events.putIfAbsent(event.getId(), event);
+        }
+        // By event id
+        Map<String, KioskEventResult> outcomes = new HashMap<>();
+        for (KioskEvent processed : kioskEventRepository.findAllById(events.keySet()))
+            outcomes.put(processed.getId(), new KioskEventResult(processed.getId(), processed.getCode(), true));
+
+        // The outcome of an event scanned before the oldest may be purged, it could be applied twice
+        long latest = System.currentTimeMillis() + maxClockSkew;
+        long oldest = latest - Duration.ofDays(eventRetentionDays).toMillis();
+        List<KioskBatch.Event> pending = new ArrayList<>();
+        for (KioskBatch.Event event : batch.getEvents()) {
+            if (!isValid(event) || events.get(event.getId()) != event || outcomes.containsKey(event.getId()))
+                continue;
+            if (event.getTimestamp() < oldest || event.getTimestamp() > latest)
+                outcomes.put(event.getId(), new KioskEventResult(event.getId(), Response.Code.SYNC_EXPIRED, false));
+            else
+                pending.add(event);
+        }
+        // Stable: the events scanned at the same time keep the order of the batch
+        pending.sort(Comparator.comparingLong(KioskBatch.Event::getTimestamp));
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int from = 0; from < pending.size(); from += eventsPerTransaction) {
+            List<KioskBatch.Event> chunk = pending.subList(from, Math.min(from + eventsPerTransaction, pending.size()));
+            try {
+                List<KioskEventResult> applied = transaction.execute(status -> apply(batch.getKioskId(), chunk));
+                if (applied != null)
+                    applied.forEach(outcome -> outcomes.put(outcome.getEventId(), outcome));
+            } catch (RuntimeException e) {
+                // Rolled back with its outcomes, the kiosk sends these events again
+                logger.warn("Could not apply {} events of kiosk {}", chunk.size(), batch.getKioskId(), e);
+                for (KioskBatch.Event event : chunk)
+                    outcomes.put(event.getId(), new KioskEventResult(event.getId(), Response.Code.TRY_AGAIN, false));
+            }
+        }
+
+        List<KioskEventResult> results = new ArrayList<>(batch.getEvents().size());
+        Set<String> reported = new HashSet<>();
+        for (KioskBatch.Event event : batch.getEvents()) {
+            KioskEventResult outcome = isValid(event) ? outcomes.get(event.getId()) : null;
+            if (outcome == null)
+                results.add(new KioskEventResult(event == null ? null : event.getId(), Response.Code.INVALID_DATA,
+                                                 false));
+            else if (reported.add(event.getId()))
+                results.add(outcome);
+            else
+                results.add(new KioskEventResult(event.getId(), outcome.getCode(), true));
+        }
+        return new Response<>(Response.Code.OK, results);
+    }
+
+    /**
+     * Apply a chunk of events and record their outcomes, in the transaction of the chunk
+     */
+    private List<KioskEventResult> apply(String kioskId, List<KioskBatch.Event> chunk) {
+        LocalDateTime now = LocalDateTime.now();
+        List<KioskEventResult> applied = new ArrayList<>(chunk.size());
+        List<KioskEvent> processed = new ArrayList<>(chunk.size());
+        for (KioskBatch.Event event : chunk) {
+            Response<Boolean> result = event.getType() == KioskBatch.Type.CHECKOUT ?
+                    checkout(event.getUsername(), event.getBarcode()) :
+                    reservationService.returnCopy(event.getBarcode());
+            applied.add(new KioskEventResult(event.getId(), result.getCode(), false));
+            processed.add(new KioskEvent(event.getId(), kioskId, result.getCode(), now));
+        }
+        // An event applied meanwhile by another request fails the chunk on insert
+        kioskEventRepository.saveAll(processed);
+        return applied;
+    }
+
+    /**
+     * Borrow a copy, taken in memory too while the checkouts are decided in memory
+     */
+    private Response<Boolean> checkout(String username, String barcode) {
+        if (availabilityEngine.isEnabled())
+            return availabilityEngine.checkout(username, barcode);
+        return reservationService.checkout(username, barcode);
+    }
+
+    /**
+     * Forget the outcomes older than the retention
+     */
+    @Scheduled(fixedDelayString = "${libmanager.kiosk.purge-interval:3600000}",
+               initialDelayString = "${libmanager.kiosk.purge-interval:3600000}")
+    @Transactional
+    public void purgeEvents() {
+        int purged = kioskEventRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(eventRetentionDays));
+        if (purged > 0)
+            logger.info("Purged {} kiosk events", purged);
+    }
+
+    private static boolean isValidId(String id) {
+        return id != null && !id.isBlank() && id.length() <= MAX_ID_LENGTH;
+    }
+
+    private static boolean isValid(KioskBatch.Event event) {
+        return event != null && isValidId(event.getId()) && event.getType() != null && event.getBarcode() != null &&
+               (event.getType() == KioskBatch.Type.RETURN || event.getUsername() != null);
+    }
+
+    /**
+     * Check the signature of a batch, in constant time
+     */
+    private boolean verify(String payload, String signature) {
+        if (secret.isEmpty() || payload == null || signature == null)
+            return false;
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            StringBuilder expected = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                expected.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return MessageDigest.isEqual(expected.toString().getBytes(StandardCharsets.US_ASCII),
+                                         signature.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+}
@@ -2,26 +2,61 @@ package org.libmanager.server.service.impl;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Copy;
+import org.libmanager.server.entity.Hold;
 import org.libmanager.server.entity.Item;
 import org.libmanager.server.entity.Reservation;
 import org.libmanager.server.entity.User;
+import org.libmanager.server.event.HoldPromotedEvent;
+import org.libmanager.server.event.ReservationJournal;
+import org.libmanager.server.inventory.BarcodeIndex;
+import org.libmanager.server.repository.HoldRepository;
 import org.libmanager.server.repository.ItemRepository;
 import org.libmanager.server.repository.ReservationRepository;
 import org.libmanager.server.repository.UserRepository;
+import org.libmanager.server.request.CheckoutRequest;
+import org.libmanager.server.response.HoldStatus;
+import org.libmanager.server.response.ReservationResult;
 import org.libmanager.server.response.Response;
+import org.libmanager.server.service.CopyService;
 import org.libmanager.server.service.ReservationService;
 import org.libmanager.server.specification.ReservationSpecification;
 import org.libmanager.server.util.DateUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class ReservationServiceImpl implements ReservationService {
 
+    /** Maximum number of holds checked for eligibility when a copy is returned */
+    private static final int HOLD_CANDIDATES = 20;
+
+    /** Loan periods in days */
+    private static final int BOOK_LOAN_DAYS = 21;
+    private static final int DVD_LOAN_DAYS = 7;
+    /** Days added to the loans of the users members for 2 years or more */
+    private static final int LOYALTY_EXTRA_DAYS = 7;
+
+    /** Maximum number of reservations returned or renewed by a request */
+    private static final int MAX_BATCH_SIZE = 100;
+    /** Maximum number of renewals of a loan */
+    private static final int MAX_RENEWALS = 2;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -31,27 +66,34 @@ public class ReservationServiceImpl implements ReservationService {
     @Autowired
     private ReservationRepository reservationRepository;
 
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private CopyService copyService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ReservationJournal reservationJournal;
+
     /**
      * {@inheritDoc}
      */
-    public Response<Boolean> add(String username, long itemId) {
+    @Transactional
+    public Response<Boolean> add(String username, long itemId, String branch) {
         Optional<User> foundUser = userRepository.findById(username);
+        // Not locked: the loans only lock the stock of their branch
         Optional<Item> foundItem = itemRepository.findById(itemId);
         User user = foundUser.orElse(null);
         Item item = foundItem.orElse(null);
         if (user != null && item != null) {
             if (checkReservationLimits(user, item)) {
-                if (item.getAvailableCopies() > 0) {
-                    // Create the reservation
-                    Reservation reservation = new Reservation();
-                    reservation.setUser(user);
-                    reservation.setItem(item);
-
-                    // Decrement the number of available copies
-                    item.setAvailableCopies(item.getAvailableCopies() - 1);
-
-                    reservationRepository.save(reservation);
-                    itemRepository.save(item);
+                // The available copies are checked and decremented on the locked row of a single branch
+                BranchStock stock = copyService.lockAvailableStock(item, branch);
+                if (stock != null) {
+                    saveLoan(user, item, stock, copyService.checkOut(stock));
                     return new Response<>(Response.Code.OK, true);
                 }
                 return new Response<>(Response.Code.NOT_AVAILABLE, false);
@@ -64,25 +106,363 @@ public class ReservationServiceImpl implements ReservationService {
     /**
      * {@inheritDoc}
      */
+    @Transactional
+    public List<Response<Boolean>> addAll(long itemId, List<CheckoutRequest> requests) {
+        Optional<Item> foundItem = itemRepository.findById(itemId);
+        List<Response<Boolean>> responses = new ArrayList<>();
+        if (foundItem.isEmpty()) {
+            for (int i = 0; i < requests.size(); i++)
+                responses.add(new Response<>(Response.Code.NOT_FOUND, false));
+            return responses;
+        }
+        Item item = foundItem.get();
+        // The copies of an item older than the branches are in the default branch
+        copyService.initStocks(List.of(item));
+        // Locked once for all the requests, the item is not locked
+        List<BranchStock> stocks = copyService.lockStocks(List.of(itemId));
+
+        // The winners are decided on the locked counts, each stock is written once at commit
+        for (CheckoutRequest request : requests) {
+            User user = userRepository.findById(request.getUsername()).orElse(null);
+            if (user == null) {
+                responses.add(new Response<>(Response.Code.NOT_FOUND, false));
+            } else if (!checkReservationLimits(user, item)) {
+                responses.add(new Response<>(Response.Code.MAX_RESERVATIONS_REACHED, false));
+            } else {
+                BranchStock stock = findAvailable(stocks, request.getBranch());
+                if (stock != null) {
+                    // Counted by the limits of the next requests of the user
+                    user.getReservations().add(saveLoan(user, item, stock, copyService.checkOut(stock)));
+                    responses.add(new Response<>(Response.Code.OK, true));
+                } else {
+                    responses.add(new Response<>(Response.Code.NOT_AVAILABLE, false));
+                }
+            }
+        }
+        return responses;
+    }
+
+    private static BranchStock findAvailable(List<BranchStock> stocks, String branchCode) {
+        for (BranchStock stock : stocks) {
+            boolean branchMatches = branchCode == null || stock.getBranch().getCode().equals(branchCode);
+            if (branchMatches && stock.getAvailableCopies() > 0)
+                return stock;
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<Boolean> checkout(String username, String barcode) {
+        // Resolved in memory, the title of the item is not read
+        BarcodeIndex.CopyRef ref = copyService.resolve(barcode);
+        Optional<User> foundUser = userRepository.findById(username);
+        if (ref == null || foundUser.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, false);
+        Optional<Item> foundItem = itemRepository.findById(ref.getItemId());
+        if (foundItem.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, false);
+        User user = foundUser.get();
+        Item item = foundItem.get();
+        if (!checkReservationLimits(user, item))
+            return new Response<>(Response.Code.MAX_RESERVATIONS_REACHED, false);
+        // The copy scanned may be lent to a hold, waiting on the hold shelf
+        BranchStock stock = copyService.lockAvailableStock(item, ref.getBranchCode());
+        Copy copy = stock == null ? null : copyService.checkOut(stock, ref);
+        if (copy == null)
+            return new Response<>(Response.Code.NOT_AVAILABLE, false);
+        saveLoan(user, item, stock, copy);
+        return new Response<>(Response.Code.OK, true);
+    }
+
+    /**
+     * Create the reservation of a copy taken from the shelf of a locked stock. The item is not locked, its available
+     * copies are refreshed from its stocks once committed.
+     */
+    private Reservation saveLoan(User user, Item item, BranchStock stock, Copy copy) {
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setItem(item);
+        reservation.setCopy(copy);
+        reservation.setBranch(stock.getBranch());
+        reservation.setDueDate(computeDueDate(user, item, reservation.getReservationDate()));
+        reservationRepository.save(reservation);
+        reservationJournal.checkout(reservation);
+        // A user whose hold was skipped took a copy left available, the item is locked to change its holds
+        if (item.getHoldCount() > 0) {
+            holdRepository.findByItemAndUser(item, user).ifPresent(hold -> {
+                copyService.lockItem(item);
+                removeHold(item, hold);
+                itemRepository.save(item);
+            });
+        }
+        return reservation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<Boolean> lendReserved(User user, Item item, BranchStock stock, Copy copy) {
+        if (!checkReservationLimits(user, item))
+            return new Response<>(Response.Code.MAX_RESERVATIONS_REACHED, false);
+        saveLoan(user, item, stock, copy);
+        return new Response<>(Response.Code.OK, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
     public Response<Boolean> delete(long id) {
         Optional<Reservation> foundReservation = reservationRepository.findById(id);
         if (foundReservation.isPresent()) {
-            Reservation reservation = foundReservation.get();
-            Item item = reservation.getItem();
+            returnLoan(foundReservation.get());
+            return new Response<>(Response.Code.OK, true);
+        }
+        return new Response<>(Response.Code.NOT_FOUND, false);
+    }
 
-            // Increment the number of available copies
-            item.setAvailableCopies(item.getAvailableCopies() + 1);
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<Boolean> returnCopy(String barcode) {
+        BarcodeIndex.CopyRef ref = copyService.resolve(barcode);
+        Optional<Reservation> foundReservation = ref == null ?
+                Optional.empty() :
+                reservationRepository.findByCopyId(ref.getCopyId());
+        if (foundReservation.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, false);
+        returnLoan(foundReservation.get());
+        return new Response<>(Response.Code.OK, true);
+    }
 
-            reservationRepository.delete(reservation);
+    /**
+     * Delete a loan and put its copy back on the shelf of the branch which lent it
+     */
+    private void returnLoan(Reservation reservation) {
+        // The available copies are incremented on the locked row of the branch, the item is only locked for its holds
+        Item item = reservation.getItem();
+        BranchStock stock = copyService.lockStock(item, reservation.getBranch());
+        copyService.checkIn(stock, reservation.getCopy());
+
+        reservationJournal.returned(reservation);
+        reservationRepository.delete(reservation);
+        // The returned copy goes to the first eligible user waiting for it
+        if (copyService.lockHeldItem(item)) {
+            promoteHold(item, stock, new HashMap<>());
             itemRepository.save(item);
-            return new Response<>(Response.Code.OK, true);
         }
-        return new Response<>(Response.Code.NOT_FOUND, false);
     }
 
     /**
      * {@inheritDoc}
      */
+    @Transactional
+    public Response<List<ReservationResult>> returnBatch(List<Long> ids) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.isEmpty() || distinctIds.size() > MAX_BATCH_SIZE)
+            return new Response<>(Response.Code.INVALID_DATA, null);
+
+        Map<Long, Reservation> reservations = new HashMap<>();
+        Map<Long, List<Reservation>> returnedLoans = new HashMap<>();
+        for (Reservation reservation : reservationRepository.findAllWithItemAndCopyById(distinctIds)) {
+            reservations.put(reservation.getId(), reservation);
+            returnedLoans.computeIfAbsent(reservation.getItem().getId(), itemId -> new ArrayList<>())
+                         .add(reservation);
+            reservationJournal.returned(reservation);
+        }
+        reservationRepository.deleteAll(reservations.values());
+
+        // The stocks of all the items then the items with holds are locked in the order of the items
+        Map<Long, Item> items = new TreeMap<>();
+        returnedLoans.forEach((itemId, loans) -> items.put(itemId, loans.get(0).getItem()));
+        copyService.initStocks(items.values());
+        copyService.lockStocks(items.keySet());
+        // The items lent to each user by the holds promoted so far, counted by the limits of its next holds
+        Map<String, List<Item>> promoted = new HashMap<>();
+        for (Item item : items.values()) {
+            // By branch code, null for the default branch
+            Map<String, BranchStock> stocks = new HashMap<>();
+            List<BranchStock> returnedStocks = new ArrayList<>();
+            for (Reservation loan : returnedLoans.get(item.getId())) {
+                String branchCode = loan.getBranch() == null ? null : loan.getBranch().getCode();
+                BranchStock stock = stocks.computeIfAbsent(branchCode,
+                                                           code -> copyService.lockStock(item, loan.getBranch()));
+                copyService.checkIn(stock, loan.getCopy());
+                returnedStocks.add(stock);
+            }
+            if (!copyService.lockHeldItem(item))
+                continue;
+            for (BranchStock stock : returnedStocks) {
+                if (item.getHoldCount() == 0 || !promoteHold(item, stock, promoted))
+                    break;
+            }
+            itemRepository.save(item);
+        }
+
+        List<ReservationResult> results = new ArrayList<>();
+        for (Long id : distinctIds)
+            results.add(new ReservationResult(id, reservations.containsKey(id) ? Response.Code.OK :
+                                                  Response.Code.NOT_FOUND, null));
+        return new Response<>(Response.Code.OK, results);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<List<ReservationResult>> renewBatch(String username, List<Long> ids) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.isEmpty() || distinctIds.size() > MAX_BATCH_SIZE)
+            return new Response<>(Response.Code.INVALID_DATA, null);
+
+        Map<Long, Reservation> reservations = new HashMap<>();
+        for (Reservation reservation : reservationRepository.findAllWithItemById(distinctIds))
+            reservations.put(reservation.getId(), reservation);
+
+        LocalDate today = LocalDate.now();
+        List<ReservationResult> results = new ArrayList<>();
+        List<Reservation> renewed = new ArrayList<>();
+        for (Long id : distinctIds) {
+            Reservation reservation = reservations.get(id);
+            Response.Code code;
+            if (reservation == null)
+                code = Response.Code.NOT_FOUND;
+            else if (username != null && !username.equals(reservation.getUser().getUsername()))
+                code = Response.Code.INSUFFICIENT_PERMISSIONS;
+            else if (reservation.isOverdue())
+                code = Response.Code.FORBIDDEN;
+            else if (reservation.getItem().getHoldCount() > 0)
+                code = Response.Code.NOT_AVAILABLE;
+            else if (reservation.getRenewals() >= MAX_RENEWALS)
+                code = Response.Code.MAX_RENEWALS_REACHED;
+            else {
+                // A new loan period from today, never shorter than the current one
+                LocalDate dueDate = computeDueDate(reservation.getUser(), reservation.getItem(), today);
+                if (dueDate.isAfter(reservation.getDueDate()))
+                    reservation.setDueDate(dueDate);
+                reservation.setRenewals(reservation.getRenewals() + 1);
+                reservation.setReminderSent(false);
+                renewed.add(reservation);
+                reservationJournal.renewed(reservation);
+                results.add(new ReservationResult(id, Response.Code.OK, reservation.getDueDate()));
+                continue;
+            }
+            results.add(new ReservationResult(id, code, null));
+        }
+        reservationRepository.saveAll(renewed);
+        return new Response<>(Response.Code.OK, results);
+    }
+
+    /**
+     * Reserve an available copy of a locked item for the first hold of its queue whose user can borrow it
+     * @param stock     The locked stock of the branch the copy was returned to
+     * @param promoted  The items lent by the holds already promoted by the transaction, by username, the loan is added
+     * @return          False if no hold is eligible
+     */
+    private boolean promoteHold(Item item, BranchStock stock, Map<String, List<Item>> promoted) {
+        for (Hold hold : holdRepository.findByItemOrderByTicket(item, PageRequest.of(0, HOLD_CANDIDATES))) {
+            User user = hold.getUser();
+            if (checkReservationLimits(user, item, promoted.getOrDefault(user.getUsername(), List.of()))) {
+                Reservation reservation = new Reservation();
+                reservation.setUser(user);
+                reservation.setItem(item);
+                reservation.setCopy(copyService.checkOut(stock));
+                reservation.setBranch(stock.getBranch());
+                reservation.setDueDate(computeDueDate(user, item, reservation.getReservationDate()));
+                reservationRepository.save(reservation);
+                reservationJournal.checkout(reservation);
+                promoted.computeIfAbsent(user.getUsername(), username -> new ArrayList<>()).add(item);
+                removeHold(item, hold);
+                eventPublisher.publishEvent(new HoldPromotedEvent(user.getUsername(), user.getEmail(), item.getId(),
+                                                                  item.getTitle()));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeHold(Item item, Hold hold) {
+        holdRepository.delete(hold);
+        item.setHoldCount(item.getHoldCount() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<HoldStatus> addHold(String username, long itemId) {
+        Optional<User> foundUser = userRepository.findById(username);
+        // The stocks then the item: a copy returned meanwhile is counted, or its return sees the hold. The tickets are
+        // taken on the locked row, in the order of the queue.
+        List<BranchStock> stocks = copyService.lockStocks(List.of(itemId));
+        Optional<Item> foundItem = itemRepository.findByIdForUpdate(itemId);
+        if (foundUser.isEmpty() || foundItem.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, null);
+        User user = foundUser.get();
+        Item item = foundItem.get();
+        // The available copies of the item may not be refreshed yet, an item without stock has its own counters
+        int availableCopies = stocks.isEmpty() ?
+                item.getAvailableCopies() :
+                stocks.stream().mapToInt(BranchStock::getAvailableCopies).sum();
+        if (availableCopies > 0)
+            return new Response<>(Response.Code.AVAILABLE, null);
+        boolean borrowed = user.getReservations().stream().anyMatch(r -> r.getItem().getId() == itemId);
+        if (borrowed || holdRepository.findByItemAndUser(item, user).isPresent())
+            return new Response<>(Response.Code.ALREADY_EXISTS, null);
+
+        item.setHoldTail(item.getHoldTail() + 1);
+        item.setHoldCount(item.getHoldCount() + 1);
+        holdRepository.save(new Hold(item, user, item.getHoldTail()));
+        itemRepository.save(item);
+        // The new hold is the last of the queue
+        return new Response<>(Response.Code.OK,
+                              new HoldStatus(itemId, item.getTitle(), item.getHoldCount(), item.getHoldCount()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<Boolean> deleteHold(String username, long itemId) {
+        Optional<User> foundUser = userRepository.findById(username);
+        Optional<Item> foundItem = itemRepository.findByIdForUpdate(itemId);
+        if (foundUser.isEmpty() || foundItem.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, false);
+        Item item = foundItem.get();
+        Optional<Hold> foundHold = holdRepository.findByItemAndUser(item, foundUser.get());
+        if (foundHold.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, false);
+        removeHold(item, foundHold.get());
+        itemRepository.save(item);
+        return new Response<>(Response.Code.OK, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    public Response<List<HoldStatus>> getHolds(String username) {
+        Optional<User> foundUser = userRepository.findById(username);
+        if (foundUser.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, null);
+        List<HoldStatus> holds = new ArrayList<>();
+        for (Hold hold : holdRepository.findByUserOrderByCreatedAt(foundUser.get())) {
+            Item item = hold.getItem();
+            long ahead = holdRepository.countByItemAndTicketLessThan(item, hold.getTicket());
+            holds.add(new HoldStatus(item.getId(), item.getTitle(), ahead + 1, item.getHoldCount()));
+        }
+        return new Response<>(Response.Code.OK, holds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
     public Iterable<Reservation> getAll() {
         return reservationRepository.findAll();
     }
@@ -90,6 +470,7 @@ public class ReservationServiceImpl implements ReservationService {
     /**
      * {@inheritDoc}
      */
+    @Transactional(readOnly = true)
     public Reservation get(long id) {
         Optional<Reservation> reservationToFind = reservationRepository.findById(id);
         return reservationToFind.orElse(null);
@@ -98,6 +479,7 @@ public class ReservationServiceImpl implements ReservationService {
     /**
      * {@inheritDoc}
      */
+    @Transactional(readOnly = true)
     public Response<Iterable<Reservation>> getByUser(String username) {
         Optional<User> foundUser = userRepository.findById(username);
         return foundUser.map(user -> new Response<>(Response.Code.OK, reservationRepository.findReservationsByUser(user)))
@@ -107,6 +489,7 @@ public class ReservationServiceImpl implements ReservationService {
     /**
      * {@inheritDoc}
      */
+    @Transactional(readOnly = true)
     public Iterable<Reservation> search(long id, String username, String title, String type, String reservationDate) {
         Specification<Reservation> idEquals = ReservationSpecification.idEquals(id);
         Specification<Reservation> usernameLike = ReservationSpecification.usernameLike(username);
@@ -128,6 +511,13 @@ public class ReservationServiceImpl implements ReservationService {
      */
     // Visibility is set to public instead of private because Mockito doesn't support private methods mocking
     public boolean checkReservationLimits(User user, Item item) {
+        return checkReservationLimits(user, item, List.of());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean checkReservationLimits(User user, Item item, List<Item> pendingLoans) {
         // Admin users can borrow as many items they want
         if (!user.isAdmin()) {
             // Membership duration in years
@@ -142,6 +532,10 @@ public class ReservationServiceImpl implements ReservationService {
                     if (r.getItemType().equals("BOOK"))
                         nbBorrowed++;
                 }
+                for (Item pending : pendingLoans) {
+                    if (pending.getItemType().equals("BOOK"))
+                        nbBorrowed++;
+                }
                 return checkBookReservationLimits(membershipDuration, isAdult, nbBorrowed);
             } else if (item.getItemType().equals("DVD")) {
                 // Get the number of DVDs borrowed by the user
@@ -149,12 +543,31 @@ public class ReservationServiceImpl implements ReservationService {
                     if (r.getItemType().equals("DVD"))
                         nbBorrowed++;
                 }
+                for (Item pending : pendingLoans) {
+                    if (pending.getItemType().equals("DVD"))
+                        nbBorrowed++;
+                }
                 return checkDVDReservationLimits(membershipDuration, isAdult, nbBorrowed);
             }
         }
         return true;
     }
 
+    /**
+     * Compute the last day of a loan
+     * @param user  The user who borrows the item
+     * @param item  The borrowed item
+     * @param from  The day the loan starts
+     * @return      The due date: 21 days for a book, 7 for a DVD, a week more after two years of membership
+     */
+    // Visibility is set to public instead of private because Mockito doesn't support private methods mocking
+    public LocalDate computeDueDate(User user, Item item, LocalDate from) {
+        int days = "DVD".equals(item.getItemType()) ? DVD_LOAN_DAYS : BOOK_LOAN_DAYS;
+        if (ChronoUnit.YEARS.between(user.getRegistrationDate(), from) >= 2)
+            days += LOYALTY_EXTRA_DAYS;
+        return from.plusDays(days);
+    }
+
     /**
      * Check if a user can borrow a book
      * @param membershipDuration    The number of years since the registration date of the user
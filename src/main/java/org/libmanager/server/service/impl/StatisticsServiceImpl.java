@@ -0,0 +1,54 @@
+package org.libmanager.server.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.libmanager.server.response.CoalescingStatistics;
+import org.libmanager.server.response.RegionStatistics;
+import org.libmanager.server.search.RequestCoalescer;
+import org.libmanager.server.service.StatisticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class StatisticsServiceImpl implements StatisticsService {
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<RegionStatistics> getCacheStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<RegionStatistics> regions = new ArrayList<>();
+        String[] names = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(names);
+        for (String name : names) {
+            CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(name);
+            if (region == null)
+                continue;
+            regions.add(new RegionStatistics(name, region.getHitCount(), region.getMissCount(), region.getPutCount(),
+                                             region.getElementCountInMemory()));
+        }
+        return regions;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<CoalescingStatistics> getCoalescingStatistics() {
+        return requestCoalescer.getStatistics();
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.libmanager.server.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.ItemTombstone;
+import org.libmanager.server.entity.ReservationEvent;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.ItemTombstoneRepository;
+import org.libmanager.server.repository.ReservationEventRepository;
+import org.libmanager.server.response.ItemChange;
+import org.libmanager.server.response.ItemChanges;
+import org.libmanager.server.response.ReservationEvents;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.SyncService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class SyncServiceImpl implements SyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncServiceImpl.class);
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ItemTombstoneRepository itemTombstoneRepository;
+
+    @Autowired
+    private ReservationEventRepository reservationEventRepository;
+
+    @Autowired
+    private ChangeCounterRepository changeCounterRepository;
+
+    /** Maximum number of changes returned at once */
+    @Value("${libmanager.sync.page-size:1000}")
+    private int pageSize = 1000;
+
+    /** Number of days the deletions are kept, a client that did not synchronize for longer starts again from 0 */
+    @Value("${libmanager.sync.tombstone-retention-days:30}")
+    private int tombstoneRetentionDays = 30;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    public Response<ItemChanges> getChanges(long since, int limit) {
+        if (since < 0)
+            return new Response<>(Response.Code.INVALID_DATA, null);
+        // The deletions the client may not have were purged
+        if (since > 0 && since < changeCounterRepository.get(ChangeCounterRepository.PURGED_TOMBSTONES))
+            return new Response<>(Response.Code.SYNC_EXPIRED, null);
+        int size = limit <= 0 ? pageSize : Math.min(limit, pageSize);
+
+        // One more row of each kind tells whether there is a next page
+        Pageable page = PageRequest.of(0, size + 1);
+        List<Item> items = itemRepository.findByChangeSeqGreaterThanOrderByChangeSeq(since, page);
+        // A client starting from 0 has nothing to delete
+        List<ItemTombstone> tombstones = since == 0 ?
+                List.of() :
+                itemTombstoneRepository.findByChangeSeqGreaterThanOrderByChangeSeq(since, page);
+
+        List<ItemChange> changes = new ArrayList<>(Math.min(size, items.size() + tombstones.size()));
+        int i = 0;
+        int t = 0;
+        while (changes.size() < size && (i < items.size() || t < tombstones.size())) {
+            if (t == tombstones.size() ||
+                (i < items.size() && items.get(i).getChangeSeq() < tombstones.get(t).getChangeSeq())) {
+                Item item = items.get(i++);
+                changes.add(new ItemChange(item.getChangeSeq(), item.getId(), item.getItemType(), false, item));
+            } else {
+                ItemTombstone tombstone = tombstones.get(t++);
+                changes.add(new ItemChange(tombstone.getChangeSeq(), tombstone.getItemId(), tombstone.getItemType(),
+                                           true, null));
+            }
+        }
+        long next = changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq();
+        boolean more = i < items.size() || t < tombstones.size();
+        return new Response<>(Response.Code.OK, new ItemChanges(changes, next, more));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    public Response<ReservationEvents> getReservationEvents(long since, int limit) {
+        if (since < 0)
+            return new Response<>(Response.Code.INVALID_DATA, null);
+        // The journal starts after the events purged, a client starting from 0 reads what is left
+        if (since > 0 && since < changeCounterRepository.get(ChangeCounterRepository.PURGED_RESERVATION_EVENTS))
+            return new Response<>(Response.Code.SYNC_EXPIRED, null);
+        int size = limit <= 0 ? pageSize : Math.min(limit, pageSize);
+
+        // One more event tells whether there is a next page
+        List<ReservationEvent> events = reservationEventRepository.findBySeqGreaterThanOrderBySeq(
+                since, PageRequest.of(0, size + 1));
+        boolean more = events.size() > size;
+        if (more)
+            events = events.subList(0, size);
+        long next = events.isEmpty() ? since : events.get(events.size() - 1).getSeq();
+        return new Response<>(Response.Code.OK, new ReservationEvents(events, next, more));
+    }
+
+    /**
+     * Delete the deletions older than the retention, the clients asking for changes before them get SYNC_EXPIRED
+     */
+    @Scheduled(fixedDelayString = "${libmanager.sync.purge-interval:3600000}",
+               initialDelayString = "${libmanager.sync.purge-interval:3600000}")
+    @Transactional
+    public void purgeTombstones() {
+        Long purgeable = itemTombstoneRepository.findMaxChangeSeqDeletedBefore(
+                LocalDateTime.now().minusDays(tombstoneRetentionDays));
+        if (purgeable == null)
+            return;
+        changeCounterRepository.raise(ChangeCounterRepository.PURGED_TOMBSTONES, purgeable);
+        int purged = itemTombstoneRepository.deleteUpTo(purgeable);
+        logger.info("Purged {} item tombstones up to change {}", purged, purgeable);
+    }
+
+}
@@ -0,0 +1,266 @@
+package org.libmanager.server.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Copy;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.Transfer;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.inventory.AvailabilityEngine;
+import org.libmanager.server.repository.BranchRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.TransferRepository;
+import org.libmanager.server.repository.UserRepository;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.response.Shipment;
+import org.libmanager.server.response.TransferStatus;
+import org.libmanager.server.service.CopyService;
+import org.libmanager.server.service.ReservationService;
+import org.libmanager.server.service.TransferService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The transfers are queued without lock: a checkout never waits for them. The queue is drained by batches in the
+ * background, each batch locks the stocks of its transfers once, in the order of the items. The items are not locked,
+ * their available copies are refreshed from the stocks.
+ */
+@Service
+public class TransferServiceImpl implements TransferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferServiceImpl.class);
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private BranchRepository branchRepository;
+
+    @Autowired
+    private CopyService copyService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private AvailabilityEngine availabilityEngine;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** Number of transfers shipped by a transaction */
+    @Value("${libmanager.transfers.batch-size:200}")
+    private int batchSize = 200;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<TransferStatus> request(String username, long itemId, String branch) {
+        Optional<User> foundUser = userRepository.findById(username);
+        Optional<Item> foundItem = itemRepository.findById(itemId);
+        Optional<Branch> foundBranch = branch == null ? Optional.empty() : branchRepository.findById(branch);
+        if (foundUser.isEmpty() || foundItem.isEmpty() || foundBranch.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, null);
+        User user = foundUser.get();
+        Item item = foundItem.get();
+        if (transferRepository.existsByItemAndUser(item, user))
+            return new Response<>(Response.Code.ALREADY_EXISTS, null);
+
+        // Read without lock, the copies are counted again by the batch shipping them
+        boolean heldElsewhere = false;
+        for (BranchStock stock : copyService.getStocks(item)) {
+            if (stock.getBranch().getCode().equals(branch)) {
+                if (stock.getAvailableCopies() > 0)
+                    return new Response<>(Response.Code.AVAILABLE, null);
+            } else if (stock.getTotalCopies() > 0) {
+                heldElsewhere = true;
+            }
+        }
+        if (!heldElsewhere)
+            return new Response<>(Response.Code.NOT_AVAILABLE, null);
+
+        Transfer transfer = transferRepository.save(new Transfer(item, user, foundBranch.get()));
+        return new Response<>(Response.Code.OK, toStatus(transfer));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<Boolean> cancel(String username, long id) {
+        Optional<Transfer> foundTransfer = transferRepository.findByIdForUpdate(id);
+        if (foundTransfer.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, false);
+        Transfer transfer = foundTransfer.get();
+        if (username != null && !username.equals(transfer.getUser().getUsername()))
+            return new Response<>(Response.Code.INSUFFICIENT_PERMISSIONS, false);
+        // The copy left its shelf, it is received then returned
+        if (transfer.getStatus() != Transfer.Status.REQUESTED)
+            return new Response<>(Response.Code.FORBIDDEN, false);
+        transferRepository.delete(transfer);
+        return new Response<>(Response.Code.OK, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Response<Boolean> receive(long id) {
+        List<Long> itemIds = transferRepository.findItemIds(List.of(id));
+        if (itemIds.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, false);
+        // The stocks then the transfer, as the batches; the item is not locked
+        copyService.lockStocks(itemIds);
+        Optional<Item> foundItem = itemRepository.findById(itemIds.get(0));
+        Optional<Transfer> foundTransfer = transferRepository.findByIdForUpdate(id);
+        if (foundItem.isEmpty() || foundTransfer.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, false);
+        Item item = foundItem.get();
+        Transfer transfer = foundTransfer.get();
+        if (transfer.getStatus() != Transfer.Status.IN_TRANSIT)
+            return new Response<>(Response.Code.FORBIDDEN, false);
+
+        BranchStock from = copyService.lockStock(item, transfer.getFromBranch());
+        BranchStock to = copyService.moveCopy(from, transfer.getCopy(), transfer.getToBranch());
+        transferRepository.delete(transfer);
+        Response<Boolean> lent = reservationService.lendReserved(transfer.getUser(), item, to, transfer.getCopy());
+        if (lent.getCode() == Response.Code.OK)
+            return lent;
+
+        // The user can no longer borrow it, the copy goes on the shelf of its new branch
+        copyService.checkIn(to, transfer.getCopy());
+        return lent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    public Response<List<TransferStatus>> getByUser(String username) {
+        Optional<User> foundUser = userRepository.findById(username);
+        if (foundUser.isEmpty())
+            return new Response<>(Response.Code.NOT_FOUND, null);
+        List<TransferStatus> transfers = new ArrayList<>();
+        for (Transfer transfer : transferRepository.findByUserOrderByCreatedAt(foundUser.get()))
+            transfers.add(toStatus(transfer));
+        return new Response<>(Response.Code.OK, transfers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional(readOnly = true)
+    public List<Shipment> getShipments() {
+        // Ordered by source then destination branch, the transfers of a shipment are contiguous
+        List<Shipment> shipments = new ArrayList<>();
+        List<TransferStatus> current = null;
+        for (Transfer transfer : transferRepository.findInTransit()) {
+            TransferStatus status = toStatus(transfer);
+            if (current == null || !status.getFromBranch().equals(current.get(0).getFromBranch()) ||
+                !status.getToBranch().equals(current.get(0).getToBranch())) {
+                current = new ArrayList<>();
+                shipments.add(new Shipment(status.getFromBranch(), status.getToBranch(), current));
+            }
+            current.add(status);
+        }
+        return shipments;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Scheduled(fixedDelayString = "${libmanager.transfers.interval:60000}",
+               initialDelayString = "${libmanager.transfers.interval:60000}")
+    public int processQueue() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int shipped = 0;
+        long after = 0;
+        List<Long> ids;
+        // Read by pages after the last transfer, the transfers left waiting are not read again
+        while (!(ids = transferRepository.findRequestedIdsAfter(after, PageRequest.of(0, batchSize))).isEmpty()) {
+            List<Long> batch = ids;
+            Integer count = transaction.execute(status -> ship(batch));
+            shipped += count == null ? 0 : count;
+            after = ids.get(ids.size() - 1);
+        }
+        return shipped;
+    }
+
+    /**
+     * Take a copy for each transfer of a batch from the shelf of the branch with the most available copies
+     * @return  The number of transfers shipped
+     */
+    private int ship(List<Long> ids) {
+        List<Long> itemIds = transferRepository.findItemIds(ids);
+        Map<Long, Item> items = new HashMap<>();
+        for (Item item : itemRepository.findAllById(itemIds))
+            items.put(item.getId(), item);
+        // The copies of an item older than the branches are in the default branch
+        copyService.initStocks(items.values());
+        // The stocks then the transfers, the items are not locked
+        Map<Long, List<BranchStock>> stocks = new HashMap<>();
+        for (BranchStock stock : copyService.lockStocks(itemIds))
+            stocks.computeIfAbsent(stock.getItem().getId(), itemId -> new ArrayList<>()).add(stock);
+
+        int shipped = 0;
+        // By source then destination branch code, to be logged as shipments
+        Map<String, Integer> shipments = new TreeMap<>();
+        for (Transfer transfer : transferRepository.findAllByIdForUpdate(ids)) {
+            // Cancelled or shipped since the page was read
+            if (transfer.getStatus() != Transfer.Status.REQUESTED)
+                continue;
+            Item item = items.get(transfer.getItem().getId());
+            if (item == null)
+                continue;
+            List<BranchStock> itemStocks = stocks.getOrDefault(item.getId(), List.of());
+            String destination = transfer.getToBranch().getCode();
+            BranchStock source = itemStocks.stream()
+                                           .filter(stock -> !stock.getBranch().getCode().equals(destination))
+                                           .filter(stock -> stock.getAvailableCopies() > 0)
+                                           .max(Comparator.comparingInt(BranchStock::getAvailableCopies))
+                                           .orElse(null);
+            // Waits for a copy to be returned, or for the checkouts given in memory to be written
+            if (source == null || !availabilityEngine.reserve(item.getId()))
+                continue;
+            Copy copy = copyService.checkOut(source);
+            transfer.ship(source.getBranch(), copy);
+            shipped++;
+            shipments.merge(source.getBranch().getCode() + " -> " + destination, 1, Integer::sum);
+        }
+        shipments.forEach((pair, count) -> logger.info("Shipping {} copies {}", count, pair));
+        return shipped;
+    }
+
+    private static TransferStatus toStatus(Transfer transfer) {
+        Item item = transfer.getItem();
+        return new TransferStatus(transfer.getId(), item.getId(), item.getTitle(), transfer.getUser().getUsername(),
+                                  transfer.getFromBranch() == null ? null : transfer.getFromBranch().getCode(),
+                                  transfer.getToBranch().getCode(),
+                                  transfer.getCopy() == null ? null : transfer.getCopy().getBarcode(),
+                                  transfer.getStatus());
+    }
+
+}
@@ -10,8 +10,10 @@ import org.libmanager.server.specification.UserSpecification;
 import org.libmanager.server.util.DateUtil;
 import org.mindrot.jbcrypt.BCrypt;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class UserServiceImpl implements UserService {
@@ -19,9 +21,14 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserRepository userRepository;
 
+    /** Maximum number of users */
+    @Value("${libmanager.limits.max-users:2000}")
+    private long maxUsers = 2000;
+
     /**
      * {@inheritDoc}
      */
+    @Transactional(readOnly = true)
     public User get(String username) {
         Optional<User> userToFind = userRepository.findById(username);
         return userToFind.orElse(null);
@@ -30,6 +37,7 @@ public class UserServiceImpl implements UserService {
     /**
      * {@inheritDoc}
      */
+    @Transactional(readOnly = true)
     public Iterable<User> getAll() {
         return userRepository.findAll();
     }
@@ -37,6 +45,7 @@ public class UserServiceImpl implements UserService {
     /**
      * {@inheritDoc}
      */
+    @Transactional(readOnly = true)
     public Iterable<User> search(
             String username,
             String firstName,
@@ -64,6 +73,7 @@ public class UserServiceImpl implements UserService {
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public boolean add(
             String username,
             String firstName,
@@ -73,7 +83,7 @@ public class UserServiceImpl implements UserService {
             String birthday,
             String password
     ) {
-        if (userRepository.count() + 1 <= 2000) {
+        if (userRepository.count() + 1 <= maxUsers) {
             User user = new User();
             user.setUsername(username);
             user.setPassword(BCrypt.hashpw(password, BCrypt.gensalt()));
@@ -91,6 +101,7 @@ public class UserServiceImpl implements UserService {
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public boolean edit(
             String username,
             String firstName,
@@ -115,6 +126,7 @@ public class UserServiceImpl implements UserService {
     /**
      * {@inheritDoc}
      */
+    @Transactional
     public Response<Boolean> delete(String username) {
         Optional<User> foundUser = userRepository.findById(username);
         if (foundUser.isEmpty())
@@ -129,6 +141,7 @@ public class UserServiceImpl implements UserService {
     /**
      * {@inheritDoc}
      */
+    @Transactional(readOnly = true)
     public boolean usernameIsUnique(String username) {
         return get(username) == null;
     }
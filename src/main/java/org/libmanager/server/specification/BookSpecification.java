@@ -1,6 +1,7 @@
 package org.libmanager.server.specification;
 
 import java.time.LocalDate;
+import java.util.Locale;
 
 import org.libmanager.server.entity.Book;
 import org.springframework.data.jpa.domain.Specification;
@@ -11,28 +12,32 @@ public class BookSpecification {
         return ((root, query, criteriaBuilder) ->
                 title.equals("null") ?
                         criteriaBuilder.conjunction() :
-                        criteriaBuilder.like(root.get("title"), '%' + title + '%'));
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("title")),
+                                             '%' + title.toLowerCase(Locale.ROOT) + '%'));
     }
 
     public static Specification<Book> authorLike(String author) {
         return ((root, query, criteriaBuilder) ->
                 author.equals("null") ?
                         criteriaBuilder.conjunction() :
-                        criteriaBuilder.like(root.get("author"), '%' + author + '%'));
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("author")),
+                                             '%' + author.toLowerCase(Locale.ROOT) + '%'));
     }
 
     public static Specification<Book> publisherLike(String publisher) {
         return ((root, query, criteriaBuilder) ->
                 publisher.equals("null") ?
                         criteriaBuilder.conjunction() :
-                        criteriaBuilder.like(root.get("author"), '%' + publisher + '%'));
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("author")),
+                                             '%' + publisher.toLowerCase(Locale.ROOT) + '%'));
     }
 
     public static Specification<Book> isbnLike(String isbn) {
         return ((root, query, criteriaBuilder) ->
                 isbn.equals("null") ?
                         criteriaBuilder.conjunction() :
-                        criteriaBuilder.like(root.get("author"), '%' + isbn + '%'));
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("author")),
+                                             '%' + isbn.toLowerCase(Locale.ROOT) + '%'));
     }
 
     public static Specification<Book> genreEquals(String genre) {
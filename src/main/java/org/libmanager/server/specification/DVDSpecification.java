@@ -1,6 +1,7 @@
 package org.libmanager.server.specification;
 
 import java.time.LocalDate;
+import java.util.Locale;
 
 import org.libmanager.server.entity.DVD;
 import org.springframework.data.jpa.domain.Specification;
@@ -11,14 +12,16 @@ public class DVDSpecification {
         return ((root, query, criteriaBuilder) ->
                 title.equals("null") ?
                         criteriaBuilder.conjunction() :
-                        criteriaBuilder.like(root.get("title"), '%' + title + '%'));
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("title")),
+                                             '%' + title.toLowerCase(Locale.ROOT) + '%'));
     }
 
     public static Specification<DVD> directorLike(String director) {
         return ((root, query, criteriaBuilder) ->
                 director.equals("null") ?
                         criteriaBuilder.conjunction() :
-                        criteriaBuilder.like(root.get("author"), '%' + director + '%'));
+                        criteriaBuilder.like(criteriaBuilder.lower(root.get("author")),
+                                             '%' + director.toLowerCase(Locale.ROOT) + '%'));
     }
 
     public static Specification<DVD> genreEquals(String genre) {
@@ -0,0 +1,262 @@
+package org.libmanager.server.timer;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.repository.ReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Marks the loans overdue the day after their due date and sends the reminders a few days before, without scanning
+ * the reservations.
+ * <p>
+ * The loans due in the next days are kept in a {@link TimingWheel} ticking every minute. The wheel only holds a
+ * window of {@link #LOOKAHEAD_DAYS} days: every day, the loans due on the day entering the window are read with a
+ * range query on the index (overdue, due_date). A new loan is due later than the window, so it is read when its day
+ * enters it. At startup, the loans that became overdue and the reminders due while the application was stopped are
+ * handled first, with the same index.
+ * <p>
+ * A timeout only carries the id of the reservation: it is checked again when it fires, so a returned or renewed loan
+ * is simply skipped.
+ */
+@Component
+public class LoanTimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanTimer.class);
+
+    private static final long TICK_MILLIS = 60_000;
+
+    /** 64 buckets of 1 minute, 64 minutes and 68 hours: a horizon of 182 days */
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 3;
+
+    /** Number of days after today whose loans are in the wheel */
+    private static final int LOOKAHEAD_DAYS = 1;
+
+    /**
+     * A reminder of a new loan must be after the window: the shortest loan (7 days) minus the lookahead, minus 1
+     */
+    private static final int MAX_REMINDER_DAYS = 5;
+
+    /** Number of reservations read and updated by a transaction */
+    private static final int BATCH_SIZE = 500;
+
+    enum Kind {
+        REMINDER,
+        OVERDUE,
+        /** The start of a day: the loans of the day entering the window are scheduled */
+        DAY
+    }
+
+    private static final class Timeout {
+
+        final Kind kind;
+        final long reservationId;
+
+        Timeout(Kind kind, long reservationId) {
+            this.kind = kind;
+            this.reservationId = reservationId;
+        }
+
+    }
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    /** Number of days before the due date the reminder is sent */
+    @Value("${libmanager.loans.reminder-days:2}")
+    private int reminderDays = 2;
+
+    @Value("${libmanager.loans.timer-enabled:true}")
+    private boolean enabled = true;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /** Only used by the timer thread */
+    private TimingWheel<Timeout> wheel;
+
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+        if (reminderDays > MAX_REMINDER_DAYS) {
+            logger.warn("libmanager.loans.reminder-days is limited to {}", MAX_REMINDER_DAYS);
+            reminderDays = MAX_REMINDER_DAYS;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loan-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null)
+            scheduler.shutdownNow();
+    }
+
+    /**
+     * @return  The number of pending timeouts, -1 before the wheel is loaded
+     */
+    public int getScheduledCount() {
+        TimingWheel<Timeout> current = wheel;
+        return current == null ? -1 : current.size();
+    }
+
+    private void tick() {
+        try {
+            if (wheel == null) {
+                load();
+                return;
+            }
+            Map<Kind, List<Long>> expired = new EnumMap<>(Kind.class);
+            wheel.advance(System.currentTimeMillis(), timeout ->
+                    expired.computeIfAbsent(timeout.kind, kind -> new ArrayList<>()).add(timeout.reservationId));
+            if (expired.containsKey(Kind.DAY))
+                scheduleDay(LocalDate.now(zone));
+            if (expired.containsKey(Kind.OVERDUE))
+                process(Kind.OVERDUE, expired.get(Kind.OVERDUE));
+            if (expired.containsKey(Kind.REMINDER))
+                process(Kind.REMINDER, expired.get(Kind.REMINDER));
+        } catch (RuntimeException e) {
+            // Retried at the next tick, a failed load starts again
+            logger.warn("Loan timer tick failed", e);
+        }
+    }
+
+    /**
+     * Catch up with the loans due while stopped, then fill the wheel with the loans of the window
+     */
+    private void load() {
+        LocalDate today = LocalDate.now(zone);
+        long start = System.nanoTime();
+
+        List<Long> ids;
+        int overdue = 0;
+        while (!(ids = reservationRepository.findOpenIdsDueBefore(today, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+            process(Kind.OVERDUE, ids);
+            overdue += ids.size();
+        }
+        process(Kind.REMINDER, reservationRepository.findOpenIdsDueBetween(today, today.plusDays(reminderDays)));
+
+        TimingWheel<Timeout> loaded = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, WHEEL_LEVELS,
+                                                        System.currentTimeMillis());
+        for (int day = 0; day <= LOOKAHEAD_DAYS; day++)
+            scheduleSlice(loaded, Kind.OVERDUE, today.plusDays(day));
+        for (int day = 1; day <= LOOKAHEAD_DAYS; day++)
+            scheduleSlice(loaded, Kind.REMINDER, today.plusDays(reminderDays + day));
+        loaded.schedule(millis(today.plusDays(1)), new Timeout(Kind.DAY, 0));
+        wheel = loaded;
+        logger.info("Loan timer loaded {} timeouts, {} loans became overdue while stopped ({} ms)", loaded.size(),
+                    overdue, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Schedule the loans of the day entering the window
+     */
+    private void scheduleDay(LocalDate today) {
+        LocalDate due = today.plusDays(LOOKAHEAD_DAYS);
+        scheduleSlice(wheel, Kind.OVERDUE, due);
+        scheduleSlice(wheel, Kind.REMINDER, due.plusDays(reminderDays));
+        wheel.schedule(millis(today.plusDays(1)), new Timeout(Kind.DAY, 0));
+    }
+
+    /**
+     * Schedule a timeout for each open loan due on a day
+     */
+    private void scheduleSlice(TimingWheel<Timeout> target, Kind kind, LocalDate due) {
+        long deadline = millis(kind == Kind.OVERDUE ? due.plusDays(1) : due.minusDays(reminderDays));
+        List<Long> late = new ArrayList<>();
+        for (long id : reservationRepository.findOpenIdsDueBetween(due, due)) {
+            if (!target.schedule(deadline, new Timeout(kind, id)))
+                late.add(id);
+        }
+        // The day started while loading
+        if (!late.isEmpty())
+            process(kind, late);
+    }
+
+    private long millis(LocalDate day) {
+        return day.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Mark the loans overdue or send their reminders, if they are still due
+     */
+    private void process(Kind kind, List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            List<SimpleMailMessage> messages = new TransactionTemplate(transactionManager).execute(status -> {
+                LocalDate today = LocalDate.now(zone);
+                List<SimpleMailMessage> toSend = new ArrayList<>();
+                for (Reservation reservation : reservationRepository.findAllById(batch)) {
+                    if (reservation.isOverdue())
+                        continue;
+                    if (kind == Kind.OVERDUE && reservation.getDueDate().isBefore(today)) {
+                        reservation.setOverdue(true);
+                        toSend.add(message(reservation, "Overdue loan",
+                                           "The loan of \"" + reservation.getItem().getTitle() + "\" ended on " +
+                                           reservation.getDueDate() + ", please return it."));
+                    } else if (kind == Kind.REMINDER && !reservation.isReminderSent() &&
+                               !reservation.getDueDate().isAfter(today.plusDays(reminderDays))) {
+                        reservation.setReminderSent(true);
+                        toSend.add(message(reservation, "Loan ending soon",
+                                           "The loan of \"" + reservation.getItem().getTitle() + "\" ends on " +
+                                           reservation.getDueDate() + "."));
+                    }
+                }
+                return toSend;
+            });
+            // Sent once committed, a failed mail is not sent again
+            for (SimpleMailMessage message : messages) {
+                try {
+                    mailSender.send(message);
+                } catch (MailException e) {
+                    logger.warn("Could not send the loan mail to {}", (Object) message.getTo(), e);
+                }
+            }
+        }
+    }
+
+    private static SimpleMailMessage message(Reservation reservation, String subject, String text) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("no-reply@libmanager.org");
+        message.setTo(reservation.getUser().getEmail());
+        message.setSubject(subject);
+        message.setText(text);
+        return message;
+    }
+
+}
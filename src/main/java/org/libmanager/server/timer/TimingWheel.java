@@ -0,0 +1,159 @@
+package org.libmanager.server.timer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: schedules values at deadlines (in milliseconds) and gives them back once the clock
+ * passes their deadline.
+ * <p>
+ * Each level is a ring of buckets, a bucket of level {@code k} covers {@code tick * size^k} milliseconds. A value is put
+ * in the lowest level whose ring reaches its deadline. When the clock enters the range of a bucket of an upper level,
+ * its values move down to the lower levels, so each value moves at most once per level. Advancing the clock by a tick
+ * only reads the buckets of that tick: the cost does not depend on the number of scheduled values.
+ * <p>
+ * Deadlines are rounded up to the tick: a value is never given back early, and at most one tick late. Not thread-safe.
+ */
+public class TimingWheel<T> {
+
+    private static final class Entry<T> {
+
+        /** The deadline rounded up to the tick */
+        final long slot;
+        final T value;
+
+        Entry(long slot, T value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+    }
+
+    private final long tick;
+    private final int size;
+    /** The duration covered by a bucket of each level */
+    private final long[] spans;
+    private final ArrayDeque<Entry<T>>[][] buckets;
+
+    /** The current time, a multiple of the tick */
+    private long currentTime;
+
+    private int count;
+
+    /**
+     * @param tick      The resolution of the wheel in milliseconds
+     * @param size      The number of buckets of each level
+     * @param levels    The number of levels, the wheel holds deadlines up to {@code tick * size^levels} from now
+     * @param startTime The current time in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tick, int size, int levels, long startTime) {
+        if (tick <= 0 || size < 2 || levels < 1)
+            throw new IllegalArgumentException("Invalid timing wheel dimensions");
+        this.tick = tick;
+        this.size = size;
+        this.spans = new long[levels];
+        this.buckets = new ArrayDeque[levels][size];
+        long span = tick;
+        for (int level = 0; level < levels; level++) {
+            spans[level] = span;
+            span = Math.multiplyExact(span, size);
+            for (int i = 0; i < size; i++)
+                buckets[level][i] = new ArrayDeque<>();
+        }
+        this.currentTime = Math.floorDiv(startTime, tick) * tick;
+    }
+
+    /**
+     * @return  The latest deadline that can be scheduled now
+     */
+    public long getHorizon() {
+        int top = spans.length - 1;
+        return Math.floorDiv(currentTime, spans[top]) * spans[top] + spans[top] * size - tick;
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    /**
+     * @return  The number of scheduled values
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Schedule a value
+     * @return  False if the deadline is already passed: the value is not scheduled
+     * @throws IllegalArgumentException If the deadline is after the horizon
+     */
+    public boolean schedule(long deadline, T value) {
+        long slot = Math.floorDiv(deadline + tick - 1, tick) * tick;
+        if (slot <= currentTime)
+            return false;
+        if (slot > getHorizon())
+            throw new IllegalArgumentException("Deadline " + deadline + " is after the horizon " + getHorizon());
+        insert(new Entry<>(slot, value));
+        count++;
+        return true;
+    }
+
+    /**
+     * Put an entry whose slot is after the current time in the lowest level reaching it
+     */
+    private void insert(Entry<T> entry) {
+        for (int level = 0; level < spans.length; level++) {
+            long span = spans[level];
+            long bucketStart = Math.floorDiv(currentTime, span) * span;
+            if (entry.slot < bucketStart + span * size) {
+                buckets[level][(int) Math.floorMod(Math.floorDiv(entry.slot, span), (long) size)].add(entry);
+                return;
+            }
+        }
+        throw new IllegalStateException("Slot after the horizon");
+    }
+
+    /**
+     * Advance the clock tick by tick up to a time
+     * @param now       The current time in milliseconds
+     * @param expired   Receives the values whose deadline is passed, tick by tick
+     */
+    public void advance(long now, Consumer<T> expired) {
+        List<Entry<T>> moved = new ArrayList<>();
+        while (currentTime + tick <= now) {
+            currentTime += tick;
+            // The upper buckets starting now move down, highest level first
+            for (int level = spans.length - 1; level > 0; level--) {
+                if (Math.floorMod(currentTime, spans[level]) == 0) {
+                    ArrayDeque<Entry<T>> bucket = buckets[level][index(level)];
+                    moved.addAll(bucket);
+                    bucket.clear();
+                }
+            }
+            for (Entry<T> entry : moved) {
+                if (entry.slot <= currentTime) {
+                    count--;
+                    expired.accept(entry.value);
+                } else {
+                    insert(entry);
+                }
+            }
+            moved.clear();
+
+            ArrayDeque<Entry<T>> bucket = buckets[0][index(0)];
+            Entry<T> entry;
+            while ((entry = bucket.poll()) != null) {
+                count--;
+                expired.accept(entry.value);
+            }
+        }
+    }
+
+    private int index(int level) {
+        return (int) Math.floorMod(Math.floorDiv(currentTime, spans[level]), (long) size);
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.libmanager.server.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CsvUtil {
+
+    /**
+     * Split a CSV line into its fields.
+     * Fields can be quoted with double quotes, a double quote inside a quoted field is written twice.
+     *
+     * @param line
+     *          The line to split (without its line break)
+     * @return
+     *          The fields of the line
+     * @throws IllegalArgumentException
+     *          If a quoted field is not closed
+     */
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    // Escaped quote
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else
+                        quoted = false;
+                } else
+                    field.append(c);
+            } else if (c == '"')
+                quoted = true;
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else
+                field.append(c);
+        }
+        if (quoted)
+            throw new IllegalArgumentException("Unterminated quoted field");
+        fields.add(field.toString());
+        return fields;
+    }
+
+}
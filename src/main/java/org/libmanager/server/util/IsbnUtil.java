@@ -0,0 +1,61 @@
+package org.libmanager.server.util;
+
+import java.util.Locale;
+
+public class IsbnUtil {
+
+    /**
+     * Normalize an ISBN-10 or ISBN-13 and verify its check digit
+     * @param isbn  The ISBN, hyphens and spaces are allowed
+     * @return      The ISBN without separators (with an uppercase X check digit for ISBN-10) if it is valid,
+     *              null otherwise
+     */
+    public static String normalize(String isbn) {
+        if (isbn == null)
+            return null;
+        String normalized = isbn.replace("-", "").replace(" ", "").toUpperCase(Locale.ROOT);
+        if (normalized.length() == 13 && isValidIsbn13(normalized))
+            return normalized;
+        if (normalized.length() == 10 && isValidIsbn10(normalized))
+            return normalized;
+        return null;
+    }
+
+    /**
+     * Check if a string is a valid ISBN-10 or ISBN-13
+     * @param isbn  The ISBN to check
+     * @return      True if the ISBN is valid, false otherwise
+     */
+    public static boolean isValid(String isbn) {
+        return normalize(isbn) != null;
+    }
+
+    private static boolean isValidIsbn10(String isbn) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = isbn.charAt(i);
+            int digit;
+            // The check digit can be X (10)
+            if (i == 9 && c == 'X')
+                digit = 10;
+            else if (c >= '0' && c <= '9')
+                digit = c - '0';
+            else
+                return false;
+            sum += (10 - i) * digit;
+        }
+        return sum % 11 == 0;
+    }
+
+    private static boolean isValidIsbn13(String isbn) {
+        int sum = 0;
+        for (int i = 0; i < 13; i++) {
+            char c = isbn.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+            sum += (c - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return sum % 10 == 0;
+    }
+
+}
@@ -0,0 +1,182 @@
+package org.libmanager.server.checkout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.idempotency.IdempotencyStore;
+import org.libmanager.server.request.CheckoutRequest;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.ReservationService;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CheckoutLanesTest {
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private final CheckoutLanes checkoutLanes = new CheckoutLanes();
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(checkoutLanes, "enabled", true);
+        ReflectionTestUtils.setField(checkoutLanes, "laneCount", 1);
+        checkoutLanes.start();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+        checkoutLanes.stop();
+    }
+
+    @Test
+    @DisplayName("Commits the checkouts queued while the lane commits in one transaction")
+    public void add_shouldCommitQueuedCheckoutsTogether() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<String>> groups = Collections.synchronizedList(new ArrayList<>());
+        when(reservationService.addAll(eq(1L), anyList())).thenAnswer(invocation -> {
+            List<CheckoutRequest> requests = invocation.getArgument(1);
+            List<String> usernames = new ArrayList<>();
+            List<Response<Boolean>> responses = new ArrayList<>();
+            for (CheckoutRequest request : requests) {
+                usernames.add(request.getUsername());
+                // One copy, lent to the first request
+                responses.add(groups.isEmpty() ?
+                                      new Response<>(Response.Code.OK, true) :
+                                      new Response<>(Response.Code.NOT_AVAILABLE, false));
+            }
+            groups.add(usernames);
+            started.countDown();
+            release.await();
+            return responses;
+        });
+
+        Future<Response<Boolean>> first = executor.submit(() -> checkoutLanes.add("Foo", 1L, null));
+        started.await();
+        List<Future<Response<Boolean>>> queued = new ArrayList<>();
+        for (String username : List.of("Bar", "Baz", "Qux"))
+            queued.add(executor.submit(() -> checkoutLanes.add(username, 1L, null)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (checkoutLanes.getQueueLength() < 3 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        release.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS).getCode()).isEqualTo(Response.Code.OK);
+        for (Future<Response<Boolean>> response : queued)
+            assertThat(response.get(10, TimeUnit.SECONDS).getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        assertThat(groups).hasSize(2);
+        assertThat(groups.get(1)).containsExactlyInAnyOrder("Bar", "Baz", "Qux");
+    }
+
+    @Test
+    @DisplayName("Throws the exception of a transaction rolled back to each checkout of the group")
+    public void add_shouldThrow_whenTransactionFails() {
+        when(reservationService.addAll(eq(1L), anyList())).thenThrow(new CannotAcquireLockException("Deadlock"));
+
+        assertThatThrownBy(() -> checkoutLanes.add("Foo", 1L, null)).isInstanceOf(CannotAcquireLockException.class);
+    }
+
+    @Test
+    @DisplayName("Records the Idempotency-Key with the loan, in the transaction of the lane")
+    public void add_shouldRecordKey_whenKeyIsGiven() {
+        IdempotencyStore.Key key = new IdempotencyStore.Key("reservation.add:Foo:k1", "hash");
+        Response<Boolean> lent = new Response<>(Response.Code.OK, true);
+        when(reservationService.addAll(eq(1L), anyList())).thenReturn(List.of(lent));
+
+        Response<Boolean> result = checkoutLanes.add("Foo", 1L, null, key);
+
+        assertThat(result).isSameAs(lent);
+        verify(idempotencyStore).record(key, lent);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("Gives back the response recorded for the Idempotency-Key without lending again")
+    public void add_shouldReturnRecordedResponse_whenKeyIsRecorded() {
+        IdempotencyStore.Key key = new IdempotencyStore.Key("reservation.add:Foo:k1", "hash");
+        when(idempotencyStore.find(key, Boolean.class)).thenReturn(new Response<>(Response.Code.OK, true));
+
+        Response<Boolean> result = checkoutLanes.add("Foo", 1L, null, key);
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+        verify(reservationService, never()).addAll(eq(1L), anyList());
+    }
+
+    @Test
+    @DisplayName("Commits the checkouts of a group rolled back one by one")
+    public void add_shouldCommitCheckoutsAlone_whenGroupFails() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IdempotencyStore.Key recorded = new IdempotencyStore.Key("reservation.add:Bar:k1", "hash");
+        when(reservationService.addAll(eq(1L), anyList())).thenAnswer(invocation -> {
+            List<CheckoutRequest> requests = invocation.getArgument(1);
+            if (requests.get(0).getUsername().equals("Foo")) {
+                started.countDown();
+                release.await();
+            }
+            List<Response<Boolean>> responses = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++)
+                responses.add(new Response<>(Response.Code.OK, true));
+            return responses;
+        });
+        // Recorded by another instance meanwhile
+        doThrow(new DataIntegrityViolationException("Duplicate")).when(idempotencyStore).record(eq(recorded), any());
+
+        Future<Response<Boolean>> first = executor.submit(() -> checkoutLanes.add("Foo", 1L, null));
+        started.await();
+        Future<Response<Boolean>> failing = executor.submit(() -> checkoutLanes.add("Bar", 1L, null, recorded));
+        Future<Response<Boolean>> other = executor.submit(() -> checkoutLanes.add("Baz", 1L, null));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (checkoutLanes.getQueueLength() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        release.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS).getCode()).isEqualTo(Response.Code.OK);
+        assertThat(other.get(10, TimeUnit.SECONDS).getCode()).isEqualTo(Response.Code.OK);
+        assertThatThrownBy(() -> failing.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+        // The first, the group, then each checkout of the group
+        verify(reservationService, times(4)).addAll(eq(1L), anyList());
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.libmanager.server.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two embedded databases stand for the primary and its replica, {@link #replicate()} stands for the replication
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    private ReplicaMonitor monitor;
+    private JdbcTemplate routed;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate readWriteTransaction;
+
+    private static DataSource database(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    @BeforeEach
+    public void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        DataSource primaryDataSource = database("primary-" + suffix);
+        DataSource replicaDataSource = database("replica-" + suffix);
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        for (JdbcTemplate database : List.of(primary, replica)) {
+            database.execute("CREATE TABLE node (name VARCHAR(16) NOT NULL)");
+            database.execute("CREATE TABLE replication_heartbeat (id INT NOT NULL PRIMARY KEY, beat BIGINT NOT NULL)");
+        }
+        primary.update("INSERT INTO node (name) VALUES ('primary')");
+        replica.update("INSERT INTO node (name) VALUES ('replica')");
+
+        setUpRouting(primaryDataSource, replicaDataSource);
+    }
+
+    private void setUpRouting(DataSource primaryDataSource, DataSource replicaDataSource) {
+        monitor = new ReplicaMonitor(primaryDataSource, List.of(replicaDataSource), Duration.ofSeconds(5),
+                                     Duration.ofSeconds(1));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryDataSource, List.of(replicaDataSource), monitor));
+        routed = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        monitor.stop();
+        primary.execute("SHUTDOWN");
+        replica.execute("SHUTDOWN");
+    }
+
+    /**
+     * Copy the heartbeat of the primary to the replica
+     */
+    private void replicate() {
+        Long beat = primary.queryForObject("SELECT beat FROM replication_heartbeat WHERE id = 1", Long.class);
+        replica.update("DELETE FROM replication_heartbeat");
+        replica.update("INSERT INTO replication_heartbeat (id, beat) VALUES (1, ?)", beat);
+    }
+
+    private String readOnlyNode() {
+        return readOnlyTransaction.execute(status -> routed.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    @Test
+    @DisplayName("Sends read-only transactions to an up to date replica")
+    public void readOnlyTransaction_shouldUseReplica_whenReplicaIsUpToDate() {
+        monitor.check();
+        replicate();
+        monitor.check();
+
+        assertThat(monitor.isHealthy(0)).isTrue();
+        assertThat(readOnlyNode()).isEqualTo("replica");
+    }
+
+    @Test
+    @DisplayName("Keeps write transactions and statements outside of a transaction on the primary")
+    public void readWriteTransaction_shouldUsePrimary() {
+        monitor.check();
+        replicate();
+        monitor.check();
+
+        assertThat(readWriteTransaction.execute(status -> routed.queryForObject("SELECT name FROM node", String.class)))
+                .isEqualTo("primary");
+        assertThat(routed.queryForObject("SELECT name FROM node", String.class)).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("Sends the read-only transactions to the primary while the reads must be on the primary")
+    public void readOnlyTransaction_shouldUsePrimary_whenReadOnPrimary() {
+        monitor.check();
+        replicate();
+        monitor.check();
+
+        assertThat(ReplicaRoutingDataSource.readOnPrimary(this::readOnlyNode)).isEqualTo("primary");
+        assertThat(ReplicaRoutingDataSource.isPrimaryRead()).isFalse();
+        assertThat(readOnlyNode()).isEqualTo("replica");
+    }
+
+    @Test
+    @DisplayName("Falls back to the primary when the replica lags")
+    public void readOnlyTransaction_shouldUsePrimary_whenReplicaLags() {
+        replica.update("INSERT INTO replication_heartbeat (id, beat) VALUES (1, ?)",
+                       System.currentTimeMillis() - 60_000);
+        monitor.check();
+
+        assertThat(monitor.isHealthy(0)).isFalse();
+        assertThat(monitor.getLag(0)).isGreaterThanOrEqualTo(60_000);
+        assertThat(readOnlyNode()).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("Falls back to the primary when the replica has not replicated any heartbeat")
+    public void readOnlyTransaction_shouldUsePrimary_whenNoHeartbeatIsReplicated() {
+        monitor.check();
+
+        assertThat(monitor.isHealthy(0)).isFalse();
+        assertThat(readOnlyNode()).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("Falls back to the primary when the replica is down")
+    public void readOnlyTransaction_shouldUsePrimary_whenReplicaIsDown() {
+        DataSource primaryDataSource = primary.getDataSource();
+        // Nothing listens on this port: the connection is refused
+        DataSource downDataSource = new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/down", "sa", "");
+        setUpRouting(primaryDataSource, downDataSource);
+        monitor.check();
+
+        assertThat(monitor.isHealthy(0)).isFalse();
+        assertThat(monitor.getLag(0)).isEqualTo(-1);
+        assertThat(readOnlyNode()).isEqualTo("primary");
+    }
+
+}
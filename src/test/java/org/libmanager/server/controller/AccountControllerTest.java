@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.libmanager.server.event.CatalogVersion;
 import org.libmanager.server.response.AuthenticatedUser;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.service.AccountService;
@@ -29,6 +30,9 @@ public class AccountControllerTest {
     @MockBean
     private AccountService accountService;
 
+    @MockBean
+    private CatalogVersion catalogVersion;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -2,12 +2,16 @@ package org.libmanager.server.controller;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.libmanager.server.config.ReplicaRoutingDataSource;
 import org.libmanager.server.entity.Book;
+import org.libmanager.server.event.CatalogVersion;
+import org.libmanager.server.idempotency.IdempotencyStore;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.service.BookService;
 import org.libmanager.server.util.TokenUtil;
@@ -15,12 +19,20 @@ import org.mockito.MockedStatic;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -30,6 +42,12 @@ public class BookControllerTest {
     @MockBean
     private BookService bookService;
 
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -63,6 +81,39 @@ public class BookControllerTest {
             }
         }
 
+        @Test
+        @DisplayName("Adds the book once per Idempotency-Key")
+        public void add_shouldGoThroughIdempotencyStore_whenKeyIsGiven() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("admin");
+
+                when(idempotencyStore.execute(eq("book.add:admin"), eq("k1"),
+                                              eq(Arrays.asList("Foo", "Foo", "Foo", "Foo", "Foo",
+                                                               LocalDate.EPOCH.toString(), 1)),
+                                              eq(Boolean.class), any()))
+                        .thenReturn(new Response<>(Response.Code.OK, true));
+
+                mockMvc.perform(post(uri)
+                .header(IdempotencyStore.HEADER, "k1")
+                .param("token", "Foo")
+                .param("title", "Foo")
+                .param("author", "Foo")
+                .param("publisher", "Foo")
+                .param("genre", "Foo")
+                .param("isbn", "Foo")
+                .param("releaseDate", LocalDate.EPOCH.toString())
+                .param("totalCopies", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
+                verify(bookService, never()).add("Foo", "Foo", "Foo", "Foo", "Foo", LocalDate.EPOCH.toString(), 1);
+            }
+        }
+
         @Test
         @DisplayName("Returns MAX_ITEMS_REACHED if params are correct and token is valid and is admin and max books limit is reached")
         public void add_ShouldReturnOk_whenParamsAreCorrectAndTokenIsValidAndIsAdminAndMaxBooksLimitIsReached() throws Exception {
@@ -436,4 +487,67 @@ public class BookControllerTest {
 
     }
 
+    @Nested
+    class ConditionalGet {
+
+        private final String uri = "/item/book/all";
+
+        @Test
+        @DisplayName("Returns the ETag of the catalog version")
+        public void getAllBooks_shouldReturnETag() throws Exception {
+            when(catalogVersion.getETag()).thenReturn("\"41\"");
+            when(bookService.getAll()).thenReturn(Arrays.asList(new Book(), new Book()));
+
+            mockMvc.perform(get(uri))
+                   .andExpect(status().isOk())
+                   .andExpect(header().string(HttpHeaders.ETAG, "\"41\""));
+        }
+
+        @Test
+        @DisplayName("Returns NOT_MODIFIED without reading the catalog if the ETag matches")
+        public void getAllBooks_shouldReturnNotModified_whenETagMatches() throws Exception {
+            when(catalogVersion.getETag()).thenReturn("\"41\"");
+
+            mockMvc.perform(get(uri)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"41\""))
+                   .andExpect(status().isNotModified())
+                   .andExpect(content().string(""));
+
+            verify(bookService, never()).getAll();
+        }
+
+        @Test
+        @DisplayName("Returns the books if the catalog changed since the ETag")
+        public void getAllBooks_shouldReturnOK_whenCatalogChanged() throws Exception {
+            when(catalogVersion.getETag()).thenReturn("\"42\"");
+            when(bookService.getAll()).thenReturn(Arrays.asList(new Book(), new Book()));
+
+            mockMvc.perform(get(uri)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"41\""))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                   .andExpect(header().string(HttpHeaders.ETAG, "\"42\""));
+        }
+
+        @Test
+        @DisplayName("Reads the books sent with the ETag on the primary")
+        public void getAllBooks_shouldReadOnPrimary_whenCatalogChanged() throws Exception {
+            when(catalogVersion.getETag()).thenReturn("\"42\"");
+            AtomicBoolean primaryRead = new AtomicBoolean();
+            when(bookService.getAll()).thenAnswer(invocation -> {
+                primaryRead.set(ReplicaRoutingDataSource.isPrimaryRead());
+                return Arrays.asList(new Book(), new Book());
+            });
+
+            mockMvc.perform(get(uri)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"41\""))
+                   .andExpect(status().isOk());
+
+            assertThat(primaryRead).isTrue();
+            // Only for the request
+            assertThat(ReplicaRoutingDataSource.isPrimaryRead()).isFalse();
+        }
+
+    }
+
 }
\ No newline at end of file
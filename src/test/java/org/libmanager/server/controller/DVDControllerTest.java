@@ -8,6 +8,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.libmanager.server.entity.DVD;
+import org.libmanager.server.event.CatalogVersion;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.service.DVDService;
 import org.libmanager.server.util.TokenUtil;
@@ -30,6 +31,9 @@ public class DVDControllerTest {
     @MockBean
     private DVDService dvdService;
 
+    @MockBean
+    private CatalogVersion catalogVersion;
+
     @Autowired
     private MockMvc mockMvc;
 
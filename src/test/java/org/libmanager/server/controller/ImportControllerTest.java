@@ -0,0 +1,163 @@
+package org.libmanager.server.controller;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.libmanager.server.event.CatalogVersion;
+import org.libmanager.server.response.ImportReport;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.ImportService;
+import org.libmanager.server.util.TokenUtil;
+import org.mockito.ArgumentMatchers;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ImportController.class)
+public class ImportControllerTest {
+
+    @MockBean
+    private ImportService importService;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final MockMultipartFile file = new MockMultipartFile(
+            "file", "items.csv", "text/csv", "title\n".getBytes(StandardCharsets.UTF_8));
+
+    @Nested
+    class ImportBooks {
+
+        private final String uri = "/import/book";
+
+        @Test
+        @DisplayName("Returns OK if token is valid and is admin")
+        public void importBooks_shouldReturnOk_whenTokenIsValidAndIsAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+
+                ImportReport report = new ImportReport(10, false);
+                report.add(2, Response.Code.OK);
+                when(importService.importBooks(ArgumentMatchers.any(), ArgumentMatchers.eq("csv")))
+                        .thenReturn(new Response<>(Response.Code.OK, report));
+
+                mockMvc.perform(multipart(uri)
+                        .file(file)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                       .andExpect(jsonPath("$.content.imported").value(1));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INSUFFICIENT_PERMISSIONS if token is valid and is not admin")
+        public void importBooks_shouldReturnInsufficientPermissions_whenTokenIsValidAndIsNotAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(multipart(uri)
+                        .file(file)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INSUFFICIENT_PERMISSIONS.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_TOKEN if token is invalid")
+        public void importBooks_shouldReturnInvalidToken_whenTokenIsInvalid() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(multipart(uri)
+                        .file(file)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INVALID_TOKEN.toString()));
+            }
+        }
+
+    }
+
+    @Nested
+    class ImportDVDs {
+
+        private final String uri = "/import/dvd";
+
+        @Test
+        @DisplayName("Returns OK if token is valid and is admin")
+        public void importDVDs_shouldReturnOk_whenTokenIsValidAndIsAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+
+                when(importService.importDVDs(ArgumentMatchers.any(), ArgumentMatchers.eq("ndjson")))
+                        .thenReturn(new Response<>(Response.Code.OK, new ImportReport(10, false)));
+
+                mockMvc.perform(multipart(uri)
+                        .file(file)
+                        .param("token", "Foo")
+                        .param("format", "ndjson"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
+            }
+        }
+
+    }
+
+    @Nested
+    class ImportUsers {
+
+        private final String uri = "/import/user";
+
+        @Test
+        @DisplayName("Returns OK if token is valid and is admin")
+        public void importUsers_shouldReturnOk_whenTokenIsValidAndIsAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+
+                ImportReport report = new ImportReport(10, true);
+                report.add(2, Response.Code.OK);
+                report.add(3, Response.Code.ALREADY_EXISTS);
+                when(importService.importUsers(ArgumentMatchers.any()))
+                        .thenReturn(new Response<>(Response.Code.OK, report));
+
+                mockMvc.perform(multipart(uri)
+                        .file(file)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                       .andExpect(jsonPath("$.content.rows[1].code").value(Response.Code.ALREADY_EXISTS.toString()));
+            }
+        }
+
+    }
+
+}
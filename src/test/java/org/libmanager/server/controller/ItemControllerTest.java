@@ -1,21 +1,34 @@
 package org.libmanager.server.controller;
 
+import java.util.List;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.libmanager.server.event.AvailabilityBroker;
+import org.libmanager.server.event.CatalogVersion;
+import org.libmanager.server.response.BranchAvailability;
+import org.libmanager.server.response.ItemChanges;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.service.ItemService;
+import org.libmanager.server.service.SyncService;
 import org.libmanager.server.util.TokenUtil;
 import org.mockito.MockedStatic;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(ItemController.class)
@@ -24,6 +37,15 @@ public class ItemControllerTest {
     @MockBean
     private ItemService itemService;
 
+    @MockBean
+    private SyncService syncService;
+
+    @MockBean
+    private AvailabilityBroker availabilityBroker;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -99,4 +121,106 @@ public class ItemControllerTest {
         }
     }
 
+    @Nested
+    class GetAvailability {
+
+        private final String uri = "/item/availability/{id}";
+
+        @Test
+        @DisplayName("GetAvailability should return OK and the copies of each branch")
+        public void getAvailability_shouldReturnOk_whenItemIsFound() throws Exception {
+            List<BranchAvailability> availability = List.of(new BranchAvailability("MAIN", "Main", 3, 1),
+                                                            new BranchAvailability("EAST", "East", 2, 2));
+            when(itemService.getAvailability(1)).thenReturn(new Response<>(Response.Code.OK, availability));
+
+            mockMvc.perform(get(uri, 1))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                   .andExpect(jsonPath("$.content[0].branch").value("MAIN"))
+                   .andExpect(jsonPath("$.content[0].availableCopies").value(1))
+                   .andExpect(jsonPath("$.content[1].totalCopies").value(2));
+        }
+
+        @Test
+        @DisplayName("GetAvailability should return NOT_FOUND if the item is not found")
+        public void getAvailability_shouldReturnNotFound_whenItemIsNotFound() throws Exception {
+            when(itemService.getAvailability(1)).thenReturn(new Response<>(Response.Code.NOT_FOUND, null));
+
+            mockMvc.perform(get(uri, 1))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.code").value(Response.Code.NOT_FOUND.toString()));
+        }
+
+        @Test
+        @DisplayName("GetAvailability should return NOT_MODIFIED if the catalog did not change since the ETag")
+        public void getAvailability_shouldReturnNotModified_whenETagMatches() throws Exception {
+            when(catalogVersion.getETag()).thenReturn("\"41\"");
+
+            mockMvc.perform(get(uri, 1)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"41\""))
+                   .andExpect(status().isNotModified());
+
+            verify(itemService, never()).getAvailability(1);
+        }
+    }
+
+    @Nested
+    class GetChanges {
+
+        private final String uri = "/item/changes";
+
+        @Test
+        @DisplayName("GetChanges should return OK and the changes since the given position")
+        public void getChanges_shouldReturnOk_whenParamsAreCorrect() throws Exception {
+            when(syncService.getChanges(10, 100))
+                    .thenReturn(new Response<>(Response.Code.OK, new ItemChanges(List.of(), 10, false)));
+
+            mockMvc.perform(get(uri)
+                    .param("since", "10")
+                    .param("limit", "100"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                   .andExpect(jsonPath("$.content.next").value(10))
+                   .andExpect(jsonPath("$.content.more").value(false));
+        }
+
+        @Test
+        @DisplayName("GetChanges should return SYNC_EXPIRED if the deletions since the given position were purged")
+        public void getChanges_shouldReturnSyncExpired_whenDeletionsWerePurged() throws Exception {
+            when(syncService.getChanges(10, 0)).thenReturn(new Response<>(Response.Code.SYNC_EXPIRED, null));
+
+            mockMvc.perform(get(uri)
+                    .param("since", "10"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.code").value(Response.Code.SYNC_EXPIRED.toString()));
+        }
+    }
+
+    @Nested
+    class Events {
+
+        private final String uri = "/item/events";
+
+        @Test
+        @DisplayName("Events should subscribe to the given items and genres and start the stream")
+        public void events_shouldStartStream_whenFiltersAreGiven() throws Exception {
+            when(availabilityBroker.subscribe(List.of(1L, 2L), List.of("NOVEL"))).thenReturn(new SseEmitter());
+
+            mockMvc.perform(get(uri)
+                    .param("items", "1,2")
+                    .param("genres", "NOVEL"))
+                   .andExpect(status().isOk())
+                   .andExpect(request().asyncStarted());
+        }
+
+        @Test
+        @DisplayName("Events should subscribe to every item if no filter is given")
+        public void events_shouldSubscribeToEveryItem_whenNoFilterIsGiven() throws Exception {
+            when(availabilityBroker.subscribe(null, null)).thenReturn(new SseEmitter());
+
+            mockMvc.perform(get(uri))
+                   .andExpect(request().asyncStarted());
+        }
+    }
+
 }
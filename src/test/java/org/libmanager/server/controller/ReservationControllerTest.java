@@ -1,25 +1,49 @@
 package org.libmanager.server.controller;
 
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.libmanager.server.checkout.CheckoutLanes;
 import org.libmanager.server.entity.Book;
 import org.libmanager.server.entity.Item;
 import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.entity.ReservationEvent;
+import org.libmanager.server.entity.Transfer;
 import org.libmanager.server.entity.User;
+import org.libmanager.server.event.CatalogVersion;
+import org.libmanager.server.idempotency.IdempotencyStore;
+import org.libmanager.server.inventory.AvailabilityEngine;
+import org.libmanager.server.response.HoldStatus;
+import org.libmanager.server.response.KioskEventResult;
+import org.libmanager.server.response.ReservationEvents;
+import org.libmanager.server.response.ReservationResult;
 import org.libmanager.server.response.Response;
+import org.libmanager.server.response.TransferStatus;
+import org.libmanager.server.service.KioskService;
 import org.libmanager.server.service.ReservationService;
+import org.libmanager.server.service.SyncService;
+import org.libmanager.server.service.TransferService;
 import org.libmanager.server.util.TokenUtil;
 import org.mockito.MockedStatic;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -32,6 +56,27 @@ public class ReservationControllerTest {
     @MockBean
     private ReservationService reservationService;
 
+    @MockBean
+    private TransferService transferService;
+
+    @MockBean
+    private KioskService kioskService;
+
+    @MockBean
+    private SyncService syncService;
+
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
+    @MockBean
+    private CheckoutLanes checkoutLanes;
+
+    @MockBean
+    private AvailabilityEngine availabilityEngine;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -49,14 +94,126 @@ public class ReservationControllerTest {
                 mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
                                .thenReturn("Foo");
 
-                when(reservationService.add("Foo", 1))
+                when(reservationService.add("Foo", 1, null))
+                        .thenReturn(new Response<>(Response.Code.OK, true));
+
+                mockMvc.perform(post(uri)
+                        .param("token", "Foo")
+                        .param("itemId", "1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Runs the reservation once per Idempotency-Key")
+        public void add_shouldGoThroughIdempotencyStore_whenKeyIsGiven() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(idempotencyStore.execute(eq("reservation.add:Foo"), eq("k1"), eq(Arrays.asList(1L, null)),
+                                              eq(Boolean.class), any()))
                         .thenReturn(new Response<>(Response.Code.OK, true));
 
                 mockMvc.perform(post(uri)
+                        .header(IdempotencyStore.HEADER, "k1")
                         .param("token", "Foo")
                         .param("itemId", "1"))
                        .andExpect(status().isOk())
                        .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
+                verify(reservationService, never()).add("Foo", 1, null);
+            }
+        }
+
+        @Test
+        @DisplayName("Queues the reservation in the lane of the item when the lanes are enabled")
+        public void add_shouldGoThroughCheckoutLanes_whenLanesAreEnabled() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(checkoutLanes.isEnabled()).thenReturn(true);
+                when(checkoutLanes.add("Foo", 1, null))
+                        .thenReturn(new Response<>(Response.Code.NOT_AVAILABLE, false));
+
+                mockMvc.perform(post(uri)
+                        .param("token", "Foo")
+                        .param("itemId", "1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.NOT_AVAILABLE.toString()));
+                verify(reservationService, never()).add("Foo", 1, null);
+            }
+        }
+
+        @Test
+        @DisplayName("Records the Idempotency-Key in the transaction of the lane when the lanes are enabled")
+        public void add_shouldRecordKeyInLane_whenLanesAreEnabledAndKeyIsGiven() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(checkoutLanes.isEnabled()).thenReturn(true);
+                when(idempotencyStore.executeRecorded(eq("reservation.add:Foo"), eq("k1"),
+                                                      eq(Arrays.asList(1L, null)), eq(Boolean.class), any()))
+                        .thenReturn(new Response<>(Response.Code.OK, true));
+
+                mockMvc.perform(post(uri)
+                        .header(IdempotencyStore.HEADER, "k1")
+                        .param("token", "Foo")
+                        .param("itemId", "1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
+                verify(idempotencyStore, never()).execute(any(), any(), any(), any(), any());
+            }
+        }
+
+        @Test
+        @DisplayName("Decides the reservation in memory when the availability engine is enabled")
+        public void add_shouldGoThroughAvailabilityEngine_whenEngineIsEnabled() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(availabilityEngine.isEnabled()).thenReturn(true);
+                when(availabilityEngine.add("Foo", 1, null))
+                        .thenReturn(new Response<>(Response.Code.OK, true));
+
+                mockMvc.perform(post(uri)
+                        .param("token", "Foo")
+                        .param("itemId", "1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
+                verify(reservationService, never()).add("Foo", 1, null);
+            }
+        }
+
+        @Test
+        @DisplayName("Lends from the given branch")
+        public void add_shouldPassBranch_whenBranchIsGiven() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(reservationService.add("Foo", 1, "EAST"))
+                        .thenReturn(new Response<>(Response.Code.OK, true));
+
+                mockMvc.perform(post(uri)
+                        .param("token", "Foo")
+                        .param("itemId", "1")
+                        .param("branch", "EAST"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
             }
         }
 
@@ -69,7 +226,7 @@ public class ReservationControllerTest {
                 mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
                                .thenReturn("Foo");
 
-                when(reservationService.add("Foo", 1))
+                when(reservationService.add("Foo", 1, null))
                         .thenReturn(new Response<>(Response.Code.NOT_AVAILABLE, true));
 
                 mockMvc.perform(post(uri)
@@ -89,7 +246,7 @@ public class ReservationControllerTest {
                 mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
                                .thenReturn("Foo");
 
-                when(reservationService.add("Foo", 1))
+                when(reservationService.add("Foo", 1, null))
                         .thenReturn(new Response<>(Response.Code.NOT_AVAILABLE, true));
 
                 mockMvc.perform(post(uri)
@@ -109,7 +266,7 @@ public class ReservationControllerTest {
                 mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
                                .thenReturn("Foo");
 
-                when(reservationService.add("Foo", 1))
+                when(reservationService.add("Foo", 1, null))
                         .thenReturn(new Response<>(Response.Code.NOT_FOUND, true));
 
                 mockMvc.perform(post(uri)
@@ -706,4 +863,324 @@ public class ReservationControllerTest {
 
     }
 
+    @Nested
+    class Checkout {
+
+        @Test
+        @DisplayName("Lends the scanned copy to the user of the token")
+        public void checkout_shouldReturnOK_whenTokenIsValid() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(reservationService.checkout("Foo", "1-1"))
+                        .thenReturn(new Response<>(Response.Code.OK, true));
+
+                mockMvc.perform(post("/reservation/checkout")
+                        .param("token", "Foo")
+                        .param("barcode", "1-1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Lends the scanned copy through the availability engine if it decides the checkouts")
+        public void checkout_shouldGoThroughAvailabilityEngine_whenEnabled() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(availabilityEngine.isEnabled()).thenReturn(true);
+                when(availabilityEngine.checkout("Foo", "1-1"))
+                        .thenReturn(new Response<>(Response.Code.NOT_AVAILABLE, false));
+
+                mockMvc.perform(post("/reservation/checkout")
+                        .param("token", "Foo")
+                        .param("barcode", "1-1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.NOT_AVAILABLE.toString()));
+                verify(reservationService, never()).checkout(anyString(), anyString());
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_TOKEN if token is invalid")
+        public void checkout_shouldReturnInvalidToken_whenTokenIsInvalid() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(post("/reservation/checkout")
+                        .param("token", "Foo")
+                        .param("barcode", "1-1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INVALID_TOKEN.toString()));
+            }
+        }
+
+    }
+
+    @Nested
+    class Batches {
+
+        @Test
+        @DisplayName("Returns the result of each reservation if token is valid and user is admin")
+        public void returnBatch_shouldReturnResults_whenUserIsAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+
+                when(reservationService.returnBatch(List.of(1L, 2L)))
+                        .thenReturn(new Response<>(Response.Code.OK, List.of(
+                                new ReservationResult(1, Response.Code.OK, null),
+                                new ReservationResult(2, Response.Code.NOT_FOUND, null))));
+
+                mockMvc.perform(post("/reservation/return_batch")
+                        .param("token", "Foo")
+                        .param("ids", "1", "2"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                       .andExpect(jsonPath("$.content[1].code").value(Response.Code.NOT_FOUND.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INSUFFICIENT_PERMISSIONS if user is not admin")
+        public void returnBatch_shouldReturnInsufficientPermissions_whenUserIsNotAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(post("/reservation/return_batch")
+                        .param("token", "Foo")
+                        .param("ids", "1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INSUFFICIENT_PERMISSIONS.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Renews the loans of the user if user is not admin")
+        public void renewBatch_shouldRenewOwnLoans_whenUserIsNotAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(false);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(reservationService.renewBatch("Foo", List.of(1L)))
+                        .thenReturn(new Response<>(Response.Code.OK, List.of(
+                                new ReservationResult(1, Response.Code.OK, LocalDate.of(2021, 3, 22)))));
+
+                mockMvc.perform(post("/reservation/renew_batch")
+                        .param("token", "Foo")
+                        .param("ids", "1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.content[0].code").value(Response.Code.OK.toString()));
+            }
+        }
+
+    }
+
+    @Nested
+    class AddHold {
+
+        private final String uri = "/reservation/hold/add";
+
+        @Test
+        @DisplayName("Returns OK and the place in the queue if token is valid")
+        public void addHold_shouldReturnOK_whenTokenIsValid() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                when(reservationService.addHold("Foo", 1))
+                        .thenReturn(new Response<>(Response.Code.OK, new HoldStatus(1, "Foo", 3, 3)));
+
+                mockMvc.perform(post(uri)
+                        .param("token", "Foo")
+                        .param("itemId", "1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                       .andExpect(jsonPath("$.content.position").value(3));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_TOKEN if token is invalid")
+        public void addHold_shouldReturnInvalidToken_whenTokenIsInvalid() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(post(uri)
+                        .param("token", "Foo")
+                        .param("itemId", "1"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INVALID_TOKEN.toString()));
+            }
+        }
+
+    }
+
+    @Nested
+    class Transfers {
+
+        @Test
+        @DisplayName("Queues a transfer for the user of the token")
+        public void requestTransfer_shouldReturnOK_whenTokenIsValid() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.extractUsername("Foo"))
+                               .thenReturn("Foo");
+
+                TransferStatus transfer = new TransferStatus(5, 1, "Foo", "Foo", null, "EAST", null,
+                                                             Transfer.Status.REQUESTED);
+                when(transferService.request("Foo", 1, "EAST"))
+                        .thenReturn(new Response<>(Response.Code.OK, transfer));
+
+                mockMvc.perform(post("/reservation/transfer/request")
+                        .param("token", "Foo")
+                        .param("itemId", "1")
+                        .param("branch", "EAST"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                       .andExpect(jsonPath("$.content.status").value(Transfer.Status.REQUESTED.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Cancels the transfers of any user if user is admin")
+        public void cancelTransfer_shouldCancelAnyTransfer_whenUserIsAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+
+                when(transferService.cancel(null, 5)).thenReturn(new Response<>(Response.Code.OK, true));
+
+                mockMvc.perform(post("/reservation/transfer/cancel/{id}", 5)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INSUFFICIENT_PERMISSIONS when receiving a copy if user is not admin")
+        public void receiveTransfer_shouldReturnInsufficientPermissions_whenUserIsNotAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(post("/reservation/transfer/receive/{id}", 5)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INSUFFICIENT_PERMISSIONS.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_TOKEN if token is invalid")
+        public void requestTransfer_shouldReturnInvalidToken_whenTokenIsInvalid() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(post("/reservation/transfer/request")
+                        .param("token", "Foo")
+                        .param("itemId", "1")
+                        .param("branch", "EAST"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INVALID_TOKEN.toString()));
+            }
+        }
+
+    }
+
+    @Nested
+    class KioskSync {
+
+        @Test
+        @DisplayName("Passes the signed body to the kiosk service")
+        public void syncKiosk_shouldReturnOutcomes_whenSigned() throws Exception {
+            String payload = "{\"kioskId\":\"K1\",\"events\":[]}";
+            when(kioskService.sync(payload, "abc"))
+                    .thenReturn(new Response<>(Response.Code.OK, List.of(
+                            new KioskEventResult("a", Response.Code.NOT_AVAILABLE, false))));
+
+            mockMvc.perform(post("/reservation/kiosk/sync")
+                    .header("X-Kiosk-Signature", "abc")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(payload))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                   .andExpect(jsonPath("$.content[0].code").value(Response.Code.NOT_AVAILABLE.toString()));
+        }
+
+    }
+
+    @Nested
+    class Events {
+
+        @Test
+        @DisplayName("Returns the events after since if token is valid and user is admin")
+        public void getEvents_shouldReturnEvents_whenUserIsAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+
+                ReservationEvent event = new ReservationEvent();
+                event.setSeq(11);
+                when(syncService.getReservationEvents(10, 0))
+                        .thenReturn(new Response<>(Response.Code.OK, new ReservationEvents(List.of(event), 11, false)));
+
+                mockMvc.perform(post("/reservation/events")
+                        .param("token", "Foo")
+                        .param("since", "10"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                       .andExpect(jsonPath("$.content.events[0].seq").value(11))
+                       .andExpect(jsonPath("$.content.next").value(11));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INSUFFICIENT_PERMISSIONS if user is not admin")
+        public void getEvents_shouldReturnInsufficientPermissions_whenUserIsNotAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(post("/reservation/events")
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INSUFFICIENT_PERMISSIONS.toString()));
+                verify(syncService, never()).getReservationEvents(anyLong(), anyInt());
+            }
+        }
+
+    }
+
 }
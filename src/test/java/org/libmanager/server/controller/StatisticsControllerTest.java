@@ -0,0 +1,140 @@
+package org.libmanager.server.controller;
+
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.libmanager.server.event.CatalogVersion;
+import org.libmanager.server.response.CoalescingStatistics;
+import org.libmanager.server.response.RegionStatistics;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.StatisticsService;
+import org.libmanager.server.util.TokenUtil;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(StatisticsController.class)
+public class StatisticsControllerTest {
+
+    @MockBean
+    private StatisticsService statisticsService;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Nested
+    class GetCacheStatistics {
+
+        private final String uri = "/statistics/cache";
+
+        @Test
+        @DisplayName("Returns OK and the regions if token is valid and is admin")
+        public void getCacheStatistics_shouldReturnOk_whenTokenIsValidAndIsAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+
+                when(statisticsService.getCacheStatistics())
+                        .thenReturn(List.of(new RegionStatistics("item", 3, 1, 1, 1)));
+
+                mockMvc.perform(get(uri)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                       .andExpect(jsonPath("$.content[0].region").value("item"))
+                       .andExpect(jsonPath("$.content[0].hitRatio").value(0.75));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INSUFFICIENT_PERMISSIONS if token is valid and is not admin")
+        public void getCacheStatistics_shouldReturnInsufficientPermissions_whenTokenIsValidAndIsNotAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(get(uri)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INSUFFICIENT_PERMISSIONS.toString()));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_TOKEN if token is invalid")
+        public void getCacheStatistics_shouldReturnInvalidToken_whenTokenIsInvalid() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(get(uri)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INVALID_TOKEN.toString()));
+            }
+        }
+
+    }
+
+    @Nested
+    class GetCoalescingStatistics {
+
+        private final String uri = "/statistics/coalescing";
+
+        @Test
+        @DisplayName("Returns OK and the queries if token is valid and is admin")
+        public void getCoalescingStatistics_shouldReturnOk_whenTokenIsValidAndIsAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(true);
+
+                when(statisticsService.getCoalescingStatistics())
+                        .thenReturn(List.of(new CoalescingStatistics("book.search", 1, 3)));
+
+                mockMvc.perform(get(uri)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.OK.toString()))
+                       .andExpect(jsonPath("$.content[0].query").value("book.search"))
+                       .andExpect(jsonPath("$.content[0].coalescedRatio").value(0.75));
+            }
+        }
+
+        @Test
+        @DisplayName("Returns INSUFFICIENT_PERMISSIONS if token is valid and is not admin")
+        public void getCoalescingStatistics_shouldReturnInsufficientPermissions_whenTokenIsValidAndIsNotAdmin() throws Exception {
+            try (MockedStatic<TokenUtil> mockedTokenUtil = mockStatic(TokenUtil.class)) {
+                mockedTokenUtil.when(() -> TokenUtil.isValid("Foo"))
+                               .thenReturn(true);
+                mockedTokenUtil.when(() -> TokenUtil.isAdmin("Foo"))
+                               .thenReturn(false);
+
+                mockMvc.perform(get(uri)
+                        .param("token", "Foo"))
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$.code").value(Response.Code.INSUFFICIENT_PERMISSIONS.toString()));
+            }
+        }
+
+    }
+
+}
@@ -9,6 +9,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.libmanager.server.entity.User;
+import org.libmanager.server.event.CatalogVersion;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.service.UserService;
 import org.libmanager.server.util.TokenUtil;
@@ -31,6 +32,9 @@ public class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private CatalogVersion catalogVersion;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -0,0 +1,153 @@
+package org.libmanager.server.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.response.AvailabilityUpdate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AvailabilityBrokerTest {
+
+    private AvailabilityBroker availabilityBroker;
+
+    /** Tasks submitted to the dispatcher, run by the tests */
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    /**
+     * Records the events instead of writing them
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        final List<String> names = new ArrayList<>();
+        final List<AvailabilityUpdate> updates = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            Set<ResponseBodyEmitter.DataWithMediaType> event = builder.build();
+            for (ResponseBodyEmitter.DataWithMediaType data : event) {
+                if (data.getData() instanceof AvailabilityUpdate)
+                    updates.add((AvailabilityUpdate) data.getData());
+                else if (data.getData().toString().startsWith("event:"))
+                    names.add(data.getData().toString().split("\n")[0].substring("event:".length()));
+            }
+        }
+
+    }
+
+    private static Item book(long id, String genre, int availableCopies) {
+        Book book = new Book();
+        ReflectionTestUtils.setField(book, "id", id);
+        book.setGenre(genre);
+        book.setTotalCopies(2);
+        book.setAvailableCopies(availableCopies);
+        return book;
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty())
+            tasks.remove(0).run();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        availabilityBroker = new AvailabilityBroker();
+        ReflectionTestUtils.setField(availabilityBroker, "dispatcher", (Executor) tasks::add);
+    }
+
+    @Test
+    @DisplayName("Sends the changes of the followed items and genres only")
+    public void onItemChange_shouldSendToMatchingSubscribers() {
+        RecordingEmitter byItem = new RecordingEmitter();
+        RecordingEmitter byGenre = new RecordingEmitter();
+        RecordingEmitter all = new RecordingEmitter();
+        availabilityBroker.register(byItem, List.of(1L), null);
+        availabilityBroker.register(byGenre, null, List.of("novel"));
+        availabilityBroker.register(all, null, null);
+
+        availabilityBroker.onItemChange(ItemChangeEvent.availability(book(1, "POETRY", 0), true));
+        availabilityBroker.onItemChange(ItemChangeEvent.availability(book(2, "NOVEL", 0), true));
+        runTasks();
+
+        assertThat(byItem.updates).extracting(AvailabilityUpdate::getItemId).containsExactly(1L);
+        assertThat(byGenre.updates).extracting(AvailabilityUpdate::getItemId).containsExactly(2L);
+        assertThat(all.updates).extracting(AvailabilityUpdate::getItemId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("Sends only the last pending change of an item")
+    public void onItemChange_shouldCoalesceUpdatesOfAnItem() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        availabilityBroker.register(emitter, null, null);
+
+        availabilityBroker.onItemChange(ItemChangeEvent.availability(book(1, "NOVEL", 1), true));
+        availabilityBroker.onItemChange(ItemChangeEvent.availability(book(1, "NOVEL", 0), true));
+        runTasks();
+
+        assertThat(emitter.updates).hasSize(1);
+        assertThat(emitter.updates.get(0).getAvailableCopies()).isZero();
+        assertThat(emitter.updates.get(0).getStatus()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Drops the change of an item older than the last one queued")
+    public void onItemChange_shouldDropOlderVersions() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        availabilityBroker.register(emitter, null, null);
+        Item newer = book(1, "NOVEL", 0);
+        newer.setChangeSeq(12);
+        Item older = book(1, "NOVEL", 1);
+        older.setChangeSeq(11);
+
+        availabilityBroker.onItemChange(ItemChangeEvent.availability(newer, true));
+        runTasks();
+        availabilityBroker.onItemChange(ItemChangeEvent.availability(older, true));
+        runTasks();
+
+        assertThat(emitter.updates).extracting(AvailabilityUpdate::getChangeSeq).containsExactly(12L);
+        assertThat(emitter.updates.get(0).getAvailableCopies()).isZero();
+    }
+
+    @Test
+    @DisplayName("Sends a reset event when the buffer of a subscriber is full")
+    public void onItemChange_shouldSendReset_whenBufferIsFull() {
+        ReflectionTestUtils.setField(availabilityBroker, "bufferSize", 2);
+        RecordingEmitter emitter = new RecordingEmitter();
+        availabilityBroker.register(emitter, null, null);
+
+        for (long id = 1; id <= 3; id++)
+            availabilityBroker.onItemChange(ItemChangeEvent.availability(book(id, "NOVEL", 1), true));
+        availabilityBroker.onItemChange(ItemChangeEvent.availability(book(4, "NOVEL", 1), true));
+        runTasks();
+
+        assertThat(emitter.names).containsExactly("reset", "availability");
+        assertThat(emitter.updates).extracting(AvailabilityUpdate::getItemId).containsExactly(4L);
+    }
+
+    @Test
+    @DisplayName("Stops sending to a completed subscription")
+    public void onItemChange_shouldIgnoreCompletedSubscribers() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        availabilityBroker.register(emitter, null, null);
+        ReflectionTestUtils.invokeMethod(availabilityBroker, "unregister",
+                                         ((Set<?>) ReflectionTestUtils.getField(availabilityBroker, "subscribers"))
+                                                 .iterator().next());
+
+        availabilityBroker.onItemChange(ItemChangeEvent.availability(book(1, "NOVEL", 0), true));
+        runTasks();
+
+        assertThat(emitter.updates).isEmpty();
+        assertThat(availabilityBroker.getSubscriberCount()).isZero();
+    }
+
+}
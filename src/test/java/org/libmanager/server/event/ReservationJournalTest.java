@@ -0,0 +1,179 @@
+package org.libmanager.server.event;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Reservation;
+import org.libmanager.server.entity.ReservationEvent;
+import org.libmanager.server.entity.ReservationSnapshot;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ReservationEventRepository;
+import org.libmanager.server.repository.ReservationSnapshotRepository;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationJournalTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Mock
+    private ReservationEventRepository reservationEventRepository;
+
+    @Mock
+    private ReservationSnapshotRepository reservationSnapshotRepository;
+
+    @InjectMocks
+    private final ReservationJournal reservationJournal = new ReservationJournal();
+
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        user = new User();
+        user.setUsername("Foo");
+    }
+
+    private Reservation loan(long id, long itemId) {
+        Book book = new Book();
+        ReflectionTestUtils.setField(book, "id", itemId);
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setUser(user);
+        reservation.setItem(book);
+        reservation.setDueDate(LocalDate.now().plusDays(21));
+        return reservation;
+    }
+
+    private ReservationEvent event(long seq, ReservationEvent.Type type, long itemId) {
+        ReservationEvent event = new ReservationEvent(type, loan(seq, itemId), LocalDateTime.now());
+        event.setSeq(seq);
+        return event;
+    }
+
+    @Test
+    @DisplayName("Inserts the events in the transaction of the change, without position")
+    public void record_shouldInsertEventsWithoutPosition() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            reservationJournal.checkout(loan(1, 3));
+            reservationJournal.renewed(loan(1, 3));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        ArgumentCaptor<ReservationEvent> persisted = ArgumentCaptor.forClass(ReservationEvent.class);
+        verify(entityManager, times(2)).persist(persisted.capture());
+        assertThat(persisted.getAllValues()).extracting(ReservationEvent::getSeq).containsOnlyNulls();
+        assertThat(persisted.getAllValues()).extracting(ReservationEvent::getType)
+                                            .containsExactly(ReservationEvent.Type.CHECKOUT,
+                                                             ReservationEvent.Type.RENEWAL);
+        verifyNoInteractions(changeCounterRepository);
+    }
+
+    @Test
+    @DisplayName("Throws if the change is not made by a transaction")
+    public void record_shouldThrow_whenNoTransaction() {
+        assertThatThrownBy(() -> reservationJournal.returned(loan(1, 3)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Gives the events committed the positions after the counter, in the order of their ids")
+    public void sequence_shouldAssignNextPositions() {
+        ReservationEvent first = new ReservationEvent(ReservationEvent.Type.CHECKOUT, loan(1, 3), LocalDateTime.now());
+        ReservationEvent second = new ReservationEvent(ReservationEvent.Type.RETURN, loan(1, 3), LocalDateTime.now());
+        when(changeCounterRepository.allocate(ChangeCounterRepository.RESERVATION_EVENTS, 0)).thenReturn(10L);
+        when(reservationEventRepository.findBySeqIsNullOrderById(any(Pageable.class)))
+                .thenReturn(List.of(first, second));
+
+        assertThat(reservationJournal.sequence()).isEqualTo(2);
+
+        assertThat(first.getSeq()).isEqualTo(11);
+        assertThat(second.getSeq()).isEqualTo(12);
+        verify(changeCounterRepository).raise(ChangeCounterRepository.RESERVATION_EVENTS, 12);
+    }
+
+    @Test
+    @DisplayName("Leaves the counter as it is when no event is waiting for a position")
+    public void sequence_shouldNotRaiseCounter_whenNoEvent() {
+        when(changeCounterRepository.allocate(ChangeCounterRepository.RESERVATION_EVENTS, 0)).thenReturn(10L);
+        when(reservationEventRepository.findBySeqIsNullOrderById(any(Pageable.class))).thenReturn(List.of());
+
+        assertThat(reservationJournal.sequence()).isZero();
+
+        verify(changeCounterRepository, never()).raise(anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Counts the events after the last snapshot by item")
+    public void snapshot_shouldCountEventsByItem() {
+        ReservationSnapshot counted = new ReservationSnapshot(1);
+        counted.add(event(5, ReservationEvent.Type.CHECKOUT, 1));
+        when(changeCounterRepository.allocate(ChangeCounterRepository.SNAPSHOT_RESERVATION_EVENTS, 0))
+                .thenReturn(10L);
+        when(reservationEventRepository.findBySeqGreaterThanOrderBySeq(eq(10L), any(Pageable.class)))
+                .thenReturn(List.of(event(11, ReservationEvent.Type.CHECKOUT, 1),
+                                    event(12, ReservationEvent.Type.CHECKOUT, 2),
+                                    event(13, ReservationEvent.Type.RETURN, 1)));
+        when(reservationSnapshotRepository.findAllById(any())).thenReturn(List.of(counted));
+
+        reservationJournal.snapshot();
+
+        assertThat(counted.getCheckouts()).isEqualTo(2);
+        assertThat(counted.getReturns()).isEqualTo(1);
+        ArgumentCaptor<ReservationSnapshot> created = ArgumentCaptor.forClass(ReservationSnapshot.class);
+        verify(entityManager).persist(created.capture());
+        assertThat(created.getValue().getItemId()).isEqualTo(2);
+        assertThat(created.getValue().getCheckouts()).isEqualTo(1);
+        verify(changeCounterRepository).raise(ChangeCounterRepository.SNAPSHOT_RESERVATION_EVENTS, 13);
+        verify(reservationEventRepository, never()).deleteUpTo(anyLong());
+    }
+
+    @Test
+    @DisplayName("Purges the events older than the retention only once counted by a snapshot")
+    public void snapshot_shouldPurgeCountedEvents_whenRetentionIsSet() {
+        ReflectionTestUtils.setField(reservationJournal, "retentionDays", 30);
+        when(changeCounterRepository.allocate(ChangeCounterRepository.SNAPSHOT_RESERVATION_EVENTS, 0))
+                .thenReturn(10L);
+        when(reservationEventRepository.findBySeqGreaterThanOrderBySeq(eq(10L), any(Pageable.class)))
+                .thenReturn(List.of());
+        when(reservationEventRepository.findMaxSeqOccurredBefore(any())).thenReturn(50L);
+
+        reservationJournal.snapshot();
+
+        verify(changeCounterRepository).raise(ChangeCounterRepository.PURGED_RESERVATION_EVENTS, 10);
+        verify(reservationEventRepository).deleteUpTo(10);
+    }
+
+}
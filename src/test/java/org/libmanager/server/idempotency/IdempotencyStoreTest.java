@@ -0,0 +1,320 @@
+package org.libmanager.server.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.entity.IdempotencyRecord;
+import org.libmanager.server.repository.IdempotencyRecordRepository;
+import org.libmanager.server.response.Response;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyStoreTest {
+
+    private static final List<Object> PARAMETERS = Arrays.asList(1L, null);
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private IdempotencyStore idempotencyStore;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        lenient().when(idempotencyRecordRepository.saveAndFlush(any()))
+                 .thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static String hash(List<?> parameters) throws Exception {
+        byte[] json = new ObjectMapper().writeValueAsString(parameters).getBytes(StandardCharsets.UTF_8);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(json))
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    private Response<Boolean> execute(String scope, String key, List<?> parameters, Response<Boolean> response) {
+        return idempotencyStore.execute(scope, key, parameters, Boolean.class, () -> response);
+    }
+
+    @Test
+    @DisplayName("Gives back the response of the first execution without running the request again")
+    public void execute_shouldRunRequestOnce_whenKeyIsSentAgain() {
+        AtomicInteger executions = new AtomicInteger();
+
+        Response<Boolean> first = idempotencyStore.execute("reservation.add:Foo", "k1", PARAMETERS, Boolean.class,
+                                                           () -> {
+            executions.incrementAndGet();
+            return new Response<>(Response.Code.OK, true);
+        });
+        Response<Boolean> second = idempotencyStore.execute("reservation.add:Foo", "k1", PARAMETERS, Boolean.class,
+                                                            () -> {
+            executions.incrementAndGet();
+            return new Response<>(Response.Code.NOT_AVAILABLE, false);
+        });
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    @DisplayName("Does not share a key between scopes")
+    public void execute_shouldRunRequestAgain_whenScopeDiffers() {
+        AtomicInteger executions = new AtomicInteger();
+
+        idempotencyStore.execute("reservation.add:Foo", "k1", PARAMETERS, Boolean.class, () -> {
+            executions.incrementAndGet();
+            return new Response<>(Response.Code.OK, true);
+        });
+        idempotencyStore.execute("reservation.add:Bar", "k1", PARAMETERS, Boolean.class, () -> {
+            executions.incrementAndGet();
+            return new Response<>(Response.Code.OK, true);
+        });
+
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Returns INVALID_DATA if the key is sent again with other parameters")
+    public void execute_shouldReturnInvalidData_whenParametersDiffer() {
+        execute("reservation.add:Foo", "k1", PARAMETERS, new Response<>(Response.Code.OK, true));
+
+        Response<Boolean> result = execute("reservation.add:Foo", "k1", Arrays.asList(2L, null),
+                                           new Response<>(Response.Code.OK, true));
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_DATA);
+    }
+
+    @Test
+    @DisplayName("Reads the response stored by another instance")
+    public void execute_shouldReadStoredResponse_whenKeyIsInDatabase() throws Exception {
+        IdempotencyRecord record = new IdempotencyRecord("reservation.add:Foo:k1", hash(PARAMETERS),
+                                                         LocalDateTime.now().plusHours(1));
+        record.setResult(Response.Code.MAX_RESERVATIONS_REACHED, "false");
+        when(idempotencyRecordRepository.findById("reservation.add:Foo:k1")).thenReturn(Optional.of(record));
+
+        Response<Boolean> result = idempotencyStore.execute("reservation.add:Foo", "k1", PARAMETERS, Boolean.class,
+                                                            () -> {
+            throw new AssertionError("Executed again");
+        });
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.MAX_RESERVATIONS_REACHED);
+        assertThat(result.getContent()).isFalse();
+        verify(idempotencyRecordRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Reads the keys in a read-write transaction, on the primary")
+    public void execute_shouldReadKeyOnPrimary() {
+        execute("reservation.add:Foo", "k1", PARAMETERS, new Response<>(Response.Code.OK, true));
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertThat(definition.getValue().isReadOnly()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Returns INVALID_DATA if the key stored by another instance was sent with other parameters")
+    public void execute_shouldReturnInvalidData_whenStoredParametersDiffer() throws Exception {
+        IdempotencyRecord record = new IdempotencyRecord("reservation.add:Foo:k1", hash(Arrays.asList(2L, null)),
+                                                         LocalDateTime.now().plusHours(1));
+        record.setResult(Response.Code.OK, "true");
+        when(idempotencyRecordRepository.findById("reservation.add:Foo:k1")).thenReturn(Optional.of(record));
+
+        Response<Boolean> result = execute("reservation.add:Foo", "k1", PARAMETERS,
+                                           new Response<>(Response.Code.OK, true));
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_DATA);
+        verify(idempotencyRecordRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Reads the response committed by another instance while waiting on the key")
+    public void execute_shouldReadCommittedResponse_whenInsertConflicts() throws Exception {
+        IdempotencyRecord record = new IdempotencyRecord("book.add:admin:k1", hash(PARAMETERS),
+                                                         LocalDateTime.now().plusHours(1));
+        record.setResult(Response.Code.OK, "true");
+        when(idempotencyRecordRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("Foo"));
+        when(idempotencyRecordRepository.findById("book.add:admin:k1")).thenReturn(Optional.empty(),
+                                                                                   Optional.of(record));
+
+        Response<Boolean> result = idempotencyStore.execute("book.add:admin", "k1", PARAMETERS, Boolean.class, () -> {
+            throw new AssertionError("Executed again");
+        });
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+        assertThat(result.getContent()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Leaves the key to the request recording it in its own transaction")
+    public void executeRecorded_shouldNotOpenTransaction() {
+        List<IdempotencyStore.Key> keys = new ArrayList<>();
+
+        Response<Boolean> result = idempotencyStore.executeRecorded("reservation.add:Foo", "k1", PARAMETERS,
+                                                                    Boolean.class, key -> {
+            keys.add(key);
+            return new Response<>(Response.Code.OK, true);
+        });
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+        assertThat(keys).hasSize(1);
+        verifyNoInteractions(transactionManager, idempotencyRecordRepository);
+    }
+
+    @Test
+    @DisplayName("Reads the response committed by another instance when the request could not record the key")
+    public void executeRecorded_shouldReadCommittedResponse_whenKeyIsRecordedMeanwhile() throws Exception {
+        IdempotencyRecord record = new IdempotencyRecord("reservation.add:Foo:k1", hash(PARAMETERS),
+                                                         LocalDateTime.now().plusHours(1));
+        record.setResult(Response.Code.NOT_AVAILABLE, "false");
+        when(idempotencyRecordRepository.findById("reservation.add:Foo:k1")).thenReturn(Optional.of(record));
+
+        Response<Boolean> result = idempotencyStore.executeRecorded("reservation.add:Foo", "k1", PARAMETERS,
+                                                                    Boolean.class, key -> {
+            throw new DataIntegrityViolationException("Duplicate");
+        });
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+    }
+
+    @Test
+    @DisplayName("Records the response of a key with the hash of its parameters")
+    public void record_shouldSaveResponseWithHash() {
+        IdempotencyStore.Key key = new IdempotencyStore.Key("reservation.add:Foo:k1", "hash");
+
+        idempotencyStore.record(key, new Response<>(Response.Code.OK, true));
+
+        ArgumentCaptor<IdempotencyRecord> saved = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRecordRepository).saveAndFlush(saved.capture());
+        assertThat(saved.getValue().getRequestHash()).isEqualTo("hash");
+        assertThat(idempotencyStore.find(key, Boolean.class)).isNull();
+    }
+
+    @Test
+    @DisplayName("Makes the duplicates in flight wait for the first execution")
+    public void execute_shouldWaitForFirstExecution_whenDuplicatesAreInFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        Future<Response<Boolean>> first = executor.submit(() -> idempotencyStore.execute(
+                "reservation.add:Foo", "k1", PARAMETERS, Boolean.class, () -> {
+                    executions.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return new Response<>(Response.Code.OK, true);
+                }));
+        started.await();
+        Future<Response<Boolean>> duplicate = executor.submit(() -> idempotencyStore.execute(
+                "reservation.add:Foo", "k1", PARAMETERS, Boolean.class, () -> {
+                    executions.incrementAndGet();
+                    return new Response<>(Response.Code.NOT_AVAILABLE, false);
+                }));
+        // The duplicate waits for the first execution
+        assertThat(duplicate.isDone()).isFalse();
+        release.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS).getCode()).isEqualTo(Response.Code.OK);
+        assertThat(duplicate.get(10, TimeUnit.SECONDS).getCode()).isEqualTo(Response.Code.OK);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Returns TRY_AGAIN to a duplicate if the first execution runs longer than the wait timeout")
+    public void execute_shouldReturnTryAgain_whenFirstExecutionRunsTooLong() throws Exception {
+        ReflectionTestUtils.setField(idempotencyStore, "waitTimeout", 50L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Response<Boolean>> first = executor.submit(() -> idempotencyStore.execute(
+                "reservation.add:Foo", "k1", PARAMETERS, Boolean.class, () -> {
+                    started.countDown();
+                    await(release);
+                    return new Response<>(Response.Code.OK, true);
+                }));
+        started.await();
+        Response<Boolean> duplicate = execute("reservation.add:Foo", "k1", PARAMETERS,
+                                              new Response<>(Response.Code.NOT_AVAILABLE, false));
+        release.countDown();
+
+        assertThat(duplicate.getCode()).isEqualTo(Response.Code.TRY_AGAIN);
+        assertThat(first.get(10, TimeUnit.SECONDS).getCode()).isEqualTo(Response.Code.OK);
+    }
+
+    @Test
+    @DisplayName("Runs the request again after a failed execution")
+    public void execute_shouldRunRequestAgain_whenExecutionFailed() {
+        assertThatThrownBy(() -> idempotencyStore.execute("reservation.add:Foo", "k1", PARAMETERS, Boolean.class,
+                                                          () -> {
+            throw new IllegalStateException("Foo");
+        })).isInstanceOf(IllegalStateException.class);
+
+        Response<Boolean> result = execute("reservation.add:Foo", "k1", PARAMETERS,
+                                           new Response<>(Response.Code.OK, true));
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+    }
+
+    @Test
+    @DisplayName("Returns INVALID_DATA if the key is too long")
+    public void execute_shouldReturnInvalidData_whenKeyIsTooLong() {
+        Response<Boolean> result = execute("reservation.add:Foo", "k".repeat(65), PARAMETERS,
+                                           new Response<>(Response.Code.OK, true));
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_DATA);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
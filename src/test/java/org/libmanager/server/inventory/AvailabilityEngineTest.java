@@ -0,0 +1,381 @@
+package org.libmanager.server.inventory;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.event.CheckoutFailedEvent;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.UserRepository;
+import org.libmanager.server.request.CheckoutRequest;
+import org.libmanager.server.response.HoldStatus;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.CopyService;
+import org.libmanager.server.service.ReservationService;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AvailabilityEngineTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private CopyService copyService;
+
+    @Mock
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private AvailabilityRefresher availabilityRefresher;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    Path directory;
+
+    private AvailabilityEngine engine;
+
+    private Book book;
+
+    @BeforeEach
+    public void setUp() {
+        book = new Book();
+        book.setTitle("Foo");
+        book.setTotalCopies(1);
+        book.setAvailableCopies(1);
+        book.setItemType();
+        ReflectionTestUtils.setField(book, "id", 1L);
+        // The item table holds one copy of item 1
+        lenient().when(itemRepository.findAvailableCopiesAfter(eq(0L), any()))
+                 .thenReturn(Collections.singletonList(new Object[] {1L, 1, 0L}));
+        lenient().when(itemRepository.findById(1L)).thenReturn(Optional.of(book));
+        lenient().when(userRepository.findById(anyString()))
+                 .thenAnswer(invocation -> Optional.of(user(invocation.getArgument(0))));
+        lenient().when(reservationService.checkReservationLimits(any(), any(), anyList())).thenReturn(true);
+        engine = newEngine();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        engine.stop();
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setBirthday(LocalDate.EPOCH);
+        return user;
+    }
+
+    /**
+     * Runs the synchronizations of its transactions, nothing is written
+     */
+    private static final class SynchronizingTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) { }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) { }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) { }
+
+    }
+
+    private AvailabilityEngine newEngine() {
+        AvailabilityEngine newEngine = new AvailabilityEngine();
+        ReflectionTestUtils.setField(newEngine, "itemRepository", itemRepository);
+        ReflectionTestUtils.setField(newEngine, "userRepository", userRepository);
+        ReflectionTestUtils.setField(newEngine, "reservationService", reservationService);
+        ReflectionTestUtils.setField(newEngine, "copyService", copyService);
+        ReflectionTestUtils.setField(newEngine, "changeCounterRepository", changeCounterRepository);
+        ReflectionTestUtils.setField(newEngine, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(newEngine, "availabilityRefresher", availabilityRefresher);
+        ReflectionTestUtils.setField(newEngine, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(newEngine, "enabled", true);
+        ReflectionTestUtils.setField(newEngine, "journalPath", directory.resolve("availability.journal").toString());
+        return newEngine;
+    }
+
+    @Test
+    @DisplayName("Gives the copies left in memory and writes the checkouts to the database later")
+    public void add_shouldDecideInMemory_andFlushLater() {
+        when(reservationService.addAll(eq(1L), anyList())).thenReturn(List.of(new Response<>(Response.Code.OK, true)));
+        engine.start();
+
+        assertThat(engine.add("Foo", 1L, null).getCode()).isEqualTo(Response.Code.OK);
+        assertThat(engine.add("Bar", 1L, null).getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        verify(reservationService, never()).add(anyString(), anyLong(), any());
+        assertThat(engine.getPendingCount()).isEqualTo(1);
+
+        assertThat(engine.flush()).isEqualTo(1);
+        verify(changeCounterRepository).raise(ChangeCounterRepository.APPLIED_CHECKOUTS, 1L);
+        // The available copies of the item are refreshed before its copies given are released
+        verify(availabilityRefresher).refresh(Set.of(1L));
+        assertThat(engine.getPendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Takes again at startup the checkouts of the journal not yet written")
+    public void start_shouldRecoverCheckoutsOfJournal() throws Exception {
+        engine.start();
+        engine.add("Foo", 1L, null);
+        engine.stop();
+
+        engine = newEngine();
+        engine.start();
+
+        assertThat(engine.getPendingCount()).isEqualTo(1);
+        assertThat(engine.add("Bar", 1L, null).getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CheckoutRequest>> requests = ArgumentCaptor.forClass(List.class);
+        when(reservationService.addAll(eq(1L), requests.capture()))
+                .thenReturn(List.of(new Response<>(Response.Code.OK, true)));
+        engine.flush();
+        assertThat(requests.getValue()).extracting(CheckoutRequest::getUsername).containsExactly("Foo");
+    }
+
+    @Test
+    @DisplayName("Places a hold when the copy given in memory was taken in the meantime")
+    public void flush_shouldPlaceHold_whenNoCopyIsLeft() {
+        when(reservationService.addAll(eq(1L), anyList()))
+                .thenReturn(List.of(new Response<>(Response.Code.NOT_AVAILABLE, false)));
+        when(reservationService.addHold("Foo", 1L)).thenReturn(new Response<HoldStatus>(Response.Code.OK, null));
+        engine.start();
+        engine.add("Foo", 1L, null);
+
+        engine.flush();
+
+        verify(reservationService).addHold("Foo", 1L);
+        // Told to the user, the checkout was given
+        ArgumentCaptor<CheckoutFailedEvent> event = ArgumentCaptor.forClass(CheckoutFailedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        assertThat(event.getValue().isHoldPlaced()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Checks the limits of the user against the loans read on the primary")
+    public void add_shouldReadLoansOnPrimary() {
+        engine.start();
+
+        engine.add("Foo", 1L, null);
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, atLeastOnce()).getTransaction(definition.capture());
+        assertThat(definition.getAllValues()).noneMatch(TransactionDefinition::isReadOnly);
+    }
+
+    @Test
+    @DisplayName("Ignores the available copies of a change older than the one known")
+    public void onItemChange_shouldIgnoreOlderChanges() {
+        engine.start();
+        book.setAvailableCopies(0);
+        book.setChangeSeq(5);
+        engine.onItemChange(ItemChangeEvent.availability(book, true));
+        // Committed before, published after
+        book.setAvailableCopies(1);
+        book.setChangeSeq(4);
+        engine.onItemChange(ItemChangeEvent.availability(book, false));
+
+        assertThat(engine.add("Foo", 1L, null).getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+    }
+
+    @Test
+    @DisplayName("Sets aside a checkout which cannot be written alone, and gives its copy back")
+    public void flush_shouldMoveCheckoutToDeadLetters_whenItFailsAlone() {
+        when(reservationService.addAll(eq(1L), anyList()))
+                .thenThrow(new DataIntegrityViolationException("Data too long for column"));
+        engine.start();
+        engine.add("Foo", 1L, null);
+
+        assertThat(engine.flush()).isZero();
+
+        // With its batch, then alone twice
+        verify(reservationService, times(3)).addAll(eq(1L), anyList());
+        assertThat(engine.getDeadLetters()).extracting(AvailabilityJournal.Record::getUsername).containsExactly("Foo");
+        assertThat(engine.getPendingCount()).isZero();
+        ArgumentCaptor<CheckoutFailedEvent> event = ArgumentCaptor.forClass(CheckoutFailedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getUsername()).isEqualTo("Foo");
+        assertThat(event.getValue().isHoldPlaced()).isFalse();
+        // The next checkouts are not blocked behind it
+        assertThat(engine.add("Bar", 1L, null).getCode()).isEqualTo(Response.Code.OK);
+    }
+
+    @Test
+    @DisplayName("Keeps the checkouts for the next flush when the database cannot be reached")
+    public void flush_shouldKeepCheckouts_whenDatabaseIsDown() {
+        DataAccessResourceFailureException down = new DataAccessResourceFailureException("Connection refused");
+        when(changeCounterRepository.get(ChangeCounterRepository.APPLIED_CHECKOUTS)).thenReturn(0L).thenThrow(down);
+        when(reservationService.addAll(eq(1L), anyList())).thenThrow(down);
+        engine.start();
+        engine.add("Foo", 1L, null);
+
+        assertThat(engine.flush()).isZero();
+
+        assertThat(engine.getDeadLetters()).isEmpty();
+        assertThat(engine.getPendingCount()).isEqualTo(1);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Goes through the database for a given branch, once the copy is taken in memory")
+    public void add_shouldGoThroughDatabase_whenBranchIsGiven() {
+        ReflectionTestUtils.setField(engine, "transactionManager", new SynchronizingTransactionManager());
+        when(reservationService.add("Foo", 1L, "MAIN")).thenReturn(new Response<>(Response.Code.OK, true));
+        engine.start();
+
+        assertThat(engine.add("Foo", 1L, "MAIN").getCode()).isEqualTo(Response.Code.OK);
+        assertThat(engine.getPendingCount()).isZero();
+        verify(availabilityRefresher).refresh(Set.of(1L));
+    }
+
+    @Test
+    @DisplayName("Refuses a checkout from a given branch if the copies left are given in memory")
+    public void add_shouldReturnNotAvailable_whenBranchIsGivenAndCopyIsGivenInMemory() {
+        engine.start();
+        engine.add("Foo", 1L, null);
+
+        assertThat(engine.add("Bar", 1L, "MAIN").getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        verify(reservationService, never()).add(anyString(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Never gives a copy twice when a return and checkouts of the same item meet")
+    public void add_shouldGiveReturnedCopyOnce() {
+        ReflectionTestUtils.setField(engine, "transactionManager", new SynchronizingTransactionManager());
+        when(reservationService.add("Bar", 1L, "MAIN")).thenReturn(new Response<>(Response.Code.OK, true));
+        // The branch checkout takes the returned copy in the database
+        when(availabilityRefresher.refresh(Set.of(1L))).thenAnswer(invocation -> {
+            book.setAvailableCopies(0);
+            book.setChangeSeq(3);
+            engine.onItemChange(ItemChangeEvent.availability(book, true));
+            return 1;
+        });
+        book.setAvailableCopies(0);
+        book.setChangeSeq(1);
+        engine.onItemChange(ItemChangeEvent.availability(book, true));
+        engine.start();
+
+        // Returned in the database, the copy is not given before the change of the item is known
+        assertThat(engine.add("Foo", 1L, null).getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        assertThat(engine.add("Bar", 1L, "MAIN").getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        verify(reservationService, never()).add(anyString(), anyLong(), any());
+        book.setAvailableCopies(1);
+        book.setChangeSeq(2);
+        engine.onItemChange(ItemChangeEvent.availability(book, true));
+
+        // Given once, whichever path takes it
+        assertThat(engine.add("Bar", 1L, "MAIN").getCode()).isEqualTo(Response.Code.OK);
+        assertThat(engine.add("Foo", 1L, null).getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        assertThat(engine.add("Baz", 1L, "MAIN").getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        verify(reservationService, times(1)).add(anyString(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Refuses the copy scanned if the copies left are given to checkouts not yet written")
+    public void checkout_shouldReturnNotAvailable_whenCopyIsGivenInMemory() {
+        when(copyService.resolve("1-1")).thenReturn(new BarcodeIndex.CopyRef(10L, 1L, "MAIN", 1));
+        engine.start();
+        engine.add("Foo", 1L, null);
+
+        assertThat(engine.checkout("Bar", "1-1").getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        verify(reservationService, never()).checkout(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Keeps the copy scanned taken in memory until the change of its item is known")
+    public void checkout_shouldReleaseCopy_onceItemChangeIsKnown() {
+        ReflectionTestUtils.setField(engine, "transactionManager", new SynchronizingTransactionManager());
+        when(copyService.resolve("1-1")).thenReturn(new BarcodeIndex.CopyRef(10L, 1L, "MAIN", 1));
+        AtomicReference<Response.Code> concurrent = new AtomicReference<>();
+        when(reservationService.checkout("Bar", "1-1")).thenAnswer(invocation -> {
+            concurrent.set(engine.add("Foo", 1L, null).getCode());
+            return new Response<>(Response.Code.OK, true);
+        });
+        // The change of the item is put in the table by the refresh following the commit
+        when(availabilityRefresher.refresh(Set.of(1L))).thenAnswer(invocation -> {
+            book.setAvailableCopies(0);
+            book.setChangeSeq(1);
+            engine.onItemChange(ItemChangeEvent.availability(book, true));
+            return 1;
+        });
+        engine.start();
+
+        assertThat(engine.checkout("Bar", "1-1").getCode()).isEqualTo(Response.Code.OK);
+
+        assertThat(concurrent.get()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        assertThat(engine.add("Foo", 1L, null).getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+    }
+
+    @Test
+    @DisplayName("Gives the copy back to the table when the copy scanned is not lent")
+    public void checkout_shouldReleaseCopy_whenNotLent() {
+        ReflectionTestUtils.setField(engine, "transactionManager", new SynchronizingTransactionManager());
+        when(copyService.resolve("1-1")).thenReturn(new BarcodeIndex.CopyRef(10L, 1L, "MAIN", 1));
+        when(reservationService.checkout("Bar", "1-1"))
+                .thenReturn(new Response<>(Response.Code.MAX_RESERVATIONS_REACHED, false));
+        engine.start();
+
+        assertThat(engine.checkout("Bar", "1-1").getCode()).isEqualTo(Response.Code.MAX_RESERVATIONS_REACHED);
+
+        verify(availabilityRefresher).refresh(Set.of(1L));
+        assertThat(engine.add("Foo", 1L, null).getCode()).isEqualTo(Response.Code.OK);
+    }
+
+}
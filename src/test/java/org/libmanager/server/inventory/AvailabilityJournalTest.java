@@ -0,0 +1,96 @@
+package org.libmanager.server.inventory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AvailabilityJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Gives the records forced to the disk to the sink in order, and reads them back when opened again")
+    public void append_shouldReadRecordsBack_whenOpenedAgain() throws Exception {
+        Path path = directory.resolve("availability.journal");
+        List<Long> sunk = Collections.synchronizedList(new ArrayList<>());
+        try (AvailabilityJournal journal = new AvailabilityJournal(path, 1, record -> sunk.add(record.getSeq()))) {
+            List<CompletableFuture<AvailabilityJournal.Record>> appends = new ArrayList<>();
+            for (int i = 0; i < 10; i++)
+                appends.add(journal.append(i + 1, "user" + i));
+            for (CompletableFuture<AvailabilityJournal.Record> append : appends)
+                append.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(sunk).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        try (AvailabilityJournal journal = new AvailabilityJournal(path, 1, record -> { })) {
+            assertThat(journal.getRecovered()).extracting(AvailabilityJournal.Record::getSeq)
+                                              .containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+            assertThat(journal.getRecovered().get(3).getItemId()).isEqualTo(4);
+            assertThat(journal.getRecovered().get(3).getUsername()).isEqualTo("user3");
+        }
+    }
+
+    @Test
+    @DisplayName("Cuts a record torn by a crash and numbers the next records after the last whole one")
+    public void open_shouldCutTornRecord() throws Exception {
+        Path path = directory.resolve("availability.journal");
+        try (AvailabilityJournal journal = new AvailabilityJournal(path, 1, record -> { })) {
+            journal.append(1, "Foo").get(10, TimeUnit.SECONDS);
+            journal.append(2, "Bar").get(10, TimeUnit.SECONDS);
+        }
+        long whole = Files.size(path);
+        appendGarbage(path);
+
+        try (AvailabilityJournal journal = new AvailabilityJournal(path, 1, record -> { })) {
+            assertThat(journal.getRecovered()).extracting(AvailabilityJournal.Record::getSeq).containsExactly(1L, 2L);
+            assertThat(Files.size(path)).isEqualTo(whole);
+            assertThat(journal.append(3, "Baz").get(10, TimeUnit.SECONDS).getSeq()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    @DisplayName("Empties the file once all its records are applied, the numbers go on")
+    public void truncate_shouldEmptyFile_whenAllRecordsAreApplied() throws Exception {
+        Path path = directory.resolve("availability.journal");
+        try (AvailabilityJournal journal = new AvailabilityJournal(path, 1, record -> { })) {
+            journal.append(1, "Foo").get(10, TimeUnit.SECONDS);
+            journal.append(2, "Bar").get(10, TimeUnit.SECONDS);
+            journal.truncate(1);
+            // Written after the truncation, by the same thread
+            journal.append(3, "Baz").get(10, TimeUnit.SECONDS);
+            journal.truncate(3);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (Files.size(path) > 0 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            assertThat(Files.size(path)).isZero();
+            assertThat(journal.append(4, "Qux").get(10, TimeUnit.SECONDS).getSeq()).isEqualTo(4);
+        }
+
+        try (AvailabilityJournal journal = new AvailabilityJournal(path, 4, record -> { })) {
+            assertThat(journal.getRecovered()).extracting(AvailabilityJournal.Record::getSeq).containsExactly(4L);
+        }
+    }
+
+    private static void appendGarbage(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // The length of a record, followed by a part of it
+            channel.write(ByteBuffer.allocate(10).putInt(40).putShort((short) 7).flip());
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.libmanager.server.inventory;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.libmanager.server.repository.BranchStockRepository;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AvailabilityRefresherTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private BranchStockRepository stockRepository;
+
+    @Mock
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private final AvailabilityRefresher availabilityRefresher = new AvailabilityRefresher();
+
+    private final Branch main = new Branch("MAIN", "Main");
+    private final Branch east = new Branch("EAST", "East");
+
+    private Book book;
+
+    @BeforeEach
+    public void setUp() {
+        book = book(7L);
+    }
+
+    private static Book book(long id) {
+        Book book = new Book();
+        ReflectionTestUtils.setField(book, "id", id);
+        book.setTotalCopies(3);
+        book.setAvailableCopies(3);
+        book.setItemType();
+        return book;
+    }
+
+    @Test
+    @DisplayName("Sets the available copies of the items to the sums of their stocks, locked before the items")
+    public void refresh_shouldSetAvailableCopiesToSumOfStocks() {
+        Book unchanged = book(8L);
+        when(stockRepository.findAllByItemIdForShare(List.of(7L, 8L)))
+                .thenReturn(List.of(new BranchStock(book, main, 2, 0), new BranchStock(book, east, 1, 1),
+                                    new BranchStock(unchanged, main, 3, 3)));
+        when(itemRepository.findAllByIdForUpdate(Set.of(7L, 8L))).thenReturn(List.of(book, unchanged));
+        when(changeCounterRepository.allocate(ChangeCounterRepository.ITEM_CHANGES, 1)).thenReturn(41L);
+        ArgumentCaptor<ItemChangeEvent> event = ArgumentCaptor.forClass(ItemChangeEvent.class);
+
+        int refreshed = availabilityRefresher.refresh(List.of(7L, 8L));
+
+        assertThat(refreshed).isEqualTo(1);
+        assertThat(book.getAvailableCopies()).isEqualTo(1);
+        // The counter is locked last, once for the batch
+        InOrder locks = inOrder(stockRepository, itemRepository, changeCounterRepository);
+        locks.verify(stockRepository).findAllByItemIdForShare(List.of(7L, 8L));
+        locks.verify(itemRepository).findAllByIdForUpdate(Set.of(7L, 8L));
+        locks.verify(changeCounterRepository).allocate(ChangeCounterRepository.ITEM_CHANGES, 1);
+        assertThat(book.getChangeSeq()).isEqualTo(41L);
+        assertThat(unchanged.getChangeSeq()).isZero();
+        // Published for the item changed only
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getItemId()).isEqualTo(7L);
+        assertThat(event.getValue().getKind()).isEqualTo(ItemChangeEvent.Kind.AVAILABILITY);
+        assertThat(event.getValue().getChangeSeq()).isEqualTo(41L);
+    }
+
+    @Test
+    @DisplayName("Leaves the items without stock as they are")
+    public void refresh_shouldNotLockItems_whenNoStock() {
+        when(stockRepository.findAllByItemIdForShare(List.of(7L))).thenReturn(List.of());
+
+        assertThat(availabilityRefresher.refresh(List.of(7L))).isZero();
+
+        verifyNoInteractions(itemRepository, changeCounterRepository, eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Does not lock the counter of the change sequence when no item changed")
+    public void refresh_shouldNotAllocatePositions_whenItemsAreInSync() {
+        when(stockRepository.findAllByItemIdForShare(List.of(7L)))
+                .thenReturn(List.of(new BranchStock(book, main, 3, 3)));
+        when(itemRepository.findAllByIdForUpdate(Set.of(7L))).thenReturn(List.of(book));
+
+        assertThat(availabilityRefresher.refresh(List.of(7L))).isZero();
+
+        verifyNoInteractions(changeCounterRepository, eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Waits for the commit of the transaction to refresh an item")
+    public void changed_shouldQueueItem_onceCommitted() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            availabilityRefresher.changed(7L);
+            availabilityRefresher.changed(7L);
+
+            assertThat(availabilityRefresher.getPendingCount()).isZero();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            assertThat(synchronizations).hasSize(1);
+            synchronizations.get(0).afterCommit();
+            synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(availabilityRefresher.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Keeps the items of a batch which failed for the next run")
+    public void refresh_shouldKeepItems_whenBatchFails() {
+        availabilityRefresher.changed(7L);
+        when(stockRepository.findAllByItemIdForShare(List.of(7L)))
+                .thenThrow(new CannotAcquireLockException("Lock wait timeout exceeded"));
+
+        assertThat(availabilityRefresher.refresh()).isZero();
+
+        assertThat(availabilityRefresher.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Queues the items whose available copies are not the sums of their stocks")
+    public void reconcile_shouldQueueItemsOutOfSync() {
+        when(stockRepository.findItemIdsOutOfSync(any(Pageable.class))).thenReturn(List.of(7L, 8L));
+
+        assertThat(availabilityRefresher.reconcile()).isEqualTo(2);
+
+        assertThat(availabilityRefresher.getPendingCount()).isEqualTo(2);
+    }
+
+}
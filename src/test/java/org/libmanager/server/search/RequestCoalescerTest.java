@@ -0,0 +1,154 @@
+package org.libmanager.server.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.libmanager.server.config.ReplicaRoutingDataSource;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.libmanager.server.response.CoalescingStatistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RequestCoalescerTest {
+
+    private RequestCoalescer requestCoalescer;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        requestCoalescer = new RequestCoalescer();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Shares one execution between the identical requests in flight")
+    public void execute_shouldRunQueryOnce_whenIdenticalRequestsAreInFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        Future<String> leader = executor.submit(() -> requestCoalescer.execute("book.search", "dune", () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "result";
+        }));
+        started.await();
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            followers.add(executor.submit(() -> requestCoalescer.execute("book.search", "dune", () -> {
+                executions.incrementAndGet();
+                return "other";
+            })));
+        }
+        // The followers are counted before they wait
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (statistics().getCoalesced() < 3 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        release.countDown();
+
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("result");
+        for (Future<String> follower : followers)
+            assertThat(follower.get(10, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(statistics().getExecutions()).isEqualTo(1);
+        assertThat(statistics().getCoalesced()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Does not share a query started before a change of the catalog")
+    public void execute_shouldRunQueryAgain_whenCatalogChangedDuringExecution() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> before = executor.submit(() -> requestCoalescer.execute("book.all", null, () -> {
+            started.countDown();
+            await(release);
+            return "before";
+        }));
+        started.await();
+        requestCoalescer.onItemChange(ItemChangeEvent.catalog());
+
+        String after = requestCoalescer.execute("book.all", null, () -> "after");
+        release.countDown();
+
+        assertThat(after).isEqualTo("after");
+        assertThat(before.get(10, TimeUnit.SECONDS)).isEqualTo("before");
+        assertThat(statistics().getCoalesced()).isZero();
+    }
+
+    @Test
+    @DisplayName("Does not share a query reading on a replica with a request reading on the primary")
+    public void execute_shouldRunQueryAgain_whenReadOnPrimary() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> replica = executor.submit(() -> requestCoalescer.execute("book.all", null, () -> {
+            started.countDown();
+            await(release);
+            return "replica";
+        }));
+        started.await();
+
+        String primary = ReplicaRoutingDataSource.readOnPrimary(
+                () -> requestCoalescer.execute("book.all", null, () -> "primary"));
+        release.countDown();
+
+        assertThat(primary).isEqualTo("primary");
+        assertThat(replica.get(10, TimeUnit.SECONDS)).isEqualTo("replica");
+        assertThat(statistics().getCoalesced()).isZero();
+    }
+
+    @Test
+    @DisplayName("Runs the query again once the previous execution is done")
+    public void execute_shouldRunQueryAgain_whenPreviousExecutionIsDone() {
+        requestCoalescer.execute("book.get", 1L, () -> "first");
+
+        String result = requestCoalescer.execute("book.get", 1L, () -> "second");
+
+        assertThat(result).isEqualTo("second");
+        assertThat(statistics().getExecutions()).isEqualTo(2);
+        assertThat(statistics().getCoalesced()).isZero();
+    }
+
+    @Test
+    @DisplayName("Forgets a failed execution")
+    public void execute_shouldRunQueryAgain_whenPreviousExecutionFailed() {
+        assertThatThrownBy(() -> requestCoalescer.execute("book.get", 1L, () -> {
+            throw new IllegalStateException("Database down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        String result = requestCoalescer.execute("book.get", 1L, () -> "found");
+
+        assertThat(result).isEqualTo("found");
+    }
+
+    private CoalescingStatistics statistics() {
+        return requestCoalescer.getStatistics().get(0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
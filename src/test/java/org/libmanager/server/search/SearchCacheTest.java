@@ -0,0 +1,169 @@
+package org.libmanager.server.search;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchCacheTest {
+
+    private static final SearchQuery ALL_BOOKS = SearchQuery.of("BOOK").build();
+    private static final SearchQuery AVAILABLE_BOOKS = SearchQuery.of("BOOK").status("1").build();
+    private static final SearchQuery UNAVAILABLE_BOOKS = SearchQuery.of("BOOK").status("0").build();
+
+    private SearchCache searchCache;
+
+    @BeforeEach
+    public void setUp() {
+        searchCache = new SearchCache();
+    }
+
+    @Test
+    @DisplayName("Returns the cached ids")
+    public void get_shouldReturnCachedIds() {
+        searchCache.put(ALL_BOOKS, searchCache.snapshot(), new long[] {1, 2, 3});
+
+        assertThat(searchCache.get(ALL_BOOKS)).containsExactly(1, 2, 3);
+        assertThat(searchCache.get(AVAILABLE_BOOKS)).isNull();
+    }
+
+    @Test
+    @DisplayName("Evicts the least recently used search")
+    public void put_shouldEvictLeastRecentlyUsed_whenFull() {
+        ReflectionTestUtils.setField(searchCache, "maxEntries", 2);
+        searchCache.put(ALL_BOOKS, searchCache.snapshot(), new long[] {1});
+        searchCache.put(AVAILABLE_BOOKS, searchCache.snapshot(), new long[] {1});
+        searchCache.get(ALL_BOOKS);
+
+        searchCache.put(UNAVAILABLE_BOOKS, searchCache.snapshot(), new long[0]);
+
+        assertThat(searchCache.get(ALL_BOOKS)).isNotNull();
+        assertThat(searchCache.get(AVAILABLE_BOOKS)).isNull();
+        assertThat(searchCache.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Forgets a search cached for longer than the TTL, the changes of the other nodes are not seen")
+    public void get_shouldReturnNull_whenEntryExpired() throws Exception {
+        ReflectionTestUtils.setField(searchCache, "ttl", 1L);
+        searchCache.put(ALL_BOOKS, searchCache.snapshot(), new long[] {1});
+
+        Thread.sleep(5);
+
+        assertThat(searchCache.get(ALL_BOOKS)).isNull();
+        assertThat(searchCache.size()).isZero();
+    }
+
+    @Nested
+    class CatalogChange {
+
+        @Test
+        @DisplayName("Drops every search")
+        public void onItemChange_shouldDropEverySearch() {
+            searchCache.put(ALL_BOOKS, searchCache.snapshot(), new long[] {1});
+
+            searchCache.onItemChange(ItemChangeEvent.catalog());
+
+            assertThat(searchCache.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("Reads the primary right after the change, not once the replicas caught up")
+        public void snapshot_shouldReadOnPrimary_whenCatalogJustChanged() {
+            assertThat(searchCache.snapshot().isReadOnPrimary()).isFalse();
+
+            searchCache.onItemChange(ItemChangeEvent.catalog());
+
+            assertThat(searchCache.snapshot().isReadOnPrimary()).isTrue();
+            ReflectionTestUtils.setField(searchCache, "maxReplicaLag", Duration.ofMillis(-1));
+            assertThat(searchCache.snapshot().isReadOnPrimary()).isFalse();
+        }
+
+        @Test
+        @DisplayName("Ignores a result read before the change")
+        public void put_shouldIgnoreResult_whenCatalogChangedDuringSearch() {
+            SearchCache.Snapshot snapshot = searchCache.snapshot();
+            searchCache.onItemChange(ItemChangeEvent.catalog());
+
+            searchCache.put(ALL_BOOKS, snapshot, new long[] {1});
+
+            assertThat(searchCache.get(ALL_BOOKS)).isNull();
+        }
+
+    }
+
+    @Nested
+    class AvailabilityChange {
+
+        private Book book;
+
+        @BeforeEach
+        public void setUp() {
+            book = new Book();
+            ReflectionTestUtils.setField(book, "id", 2L);
+            book.setItemType();
+            book.setTotalCopies(1);
+            book.setAvailableCopies(1);
+            searchCache.put(ALL_BOOKS, searchCache.snapshot(), new long[] {1, 2, 3});
+            searchCache.put(AVAILABLE_BOOKS, searchCache.snapshot(), new long[] {1, 2, 3});
+            searchCache.put(UNAVAILABLE_BOOKS, searchCache.snapshot(), new long[] {4});
+        }
+
+        @Test
+        @DisplayName("Removes the item from the searches it no longer matches")
+        public void onItemChange_shouldPatchSearches_whenItemBecomesUnavailable() {
+            book.setAvailableCopies(0);
+
+            searchCache.onItemChange(ItemChangeEvent.availability(book, true));
+
+            assertThat(searchCache.get(AVAILABLE_BOOKS)).containsExactly(1, 3);
+            assertThat(searchCache.get(ALL_BOOKS)).containsExactly(1, 2, 3);
+        }
+
+        @Test
+        @DisplayName("Drops the searches the item may now match")
+        public void onItemChange_shouldDropSearches_whenItemMayNowMatch() {
+            book.setAvailableCopies(0);
+
+            searchCache.onItemChange(ItemChangeEvent.availability(book, true));
+
+            assertThat(searchCache.get(UNAVAILABLE_BOOKS)).isNull();
+        }
+
+        @Test
+        @DisplayName("Keeps every search if the status did not change")
+        public void onItemChange_shouldKeepSearches_whenStatusDidNotChange() {
+            book.setTotalCopies(2);
+            book.setAvailableCopies(2);
+
+            searchCache.onItemChange(ItemChangeEvent.availability(book, true));
+
+            assertThat(searchCache.size()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Ignores a status filtered result read before the change")
+        public void put_shouldIgnoreStatusFilteredResult_whenStatusChangedDuringSearch() {
+            SearchQuery query = SearchQuery.of("BOOK").text("title", "foo").status("1").build();
+            SearchQuery withoutStatus = SearchQuery.of("BOOK").text("title", "foo").build();
+            SearchCache.Snapshot snapshot = searchCache.snapshot();
+            book.setAvailableCopies(0);
+            searchCache.onItemChange(ItemChangeEvent.availability(book, true));
+
+            searchCache.put(query, snapshot, new long[] {2});
+            searchCache.put(withoutStatus, snapshot, new long[] {2});
+
+            assertThat(searchCache.get(query)).isNull();
+            assertThat(searchCache.get(withoutStatus)).containsExactly(2);
+        }
+
+    }
+
+}
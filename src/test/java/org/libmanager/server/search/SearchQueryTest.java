@@ -0,0 +1,51 @@
+package org.libmanager.server.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchQueryTest {
+
+    @Test
+    @DisplayName("Trims and case-folds the values")
+    public void build_shouldNormalizeValues() {
+        SearchQuery query = SearchQuery.of("BOOK").text("title", "  Dune ").keyword("genre", "novel ").build();
+
+        assertThat(query.get("title")).isEqualTo("dune");
+        assertThat(query.get("genre")).isEqualTo("NOVEL");
+    }
+
+    @Test
+    @DisplayName("Leaves out the absent criteria")
+    public void build_shouldIgnoreAbsentCriteria() {
+        SearchQuery withSentinels = SearchQuery.of("BOOK")
+                                               .text("title", "dune")
+                                               .text("author", "null")
+                                               .text("publisher", "   ")
+                                               .date("releaseDate", "not a date")
+                                               .status("null")
+                                               .build();
+        SearchQuery withoutSentinels = SearchQuery.of("BOOK").text("title", "Dune").build();
+
+        assertThat(withSentinels).isEqualTo(withoutSentinels);
+        assertThat(withSentinels.hashCode()).isEqualTo(withoutSentinels.hashCode());
+        assertThat(withSentinels.get("author")).isEqualTo(SearchQuery.ABSENT);
+        assertThat(withSentinels.getStatus()).isNull();
+    }
+
+    @Test
+    @DisplayName("Maps any status other than 0 to available")
+    public void build_shouldNormalizeStatus() {
+        assertThat(SearchQuery.of("DVD").status("0").build().getStatus()).isFalse();
+        assertThat(SearchQuery.of("DVD").status("true").build())
+                .isEqualTo(SearchQuery.of("DVD").status("1").build());
+    }
+
+    @Test
+    @DisplayName("Does not share keys between item types")
+    public void equals_shouldDependOnItemType() {
+        assertThat(SearchQuery.of("BOOK").build()).isNotEqualTo(SearchQuery.of("DVD").build());
+    }
+
+}
@@ -4,25 +4,40 @@ import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.config.ReplicaRoutingDataSource;
 import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.event.ItemChangeEvent;
 import org.libmanager.server.repository.BookRepository;
 import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.MultiLoadRepository;
 import org.libmanager.server.response.Response;
+import org.libmanager.server.search.RequestCoalescer;
+import org.libmanager.server.search.SearchCache;
+import org.libmanager.server.search.SearchQuery;
 import org.libmanager.server.service.impl.BookServiceImpl;
 import org.mockito.ArgumentMatcher;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +49,24 @@ public class BookServiceTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private MultiLoadRepository multiLoadRepository;
+
+    @Mock
+    private SearchCache searchCache;
+
+    @Mock
+    private CopyService copyService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer();
+
     @InjectMocks
     private final BookService bookService = new BookServiceImpl();
 
@@ -120,7 +153,7 @@ public class BookServiceTest {
         @Test
         @DisplayName("Returns Response with OK code if edited successfully")
         public void edit_shouldReturnResponseWithOK_whenEditedSuccessfully() {
-            when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+            when(bookRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(book));
             when(itemRepository.sumTotalCopies()).thenReturn(100_000L);
 
             Response<Boolean> result = bookService.edit(
@@ -140,7 +173,7 @@ public class BookServiceTest {
         @Test
         @DisplayName("Returns Response with MAX_ITEMS_REACHED code if the new totalCopies value make sumTotalCopies more than 100,000")
         public void edit_shouldReturnResponseWithMaxItemsReached_whenLimitIsReached() {
-            when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+            when(bookRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(book));
             when(itemRepository.sumTotalCopies()).thenReturn(100_000L);
 
             Response<Boolean> result = bookService.edit(
@@ -170,7 +203,35 @@ public class BookServiceTest {
             book.setAvailableCopies(2);
             book.setTotalCopies(8);
 
-            when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+            when(bookRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(book));
+            when(itemRepository.sumTotalCopies()).thenReturn(100L);
+
+            Response<Boolean> result = bookService.edit(
+                    1L,
+                    book.getTitle(),
+                    book.getAuthor(),
+                    book.getPublisher(),
+                    book.getGenre(),
+                    book.getIsbn(),
+                    book.getReleaseDate().toString(),
+                    1
+            );
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_TOTAL_COPIES);
+        }
+
+        @Test
+        @DisplayName("Counts the available copies of the stocks, the book may not be refreshed yet")
+        public void edit_shouldCountAvailableCopiesOfStocks_whenBookIsNotRefreshed() {
+            Book book = new Book();
+            book.setTitle("Foo");
+            book.setReleaseDate(LocalDate.EPOCH);
+            book.setTotalCopies(8);
+            book.setAvailableCopies(8);
+
+            when(copyService.lockStocks(List.of(1L)))
+                    .thenReturn(List.of(new BranchStock(book, new Branch("MAIN", "Main"), 8, 2)));
+            when(bookRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(book));
             when(itemRepository.sumTotalCopies()).thenReturn(100L);
 
             Response<Boolean> result = bookService.edit(
@@ -190,7 +251,7 @@ public class BookServiceTest {
         @Test
         @DisplayName("Returns NOT_FOUND if book is not found")
         public void edit_shouldReturnNotFound_whenBookIsNotFound() {
-            when(bookRepository.findById(1L)).thenReturn(Optional.empty());
+            when(bookRepository.findByIdForUpdate(1L)).thenReturn(Optional.empty());
 
             Response<Boolean> result = bookService.edit(
                     1L,
@@ -259,6 +320,7 @@ public class BookServiceTest {
         @Test
         @DisplayName("Returns matching books")
         public void search_shouldReturnMatchingBooks() {
+            when(searchCache.snapshot()).thenReturn(new SearchCache().snapshot());
             when(bookRepository.findAll(ArgumentMatchers.<Specification<Book>>any())).thenReturn(bookList);
 
             Iterable<Book> result = bookService.search(
@@ -275,6 +337,44 @@ public class BookServiceTest {
             assertThat(result).isEqualTo(bookList);
         }
 
+        @Test
+        @DisplayName("Returns the cached books without querying them")
+        public void search_shouldReturnCachedResult_whenQueryIsCached() {
+            long[] ids = {1L, 2L, 3L};
+            when(searchCache.get(any(SearchQuery.class))).thenReturn(ids);
+            when(multiLoadRepository.findAllById(Book.class, ids)).thenReturn(bookList);
+
+            Iterable<Book> result = bookService.search(
+                    "  FOO ",
+                    book.getAuthor(),
+                    "null",
+                    "novel",
+                    "null",
+                    "null",
+                    "null"
+            );
+
+            assertThat(result).isEqualTo(bookList);
+            verify(bookRepository, never()).findAll(ArgumentMatchers.<Specification<Book>>any());
+        }
+
+        @Test
+        @DisplayName("Searches the primary right after a change of the catalog")
+        public void search_shouldReadOnPrimary_whenCatalogJustChanged() {
+            SearchCache changed = new SearchCache();
+            changed.onItemChange(ItemChangeEvent.catalog());
+            when(searchCache.snapshot()).thenReturn(changed.snapshot());
+            AtomicBoolean primaryRead = new AtomicBoolean();
+            when(bookRepository.findAll(ArgumentMatchers.<Specification<Book>>any())).thenAnswer(invocation -> {
+                primaryRead.set(ReplicaRoutingDataSource.isPrimaryRead());
+                return bookList;
+            });
+
+            bookService.search("foo", "null", "null", "null", "null", "null", "null");
+
+            assertThat(primaryRead).isTrue();
+        }
+
     }
 
 }
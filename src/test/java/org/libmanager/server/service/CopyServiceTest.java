@@ -0,0 +1,348 @@
+package org.libmanager.server.service;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Copy;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.inventory.AvailabilityRefresher;
+import org.libmanager.server.inventory.BarcodeIndex;
+import org.libmanager.server.repository.BranchRepository;
+import org.libmanager.server.repository.BranchStockRepository;
+import org.libmanager.server.repository.CopyRepository;
+import org.libmanager.server.service.impl.CopyServiceImpl;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CopyServiceTest {
+
+    @Mock
+    private CopyRepository copyRepository;
+
+    @Mock
+    private BranchRepository branchRepository;
+
+    @Mock
+    private BranchStockRepository stockRepository;
+
+    @Mock
+    private AvailabilityRefresher availabilityRefresher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private BarcodeIndex barcodeIndex = new BarcodeIndex();
+
+    @InjectMocks
+    private final CopyService copyService = new CopyServiceImpl();
+
+    private final Branch main = new Branch("MAIN", "Main");
+    private final Branch east = new Branch("EAST", "East");
+
+    private Book book;
+    private BranchStock stock;
+
+    @BeforeEach
+    public void setUp() {
+        book = new Book();
+        ReflectionTestUtils.setField(book, "id", 7L);
+        book.setTotalCopies(3);
+        book.setAvailableCopies(3);
+        stock = new BranchStock(book, main, 3, 3);
+    }
+
+    private static BitSet bits(int... numbers) {
+        BitSet bits = new BitSet();
+        for (int number : numbers)
+            bits.set(number);
+        return bits;
+    }
+
+    private Copy copy(long id, int number) {
+        return copy(id, main, number);
+    }
+
+    private Copy copy(long id, Branch branch, int number) {
+        Copy copy = new Copy(book, branch, number, "7-" + (number + 1));
+        ReflectionTestUtils.setField(copy, "id", id);
+        return copy;
+    }
+
+    @Nested
+    class SyncCopies {
+
+        @Test
+        @DisplayName("Creates a copy on the shelf for each of the total copies of a new item")
+        @SuppressWarnings("unchecked")
+        public void syncCopies_shouldCreateCopies_whenItemIsNew() {
+            when(stockRepository.findAllByItemIdForUpdate(List.of(7L))).thenReturn(List.of());
+            when(branchRepository.getOne("MAIN")).thenReturn(main);
+            when(stockRepository.save(any(BranchStock.class))).thenAnswer(invocation -> invocation.getArgument(0));
+            ArgumentCaptor<BranchStock> savedStock = ArgumentCaptor.forClass(BranchStock.class);
+            ArgumentCaptor<List<Copy>> created = ArgumentCaptor.forClass(List.class);
+
+            copyService.syncCopies(book);
+
+            verify(stockRepository).save(savedStock.capture());
+            verify(copyRepository).saveAll(created.capture());
+            assertThat(created.getValue()).extracting(Copy::getBarcode).containsExactly("7-1", "7-2", "7-3");
+            assertThat(savedStock.getValue().getBranch()).isSameAs(main);
+            assertThat(savedStock.getValue().getTotalCopies()).isEqualTo(3);
+            assertThat(BitSet.valueOf(savedStock.getValue().getCopyAvailability())).isEqualTo(bits(0, 1, 2));
+        }
+
+        @Test
+        @DisplayName("Deletes the copies on the shelf with the highest numbers when the total copies are lowered")
+        public void syncCopies_shouldDeleteCopiesOnTheShelf_whenTotalCopiesAreLowered() {
+            Copy lent = copy(2, 2);
+            Copy highest = copy(3, 1);
+            book.setTotalCopies(2);
+            stock.setAvailableCopies(2);
+            stock.setCopyAvailability(bits(0, 1).toByteArray());
+            when(stockRepository.findAllByItemIdForUpdate(List.of(7L))).thenReturn(List.of(stock));
+            when(copyRepository.findByItemAndBranchOrderByCopyNumber(book, main))
+                    .thenReturn(List.of(copy(1, 0), highest, lent));
+
+            copyService.syncCopies(book);
+
+            verify(copyRepository).delete(highest);
+            assertThat(BitSet.valueOf(stock.getCopyAvailability())).isEqualTo(bits(0));
+            assertThat(stock.getTotalCopies()).isEqualTo(2);
+            assertThat(stock.getAvailableCopies()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Adds the new copies to the default branch, numbered after the copies of every branch")
+        @SuppressWarnings("unchecked")
+        public void syncCopies_shouldAddCopiesToDefaultBranch_whenTotalCopiesAreRaised() {
+            BranchStock eastStock = new BranchStock(book, east, 1, 1);
+            eastStock.setCopyAvailability(bits(2).toByteArray());
+            stock.setTotalCopies(2);
+            stock.setAvailableCopies(2);
+            stock.setCopyAvailability(bits(0, 1).toByteArray());
+            book.setTotalCopies(4);
+            when(stockRepository.findAllByItemIdForUpdate(List.of(7L))).thenReturn(List.of(eastStock, stock));
+            when(copyRepository.findByItemAndBranchOrderByCopyNumber(book, main))
+                    .thenReturn(List.of(copy(1, 0), copy(2, 1)));
+            when(copyRepository.findNumbers(book)).thenReturn(List.of(0, 1, 2));
+            when(copyRepository.findByItemAndBranchOrderByCopyNumber(book, east))
+                    .thenReturn(List.of(copy(3, east, 2)));
+            ArgumentCaptor<List<Copy>> created = ArgumentCaptor.forClass(List.class);
+
+            copyService.syncCopies(book);
+
+            verify(copyRepository).saveAll(created.capture());
+            assertThat(created.getValue()).extracting(Copy::getBarcode).containsExactly("7-4");
+            assertThat(stock.getTotalCopies()).isEqualTo(3);
+            assertThat(BitSet.valueOf(stock.getCopyAvailability())).isEqualTo(bits(0, 1, 3));
+            assertThat(eastStock.getTotalCopies()).isEqualTo(1);
+        }
+
+    }
+
+    @Nested
+    class CheckOut {
+
+        @Test
+        @DisplayName("Takes the copy with the lowest number on the shelf")
+        public void checkOut_shouldTakeLowestCopyOnTheShelf() {
+            Copy copy = copy(2, 1);
+            stock.setAvailableCopies(2);
+            stock.setCopyAvailability(bits(1, 2).toByteArray());
+            when(copyRepository.findByItemAndCopyNumber(book, 1)).thenReturn(Optional.of(copy));
+
+            Copy result = copyService.checkOut(stock);
+
+            assertThat(result).isSameAs(copy);
+            assertThat(BitSet.valueOf(stock.getCopyAvailability())).isEqualTo(bits(2));
+            assertThat(stock.getAvailableCopies()).isEqualTo(1);
+            // The available copies of the item are refreshed once committed
+            verify(availabilityRefresher).changed(7L);
+        }
+
+        @Test
+        @DisplayName("Builds the shelf from the copies and the loans the first time")
+        public void checkOut_shouldBuildShelf_whenNotBuiltYet() {
+            stock.setAvailableCopies(1);
+            when(copyRepository.findByItemAndBranchOrderByCopyNumber(book, main))
+                    .thenReturn(List.of(copy(1, 0), copy(2, 1), copy(3, 2)));
+            when(copyRepository.findNumbersOnLoan(book, main)).thenReturn(List.of(0));
+            when(copyRepository.findByItemAndCopyNumber(book, 1)).thenReturn(Optional.of(copy(2, 1)));
+
+            copyService.checkOut(stock);
+
+            // One loan has no copy: one more copy is off the shelf
+            assertThat(BitSet.valueOf(stock.getCopyAvailability())).isEmpty();
+        }
+
+        @Test
+        @DisplayName("Returns null if the scanned copy is not on the shelf")
+        public void checkOut_shouldReturnNull_whenScannedCopyIsLent() {
+            stock.setCopyAvailability(bits(0).toByteArray());
+
+            Copy result = copyService.checkOut(stock, new BarcodeIndex.CopyRef(2, 7, "MAIN", 1));
+
+            assertThat(result).isNull();
+        }
+
+        @Test
+        @DisplayName("Returns null if the scanned copy is held by another branch")
+        public void checkOut_shouldReturnNull_whenScannedCopyIsInAnotherBranch() {
+            stock.setCopyAvailability(bits(1).toByteArray());
+            when(copyRepository.findById(2L)).thenReturn(Optional.of(copy(2, east, 1)));
+
+            Copy result = copyService.checkOut(stock, new BarcodeIndex.CopyRef(2, 7, "MAIN", 1));
+
+            assertThat(result).isNull();
+            assertThat(stock.getAvailableCopies()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Puts the returned copy back on the shelf")
+        public void checkIn_shouldPutCopyBackOnTheShelf() {
+            stock.setAvailableCopies(1);
+            stock.setCopyAvailability(bits(0).toByteArray());
+
+            copyService.checkIn(stock, copy(2, 1));
+
+            assertThat(BitSet.valueOf(stock.getCopyAvailability())).isEqualTo(bits(0, 1));
+            assertThat(stock.getAvailableCopies()).isEqualTo(2);
+            verify(availabilityRefresher).changed(7L);
+        }
+
+    }
+
+    @Nested
+    class LockAvailableStock {
+
+        @Test
+        @DisplayName("Locks the first branch still having a copy on the shelf once locked")
+        public void lockAvailableStock_shouldSkipBranchesEmptiedSinceRead() {
+            BranchStock emptied = new BranchStock(book, main, 3, 0);
+            BranchStock eastStock = new BranchStock(book, east, 1, 1);
+            when(stockRepository.findIdsWithStock(book)).thenReturn(List.of(4L, 5L));
+            when(stockRepository.findByIdForUpdate(4L)).thenReturn(Optional.of(emptied));
+            when(stockRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(eastStock));
+
+            BranchStock result = copyService.lockAvailableStock(book, null);
+
+            assertThat(result).isSameAs(eastStock);
+        }
+
+        @Test
+        @DisplayName("Returns null if the requested branch has no copy on the shelf")
+        public void lockAvailableStock_shouldReturnNull_whenBranchHasNoCopy() {
+            when(stockRepository.findByItemAndBranchForUpdate(book, "EAST"))
+                    .thenReturn(Optional.of(new BranchStock(book, east, 1, 0)));
+
+            assertThat(copyService.lockAvailableStock(book, "EAST")).isNull();
+        }
+
+        @Test
+        @DisplayName("Creates the stock of an item without stock by its own transaction, then locks it")
+        public void lockAvailableStock_shouldCreateStockBeforeLocking_whenItemHasNoStock() {
+            when(stockRepository.findIdsWithStock(book)).thenReturn(List.of());
+            when(stockRepository.existsByItem(book)).thenReturn(false);
+            when(entityManager.getReference(Item.class, 7L)).thenReturn(book);
+            when(branchRepository.getOne("MAIN")).thenReturn(main);
+            when(stockRepository.findByItemAndBranchForUpdate(book, "MAIN")).thenReturn(Optional.of(stock));
+            ArgumentCaptor<BranchStock> created = ArgumentCaptor.forClass(BranchStock.class);
+
+            BranchStock result = copyService.lockAvailableStock(book, null);
+
+            assertThat(result).isSameAs(stock);
+            InOrder order = inOrder(transactionManager, stockRepository);
+            order.verify(transactionManager).getTransaction(any());
+            order.verify(stockRepository).saveAndFlush(created.capture());
+            order.verify(transactionManager).commit(any());
+            order.verify(stockRepository).findByItemAndBranchForUpdate(book, "MAIN");
+            assertThat(created.getValue().getAvailableCopies()).isEqualTo(3);
+            // The item is not locked
+            verify(entityManager, never()).refresh(any(), any(LockModeType.class));
+        }
+
+    }
+
+    @Nested
+    class LockHeldItem {
+
+        @Test
+        @DisplayName("Does not lock the item for update if it has no hold once read again")
+        public void lockHeldItem_shouldReturnFalse_whenItemHasNoHold() {
+            assertThat(copyService.lockHeldItem(book)).isFalse();
+
+            verify(entityManager).refresh(book, LockModeType.PESSIMISTIC_READ);
+            verify(entityManager, never()).refresh(book, LockModeType.PESSIMISTIC_WRITE);
+        }
+
+        @Test
+        @DisplayName("Locks the item for update if it has holds")
+        public void lockHeldItem_shouldLockItem_whenItemHasHolds() {
+            book.setHoldCount(1);
+
+            assertThat(copyService.lockHeldItem(book)).isTrue();
+
+            verify(entityManager).refresh(book, LockModeType.PESSIMISTIC_WRITE);
+        }
+
+    }
+
+    @Nested
+    class Resolve {
+
+        @Test
+        @DisplayName("Reads a barcode from the database once, then from the index")
+        public void resolve_shouldReadDatabaseOnce() {
+            when(copyRepository.findByBarcode("7-2")).thenReturn(Optional.of(copy(2, 1)));
+
+            copyService.resolve("7-2");
+            BarcodeIndex.CopyRef result = copyService.resolve("7-2");
+
+            assertThat(result.getItemId()).isEqualTo(7L);
+            assertThat(result.getBranchCode()).isEqualTo("MAIN");
+            assertThat(result.getCopyNumber()).isEqualTo(1);
+            verify(copyRepository, times(1)).findByBarcode("7-2");
+        }
+
+        @Test
+        @DisplayName("Returns null if no copy has the barcode")
+        public void resolve_shouldReturnNull_whenBarcodeIsUnknown() {
+            when(copyRepository.findByBarcode("Foo")).thenReturn(Optional.empty());
+
+            assertThat(copyService.resolve("Foo")).isNull();
+        }
+
+    }
+
+}
@@ -13,15 +13,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.libmanager.server.entity.DVD;
 import org.libmanager.server.repository.DVDRepository;
 import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.MultiLoadRepository;
 import org.libmanager.server.response.Response;
+import org.libmanager.server.search.RequestCoalescer;
+import org.libmanager.server.search.SearchCache;
+import org.libmanager.server.search.SearchQuery;
 import org.libmanager.server.service.impl.DVDServiceImpl;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,6 +43,24 @@ public class DVDServiceTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private MultiLoadRepository multiLoadRepository;
+
+    @Mock
+    private SearchCache searchCache;
+
+    @Mock
+    private CopyService copyService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer();
+
     @InjectMocks
     private final DVDService dvdService = new DVDServiceImpl();
 
@@ -115,7 +143,7 @@ public class DVDServiceTest {
         @Test
         @DisplayName("Returns Response with OK code if edited successfully")
         public void edit_shouldReturnResponseWithOK_whenEditedSuccessfully() {
-            when(dvdRepository.findById(1L)).thenReturn(Optional.of(dvd));
+            when(dvdRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(dvd));
             when(itemRepository.sumTotalCopies()).thenReturn(100_000L);
 
             Response<Boolean> result = dvdService.edit(
@@ -134,7 +162,7 @@ public class DVDServiceTest {
         @Test
         @DisplayName("Returns Response with MAX_ITEMS_REACHED code if the new totalCopies value make sumTotalCopies more than 100,000")
         public void edit_shouldReturnResponseWithMaxItemsReached_whenLimitIsReached() {
-            when(dvdRepository.findById(1L)).thenReturn(Optional.of(dvd));
+            when(dvdRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(dvd));
             when(itemRepository.sumTotalCopies()).thenReturn(100_000L);
 
             Response<Boolean> result = dvdService.edit(
@@ -162,7 +190,7 @@ public class DVDServiceTest {
             dvd.setAvailableCopies(2);
             dvd.setTotalCopies(8);
 
-            when(dvdRepository.findById(1L)).thenReturn(Optional.of(dvd));
+            when(dvdRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(dvd));
             when(itemRepository.sumTotalCopies()).thenReturn(100L);
 
             Response<Boolean> result = dvdService.edit(
@@ -181,7 +209,7 @@ public class DVDServiceTest {
         @Test
         @DisplayName("Returns NOT_FOUND if dvd is not found")
         public void edit_shouldReturnNotFound_whenDVDIsNotFound() {
-            when(dvdRepository.findById(1L)).thenReturn(Optional.empty());
+            when(dvdRepository.findByIdForUpdate(1L)).thenReturn(Optional.empty());
 
             Response<Boolean> result = dvdService.edit(
                     1L,
@@ -249,6 +277,7 @@ public class DVDServiceTest {
         @Test
         @DisplayName("Returns matching dvds")
         public void search_shouldReturnMatchingDVDs() {
+            when(searchCache.snapshot()).thenReturn(new SearchCache().snapshot());
             when(dvdRepository.findAll(ArgumentMatchers.<Specification<DVD>>any())).thenReturn(dvdList);
 
             Iterable<DVD> result = dvdService.search(
@@ -262,6 +291,25 @@ public class DVDServiceTest {
             assertThat(result).isEqualTo(dvdList);
         }
 
+        @Test
+        @DisplayName("Returns the cached DVDs without querying them")
+        public void search_shouldReturnCachedResult_whenQueryIsCached() {
+            long[] ids = {1L, 2L, 3L};
+            when(searchCache.get(any(SearchQuery.class))).thenReturn(ids);
+            when(multiLoadRepository.findAllById(DVD.class, ids)).thenReturn(dvdList);
+
+            Iterable<DVD> result = dvdService.search(
+                    "  FOO ",
+                    dvd.getAuthor(),
+                    "novel",
+                    "null",
+                    "null"
+            );
+
+            assertThat(result).isEqualTo(dvdList);
+            verify(dvdRepository, never()).findAll(ArgumentMatchers.<Specification<DVD>>any());
+        }
+
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,229 @@
+package org.libmanager.server.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.repository.BookRepository;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.SequenceRepository;
+import org.libmanager.server.repository.UserRepository;
+import org.libmanager.server.response.ImportReport;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.impl.ImportServiceImpl;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ImportServiceTest {
+
+    private static final String USER_HEADER = "username,firstName,lastName,address,email,birthday,password\n";
+
+    private static final String BOOK_HEADER = "title,author,publisher,genre,isbn,releaseDate,totalCopies\n";
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private SequenceRepository sequenceRepository;
+
+    @Mock
+    private ChangeCounterRepository changeCounterRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private final ImportService importService = new ImportServiceImpl();
+
+    private static InputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void stubItemIds() {
+        when(sequenceRepository.nextIds(ArgumentMatchers.eq(Item.class), ArgumentMatchers.anyInt()))
+                .thenAnswer(invocation -> LongStream.rangeClosed(1, invocation.<Integer>getArgument(1)).toArray());
+    }
+
+    @Nested
+    class ImportBooks {
+
+        @Test
+        @DisplayName("Imports valid rows")
+        public void importBooks_shouldImportValidRows() {
+            stubItemIds();
+            when(itemRepository.sumTotalCopies()).thenReturn(null);
+            when(bookRepository.findExistingIsbns(ArgumentMatchers.anyCollection())).thenReturn(List.of());
+
+            Response<ImportReport> result = importService.importBooks(input(BOOK_HEADER +
+                    "Foo,Foo,Foo,novel,978-0-306-40615-7,2020-01-01,2\n" +
+                    "\"Bar, the sequel\",Bar,Bar,novel,0306406152,01/01/2020,1\n"), "csv");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent().getImported()).isEqualTo(2);
+            assertThat(result.getContent().getRejected()).isZero();
+        }
+
+        @Test
+        @DisplayName("Rejects rows with an invalid ISBN")
+        public void importBooks_shouldRejectRow_whenIsbnIsInvalid() {
+            when(itemRepository.sumTotalCopies()).thenReturn(0L);
+
+            Response<ImportReport> result = importService.importBooks(input(BOOK_HEADER +
+                    "Foo,Foo,Foo,novel,9780306406158,2020-01-01,2\n"), "csv");
+
+            assertThat(result.getContent().getRejected()).isEqualTo(1);
+            assertThat(result.getContent().getRows().get(0).getLine()).isEqualTo(2);
+            assertThat(result.getContent().getRows().get(0).getCode()).isEqualTo(Response.Code.INVALID_DATA);
+        }
+
+        @Test
+        @DisplayName("Rejects rows whose ISBN is already in the catalog or earlier in the file")
+        public void importBooks_shouldRejectRow_whenIsbnAlreadyExists() {
+            stubItemIds();
+            when(itemRepository.sumTotalCopies()).thenReturn(0L);
+            when(bookRepository.findExistingIsbns(ArgumentMatchers.anyCollection())).thenReturn(List.of("0306406152"));
+
+            Response<ImportReport> result = importService.importBooks(input(BOOK_HEADER +
+                    "Foo,Foo,Foo,novel,9780306406157,2020-01-01,2\n" +
+                    "Foo,Foo,Foo,novel,9780306406157,2020-01-01,2\n" +
+                    "Bar,Bar,Bar,novel,0306406152,2020-01-01,1\n"), "csv");
+
+            assertThat(result.getContent().getImported()).isEqualTo(1);
+            assertThat(result.getContent().getRows()).extracting(ImportReport.Row::getCode)
+                                                     .containsOnly(Response.Code.ALREADY_EXISTS);
+        }
+
+        @Test
+        @DisplayName("Rejects rows above the copies limit")
+        public void importBooks_shouldRejectRow_whenCopiesLimitIsReached() {
+            when(itemRepository.sumTotalCopies()).thenReturn(100_000L);
+            when(bookRepository.findExistingIsbns(ArgumentMatchers.anyCollection())).thenReturn(List.of());
+
+            Response<ImportReport> result = importService.importBooks(input(BOOK_HEADER +
+                    "Foo,Foo,Foo,novel,9780306406157,2020-01-01,1\n"), "csv");
+
+            assertThat(result.getContent().getRows().get(0).getCode()).isEqualTo(Response.Code.MAX_ITEMS_REACHED);
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_DATA if a column is missing")
+        public void importBooks_shouldReturnInvalidData_whenAColumnIsMissing() {
+            when(itemRepository.sumTotalCopies()).thenReturn(0L);
+
+            Response<ImportReport> result = importService.importBooks(input("title,author\nFoo,Foo\n"), "csv");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_DATA);
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_DATA if the format is unknown")
+        public void importBooks_shouldReturnInvalidData_whenFormatIsUnknown() {
+            Response<ImportReport> result = importService.importBooks(input(BOOK_HEADER), "xml");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_DATA);
+        }
+
+    }
+
+    @Nested
+    class ImportDVDs {
+
+        @Test
+        @DisplayName("Imports NDJSON rows")
+        public void importDVDs_shouldImportNdjsonRows() {
+            stubItemIds();
+            when(itemRepository.sumTotalCopies()).thenReturn(0L);
+
+            Response<ImportReport> result = importService.importDVDs(input(
+                    "{\"title\":\"Foo\",\"director\":\"Foo\",\"duration\":\"90 min\",\"genre\":\"action\"," +
+                    "\"releaseDate\":\"2020-01-01\",\"totalCopies\":3}\n" +
+                    "\n" +
+                    "{\"title\":\"Bar\"}\n"), "ndjson");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent().getImported()).isEqualTo(1);
+            assertThat(result.getContent().getRows().get(0).getLine()).isEqualTo(3);
+            assertThat(result.getContent().getRows().get(0).getCode()).isEqualTo(Response.Code.INVALID_DATA);
+        }
+
+    }
+
+    @Nested
+    class ImportUsers {
+
+        @Test
+        @DisplayName("Reports every row")
+        public void importUsers_shouldReportEveryRow() {
+            when(userRepository.count()).thenReturn(0L);
+            when(userRepository.findExistingUsernames(ArgumentMatchers.anyCollection())).thenReturn(List.of("bar"));
+
+            Response<ImportReport> result = importService.importUsers(input(USER_HEADER +
+                    "foo,Foo,Foo,Foo,foo@foo.com,2000-01-01,password\n" +
+                    "bar,Bar,Bar,Bar,bar@bar.com,2000-01-01,password\n" +
+                    "foo,Foo,Foo,Foo,foo@foo.com,2000-01-01,password\n" +
+                    "baz,Baz,Baz,Baz,baz@baz.com,not a date,password\n"));
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent().getImported()).isEqualTo(1);
+            assertThat(result.getContent().getRows()).extracting(ImportReport.Row::getCode)
+                                                     .containsExactly(Response.Code.OK, Response.Code.ALREADY_EXISTS,
+                                                                      Response.Code.ALREADY_EXISTS,
+                                                                      Response.Code.INVALID_DATA);
+        }
+
+        @Test
+        @DisplayName("Rejects rows above the users limit")
+        public void importUsers_shouldRejectRow_whenUsersLimitIsReached() {
+            when(userRepository.count()).thenReturn(1999L);
+            when(userRepository.findExistingUsernames(ArgumentMatchers.anyCollection())).thenReturn(List.of());
+
+            Response<ImportReport> result = importService.importUsers(input(USER_HEADER +
+                    "foo,Foo,Foo,Foo,foo@foo.com,2000-01-01,password\n" +
+                    "bar,Bar,Bar,Bar,bar@bar.com,2000-01-01,password\n"));
+
+            assertThat(result.getContent().getRows()).extracting(ImportReport.Row::getCode)
+                                                     .containsExactly(Response.Code.OK, Response.Code.MAX_USERS_REACHED);
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_DATA if a column is missing")
+        public void importUsers_shouldReturnInvalidData_whenAColumnIsMissing() {
+            when(userRepository.count()).thenReturn(0L);
+
+            Response<ImportReport> result = importService.importUsers(input("username,password\nfoo,password\n"));
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_DATA);
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.libmanager.server.service;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.DisplayName;
@@ -7,11 +8,16 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
 import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.response.BranchAvailability;
+import org.libmanager.server.response.Response;
 import org.libmanager.server.service.impl.ItemServiceImpl;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -22,6 +28,12 @@ public class ItemServiceTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private CopyService copyService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private final ItemService itemService = new ItemServiceImpl();
 
@@ -31,7 +43,7 @@ public class ItemServiceTest {
         @Test
         @DisplayName("Returns true if the item is found and deleted")
         public void delete_shouldReturnTrue_whenItemIsFoundAndDeleted() {
-            when(itemRepository.findById(1L)).thenReturn(Optional.of(new Book()));
+            when(itemRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(new Book()));
 
             boolean result = itemService.delete(1);
 
@@ -41,7 +53,7 @@ public class ItemServiceTest {
         @Test
         @DisplayName("Returns false if the item is not found")
         public void delete_shouldReturnFalse_whenItemIsNotFound() {
-            when(itemRepository.findById(1L)).thenReturn(Optional.empty());
+            when(itemRepository.findByIdForUpdate(1L)).thenReturn(Optional.empty());
 
             boolean result = itemService.delete(1);
 
@@ -50,4 +62,35 @@ public class ItemServiceTest {
 
     }
 
+    @Nested
+    class GetAvailability {
+
+        @Test
+        @DisplayName("Returns the copies of each branch from their stocks")
+        public void getAvailability_shouldReturnStocks_whenItemIsFound() {
+            Book book = new Book();
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(book));
+            List<BranchStock> stocks = List.of(new BranchStock(book, new Branch("EAST", "East"), 2, 0),
+                                               new BranchStock(book, new Branch("MAIN", "Main"), 3, 1));
+            when(copyService.getStocks(book)).thenReturn(stocks);
+
+            Response<List<BranchAvailability>> result = itemService.getAvailability(1);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent()).extracting(BranchAvailability::getBranch).containsExactly("EAST", "MAIN");
+            assertThat(result.getContent()).extracting(BranchAvailability::getAvailableCopies).containsExactly(0, 1);
+        }
+
+        @Test
+        @DisplayName("Returns NOT_FOUND if the item is not found")
+        public void getAvailability_shouldReturnNotFound_whenItemIsNotFound() {
+            when(itemRepository.findById(1L)).thenReturn(Optional.empty());
+
+            Response<List<BranchAvailability>> result = itemService.getAvailability(1);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.NOT_FOUND);
+        }
+
+    }
+
 }
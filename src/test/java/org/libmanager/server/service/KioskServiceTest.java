@@ -0,0 +1,208 @@
+package org.libmanager.server.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.entity.KioskEvent;
+import org.libmanager.server.inventory.AvailabilityEngine;
+import org.libmanager.server.repository.KioskEventRepository;
+import org.libmanager.server.request.KioskBatch;
+import org.libmanager.server.response.KioskEventResult;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.impl.KioskServiceImpl;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class KioskServiceTest {
+
+    private static final String SECRET = "Foo";
+
+    /** The kiosk clock of the events, in milliseconds since the start of the test */
+    private static final long NOW = System.currentTimeMillis();
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private KioskEventRepository kioskEventRepository;
+
+    @Mock
+    private AvailabilityEngine availabilityEngine;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private final KioskService kioskService = new KioskServiceImpl();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(kioskService, "secret", SECRET);
+    }
+
+    private String payload(KioskBatch.Event... events) throws Exception {
+        return mapper.writeValueAsString(new KioskBatch("K1", List.of(events)));
+    }
+
+    private static String sign(String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)))
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    private static KioskBatch.Event checkout(String id, String barcode, long timestamp) {
+        return new KioskBatch.Event(id, KioskBatch.Type.CHECKOUT, "Foo", barcode, NOW + timestamp);
+    }
+
+    private static KioskBatch.Event returned(String id, String barcode, long timestamp) {
+        return new KioskBatch.Event(id, KioskBatch.Type.RETURN, null, barcode, NOW + timestamp);
+    }
+
+    @Test
+    @DisplayName("Returns INVALID_TOKEN if the signature does not match")
+    public void sync_shouldReturnInvalidToken_whenSignatureDoesNotMatch() throws Exception {
+        String payload = payload(checkout("a", "1-1", 100));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload + " "));
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_TOKEN);
+        verify(reservationService, never()).checkout(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Applies the events in the order of the kiosk clock and records their outcomes")
+    public void sync_shouldApplyEventsInClockOrder() throws Exception {
+        String payload = payload(checkout("a", "1-1", 200), returned("b", "1-1", 100));
+        when(reservationService.returnCopy("1-1")).thenReturn(new Response<>(Response.Code.OK, true));
+        when(reservationService.checkout("Foo", "1-1")).thenReturn(new Response<>(Response.Code.NOT_AVAILABLE, false));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload));
+
+        InOrder inOrder = inOrder(reservationService);
+        inOrder.verify(reservationService).returnCopy("1-1");
+        inOrder.verify(reservationService).checkout("Foo", "1-1");
+        verify(kioskEventRepository).saveAll(any());
+        assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+        assertThat(result.getContent()).extracting(KioskEventResult::getEventId).containsExactly("a", "b");
+        assertThat(result.getContent()).extracting(KioskEventResult::getCode)
+                                       .containsExactly(Response.Code.NOT_AVAILABLE, Response.Code.OK);
+    }
+
+    @Test
+    @DisplayName("Gives the recorded outcome of an event already applied")
+    public void sync_shouldReplayOutcome_whenEventWasApplied() throws Exception {
+        String payload = payload(checkout("a", "1-1", 100));
+        when(kioskEventRepository.findAllById(any()))
+                .thenReturn(List.of(new KioskEvent("a", "K1", Response.Code.OK, null)));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload));
+
+        verify(reservationService, never()).checkout(anyString(), anyString());
+        assertThat(result.getContent().get(0).getCode()).isEqualTo(Response.Code.OK);
+        assertThat(result.getContent().get(0).isReplayed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Applies an event sent twice in the batch once")
+    public void sync_shouldApplyDuplicateEventOnce() throws Exception {
+        String payload = payload(checkout("a", "1-1", 100), checkout("a", "1-1", 100));
+        when(reservationService.checkout("Foo", "1-1")).thenReturn(new Response<>(Response.Code.OK, true));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload));
+
+        verify(reservationService, times(1)).checkout("Foo", "1-1");
+        assertThat(result.getContent()).extracting(KioskEventResult::isReplayed).containsExactly(false, true);
+    }
+
+    @Test
+    @DisplayName("Replays the checkouts through the availability engine while it decides the checkouts")
+    public void sync_shouldCheckoutThroughAvailabilityEngine_whenEnabled() throws Exception {
+        String payload = payload(checkout("a", "1-1", 100));
+        when(availabilityEngine.isEnabled()).thenReturn(true);
+        when(availabilityEngine.checkout("Foo", "1-1")).thenReturn(new Response<>(Response.Code.NOT_AVAILABLE, false));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload));
+
+        verify(reservationService, never()).checkout(anyString(), anyString());
+        assertThat(result.getContent().get(0).getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+    }
+
+    @Test
+    @DisplayName("Returns TRY_AGAIN for the events of a chunk rolled back")
+    public void sync_shouldReturnTryAgain_whenChunkFails() throws Exception {
+        String payload = payload(checkout("a", "1-1", 100));
+        when(reservationService.checkout("Foo", "1-1")).thenReturn(new Response<>(Response.Code.OK, true));
+        when(kioskEventRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("Duplicate"));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload));
+
+        assertThat(result.getContent().get(0).getCode()).isEqualTo(Response.Code.TRY_AGAIN);
+    }
+
+    @Test
+    @DisplayName("Returns SYNC_EXPIRED for an event older than the retention of the outcomes")
+    public void sync_shouldReturnSyncExpired_whenEventIsOlderThanRetention() throws Exception {
+        String payload = payload(checkout("a", "1-1", -Duration.ofDays(31).toMillis()), returned("b", "1-2", 100));
+        when(reservationService.returnCopy("1-2")).thenReturn(new Response<>(Response.Code.OK, true));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload));
+
+        verify(reservationService, never()).checkout(anyString(), anyString());
+        assertThat(result.getContent()).extracting(KioskEventResult::getCode)
+                                       .containsExactly(Response.Code.SYNC_EXPIRED, Response.Code.OK);
+    }
+
+    @Test
+    @DisplayName("Returns SYNC_EXPIRED for an event too far ahead of the server clock")
+    public void sync_shouldReturnSyncExpired_whenEventIsInTheFuture() throws Exception {
+        String payload = payload(checkout("a", "1-1", Duration.ofDays(1).toMillis()));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload));
+
+        verify(reservationService, never()).checkout(anyString(), anyString());
+        assertThat(result.getContent().get(0).getCode()).isEqualTo(Response.Code.SYNC_EXPIRED);
+        verify(kioskEventRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Returns INVALID_DATA for an event without barcode")
+    public void sync_shouldReturnInvalidData_whenEventHasNoBarcode() throws Exception {
+        String payload = payload(checkout("a", null, 100));
+
+        Response<List<KioskEventResult>> result = kioskService.sync(payload, sign(payload));
+
+        assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+        assertThat(result.getContent().get(0).getCode()).isEqualTo(Response.Code.INVALID_DATA);
+        verify(kioskEventRepository, never()).saveAll(any());
+    }
+
+}
@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,25 +13,46 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Copy;
 import org.libmanager.server.entity.DVD;
+import org.libmanager.server.entity.Hold;
 import org.libmanager.server.entity.Item;
 import org.libmanager.server.entity.Reservation;
 import org.libmanager.server.entity.User;
+import org.libmanager.server.event.HoldPromotedEvent;
+import org.libmanager.server.event.ItemChangeEvent;
+import org.libmanager.server.event.ReservationJournal;
+import org.libmanager.server.inventory.BarcodeIndex;
+import org.libmanager.server.repository.HoldRepository;
 import org.libmanager.server.repository.ItemRepository;
 import org.libmanager.server.repository.ReservationRepository;
 import org.libmanager.server.repository.UserRepository;
+import org.libmanager.server.request.CheckoutRequest;
+import org.libmanager.server.response.HoldStatus;
+import org.libmanager.server.response.ReservationResult;
 import org.libmanager.server.response.Response;
 import org.libmanager.server.service.impl.ReservationServiceImpl;
 import org.libmanager.server.util.DateUtil;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,6 +67,18 @@ public class ReservationServiceTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private HoldRepository holdRepository;
+
+    @Mock
+    private CopyService copyService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ReservationJournal reservationJournal;
+
     @InjectMocks
     private final ReservationServiceImpl reservationService = new ReservationServiceImpl();
 
@@ -88,13 +122,17 @@ public class ReservationServiceTest {
     @Nested
     class Add {
 
+        private final Branch main = new Branch("MAIN", "Main");
+
         private ReservationServiceImpl reservationServiceSpy;
         private Item itemSpy;
+        private BranchStock stock;
 
         @BeforeEach
         public void setUp() {
              reservationServiceSpy = spy(reservationService);
              itemSpy = spy(book);
+             stock = new BranchStock(itemSpy, main, 1, 1);
         }
 
         @Test
@@ -102,25 +140,97 @@ public class ReservationServiceTest {
         public void add_returnsOK_whenReservationIsSuccessfullyCreated() {
             when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
             when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
-            doReturn(1).when(itemSpy).getAvailableCopies();
             doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+            when(copyService.lockAvailableStock(itemSpy, null)).thenReturn(stock);
 
-            Response<Boolean> result = reservationServiceSpy.add("Foo", 1L);
+            Response<Boolean> result = reservationServiceSpy.add("Foo", 1L, null);
 
             assertThat(result.getCode()).isEqualTo(Response.Code.OK);
         }
 
         @Test
-        @DisplayName("Returns OK on success")
-        public void add_decrementAvailableCopies_whenSuccessfullyCreated() {
+        @DisplayName("Takes the copy from the stock without locking the item, refreshed once committed")
+        public void add_doesNotLockItem_whenSuccessfullyCreated() {
             when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
             when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
             doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+            when(copyService.lockAvailableStock(itemSpy, null)).thenReturn(stock);
             int oldAvailable = itemSpy.getAvailableCopies();
 
-            reservationServiceSpy.add("Foo", 1L);
+            reservationServiceSpy.add("Foo", 1L, null);
 
-            assertThat(itemSpy.getAvailableCopies()).isEqualTo(oldAvailable - 1);
+            verify(copyService).checkOut(stock);
+            verify(copyService, never()).lockItem(itemSpy);
+            verify(itemRepository, never()).save(itemSpy);
+            verify(eventPublisher, never()).publishEvent(ArgumentMatchers.any(ItemChangeEvent.class));
+            assertThat(itemSpy.getAvailableCopies()).isEqualTo(oldAvailable);
+        }
+
+        @Test
+        @DisplayName("Locks the item to remove the hold of the user")
+        public void add_removesHoldOfUser_whenUserWaitedForItem() {
+            itemSpy.setHoldCount(1);
+            Hold hold = new Hold(itemSpy, user, 1);
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+            when(copyService.lockAvailableStock(itemSpy, null)).thenReturn(stock);
+            when(holdRepository.findByItemAndUser(itemSpy, user)).thenReturn(Optional.of(hold));
+
+            reservationServiceSpy.add("Foo", 1L, null);
+
+            InOrder locks = inOrder(copyService, holdRepository);
+            locks.verify(copyService).lockItem(itemSpy);
+            locks.verify(holdRepository).delete(hold);
+            assertThat(itemSpy.getHoldCount()).isZero();
+            verify(itemRepository).save(itemSpy);
+        }
+
+        @Test
+        @DisplayName("Sets the due date of the loan")
+        public void add_setsDueDate_whenSuccessfullyCreated() {
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+            when(copyService.lockAvailableStock(itemSpy, null)).thenReturn(stock);
+            ArgumentCaptor<Reservation> saved = ArgumentCaptor.forClass(Reservation.class);
+
+            reservationServiceSpy.add("Foo", 1L, null);
+
+            verify(reservationRepository).save(saved.capture());
+            assertThat(saved.getValue().getDueDate()).isEqualTo(LocalDate.now().plusDays(21));
+        }
+
+        @Test
+        @DisplayName("Records the checkout in the reservation journal")
+        public void add_recordsCheckout_whenSuccessfullyCreated() {
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+            when(copyService.lockAvailableStock(itemSpy, null)).thenReturn(stock);
+            ArgumentCaptor<Reservation> saved = ArgumentCaptor.forClass(Reservation.class);
+
+            reservationServiceSpy.add("Foo", 1L, null);
+
+            verify(reservationRepository).save(saved.capture());
+            verify(reservationJournal).checkout(saved.getValue());
+        }
+
+        @Test
+        @DisplayName("Lends a copy of the requested branch")
+        public void add_lendsFromRequestedBranch_whenBranchIsGiven() {
+            BranchStock eastStock = new BranchStock(itemSpy, new Branch("EAST", "East"), 1, 1);
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+            when(copyService.lockAvailableStock(itemSpy, "EAST")).thenReturn(eastStock);
+            ArgumentCaptor<Reservation> saved = ArgumentCaptor.forClass(Reservation.class);
+
+            reservationServiceSpy.add("Foo", 1L, "EAST");
+
+            verify(copyService).checkOut(eastStock);
+            verify(reservationRepository).save(saved.capture());
+            assertThat(saved.getValue().getBranch()).isSameAs(eastStock.getBranch());
         }
 
         @Test
@@ -130,20 +240,19 @@ public class ReservationServiceTest {
             when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
             doReturn(false).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
 
-            Response<Boolean> result = reservationServiceSpy.add("Foo", 1L);
+            Response<Boolean> result = reservationServiceSpy.add("Foo", 1L, null);
 
             assertThat(result.getCode()).isEqualTo(Response.Code.MAX_RESERVATIONS_REACHED);
         }
 
         @Test
-        @DisplayName("Returns NOT_AVAILABLE if item has no available copy")
+        @DisplayName("Returns NOT_AVAILABLE if no branch has a copy on the shelf")
         public void add_returnsNotAvailable_whenNoAvailableCopy() {
             when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
             when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
-            doReturn(0).when(itemSpy).getAvailableCopies();
             doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
 
-            Response<Boolean> result = reservationServiceSpy.add("Foo", 1L);
+            Response<Boolean> result = reservationServiceSpy.add("Foo", 1L, null);
 
             assertThat(result.getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
         }
@@ -154,7 +263,7 @@ public class ReservationServiceTest {
             when(itemRepository.findById(1L)).thenReturn(Optional.empty());
             when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
 
-            Response<Boolean> result = reservationService.add("Foo", 1L);
+            Response<Boolean> result = reservationService.add("Foo", 1L, null);
 
             assertThat(result.getCode()).isEqualTo(Response.Code.NOT_FOUND);
         }
@@ -165,13 +274,199 @@ public class ReservationServiceTest {
             when(itemRepository.findById(1L)).thenReturn(Optional.of(book));
             when(userRepository.findById("Foo")).thenReturn(Optional.empty());
 
-            Response<Boolean> result = reservationService.add("Foo", 1L);
+            Response<Boolean> result = reservationService.add("Foo", 1L, null);
 
             assertThat(result.getCode()).isEqualTo(Response.Code.NOT_FOUND);
         }
 
     }
 
+    @Nested
+    class AddAll {
+
+        private final Branch main = new Branch("MAIN", "Main");
+
+        private ReservationServiceImpl reservationServiceSpy;
+        private Item itemSpy;
+
+        @BeforeEach
+        public void setUp() {
+            reservationServiceSpy = spy(reservationService);
+            itemSpy = spy(book);
+        }
+
+        private User newUser(String username) {
+            User newUser = new User();
+            newUser.setUsername(username);
+            newUser.setBirthday(LocalDate.EPOCH);
+            return newUser;
+        }
+
+        @Test
+        @DisplayName("Lends the copies on the shelf in the order of the requests without locking the item")
+        public void addAll_shouldLendInOrderOfRequests_whileCopiesAreLeft() {
+            BranchStock stock = new BranchStock(itemSpy, main, 1, 1);
+            User first = newUser("Foo");
+            User second = newUser("Bar");
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
+            when(copyService.lockStocks(List.of(1L))).thenReturn(List.of(stock));
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(first));
+            when(userRepository.findById("Bar")).thenReturn(Optional.of(second));
+
+            List<Response<Boolean>> result = reservationServiceSpy.addAll(1L, List.of(new CheckoutRequest("Foo", null),
+                                                                                     new CheckoutRequest("Bar", null)));
+
+            assertThat(result).extracting(Response::getCode)
+                              .containsExactly(Response.Code.OK, Response.Code.NOT_AVAILABLE);
+            // The stock of an item older than the branches is created before the stocks are locked
+            InOrder locks = inOrder(copyService);
+            locks.verify(copyService).initStocks(List.of(itemSpy));
+            locks.verify(copyService).lockStocks(List.of(1L));
+            verify(copyService, times(1)).checkOut(stock);
+            verify(reservationRepository, times(1)).save(ArgumentMatchers.any());
+            verify(itemRepository, never()).findByIdForUpdate(1L);
+            verify(itemRepository, never()).save(itemSpy);
+            verify(eventPublisher, never()).publishEvent(ArgumentMatchers.any(ItemChangeEvent.class));
+        }
+
+        @Test
+        @DisplayName("Counts the loans of the group in the limits of the user")
+        public void addAll_shouldCountLoansOfGroup_inReservationLimits() {
+            BranchStock stock = new BranchStock(itemSpy, main, 5, 5);
+            User borrower = newUser("Foo");
+            // 4 books during the first year
+            borrower.getReservations().addAll(List.of(reservation, reservation, reservation));
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
+            when(copyService.lockStocks(List.of(1L))).thenReturn(List.of(stock));
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(borrower));
+
+            List<Response<Boolean>> result = reservationServiceSpy.addAll(1L, List.of(new CheckoutRequest("Foo", null),
+                                                                                     new CheckoutRequest("Foo", null)));
+
+            assertThat(result).extracting(Response::getCode)
+                              .containsExactly(Response.Code.OK, Response.Code.MAX_RESERVATIONS_REACHED);
+            assertThat(stock.getAvailableCopies()).isEqualTo(4);
+        }
+
+        @Test
+        @DisplayName("Returns NOT_FOUND for each request if item is not found")
+        public void addAll_shouldReturnNotFound_whenItemIsNotFound() {
+            when(itemRepository.findById(1L)).thenReturn(Optional.empty());
+
+            List<Response<Boolean>> result = reservationService.addAll(1L, List.of(new CheckoutRequest("Foo", null),
+                                                                                  new CheckoutRequest("Bar", null)));
+
+            assertThat(result).extracting(Response::getCode)
+                              .containsExactly(Response.Code.NOT_FOUND, Response.Code.NOT_FOUND);
+            verify(reservationRepository, never()).save(ArgumentMatchers.any());
+        }
+
+    }
+
+    @Nested
+    class Checkout {
+
+        private final BarcodeIndex.CopyRef ref = new BarcodeIndex.CopyRef(5, 1, "MAIN", 0);
+
+        private ReservationServiceImpl reservationServiceSpy;
+        private Item itemSpy;
+        private BranchStock stock;
+
+        @BeforeEach
+        public void setUp() {
+            reservationServiceSpy = spy(reservationService);
+            itemSpy = spy(book);
+            stock = new BranchStock(itemSpy, new Branch("MAIN", "Main"), 1, 1);
+        }
+
+        @Test
+        @DisplayName("Lends the scanned copy")
+        public void checkout_shouldLendScannedCopy() {
+            Copy copy = new Copy(itemSpy, stock.getBranch(), 0, "1-1");
+            when(copyService.resolve("1-1")).thenReturn(ref);
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+            when(copyService.lockAvailableStock(itemSpy, "MAIN")).thenReturn(stock);
+            when(copyService.checkOut(stock, ref)).thenReturn(copy);
+            ArgumentCaptor<Reservation> saved = ArgumentCaptor.forClass(Reservation.class);
+
+            Response<Boolean> result = reservationServiceSpy.checkout("Foo", "1-1");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            verify(reservationRepository).save(saved.capture());
+            assertThat(saved.getValue().getCopy()).isSameAs(copy);
+            assertThat(saved.getValue().getBranch()).isSameAs(stock.getBranch());
+        }
+
+        @Test
+        @DisplayName("Returns NOT_AVAILABLE if the scanned copy is not on the shelf")
+        public void checkout_shouldReturnNotAvailable_whenCopyIsNotOnTheShelf() {
+            when(copyService.resolve("1-1")).thenReturn(ref);
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
+            when(itemRepository.findById(1L)).thenReturn(Optional.of(itemSpy));
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+
+            Response<Boolean> result = reservationServiceSpy.checkout("Foo", "1-1");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+            verify(reservationRepository, never()).save(ArgumentMatchers.any());
+        }
+
+        @Test
+        @DisplayName("Returns NOT_FOUND if no copy has the barcode")
+        public void checkout_shouldReturnNotFound_whenBarcodeIsUnknown() {
+            Response<Boolean> result = reservationService.checkout("Foo", "Bar");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.NOT_FOUND);
+        }
+
+    }
+
+    @Nested
+    class LendReserved {
+
+        private ReservationServiceImpl reservationServiceSpy;
+        private Item itemSpy;
+        private BranchStock stock;
+
+        @BeforeEach
+        public void setUp() {
+            reservationServiceSpy = spy(reservationService);
+            itemSpy = spy(book);
+            stock = new BranchStock(itemSpy, new Branch("EAST", "East"), 1, 0);
+        }
+
+        @Test
+        @DisplayName("Lends the transferred copy without decrementing the available copies again")
+        public void lendReserved_shouldLendCopy_withoutDecrementingAvailableCopies() {
+            Copy copy = new Copy(itemSpy, stock.getBranch(), 0, "1-1");
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+            int oldAvailable = itemSpy.getAvailableCopies();
+            ArgumentCaptor<Reservation> saved = ArgumentCaptor.forClass(Reservation.class);
+
+            Response<Boolean> result = reservationServiceSpy.lendReserved(user, itemSpy, stock, copy);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            verify(reservationRepository).save(saved.capture());
+            assertThat(saved.getValue().getCopy()).isSameAs(copy);
+            assertThat(saved.getValue().getBranch()).isSameAs(stock.getBranch());
+            assertThat(itemSpy.getAvailableCopies()).isEqualTo(oldAvailable);
+        }
+
+        @Test
+        @DisplayName("Returns MAX_RESERVATIONS_REACHED if reservation limit is reached")
+        public void lendReserved_shouldReturnMaxReservationsReached_whenReservationLimitIsReached() {
+            doReturn(false).when(reservationServiceSpy).checkReservationLimits(user, itemSpy);
+
+            Response<Boolean> result = reservationServiceSpy.lendReserved(user, itemSpy, stock, null);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.MAX_RESERVATIONS_REACHED);
+            verify(reservationRepository, never()).save(ArgumentMatchers.any());
+        }
+
+    }
+
     @Nested
     class Delete {
 
@@ -186,15 +481,30 @@ public class ReservationServiceTest {
         }
 
         @Test
-        @DisplayName("Returns OK when successfully deleted")
-        public void delete_shouldIncrementAvailableCopies_whenSuccessfullyDeleted() {
+        @DisplayName("Puts the copy back in its stock without locking the item when no hold waits for it")
+        public void delete_shouldCheckInCopy_withoutLockingItem() {
+            BranchStock stock = new BranchStock(book, new Branch("MAIN", "Main"), 1, 0);
+            when(reservationRepository.findById(1L)).thenReturn(Optional.of(reservation));
+            when(copyService.lockStock(book, null)).thenReturn(stock);
+
+            reservationService.delete(1L);
+
+            verify(copyService).checkIn(stock, null);
+            verify(copyService).lockHeldItem(book);
+            verify(itemRepository, never()).findByIdForUpdate(ArgumentMatchers.anyLong());
+            verify(itemRepository, never()).save(book);
+        }
+
+        @Test
+        @DisplayName("Records the return in the reservation journal before the loan is deleted")
+        public void delete_recordsReturn_whenSuccessfullyDeleted() {
             when(reservationRepository.findById(1L)).thenReturn(Optional.of(reservation));
-            book.setAvailableCopies(0);
-            int oldAvailable = book.getAvailableCopies();
 
             reservationService.delete(1L);
 
-            assertThat(book.getAvailableCopies()).isEqualTo(oldAvailable + 1);
+            InOrder journal = inOrder(reservationJournal, reservationRepository);
+            journal.verify(reservationJournal).returned(reservation);
+            journal.verify(reservationRepository).delete(reservation);
         }
 
         @Test
@@ -207,6 +517,385 @@ public class ReservationServiceTest {
             assertThat(result.getCode()).isEqualTo(Response.Code.NOT_FOUND);
         }
 
+        @Test
+        @DisplayName("Returns the loan of the scanned copy")
+        public void returnCopy_shouldReturnOK_whenCopyIsLent() {
+            when(copyService.resolve("1-1")).thenReturn(new BarcodeIndex.CopyRef(5, 1, "MAIN", 0));
+            when(reservationRepository.findByCopyId(5L)).thenReturn(Optional.of(reservation));
+
+            Response<Boolean> result = reservationService.returnCopy("1-1");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            verify(reservationRepository).delete(reservation);
+        }
+
+        @Test
+        @DisplayName("Returns NOT_FOUND if the scanned copy is not lent")
+        public void returnCopy_shouldReturnNotFound_whenCopyIsNotLent() {
+            when(copyService.resolve("1-1")).thenReturn(new BarcodeIndex.CopyRef(5, 1, "MAIN", 0));
+
+            Response<Boolean> result = reservationService.returnCopy("1-1");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.NOT_FOUND);
+        }
+
+    }
+
+    @Nested
+    class ComputeDueDate {
+
+        private final LocalDate from = LocalDate.of(2021, 3, 1);
+
+        private User member(LocalDate registrationDate) {
+            User member = new User();
+            member.setRegistrationDate(registrationDate);
+            return member;
+        }
+
+        @Test
+        @DisplayName("Lends a book for 21 days")
+        public void computeDueDate_shouldReturn21Days_whenItemIsABook() {
+            LocalDate result = reservationService.computeDueDate(member(from.minusMonths(6)), book, from);
+
+            assertThat(result).isEqualTo(from.plusDays(21));
+        }
+
+        @Test
+        @DisplayName("Lends a DVD for 7 days")
+        public void computeDueDate_shouldReturn7Days_whenItemIsADVD() {
+            DVD dvd = new DVD();
+            dvd.setItemType();
+
+            LocalDate result = reservationService.computeDueDate(member(from.minusMonths(6)), dvd, from);
+
+            assertThat(result).isEqualTo(from.plusDays(7));
+        }
+
+        @Test
+        @DisplayName("Adds a week after two years of membership")
+        public void computeDueDate_shouldAddAWeek_whenMemberForTwoYears() {
+            LocalDate result = reservationService.computeDueDate(member(from.minusYears(2)), book, from);
+
+            assertThat(result).isEqualTo(from.plusDays(28));
+        }
+
+    }
+
+    @Nested
+    class Batches {
+
+        private Book returnedBook;
+
+        @BeforeEach
+        public void setUp() {
+            returnedBook = new Book();
+            ReflectionTestUtils.setField(returnedBook, "id", 3L);
+            returnedBook.setTotalCopies(2);
+            returnedBook.setAvailableCopies(0);
+            returnedBook.setItemType();
+        }
+
+        private Reservation loan(long id, User borrower) {
+            Reservation loan = new Reservation();
+            loan.setId(id);
+            loan.setUser(borrower);
+            loan.setItem(returnedBook);
+            loan.setDueDate(LocalDate.now().plusDays(3));
+            return loan;
+        }
+
+        @Test
+        @DisplayName("Puts the copies back in the stocks of their items and reports the missing reservations")
+        public void returnBatch_shouldCheckInCopies_withoutLockingItems() {
+            BranchStock stock = new BranchStock(returnedBook, new Branch("MAIN", "Main"), 2, 0);
+            when(reservationRepository.findAllWithItemAndCopyById(Set.of(10L, 11L, 12L)))
+                    .thenReturn(List.of(loan(10, user), loan(11, user)));
+            when(copyService.lockStock(returnedBook, null)).thenReturn(stock);
+
+            Response<List<ReservationResult>> result = reservationService.returnBatch(List.of(10L, 11L, 12L, 10L));
+
+            // The missing stocks are created before the stocks are locked, the stock of a branch is locked once
+            InOrder locks = inOrder(copyService);
+            locks.verify(copyService).initStocks(ArgumentMatchers.argThat(
+                    items -> List.copyOf(items).equals(List.of(returnedBook))));
+            locks.verify(copyService).lockStocks(Set.of(3L));
+            verify(copyService, times(1)).lockStock(returnedBook, null);
+            verify(copyService, times(2)).checkIn(stock, null);
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent()).extracting(ReservationResult::getCode)
+                                           .containsExactly(Response.Code.OK, Response.Code.OK,
+                                                            Response.Code.NOT_FOUND);
+            verify(itemRepository, never()).findAllByIdForUpdate(ArgumentMatchers.any());
+            verify(itemRepository, never()).save(returnedBook);
+            verify(eventPublisher, never()).publishEvent(ArgumentMatchers.any(ItemChangeEvent.class));
+        }
+
+        @Test
+        @DisplayName("Counts the holds promoted earlier in the batch in the limits of their user")
+        public void returnBatch_shouldCountPromotedHolds_whenCheckingLimits() {
+            ReservationServiceImpl reservationServiceSpy = spy(reservationService);
+            User waiter = new User();
+            waiter.setUsername("Bar");
+            Book otherBook = new Book();
+            ReflectionTestUtils.setField(otherBook, "id", 4L);
+            otherBook.setItemType();
+            returnedBook.setHoldCount(1);
+            otherBook.setHoldCount(1);
+            Reservation otherLoan = loan(11, user);
+            otherLoan.setItem(otherBook);
+            when(reservationRepository.findAllWithItemAndCopyById(Set.of(10L, 11L)))
+                    .thenReturn(List.of(loan(10, user), otherLoan));
+            when(copyService.lockHeldItem(ArgumentMatchers.any(Item.class))).thenReturn(true);
+            when(copyService.lockStock(ArgumentMatchers.any(Item.class), ArgumentMatchers.isNull()))
+                    .thenAnswer(invocation -> new BranchStock(invocation.getArgument(0), new Branch("MAIN", "Main"), 2,
+                                                              0));
+            when(holdRepository.findByItemOrderByTicket(ArgumentMatchers.any(Item.class),
+                                                        ArgumentMatchers.any(Pageable.class)))
+                    .thenAnswer(invocation -> List.of(new Hold(invocation.getArgument(0), waiter, 1)));
+            // One more loan is allowed to the user
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(ArgumentMatchers.eq(waiter),
+                                                                              ArgumentMatchers.any(Item.class),
+                                                                              ArgumentMatchers.eq(List.of()));
+            doReturn(false).when(reservationServiceSpy).checkReservationLimits(
+                    ArgumentMatchers.eq(waiter), ArgumentMatchers.any(Item.class),
+                    ArgumentMatchers.argThat(pendingLoans -> !pendingLoans.isEmpty()));
+
+            reservationServiceSpy.returnBatch(List.of(10L, 11L));
+
+            verify(reservationRepository, times(1)).save(ArgumentMatchers.any(Reservation.class));
+            assertThat(returnedBook.getHoldCount() + otherBook.getHoldCount()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Loads the loans with their item and their copy in a single query")
+        public void returnBatch_shouldLoadLoansInOneQuery() {
+            Copy copy = new Copy(returnedBook, new Branch("MAIN", "Main"), 1, "B-10");
+            Reservation loan = loan(10, user);
+            loan.setCopy(copy);
+            BranchStock stock = new BranchStock(returnedBook, copy.getBranch(), 1, 0);
+            when(reservationRepository.findAllWithItemAndCopyById(Set.of(10L))).thenReturn(List.of(loan));
+            when(copyService.lockStock(returnedBook, null)).thenReturn(stock);
+
+            reservationService.returnBatch(List.of(10L));
+
+            verify(reservationRepository, times(1)).findAllWithItemAndCopyById(Set.of(10L));
+            verify(reservationRepository, never()).findAllById(ArgumentMatchers.any());
+            verify(copyService).checkIn(stock, copy);
+        }
+
+        @Test
+        @DisplayName("Returns INVALID_DATA if there is no reservation")
+        public void returnBatch_shouldReturnInvalidData_whenNoIds() {
+            Response<List<ReservationResult>> result = reservationService.returnBatch(List.of());
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.INVALID_DATA);
+        }
+
+        @Test
+        @DisplayName("Renews the loans of the user only, unless other users wait for the item")
+        public void renewBatch_shouldRenewOwnLoans() {
+            User other = new User();
+            other.setUsername("Bar");
+            Book waitedBook = new Book();
+            waitedBook.setHoldCount(1);
+            Reservation waited = loan(21, user);
+            waited.setItem(waitedBook);
+            when(reservationRepository.findAllWithItemById(Set.of(20L, 21L, 22L)))
+                    .thenReturn(List.of(loan(20, user), waited, loan(22, other)));
+
+            Response<List<ReservationResult>> result = reservationService.renewBatch("Foo", List.of(20L, 21L, 22L));
+
+            assertThat(result.getContent()).extracting(ReservationResult::getCode)
+                                           .containsExactly(Response.Code.OK, Response.Code.NOT_AVAILABLE,
+                                                            Response.Code.INSUFFICIENT_PERMISSIONS);
+            assertThat(result.getContent().get(0).getDueDate()).isEqualTo(LocalDate.now().plusDays(21));
+        }
+
+        @Test
+        @DisplayName("Returns MAX_RENEWALS_REACHED if the loan was renewed too many times")
+        public void renewBatch_shouldReturnMaxRenewalsReached_whenRenewedTwice() {
+            Reservation renewed = loan(20, user);
+            renewed.setRenewals(2);
+            when(reservationRepository.findAllWithItemById(Set.of(20L))).thenReturn(List.of(renewed));
+
+            Response<List<ReservationResult>> result = reservationService.renewBatch(null, List.of(20L));
+
+            assertThat(result.getContent()).extracting(ReservationResult::getCode)
+                                           .containsExactly(Response.Code.MAX_RENEWALS_REACHED);
+            assertThat(renewed.getDueDate()).isEqualTo(LocalDate.now().plusDays(3));
+            verify(reservationJournal, never()).renewed(renewed);
+        }
+
+        @Test
+        @DisplayName("Records the renewals in the reservation journal")
+        public void renewBatch_recordsRenewals() {
+            Reservation renewed = loan(20, user);
+            when(reservationRepository.findAllWithItemById(Set.of(20L))).thenReturn(List.of(renewed));
+
+            reservationService.renewBatch("Foo", List.of(20L));
+
+            verify(reservationJournal).renewed(renewed);
+        }
+
+    }
+
+    @Nested
+    class Holds {
+
+        private ReservationServiceImpl reservationServiceSpy;
+        private Book waitedBook;
+        private User waiter;
+
+        @BeforeEach
+        public void setUp() {
+            reservationServiceSpy = spy(reservationService);
+            waitedBook = new Book();
+            ReflectionTestUtils.setField(waitedBook, "id", 2L);
+            waitedBook.setTitle("Bar");
+            waitedBook.setTotalCopies(1);
+            waitedBook.setAvailableCopies(0);
+            waitedBook.setItemType();
+            waiter = new User();
+            waiter.setUsername("Bar");
+            waiter.setEmail("Bar");
+        }
+
+        private Reservation borrowed() {
+            Reservation borrowed = new Reservation();
+            borrowed.setId(2);
+            borrowed.setUser(user);
+            borrowed.setItem(waitedBook);
+            return borrowed;
+        }
+
+        @Test
+        @DisplayName("Reserves the returned copy for the first eligible hold")
+        public void delete_shouldPromoteFirstEligibleHold() {
+            waitedBook.setHoldCount(2);
+            User ineligible = new User();
+            Hold skipped = new Hold(waitedBook, ineligible, 1);
+            Hold promoted = new Hold(waitedBook, waiter, 2);
+            BranchStock stock = new BranchStock(waitedBook, new Branch("MAIN", "Main"), 1, 0);
+            when(reservationRepository.findById(2L)).thenReturn(Optional.of(borrowed()));
+            when(copyService.lockStock(waitedBook, null)).thenReturn(stock);
+            when(copyService.lockHeldItem(waitedBook)).thenReturn(true);
+            when(holdRepository.findByItemOrderByTicket(ArgumentMatchers.eq(waitedBook), ArgumentMatchers.any(Pageable.class)))
+                    .thenReturn(List.of(skipped, promoted));
+            doReturn(false).when(reservationServiceSpy).checkReservationLimits(ArgumentMatchers.eq(ineligible),
+                                                                               ArgumentMatchers.eq(waitedBook),
+                                                                               ArgumentMatchers.anyList());
+            doReturn(true).when(reservationServiceSpy).checkReservationLimits(ArgumentMatchers.eq(waiter),
+                                                                              ArgumentMatchers.eq(waitedBook),
+                                                                              ArgumentMatchers.anyList());
+            ArgumentCaptor<Reservation> saved = ArgumentCaptor.forClass(Reservation.class);
+
+            Response<Boolean> result = reservationServiceSpy.delete(2L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(waitedBook.getHoldCount()).isEqualTo(1);
+            verify(reservationRepository).save(saved.capture());
+            assertThat(saved.getValue().getUser()).isSameAs(waiter);
+            assertThat(saved.getValue().getBranch()).isSameAs(stock.getBranch());
+            verify(copyService).checkOut(stock);
+            verify(holdRepository).delete(promoted);
+            verify(eventPublisher).publishEvent(ArgumentMatchers.any(HoldPromotedEvent.class));
+        }
+
+        @Test
+        @DisplayName("Leaves the returned copy available if no hold is eligible")
+        public void delete_shouldLeaveCopyAvailable_whenNoHoldIsEligible() {
+            waitedBook.setHoldCount(1);
+            when(reservationRepository.findById(2L)).thenReturn(Optional.of(borrowed()));
+            when(copyService.lockHeldItem(waitedBook)).thenReturn(true);
+            when(holdRepository.findByItemOrderByTicket(ArgumentMatchers.eq(waitedBook), ArgumentMatchers.any(Pageable.class)))
+                    .thenReturn(List.of(new Hold(waitedBook, waiter, 1)));
+            doReturn(false).when(reservationServiceSpy).checkReservationLimits(ArgumentMatchers.eq(waiter),
+                                                                               ArgumentMatchers.eq(waitedBook),
+                                                                               ArgumentMatchers.anyList());
+
+            reservationServiceSpy.delete(2L);
+
+            assertThat(waitedBook.getHoldCount()).isEqualTo(1);
+            verify(copyService, never()).checkOut(ArgumentMatchers.any());
+            verify(reservationRepository, never()).save(ArgumentMatchers.any());
+        }
+
+        @Test
+        @DisplayName("Places the hold at the end of the queue")
+        public void addHold_shouldReturnPlaceInQueue() {
+            waitedBook.setHoldTail(5);
+            waitedBook.setHoldCount(2);
+            when(userRepository.findById("Bar")).thenReturn(Optional.of(waiter));
+            when(itemRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(waitedBook));
+            when(holdRepository.findByItemAndUser(waitedBook, waiter)).thenReturn(Optional.empty());
+            ArgumentCaptor<Hold> saved = ArgumentCaptor.forClass(Hold.class);
+
+            Response<HoldStatus> result = reservationService.addHold("Bar", 2L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent().getPosition()).isEqualTo(3);
+            assertThat(result.getContent().getLength()).isEqualTo(3);
+            verify(holdRepository).save(saved.capture());
+            assertThat(saved.getValue().getTicket()).isEqualTo(6);
+        }
+
+        @Test
+        @DisplayName("Returns AVAILABLE if a copy can be reserved now")
+        public void addHold_shouldReturnAvailable_whenACopyIsAvailable() {
+            waitedBook.setAvailableCopies(1);
+            when(userRepository.findById("Bar")).thenReturn(Optional.of(waiter));
+            when(itemRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(waitedBook));
+
+            Response<HoldStatus> result = reservationService.addHold("Bar", 2L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.AVAILABLE);
+        }
+
+        @Test
+        @DisplayName("Returns AVAILABLE if a stock has a copy on the shelf, the item may not be refreshed yet")
+        public void addHold_shouldReturnAvailable_whenAStockHasACopy() {
+            when(userRepository.findById("Bar")).thenReturn(Optional.of(waiter));
+            when(copyService.lockStocks(List.of(2L)))
+                    .thenReturn(List.of(new BranchStock(waitedBook, new Branch("MAIN", "Main"), 1, 1)));
+            when(itemRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(waitedBook));
+
+            Response<HoldStatus> result = reservationService.addHold("Bar", 2L);
+
+            // The stocks are locked before the item
+            InOrder locks = inOrder(copyService, itemRepository);
+            locks.verify(copyService).lockStocks(List.of(2L));
+            locks.verify(itemRepository).findByIdForUpdate(2L);
+            assertThat(result.getCode()).isEqualTo(Response.Code.AVAILABLE);
+        }
+
+        @Test
+        @DisplayName("Returns ALREADY_EXISTS if the user already waits for the item")
+        public void addHold_shouldReturnAlreadyExists_whenUserAlreadyHasAHold() {
+            when(userRepository.findById("Bar")).thenReturn(Optional.of(waiter));
+            when(itemRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(waitedBook));
+            when(holdRepository.findByItemAndUser(waitedBook, waiter))
+                    .thenReturn(Optional.of(new Hold(waitedBook, waiter, 1)));
+
+            Response<HoldStatus> result = reservationService.addHold("Bar", 2L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.ALREADY_EXISTS);
+        }
+
+        @Test
+        @DisplayName("Gives the position of the holds of a user from the holds ahead")
+        public void getHolds_shouldCountHoldsAhead() {
+            waitedBook.setHoldCount(4);
+            Hold hold = new Hold(waitedBook, waiter, 7);
+            when(userRepository.findById("Bar")).thenReturn(Optional.of(waiter));
+            when(holdRepository.findByUserOrderByCreatedAt(waiter)).thenReturn(List.of(hold));
+            when(holdRepository.countByItemAndTicketLessThan(waitedBook, 7)).thenReturn(2L);
+
+            Response<List<HoldStatus>> result = reservationService.getHolds("Bar");
+
+            assertThat(result.getContent()).extracting(HoldStatus::getPosition).containsExactly(3L);
+            assertThat(result.getContent()).extracting(HoldStatus::getLength).containsExactly(4);
+        }
+
     }
 
     @Nested
@@ -353,6 +1042,18 @@ public class ReservationServiceTest {
             assertThat(result).isTrue();
         }
 
+        @Test
+        @DisplayName("Counts the loans not yet in the database in the limits")
+        public void checkReservationLimits_shouldCountPendingLoans() {
+            User adult = new User();
+            adult.setBirthday(LocalDate.EPOCH);
+
+            // 4 books during the first year of membership
+            assertThat(reservationService.checkReservationLimits(adult, book, List.of(book, book, book))).isTrue();
+            assertThat(reservationService.checkReservationLimits(adult, book, List.of(book, book, book, book)))
+                    .isFalse();
+        }
+
         @Test
         public void checkBookReservationLimits() {
             boolean result;
@@ -0,0 +1,173 @@
+package org.libmanager.server.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Item;
+import org.libmanager.server.entity.ItemTombstone;
+import org.libmanager.server.entity.ReservationEvent;
+import org.libmanager.server.repository.ChangeCounterRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.ItemTombstoneRepository;
+import org.libmanager.server.repository.ReservationEventRepository;
+import org.libmanager.server.response.ItemChange;
+import org.libmanager.server.response.ItemChanges;
+import org.libmanager.server.response.ReservationEvents;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.service.impl.SyncServiceImpl;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SyncServiceTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private ItemTombstoneRepository itemTombstoneRepository;
+
+    @Mock
+    private ReservationEventRepository reservationEventRepository;
+
+    @Mock
+    private ChangeCounterRepository changeCounterRepository;
+
+    @InjectMocks
+    private final SyncService syncService = new SyncServiceImpl();
+
+    private static Item book(long id, long changeSeq) {
+        Book book = new Book();
+        ReflectionTestUtils.setField(book, "id", id);
+        book.setChangeSeq(changeSeq);
+        return book;
+    }
+
+    private static ItemTombstone tombstone(long id, long changeSeq) {
+        return new ItemTombstone(id, "BOOK", changeSeq, LocalDateTime.now());
+    }
+
+    private static ReservationEvent event(long seq) {
+        ReservationEvent event = new ReservationEvent();
+        event.setSeq(seq);
+        return event;
+    }
+
+    @Nested
+    class getChanges {
+
+        @Test
+        @DisplayName("Returns the items and the deletions in the order of the change sequence")
+        public void getChanges_shouldMergeItemsAndDeletions() {
+            when(changeCounterRepository.get(ChangeCounterRepository.PURGED_TOMBSTONES)).thenReturn(0L);
+            when(itemRepository.findByChangeSeqGreaterThanOrderByChangeSeq(ArgumentMatchers.eq(10L),
+                                                                           ArgumentMatchers.any(Pageable.class)))
+                    .thenReturn(List.of(book(1, 11), book(2, 14)));
+            when(itemTombstoneRepository.findByChangeSeqGreaterThanOrderByChangeSeq(ArgumentMatchers.eq(10L),
+                                                                                    ArgumentMatchers.any(Pageable.class)))
+                    .thenReturn(List.of(tombstone(3, 12)));
+
+            Response<ItemChanges> result = syncService.getChanges(10, 10);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent().getChanges()).extracting(ItemChange::getSeq).containsExactly(11L, 12L, 14L);
+            assertThat(result.getContent().getChanges()).extracting(ItemChange::isDeleted)
+                                                        .containsExactly(false, true, false);
+            assertThat(result.getContent().getNext()).isEqualTo(14);
+            assertThat(result.getContent().isMore()).isFalse();
+        }
+
+        @Test
+        @DisplayName("Stops at the limit and tells there are more changes")
+        public void getChanges_shouldReturnAPage_whenThereAreMoreChangesThanTheLimit() {
+            when(changeCounterRepository.get(ChangeCounterRepository.PURGED_TOMBSTONES)).thenReturn(0L);
+            when(itemRepository.findByChangeSeqGreaterThanOrderByChangeSeq(ArgumentMatchers.eq(10L),
+                                                                           ArgumentMatchers.any(Pageable.class)))
+                    .thenReturn(List.of(book(1, 11), book(2, 13), book(4, 15)));
+            when(itemTombstoneRepository.findByChangeSeqGreaterThanOrderByChangeSeq(ArgumentMatchers.eq(10L),
+                                                                                    ArgumentMatchers.any(Pageable.class)))
+                    .thenReturn(List.of(tombstone(3, 12)));
+
+            Response<ItemChanges> result = syncService.getChanges(10, 2);
+
+            assertThat(result.getContent().getChanges()).extracting(ItemChange::getSeq).containsExactly(11L, 12L);
+            assertThat(result.getContent().getNext()).isEqualTo(12);
+            assertThat(result.getContent().isMore()).isTrue();
+        }
+
+        @Test
+        @DisplayName("Does not read the deletions when starting from 0")
+        public void getChanges_shouldIgnoreDeletions_whenSinceIsZero() {
+            when(itemRepository.findByChangeSeqGreaterThanOrderByChangeSeq(ArgumentMatchers.eq(0L),
+                                                                           ArgumentMatchers.any(Pageable.class)))
+                    .thenReturn(List.of());
+
+            Response<ItemChanges> result = syncService.getChanges(0, 10);
+
+            assertThat(result.getContent().getChanges()).isEmpty();
+            assertThat(result.getContent().getNext()).isZero();
+            verify(itemTombstoneRepository, never()).findByChangeSeqGreaterThanOrderByChangeSeq(
+                    ArgumentMatchers.anyLong(), ArgumentMatchers.any(Pageable.class));
+        }
+
+        @Test
+        @DisplayName("Returns SYNC_EXPIRED if deletions after since were purged")
+        public void getChanges_shouldReturnSyncExpired_whenDeletionsWerePurged() {
+            when(changeCounterRepository.get(ChangeCounterRepository.PURGED_TOMBSTONES)).thenReturn(20L);
+
+            Response<ItemChanges> result = syncService.getChanges(10, 10);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.SYNC_EXPIRED);
+        }
+
+    }
+
+    @Nested
+    class getReservationEvents {
+
+        @Test
+        @DisplayName("Stops at the limit and tells there are more events")
+        public void getReservationEvents_shouldReturnAPage_whenThereAreMoreEventsThanTheLimit() {
+            when(changeCounterRepository.get(ChangeCounterRepository.PURGED_RESERVATION_EVENTS)).thenReturn(0L);
+            when(reservationEventRepository.findBySeqGreaterThanOrderBySeq(ArgumentMatchers.eq(10L),
+                                                                            ArgumentMatchers.any(Pageable.class)))
+                    .thenReturn(List.of(event(11), event(12), event(13)));
+
+            Response<ReservationEvents> result = syncService.getReservationEvents(10, 2);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent().getEvents()).extracting(ReservationEvent::getSeq)
+                                                       .containsExactly(11L, 12L);
+            assertThat(result.getContent().getNext()).isEqualTo(12);
+            assertThat(result.getContent().isMore()).isTrue();
+        }
+
+        @Test
+        @DisplayName("Returns SYNC_EXPIRED if events after since were purged")
+        public void getReservationEvents_shouldReturnSyncExpired_whenEventsWerePurged() {
+            when(changeCounterRepository.get(ChangeCounterRepository.PURGED_RESERVATION_EVENTS)).thenReturn(20L);
+
+            Response<ReservationEvents> result = syncService.getReservationEvents(10, 10);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.SYNC_EXPIRED);
+            verify(reservationEventRepository, never()).findBySeqGreaterThanOrderBySeq(
+                    ArgumentMatchers.anyLong(), ArgumentMatchers.any(Pageable.class));
+        }
+
+    }
+
+}
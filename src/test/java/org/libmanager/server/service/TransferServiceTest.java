@@ -0,0 +1,371 @@
+package org.libmanager.server.service;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.Branch;
+import org.libmanager.server.entity.BranchStock;
+import org.libmanager.server.entity.Copy;
+import org.libmanager.server.entity.Transfer;
+import org.libmanager.server.entity.User;
+import org.libmanager.server.inventory.AvailabilityEngine;
+import org.libmanager.server.repository.BranchRepository;
+import org.libmanager.server.repository.ItemRepository;
+import org.libmanager.server.repository.TransferRepository;
+import org.libmanager.server.repository.UserRepository;
+import org.libmanager.server.response.Response;
+import org.libmanager.server.response.Shipment;
+import org.libmanager.server.response.TransferStatus;
+import org.libmanager.server.service.impl.TransferServiceImpl;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferServiceTest {
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private BranchRepository branchRepository;
+
+    @Mock
+    private CopyService copyService;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private AvailabilityEngine availabilityEngine;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private final TransferService transferService = new TransferServiceImpl();
+
+    private final Branch main = new Branch("MAIN", "Main");
+    private final Branch west = new Branch("WEST", "West");
+    private final Branch east = new Branch("EAST", "East");
+
+    private Book book;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        book = new Book();
+        ReflectionTestUtils.setField(book, "id", 7L);
+        book.setTitle("Foo");
+        book.setTotalCopies(4);
+        book.setAvailableCopies(3);
+        book.setItemType();
+        user = user("Foo");
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        return user;
+    }
+
+    private Transfer transfer(long id, User user) {
+        Transfer transfer = new Transfer(book, user, east);
+        ReflectionTestUtils.setField(transfer, "id", id);
+        return transfer;
+    }
+
+    @Nested
+    class Request {
+
+        @BeforeEach
+        public void setUp() {
+            when(userRepository.findById("Foo")).thenReturn(Optional.of(user));
+            when(itemRepository.findById(7L)).thenReturn(Optional.of(book));
+            when(branchRepository.findById("EAST")).thenReturn(Optional.of(east));
+        }
+
+        @Test
+        @DisplayName("Queues the transfer if another branch holds the item")
+        public void request_returnsOK_whenAnotherBranchHoldsItem() {
+            when(copyService.getStocks(book)).thenReturn(List.of(new BranchStock(book, east, 1, 0),
+                                                                 new BranchStock(book, main, 3, 0)));
+            when(transferRepository.save(any(Transfer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            Response<TransferStatus> result = transferService.request("Foo", 7L, "EAST");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            assertThat(result.getContent().getToBranch()).isEqualTo("EAST");
+            assertThat(result.getContent().getStatus()).isEqualTo(Transfer.Status.REQUESTED);
+            verify(copyService, never()).lockStocks(any());
+        }
+
+        @Test
+        @DisplayName("Returns AVAILABLE if the branch has a copy on its shelf")
+        public void request_returnsAvailable_whenBranchHasCopy() {
+            when(copyService.getStocks(book)).thenReturn(List.of(new BranchStock(book, east, 1, 1),
+                                                                 new BranchStock(book, main, 3, 2)));
+
+            Response<TransferStatus> result = transferService.request("Foo", 7L, "EAST");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.AVAILABLE);
+            verify(transferRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Returns NOT_AVAILABLE if no other branch holds the item")
+        public void request_returnsNotAvailable_whenNoOtherBranchHoldsItem() {
+            when(copyService.getStocks(book)).thenReturn(List.of(new BranchStock(book, east, 1, 0)));
+
+            Response<TransferStatus> result = transferService.request("Foo", 7L, "EAST");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.NOT_AVAILABLE);
+        }
+
+        @Test
+        @DisplayName("Returns ALREADY_EXISTS if the user already asked for the item")
+        public void request_returnsAlreadyExists_whenTransferExists() {
+            when(transferRepository.existsByItemAndUser(book, user)).thenReturn(true);
+
+            Response<TransferStatus> result = transferService.request("Foo", 7L, "EAST");
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.ALREADY_EXISTS);
+        }
+
+    }
+
+    @Nested
+    class ProcessQueue {
+
+        private BranchStock mainStock;
+        private BranchStock westStock;
+
+        @BeforeEach
+        public void setUp() {
+            mainStock = new BranchStock(book, main, 2, 2);
+            westStock = new BranchStock(book, west, 1, 1);
+            when(transferRepository.findRequestedIdsAfter(anyLong(), any())).thenReturn(List.of(1L, 2L), List.of());
+            when(transferRepository.findItemIds(List.of(1L, 2L))).thenReturn(List.of(7L));
+            when(copyService.lockStocks(List.of(7L))).thenReturn(List.of(new BranchStock(book, east, 1, 0),
+                                                                         mainStock, westStock));
+            when(itemRepository.findAllById(List.of(7L))).thenReturn(List.of(book));
+            lenient().when(availabilityEngine.reserve(7L)).thenReturn(true);
+        }
+
+        @Test
+        @DisplayName("Ships from the branch with the most copies without locking the item")
+        public void processQueue_shipsFromLargestStock_withoutLockingItem() {
+            Transfer first = transfer(1L, user);
+            Transfer second = transfer(2L, user("Bar"));
+            when(transferRepository.findAllByIdForUpdate(List.of(1L, 2L))).thenReturn(List.of(first, second));
+            when(copyService.checkOut(any(BranchStock.class))).thenAnswer(invocation -> {
+                BranchStock stock = invocation.getArgument(0);
+                stock.setAvailableCopies(stock.getAvailableCopies() - 1);
+                return null;
+            });
+
+            int shipped = transferService.processQueue();
+
+            assertThat(shipped).isEqualTo(2);
+            assertThat(first.getStatus()).isEqualTo(Transfer.Status.IN_TRANSIT);
+            assertThat(first.getFromBranch()).isSameAs(main);
+            // Tied with the west branch, the first stock is kept
+            assertThat(second.getFromBranch()).isSameAs(main);
+            assertThat(mainStock.getAvailableCopies()).isZero();
+            // The stock of an item older than the branches is created before the stocks are locked
+            InOrder locks = inOrder(copyService);
+            locks.verify(copyService).initStocks(argThat(items -> List.copyOf(items).equals(List.of(book))));
+            locks.verify(copyService).lockStocks(List.of(7L));
+            verify(itemRepository, never()).findAllByIdForUpdate(any());
+            verify(itemRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Leaves a transfer waiting if the copies left are given by the availability engine")
+        public void processQueue_leavesTransferWaiting_whenCopyIsGivenInMemory() {
+            Transfer first = transfer(1L, user);
+            Transfer second = transfer(2L, user("Bar"));
+            when(transferRepository.findAllByIdForUpdate(List.of(1L, 2L))).thenReturn(List.of(first, second));
+            when(availabilityEngine.reserve(7L)).thenReturn(true, false);
+
+            int shipped = transferService.processQueue();
+
+            assertThat(shipped).isEqualTo(1);
+            assertThat(first.getStatus()).isEqualTo(Transfer.Status.IN_TRANSIT);
+            assertThat(second.getStatus()).isEqualTo(Transfer.Status.REQUESTED);
+            verify(copyService, times(1)).checkOut(any(BranchStock.class));
+        }
+
+        @Test
+        @DisplayName("Leaves the transfers waiting if no other branch has a copy on its shelf")
+        public void processQueue_leavesTransfersWaiting_whenNoCopyIsAvailable() {
+            mainStock.setAvailableCopies(0);
+            westStock.setAvailableCopies(0);
+            Transfer first = transfer(1L, user);
+            Transfer second = transfer(2L, user("Bar"));
+            when(transferRepository.findAllByIdForUpdate(List.of(1L, 2L))).thenReturn(List.of(first, second));
+
+            int shipped = transferService.processQueue();
+
+            assertThat(shipped).isZero();
+            assertThat(first.getStatus()).isEqualTo(Transfer.Status.REQUESTED);
+            verify(copyService, never()).checkOut(any(BranchStock.class));
+        }
+
+    }
+
+    @Nested
+    class Receive {
+
+        private Copy copy;
+        private Transfer transfer;
+        private BranchStock mainStock;
+        private BranchStock eastStock;
+
+        @BeforeEach
+        public void setUp() {
+            copy = new Copy(book, main, 0, "7-1");
+            transfer = transfer(5L, user);
+            mainStock = new BranchStock(book, main, 2, 1);
+            eastStock = new BranchStock(book, east, 1, 0);
+            when(transferRepository.findItemIds(List.of(5L))).thenReturn(List.of(7L));
+            when(itemRepository.findById(7L)).thenReturn(Optional.of(book));
+            when(transferRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(transfer));
+        }
+
+        @Test
+        @DisplayName("Lends the copy to the user at its new branch")
+        public void receive_lendsCopy_whenShipped() {
+            transfer.ship(main, copy);
+            when(copyService.lockStock(book, main)).thenReturn(mainStock);
+            when(copyService.moveCopy(mainStock, copy, east)).thenReturn(eastStock);
+            when(reservationService.lendReserved(user, book, eastStock, copy))
+                    .thenReturn(new Response<>(Response.Code.OK, true));
+
+            Response<Boolean> result = transferService.receive(5L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            verify(transferRepository).delete(transfer);
+            verify(copyService, never()).checkIn(any(), any());
+        }
+
+        @Test
+        @DisplayName("Puts the copy on the shelf if the user can no longer borrow it")
+        public void receive_putsCopyOnShelf_whenUserCannotBorrow() {
+            transfer.ship(main, copy);
+            when(copyService.lockStock(book, main)).thenReturn(mainStock);
+            when(copyService.moveCopy(mainStock, copy, east)).thenReturn(eastStock);
+            when(reservationService.lendReserved(user, book, eastStock, copy))
+                    .thenReturn(new Response<>(Response.Code.MAX_RESERVATIONS_REACHED, false));
+
+            Response<Boolean> result = transferService.receive(5L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.MAX_RESERVATIONS_REACHED);
+            verify(copyService).checkIn(eastStock, copy);
+            verify(itemRepository, never()).findByIdForUpdate(7L);
+            verify(itemRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Returns FORBIDDEN if the copy was not shipped yet")
+        public void receive_returnsForbidden_whenNotShipped() {
+            Response<Boolean> result = transferService.receive(5L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.FORBIDDEN);
+            verify(transferRepository, never()).delete(any());
+        }
+
+    }
+
+    @Nested
+    class Cancel {
+
+        @Test
+        @DisplayName("Deletes a transfer of the user")
+        public void cancel_returnsOK_whenTransferOfUser() {
+            Transfer transfer = transfer(5L, user);
+            when(transferRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(transfer));
+
+            Response<Boolean> result = transferService.cancel("Foo", 5L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.OK);
+            verify(transferRepository).delete(transfer);
+        }
+
+        @Test
+        @DisplayName("Returns INSUFFICIENT_PERMISSIONS if the transfer is of another user")
+        public void cancel_returnsInsufficientPermissions_whenTransferOfAnotherUser() {
+            when(transferRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(transfer(5L, user("Bar"))));
+
+            Response<Boolean> result = transferService.cancel("Foo", 5L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.INSUFFICIENT_PERMISSIONS);
+        }
+
+        @Test
+        @DisplayName("Returns FORBIDDEN if the copy was shipped")
+        public void cancel_returnsForbidden_whenShipped() {
+            Transfer transfer = transfer(5L, user);
+            transfer.ship(main, null);
+            when(transferRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(transfer));
+
+            Response<Boolean> result = transferService.cancel(null, 5L);
+
+            assertThat(result.getCode()).isEqualTo(Response.Code.FORBIDDEN);
+            verify(transferRepository, never()).delete(any());
+        }
+
+    }
+
+    @Nested
+    class GetShipments {
+
+        @Test
+        @DisplayName("Groups the copies on their way by source and destination branch")
+        public void getShipments_groupsTransfersByBranches() {
+            Transfer first = transfer(1L, user);
+            first.ship(main, null);
+            Transfer second = transfer(2L, user("Bar"));
+            second.ship(main, null);
+            Transfer third = transfer(3L, user("Baz"));
+            third.ship(west, null);
+            when(transferRepository.findInTransit()).thenReturn(List.of(first, second, third));
+
+            List<Shipment> result = transferService.getShipments();
+
+            assertThat(result).hasSize(2);
+            assertThat(result.get(0).getFromBranch()).isEqualTo("MAIN");
+            assertThat(result.get(0).getTransfers()).extracting(TransferStatus::getId).containsExactly(1L, 2L);
+            assertThat(result.get(1).getFromBranch()).isEqualTo("WEST");
+            assertThat(result.get(1).getToBranch()).isEqualTo("EAST");
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.libmanager.server.specification;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.libmanager.server.entity.Book;
+import org.libmanager.server.entity.DVD;
+import org.libmanager.server.search.SearchQuery;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.Database;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The specifications run against the embedded database of the load test, whose comparisons are case-sensitive unlike
+ * the _ci collation of MariaDB
+ */
+public class BookSpecificationTest {
+
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void setUp() {
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MariaDB;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE", "sa",
+                ""));
+        factoryBean.setPackagesToScan("org.libmanager.server.entity");
+        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        vendorAdapter.setDatabase(Database.H2);
+        factoryBean.setJpaVendorAdapter(vendorAdapter);
+        factoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "create",
+                "hibernate.physical_naming_strategy", SpringPhysicalNamingStrategy.class.getName(),
+                "hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName()));
+        factoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+        entityManager = entityManagerFactory.createEntityManager();
+
+        entityManager.getTransaction().begin();
+        entityManager.persist(new Book(0, true, 1, 1, "Frank Herbert", "Dune", LocalDate.of(1965, 8, 1),
+                                       "SCIENCE_FICTION", "Chilton Books", "9780441013593"));
+        entityManager.persist(new Book(0, true, 1, 1, "Isaac Asimov", "Foundation", LocalDate.of(1951, 6, 1),
+                                       "SCIENCE_FICTION", "Gnome Press", "9780553293357"));
+        entityManager.persist(new DVD(0, true, 1, 1, "Denis Villeneuve", "Dune", LocalDate.of(2021, 9, 15),
+                                      "SCIENCE_FICTION", "155"));
+        entityManager.getTransaction().commit();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        entityManager.close();
+        factoryBean.destroy();
+    }
+
+    private <T> List<T> find(Class<T> type, Specification<T> specification) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = criteriaBuilder.createQuery(type);
+        Root<T> root = query.from(type);
+        query.where(specification.toPredicate(root, query, criteriaBuilder));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    @Test
+    @DisplayName("Finds the books whatever the case of the title and the author")
+    public void titleLikeAndAuthorLike_shouldIgnoreCase() {
+        assertThat(find(Book.class, BookSpecification.titleLike("Dune"))).extracting(Book::getTitle)
+                                                                          .containsExactly("Dune");
+        assertThat(find(Book.class, BookSpecification.titleLike("dUNE"))).extracting(Book::getTitle)
+                                                                          .containsExactly("Dune");
+        assertThat(find(Book.class, BookSpecification.authorLike("ASIMOV"))).extracting(Book::getTitle)
+                                                                             .containsExactly("Foundation");
+    }
+
+    @Test
+    @DisplayName("Finds the items of a search whose values are normalized by SearchQuery")
+    public void titleLike_shouldFindItems_withSearchQueryValues() {
+        SearchQuery bookQuery = SearchQuery.of("BOOK").text("title", "Dune").build();
+        SearchQuery dvdQuery = SearchQuery.of("DVD").text("title", "Dune").text("director", "Villeneuve").build();
+
+        assertThat(find(Book.class, BookSpecification.titleLike(bookQuery.get("title"))))
+                .extracting(Book::getAuthor)
+                .containsExactly("Frank Herbert");
+        assertThat(find(DVD.class, DVDSpecification.titleLike(dvdQuery.get("title"))
+                                                   .and(DVDSpecification.directorLike(dvdQuery.get("director")))))
+                .extracting(DVD::getAuthor)
+                .containsExactly("Denis Villeneuve");
+    }
+}
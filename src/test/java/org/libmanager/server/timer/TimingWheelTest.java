@@ -0,0 +1,75 @@
+package org.libmanager.server.timer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TimingWheelTest {
+
+    /** 4 buckets of 10 ms, 40 ms and 160 ms: a horizon of 640 ms */
+    private final TimingWheel<String> wheel = new TimingWheel<>(10, 4, 3, 0);
+
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    @DisplayName("Gives back a value once the clock passes its deadline, rounded up to the tick")
+    public void advance_shouldExpireValue_whenDeadlineIsPassed() {
+        wheel.schedule(25, "foo");
+
+        wheel.advance(29, expired::add);
+        assertThat(expired).isEmpty();
+
+        wheel.advance(30, expired::add);
+        assertThat(expired).containsExactly("foo");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Moves the values of the upper levels down until their deadline")
+    public void advance_shouldExpireValuesOfUpperLevels_inDeadlineOrder() {
+        wheel.schedule(500, "c");
+        wheel.schedule(170, "b");
+        wheel.schedule(20, "a");
+
+        for (long now = 0; now <= 640; now += 10) {
+            wheel.advance(now, value -> expired.add(value + "@" + wheel.getCurrentTime()));
+        }
+
+        assertThat(expired).containsExactly("a@20", "b@170", "c@500");
+    }
+
+    @Test
+    @DisplayName("Expires every passed value when the clock jumps")
+    public void advance_shouldExpireAllPassedValues_whenClockJumps() {
+        wheel.schedule(50, "a");
+        wheel.schedule(300, "b");
+        wheel.schedule(600, "c");
+
+        wheel.advance(400, expired::add);
+
+        assertThat(expired).containsExactly("a", "b");
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Does not schedule a passed deadline")
+    public void schedule_shouldReturnFalse_whenDeadlineIsPassed() {
+        wheel.advance(100, expired::add);
+
+        assertThat(wheel.schedule(95, "foo")).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Refuses a deadline after the horizon")
+    public void schedule_shouldThrow_whenDeadlineIsAfterHorizon() {
+        assertThatThrownBy(() -> wheel.schedule(wheel.getHorizon() + 1, "foo"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}